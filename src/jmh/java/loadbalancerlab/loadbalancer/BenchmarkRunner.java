@@ -0,0 +1,29 @@
+package loadbalancerlab.loadbalancer;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the JMH benchmarks. Runs every selected benchmark once with a single thread and once with one thread
+ * per available processor, with the GC profiler attached so that allocation rates are reported.
+ * Accepts the standard JMH command line options, e.g. a benchmark regex or '-p serverCount=100'.
+ */
+public class BenchmarkRunner {
+
+    public static void main( String[] args ) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        int[] threadCounts = { 1, Runtime.getRuntime().availableProcessors() };
+
+        for (int threads : threadCounts) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for CacheRedistributor.selectPort(), which is called once for every client request.
+ * Parameterised by the number of CacheServers, the number of HashRingAngle objects per CacheServer, the number of
+ * positions on the ring and the size of the route cache. Run through BenchmarkRunner, which runs each benchmark
+ * single- and multi-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheRedistributorBenchmark {
+
+    /**
+     * The number of resource names which are looked up.
+     */
+    static final int NUM_RESOURCE_NAMES = 4_096;
+
+    /**
+     * The number of CacheServers on the HashRing.
+     */
+    @Param({ "10", "100", "1000" })
+    int serverCount;
+
+    /**
+     * The number of HashRingAngle objects each CacheServer starts with.
+     */
+    @Param({ "10", "100" })
+    int anglesPerServer;
+
+    /**
+     * The number of positions on the HashRing.
+     */
+    @Param({ "1000000", "9223372036854775807" })
+    long ringSize;
+
+    /**
+     * The number of entries in the route cache. 0 disables the route cache.
+     */
+    @Param({ "0", "4096" })
+    int routeCacheSize;
+
+    /**
+     * The CacheRedistributor being benchmarked.
+     */
+    CacheRedistributor cacheRedis;
+
+    /**
+     * The resource names which are looked up.
+     */
+    String[] resourceNames;
+
+    /**
+     * Per-thread state which selects the next resource name.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Config config = new Config();
+        config.setRingSize(ringSize);
+        config.setDefaultAnglesPerServer(anglesPerServer);
+        config.setMinAnglesPerServer(1);
+        config.setMaxAnglesPerServer(anglesPerServer * 2);
+        config.setRouteCacheSize(routeCacheSize);
+        HashRing.configure(config);
+        CacheRedistributor.configure(config);
+
+        HashRing hashRing = new HashRing();
+        cacheRedis = new CacheRedistributor(0, hashRing);
+
+        for (int serverId = 0; serverId < serverCount; serverId++) {
+            hashRing.addServer(serverId);
+            cacheRedis.serverInfoTable.put(serverId, new ServerInfo(serverId, 10_000 + serverId, 0.5));
+        }
+
+        resourceNames = new String[NUM_RESOURCE_NAMES];
+
+        for (int i = 0; i < NUM_RESOURCE_NAMES; i++)
+            resourceNames[i] = "resource-" + i + ".jpg";
+    }
+
+    /**
+     * Selects a port and releases it again, as a request handling thread does for every request.
+     */
+    @Benchmark
+    public int selectPort( Cursor cursor ) {
+        int port = cacheRedis.selectPort(resourceNames[cursor.next++ & (NUM_RESOURCE_NAMES - 1)]);
+        cacheRedis.releasePort(port);
+        return port;
+    }
+}
@@ -0,0 +1,116 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH benchmarks for the hot paths of the HashRing class.
+ * Parameterised by the number of CacheServers, the number of HashRingAngle objects per CacheServer and the number of
+ * positions on the ring. Run through BenchmarkRunner, which runs each benchmark single- and multi-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashRingBenchmark {
+
+    /**
+     * The number of resource names which are looked up.
+     */
+    static final int NUM_RESOURCE_NAMES = 4_096;
+
+    /**
+     * The number of CacheServers on the HashRing.
+     */
+    @Param({ "10", "100", "1000" })
+    int serverCount;
+
+    /**
+     * The number of HashRingAngle objects each CacheServer starts with.
+     */
+    @Param({ "10", "100" })
+    int anglesPerServer;
+
+    /**
+     * The number of positions on the HashRing.
+     */
+    @Param({ "1000000", "9223372036854775807" })
+    long ringSize;
+
+    /**
+     * The HashRing being benchmarked.
+     */
+    HashRing hashRing;
+
+    /**
+     * The resource names which are looked up.
+     */
+    String[] resourceNames;
+
+    /**
+     * Source of distinct timestamps for recordServerAngles().
+     */
+    AtomicInteger nextTimestamp;
+
+    /**
+     * Per-thread state which selects the next resource name and CacheServer.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Config config = new Config();
+        config.setRingSize(ringSize);
+        config.setDefaultAnglesPerServer(anglesPerServer);
+        config.setMinAnglesPerServer(1);
+        config.setMaxAnglesPerServer(anglesPerServer * 2);
+        HashRing.configure(config);
+
+        hashRing = new HashRing();
+
+        /* Keep a single frame so that 'angleHistory' does not grow across invocations */
+        hashRing.angleHistory = new AngleHistory(1);
+
+        for (int serverId = 0; serverId < serverCount; serverId++)
+            hashRing.addServer(serverId);
+
+        resourceNames = new String[NUM_RESOURCE_NAMES];
+
+        for (int i = 0; i < NUM_RESOURCE_NAMES; i++)
+            resourceNames[i] = "resource-" + i + ".jpg";
+
+        nextTimestamp = new AtomicInteger();
+    }
+
+    @Benchmark
+    public int findServerId( Cursor cursor ) {
+        return hashRing.findServerId(resourceNames[cursor.next++ & (NUM_RESOURCE_NAMES - 1)]);
+    }
+
+    /**
+     * Adds a HashRingAngle to a CacheServer and removes one again, so that the HashRing stays the same size across
+     * invocations. Each call publishes a new snapshot.
+     */
+    @Benchmark
+    public void addAndRemoveAngle( Cursor cursor ) {
+        int serverId = cursor.next++ % serverCount;
+        hashRing.addAngle(serverId, 1);
+        hashRing.removeAngle(serverId, 1);
+    }
+
+    /**
+     * Records a frame. Older frames are folded into the keyframe of 'angleHistory' as they leave the retention window.
+     */
+    @Benchmark
+    public void recordServerAngles() {
+        hashRing.recordServerAngles(nextTimestamp.getAndIncrement());
+    }
+}
@@ -196,6 +196,7 @@ public class Executor {
 
     public static void main(String[] args) {
         Config config = new Config();
+        config.setVirtualThreadsEnabled(Boolean.getBoolean("loadbalancerlab.virtualThreads"));
         Executor.configure(config);
         new Executor().start(config);
     }
@@ -216,14 +217,28 @@ public class Executor {
 
         /* Configure LoadBalancer package */
         CacheRedistributor.configure(config);
+        AngleController.configure(config);
+        HotKeyDetector.configure(config);
+        RequestCoalescer.configure(config);
+        RequestHedger.configure(config);
+        CircuitBreaker.configure(config);
         CacheRedistributorRunnable.configure(config);
         CacheServerClientRequestHandler.configure(config);
         LoadBalancerClientRequestHandler.configure(config);
         ClientRequestHandlerServer.configure(config);
+        LoadBalancerRunnable.configure(config);
         HashRing.configure(config);
+        AngleHistory.configure(config);
+        WeightedRoutingStrategy.configure(config);
+        MaglevRoutingStrategy.configure(config);
+        RendezvousRoutingStrategy.configure(config);
 
         /* Configure Client package */
         ClientManagerRunnable.configure(config);
+
+        /* Configure factories */
+        HttpClientFactory.configure(config);
+        WorkerThreadFactory.configure(config);
     }
 
     /**
@@ -239,7 +254,7 @@ public class Executor {
     /**
      * Helper method used to compiles data from simulation.
      */
-    private void collectData(int hashRingSize) {
+    private void collectData(long hashRingSize) {
 
         /* Collect data from CacheServerManager instance about how many cache servers were active at each second */
         serverCountLog = cacheServerManager.deliverServerCountData();
@@ -260,12 +275,36 @@ public class Executor {
         }
 
         /* Collect HashRingAngle data */
-        SortedMap<Integer, Map<Integer, List<HashRingAngle>>> angleHistory = loadBalancer.getHashRingAngleHistory();
+        AngleHistory angleHistory = loadBalancer.getAngleHistory();
         AngleDataProcessor angleDataProcessor = new AngleDataProcessor(angleHistory, hashRingSize);
         numAnglesByServerByTime = angleDataProcessor.getNumAnglesByTime();
         sweepAngleByTime = angleDataProcessor.getSweepAngleByTime();
 
         cacheServerCfData = cacheServerManager.deliverCfData();
+
+        /* Report how many requests to CacheServers were saved by request coalescing */
+        RequestCoalescer requestCoalescer = loadBalancer.getRequestCoalescer();
+
+        if (requestCoalescer != null)
+            System.out.println(String.format("Request coalescing | upstream calls: %d | saved: %d | overflowed waiters: %d | timed out waiters: %d",
+                                             requestCoalescer.getUpstreamCalls(), requestCoalescer.getUpstreamCallsSaved(),
+                                             requestCoalescer.getOverflowedWaiters(), requestCoalescer.getTimedOutWaiters()));
+
+        /* Report how many requests were hedged to a second CacheServer */
+        RequestHedger requestHedger = loadBalancer.getRequestHedger();
+
+        if (requestHedger != null)
+            System.out.println(String.format("Request hedging | requests: %d | hedges sent: %d | hedges won: %d | hedges denied by budget: %d",
+                                             requestHedger.getRequestCount(), requestHedger.getHedgesSent(),
+                                             requestHedger.getHedgeWins(), requestHedger.getHedgesDenied()));
+
+        /* Report how many requests were answered by the near cache */
+        NearCache nearCache = loadBalancer.getNearCache();
+
+        if (nearCache != null)
+            System.out.println(String.format("Near cache | hits: %d | misses: %d | evictions: %d | invalidations: %d",
+                                             nearCache.getHitCount(), nearCache.getMissCount(),
+                                             nearCache.getEvictionCount(), nearCache.getInvalidationCount()));
     }
 
     /**
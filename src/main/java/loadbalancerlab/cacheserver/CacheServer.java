@@ -6,9 +6,9 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 
+import loadbalancerlab.factory.WorkerThreadFactory;
 import loadbalancerlab.shared.Logger;
 
 /**
@@ -98,7 +98,8 @@ public class CacheServer implements Runnable {
     public void run() {
         /* Start server */
         logger.log("Started CacheServer thread", Logger.LogType.THREAD_MANAGEMENT);
-        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        /* A single platform thread, or a virtual thread per request if virtual threads are in use */
+        ExecutorService threadPoolExecutor = WorkerThreadFactory.newRequestExecutor(1);
 
         /* Used for handling client requests forwarded by the load balancer */
         HttpHandler clientReqHandler = new CacheServerClientRequestHandler(reqMonitor);
@@ -2,6 +2,7 @@ package loadbalancerlab.client;
 
 import loadbalancerlab.factory.ClientFactory;
 import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.factory.WorkerThreadFactory;
 import loadbalancerlab.shared.Config;
 import loadbalancerlab.shared.RequestDecoder;
 
@@ -108,7 +109,7 @@ public class ClientManagerRunnable implements Runnable {
         /* Generate client threads */
         for (int i = 0; i < numClients; i++) {
             Client client = clientFactory.buildClient(maxDemandTime, demandFunction, httpClientFactory, requestStartTime, reqDecoder);
-            Thread clientThread = new Thread(client);
+            Thread clientThread = WorkerThreadFactory.newThread(client);
             clientThreads.add(clientThread);
         }
 
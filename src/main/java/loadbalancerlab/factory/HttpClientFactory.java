@@ -1,17 +1,246 @@
 package loadbalancerlab.factory;
 
+import loadbalancerlab.shared.Config;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory class used for generating CloseableHttpClient instances.
+ *
+ * Besides building a new CloseableHttpClient for every caller, it can provide a single long-lived CloseableHttpClient
+ * which keeps connections alive in a PoolingHttpClientConnectionManager, so that requests which are forwarded to the
+ * same CacheServer reuse connections instead of paying for a new TCP connection every time.
+ *
+ * It can also provide a single long-lived CloseableHttpAsyncClient with its own pool, for callers which must not block
+ * a thread while waiting for a response.
  */
 public class HttpClientFactory {
 
+    /**
+     * Controls the maximum number of pooled connections to a single host and port.
+     */
+    private static int maxConnectionsPerRoute = 20;
+
+    /**
+     * Controls the maximum number of pooled connections across all hosts and ports.
+     */
+    private static int maxConnectionsTotal = 200;
+
+    /**
+     * Controls the number of seconds after which an idle pooled connection is closed.
+     */
+    private static int idleConnectionTimeout = 30;
+
+    /**
+     * Controls the number of milliseconds a request waits for a pooled connection before it fails, so that a pool
+     * which has run out of connections cannot block callers forever.
+     */
+    private static int connectionLeaseTimeout = 5_000;
+
+    /**
+     * Controls the number of I/O threads of the pooled CloseableHttpAsyncClient.
+     */
+    private static int asyncIoThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The connection manager of 'pooledClient' field. Null until the pooled client is first requested.
+     */
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * The long-lived CloseableHttpClient which is shared by all callers of getPooledApacheClient(). Volatile so that
+     * request threads can read it without taking the lock once it has been built.
+     */
+    private volatile CloseableHttpClient pooledClient;
+
+    /**
+     * The long-lived CloseableHttpAsyncClient which is shared by all callers of getPooledAsyncClient(). Volatile so
+     * that request threads can read it without taking the lock once it has been built.
+     */
+    private volatile CloseableHttpAsyncClient pooledAsyncClient;
+
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        maxConnectionsPerRoute = config.getHttpPoolMaxPerRoute();
+        maxConnectionsTotal = config.getHttpPoolMaxTotal();
+        idleConnectionTimeout = config.getHttpPoolIdleTimeout();
+        connectionLeaseTimeout = config.getHttpPoolLeaseTimeout();
+        asyncIoThreads = config.getAsyncIoThreads();
+    }
+
     /**
      * @return A CloseableHttpClient instance used to send http requests.
      */
     public CloseableHttpClient buildApacheClient() {
         return HttpClients.createDefault();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the shared CloseableHttpClient with pooled keep-alive connections, building it on the first call.
+     * Callers must not close it. A connection is returned to the pool once the entity of its response has been fully
+     * consumed or the response has been closed.
+     * @return      The shared CloseableHttpClient.
+     */
+    public CloseableHttpClient getPooledApacheClient() {
+        CloseableHttpClient client = pooledClient;
+
+        /* The lock is only taken until the client has been built */
+        return client != null ? client : buildPooledApacheClient();
+    }
+
+    /**
+     * Helper method which builds the shared CloseableHttpClient unless another thread has already built it.
+     * @return      The shared CloseableHttpClient.
+     */
+    private synchronized CloseableHttpClient buildPooledApacheClient() {
+        if (pooledClient == null) {
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            connectionManager.setMaxTotal(maxConnectionsTotal);
+
+            /* Check connections which have been idle for a while before reusing them, since the CacheServer may have
+               closed them */
+            connectionManager.setValidateAfterInactivity(1_000);
+
+            pooledClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(buildDefaultRequestConfig())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS)
+                    .build();
+        }
+
+        return pooledClient;
+    }
+
+    /**
+     * Returns the shared, started CloseableHttpAsyncClient with pooled keep-alive connections, building it on the
+     * first call. Callers must not close it. Its pool has the same limits as the pool of getPooledApacheClient(), and
+     * requests beyond those limits wait for a connection without holding a thread.
+     * @return      The shared CloseableHttpAsyncClient.
+     * @throws IllegalStateException    Thrown if the I/O reactor of the client cannot be created.
+     */
+    public CloseableHttpAsyncClient getPooledAsyncClient() throws IllegalStateException {
+        CloseableHttpAsyncClient client = pooledAsyncClient;
+
+        /* The lock is only taken until the client has been built */
+        return client != null ? client : buildPooledAsyncClient();
+    }
+
+    /**
+     * Helper method which builds and starts the shared CloseableHttpAsyncClient unless another thread has already
+     * built it.
+     * @return      The shared CloseableHttpAsyncClient.
+     * @throws IllegalStateException    Thrown if the I/O reactor of the client cannot be created.
+     */
+    private synchronized CloseableHttpAsyncClient buildPooledAsyncClient() throws IllegalStateException {
+        if (pooledAsyncClient == null) {
+            IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                    .setIoThreadCount(asyncIoThreads)
+                    .setTcpNoDelay(true)
+                    .build();
+            PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+            try {
+                asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+            } catch (IOReactorException e) {
+                throw new IllegalStateException("Failed to create I/O reactor for async client", e);
+            }
+
+            /* Closed connections are noticed by the I/O reactor, so they do not need to be validated before reuse */
+            asyncConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            asyncConnectionManager.setMaxTotal(maxConnectionsTotal);
+
+            CloseableHttpAsyncClient asyncClient = HttpAsyncClients.custom()
+                    .setConnectionManager(asyncConnectionManager)
+                    .setDefaultRequestConfig(buildDefaultRequestConfig())
+                    .build();
+
+            /* Started before it is published, so that other threads never see a client which is not running */
+            asyncClient.start();
+            pooledAsyncClient = asyncClient;
+        }
+
+        return pooledAsyncClient;
+    }
+
+    /**
+     * Helper method which builds the RequestConfig of requests which do not set their own. Requests fail if they wait
+     * longer than 'connectionLeaseTimeout' field for a pooled connection.
+     * @return      The RequestConfig.
+     */
+    private static RequestConfig buildDefaultRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(connectionLeaseTimeout)
+                .build();
+    }
+
+    /**
+     * Getter method for the statistics of the pooled connections to a CacheServer.
+     * @param port      The port that the CacheServer is running on.
+     * @return          The numbers of leased, pending and available connections to the port, or null if the pooled
+     *                  client has not been built.
+     */
+    public synchronized PoolStats getPoolStats( int port ) {
+        if (connectionManager == null)
+            return null;
+
+        return connectionManager.getStats(new HttpRoute(new HttpHost("127.0.0.1", port)));
+    }
+
+    /**
+     * Getter method for the statistics of the pooled connections to every port which has been connected to.
+     * @return      A table which maps ports to the numbers of leased, pending and available connections to them.
+     */
+    public synchronized Map<Integer, PoolStats> getPoolStatsByPort() {
+        Map<Integer, PoolStats> statsByPort = new HashMap<>();
+
+        if (connectionManager == null)
+            return statsByPort;
+
+        for (HttpRoute route : connectionManager.getRoutes())
+            statsByPort.put(route.getTargetHost().getPort(), connectionManager.getStats(route));
+
+        return statsByPort;
+    }
+
+    /**
+     * Closes the shared CloseableHttpClient, the shared CloseableHttpAsyncClient and all of their pooled connections.
+     */
+    public synchronized void closePooledClient() {
+        for (Closeable client : new Closeable[] { pooledClient, pooledAsyncClient }) {
+            if (client == null)
+                continue;
+
+            try {
+                client.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        pooledClient = null;
+        connectionManager = null;
+        pooledAsyncClient = null;
+    }
+}
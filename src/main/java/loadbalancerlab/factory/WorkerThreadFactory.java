@@ -0,0 +1,97 @@
+package loadbalancerlab.factory;
+
+import loadbalancerlab.shared.Config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory class used for generating the threads which handle requests and run clients.
+ *
+ * When virtual threads are enabled and the runtime supports them (Java 21 or later), threads are virtual threads, so
+ * that blocking in Thread.sleep() or in Http requests only parks the thread instead of holding an OS thread. Otherwise
+ * threads are platform threads. The virtual thread API is looked up reflectively so that the project still compiles
+ * for Java 11.
+ */
+public class WorkerThreadFactory {
+
+    /**
+     * Controls whether virtual threads are used.
+     */
+    private static boolean virtualThreadsEnabled = false;
+
+    /**
+     * ThreadFactory which creates virtual threads. Null if virtual threads are disabled or unsupported.
+     */
+    private static ThreadFactory virtualThreadFactory;
+
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static synchronized void configure( Config config ) {
+        virtualThreadsEnabled = config.getVirtualThreadsEnabled();
+        virtualThreadFactory = virtualThreadsEnabled ? lookupVirtualThreadFactory() : null;
+
+        if (virtualThreadsEnabled && virtualThreadFactory == null)
+            System.out.println("WorkerThreadFactory | Virtual threads are not supported by Java "
+                               + System.getProperty("java.version") + ", using platform threads");
+    }
+
+    /**
+     * Helper method which builds a ThreadFactory for virtual threads using Thread.ofVirtual().factory().
+     * @return      The ThreadFactory, or null if the runtime does not support virtual threads.
+     */
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+
+            /* Before Java 21 the method is missing, or is a preview feature which throws when not enabled */
+            return null;
+        }
+    }
+
+    /**
+     * @return      True if the threads created by this class are virtual threads.
+     */
+    public static boolean usesVirtualThreads() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Creates an unstarted thread.
+     * @param runnable      The Runnable which the thread runs.
+     * @return              A virtual thread if virtual threads are in use, otherwise a platform thread.
+     */
+    public static Thread newThread( Runnable runnable ) {
+        ThreadFactory factory = virtualThreadFactory;
+        return factory != null ? factory.newThread(runnable) : new Thread(runnable);
+    }
+
+    /**
+     * Creates an ExecutorService for handling requests.
+     * @param numPlatformThreads    The number of threads of the pool which is used if virtual threads are not in use.
+     * @return                      An ExecutorService which starts a new virtual thread per task if virtual threads
+     *                              are in use, otherwise a fixed pool of 'numPlatformThreads' platform threads.
+     */
+    public static ExecutorService newRequestExecutor( int numPlatformThreads ) {
+        ThreadFactory factory = virtualThreadFactory;
+
+        if (factory == null)
+            return Executors.newFixedThreadPool(numPlatformThreads);
+
+        try {
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+
+            /* Virtual threads are pooled without a limit, which behaves like one thread per task */
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Proportional-integral controller which decides how many HashRingAngle objects each CacheServer should gain or lose
+ * on each remap, based on how far its capacity factor is from the mean capacity factor of the cluster.
+ *
+ * The error of a CacheServer is the mean capacity factor minus its own capacity factor, so underloaded CacheServers
+ * have a positive error. The target number of HashRingAngle objects of a CacheServer is
+ * proportionalGain * error + integralGain * (sum of errors) above its starting count, and each remap moves the
+ * CacheServer towards its target by at most 'maxAngleStep' HashRingAngle objects. Since only the change in the target
+ * is needed, it is computed in incremental form as proportionalGain * (change in error) + integralGain * error.
+ *
+ * Errors within the deadband are treated as 0, so CacheServers which are close to the mean are left alone. The part of
+ * the target which has not been reached yet is limited to one step, so that the target cannot wind up while the
+ * change per remap is limited.
+ */
+public class AngleController {
+
+    /**
+     * Controls the number of HashRingAngle objects in the target per unit of capacity factor error.
+     */
+    static double proportionalGain;
+
+    /**
+     * Controls the number of HashRingAngle objects in the target per unit of accumulated capacity factor error.
+     */
+    static double integralGain;
+
+    /**
+     * Controls the maximum number of HashRingAngle objects which are added to or removed from a CacheServer per remap.
+     */
+    static int maxAngleStep;
+
+    /**
+     * Controls the magnitude of capacity factor error below which a CacheServer is considered balanced.
+     */
+    static double deadband;
+
+    /**
+     * A table which maps CacheServer ids to their controller state.
+     */
+    Map<Integer, ServerState> states;
+
+    /**
+     * The controller state of a single CacheServer.
+     */
+    static class ServerState {
+
+        /**
+         * The capacity factor error at the previous remap.
+         */
+        double lastError;
+
+        /**
+         * The difference between the target number of HashRingAngle objects and the number which has been requested
+         * so far. May be fractional.
+         */
+        double pending;
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        proportionalGain = config.getPiProportionalGain();
+        integralGain = config.getPiIntegralGain();
+        maxAngleStep = config.getPiMaxAngleStep();
+        deadband = config.getPiDeadband();
+    }
+
+    /**
+     * Constructor
+     */
+    public AngleController() {
+        states = new HashMap<>();
+    }
+
+    /**
+     * Computes the change in the number of HashRingAngle objects of each CacheServer for one remap.
+     * CacheServers which are no longer present in 'capacityFactors' are forgotten.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     * @return                  A table mapping CacheServer ids to the number of HashRingAngle objects which should be
+     *                          added to them. Negative values are HashRingAngle objects which should be removed.
+     *                          CacheServers which should not change are omitted.
+     */
+    public Map<Integer, Integer> computeAngleChanges( Map<Integer, Double> capacityFactors ) {
+        Map<Integer, Integer> changes = new HashMap<>();
+        states.keySet().retainAll(capacityFactors.keySet());
+
+        if (capacityFactors.isEmpty())
+            return changes;
+
+        double meanCf = 0;
+
+        for (double cf : capacityFactors.values())
+            meanCf += cf;
+
+        meanCf /= capacityFactors.size();
+
+        for (Map.Entry<Integer, Double> entry : capacityFactors.entrySet()) {
+            ServerState state = states.computeIfAbsent(entry.getKey(), k -> new ServerState());
+            double error = meanCf - entry.getValue();
+
+            if (Math.abs(error) < deadband)
+                error = 0;
+
+            /* Change in the target number of HashRingAngle objects since the previous remap */
+            state.pending += proportionalGain * (error - state.lastError) + integralGain * error;
+            state.lastError = error;
+
+            long change = Math.round(state.pending);
+            change = Math.max(-maxAngleStep, Math.min(maxAngleStep, change));
+            state.pending -= change;
+
+            /* Limit the part of the target which is still out of reach (anti-windup) */
+            state.pending = Math.max(-maxAngleStep, Math.min(maxAngleStep, state.pending));
+
+            if (change != 0)
+                changes.put(entry.getKey(), (int) change);
+        }
+
+        return changes;
+    }
+}
@@ -0,0 +1,496 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.*;
+
+/**
+ * Records how the HashRingAngle objects owned by each CacheServer change over time.
+ *
+ * Instead of storing a full copy of every CacheServer's HashRingAngle objects for every timestamp, the history is
+ * stored as an append-only log of events (a CacheServer or HashRingAngle being added or removed) which is divided into
+ * frames, one per recorded timestamp. A keyframe holding the full state at the start of the oldest retained frame is
+ * kept so that the state at any retained timestamp can be reconstructed by replaying the log.
+ *
+ * Frames which are older than the retention window are folded into the keyframe, so memory is bounded by the number of
+ * HashRingAngle objects plus the number of events within the retention window.
+ *
+ * Methods are synchronized so that the history can be read by a different thread than the one recording it.
+ */
+public class AngleHistory {
+
+    /**
+     * Event type for a CacheServer being added.
+     */
+    static final byte SERVER_ADDED = 0;
+
+    /**
+     * Event type for a CacheServer being removed. All HashRingAngle objects of the CacheServer are removed first.
+     */
+    static final byte SERVER_REMOVED = 1;
+
+    /**
+     * Event type for a HashRingAngle being added.
+     */
+    static final byte ANGLE_ADDED = 2;
+
+    /**
+     * Event type for a HashRingAngle being removed.
+     */
+    static final byte ANGLE_REMOVED = 3;
+
+    /**
+     * Controls the number of seconds of history which is retained, measured back from the most recent frame.
+     * The history is never trimmed if set to 0 or less.
+     */
+    static int retentionSeconds;
+
+    /**
+     * The number of seconds of history which is retained by this object. Never trimmed if 0 or less.
+     */
+    private int retention;
+
+    /**
+     * The state at the start of the oldest retained frame. Maps CacheServer ids to tables which map the positions of
+     * their HashRingAngle objects to the number of HashRingAngle objects at that position.
+     */
+    private Map<Integer, Map<Long, Integer>> keyframe;
+
+    /**
+     * The state after the most recently recorded event. Maps CacheServer ids to tables which map the positions of
+     * their HashRingAngle objects to the number of HashRingAngle objects at that position.
+     */
+    private Map<Integer, Map<Long, Integer>> currentState;
+
+    /**
+     * The retained frames, in ascending order of timestamp.
+     */
+    private ArrayDeque<Frame> frames;
+
+    /**
+     * The types of the events which have been recorded since the last frame.
+     */
+    private byte[] pendingTypes;
+
+    /**
+     * The CacheServer ids of the events which have been recorded since the last frame.
+     */
+    private int[] pendingServerIds;
+
+    /**
+     * The HashRingAngle positions of the events which have been recorded since the last frame.
+     */
+    private long[] pendingAngles;
+
+    /**
+     * The number of events which have been recorded since the last frame.
+     */
+    private int numPending;
+
+    /**
+     * Interface for classes which receive the events of the history in order through replay().
+     */
+    public interface Listener {
+
+        /**
+         * Called when a CacheServer is added.
+         * @param serverId      The id of the CacheServer.
+         */
+        void serverAdded( int serverId );
+
+        /**
+         * Called when a CacheServer is removed, after all of its HashRingAngle objects have been removed.
+         * @param serverId      The id of the CacheServer.
+         */
+        void serverRemoved( int serverId );
+
+        /**
+         * Called when a HashRingAngle is added.
+         * @param serverId      The id of the CacheServer which owns the HashRingAngle.
+         * @param angle         The position of the HashRingAngle.
+         */
+        void angleAdded( int serverId, long angle );
+
+        /**
+         * Called when a HashRingAngle is removed.
+         * @param serverId      The id of the CacheServer which owned the HashRingAngle.
+         * @param angle         The position of the HashRingAngle.
+         */
+        void angleRemoved( int serverId, long angle );
+
+        /**
+         * Called after all events of a frame have been delivered. The state built up from the events so far is the
+         * state at 'timestamp'.
+         * @param timestamp     The timestamp of the frame, in seconds since 1-Jan-1970.
+         */
+        void frameEnded( int timestamp );
+    }
+
+    /**
+     * An immutable frame of events which happened up to a timestamp.
+     */
+    private static class Frame {
+
+        /**
+         * The timestamp of the frame, in seconds since 1-Jan-1970.
+         */
+        final int timestamp;
+
+        /**
+         * The types of the events.
+         */
+        final byte[] types;
+
+        /**
+         * The CacheServer ids of the events.
+         */
+        final int[] serverIds;
+
+        /**
+         * The HashRingAngle positions of the events. Unused for CacheServer events.
+         */
+        final long[] angles;
+
+        Frame( int timestamp, byte[] types, int[] serverIds, long[] angles ) {
+            this.timestamp = timestamp;
+            this.types = types;
+            this.serverIds = serverIds;
+            this.angles = angles;
+        }
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        retentionSeconds = config.getAngleHistoryRetention();
+    }
+
+    /**
+     * Constructor. Retains the number of seconds of history configured by configure().
+     */
+    public AngleHistory() {
+        this(retentionSeconds);
+    }
+
+    /**
+     * Constructor
+     * @param retention     The number of seconds of history to retain. Never trimmed if 0 or less.
+     */
+    public AngleHistory( int retention ) {
+        this.retention = retention;
+        keyframe = new HashMap<>();
+        currentState = new HashMap<>();
+        frames = new ArrayDeque<>();
+        pendingTypes = new byte[16];
+        pendingServerIds = new int[16];
+        pendingAngles = new long[16];
+    }
+
+    /**
+     * Builds a history from full snapshots by recording the difference between consecutive snapshots.
+     * @param snapshots     A table mapping timestamps to snapshots of the HashRingAngle objects owned by each
+     *                      CacheServer at those times.
+     * @return              The history.
+     */
+    public static AngleHistory fromSnapshots( SortedMap<Integer, Map<Integer, List<HashRingAngle>>> snapshots ) {
+        AngleHistory history = new AngleHistory(0);
+
+        for (Map.Entry<Integer, Map<Integer, List<HashRingAngle>>> entry : snapshots.entrySet())
+            history.recordSnapshot(entry.getKey(), entry.getValue());
+
+        return history;
+    }
+
+    /**
+     * Records that a CacheServer has been added.
+     * @param serverId      The id of the CacheServer.
+     */
+    public synchronized void serverAdded( int serverId ) {
+        if (currentState.putIfAbsent(serverId, new HashMap<>()) == null)
+            append(SERVER_ADDED, serverId, 0);
+    }
+
+    /**
+     * Records that a CacheServer has been removed, along with any of its HashRingAngle objects which have not been
+     * recorded as removed.
+     * @param serverId      The id of the CacheServer.
+     */
+    public synchronized void serverRemoved( int serverId ) {
+        Map<Long, Integer> angles = currentState.remove(serverId);
+
+        if (angles == null)
+            return;
+
+        for (Map.Entry<Long, Integer> entry : angles.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++)
+                append(ANGLE_REMOVED, serverId, entry.getKey());
+        }
+
+        append(SERVER_REMOVED, serverId, 0);
+    }
+
+    /**
+     * Records that a HashRingAngle has been added. The CacheServer is recorded as added if it is not known yet.
+     * @param serverId      The id of the CacheServer which owns the HashRingAngle.
+     * @param angle         The position of the HashRingAngle.
+     */
+    public synchronized void angleAdded( int serverId, long angle ) {
+        serverAdded(serverId);
+        apply(currentState, ANGLE_ADDED, serverId, angle);
+        append(ANGLE_ADDED, serverId, angle);
+    }
+
+    /**
+     * Records that a HashRingAngle has been removed.
+     * @param serverId      The id of the CacheServer which owned the HashRingAngle.
+     * @param angle         The position of the HashRingAngle.
+     */
+    public synchronized void angleRemoved( int serverId, long angle ) {
+        Map<Long, Integer> angles = currentState.get(serverId);
+
+        if (angles != null && angles.containsKey(angle)) {
+            apply(currentState, ANGLE_REMOVED, serverId, angle);
+            append(ANGLE_REMOVED, serverId, angle);
+        }
+    }
+
+    /**
+     * Records the difference between the current state and a full snapshot, and ends a frame at 'timestamp'.
+     * Used by RoutingStrategy implementations which do not track individual HashRingAngle objects.
+     * @param timestamp     The timestamp of the snapshot, in seconds since 1-Jan-1970.
+     * @param snapshot      A table mapping CacheServer ids to the HashRingAngle objects which they own.
+     */
+    public synchronized void recordSnapshot( int timestamp, Map<Integer, List<HashRingAngle>> snapshot ) {
+        if (!frames.isEmpty() && timestamp <= frames.peekLast().timestamp)
+            return;
+
+        /* Remove CacheServers which are not in the snapshot */
+        for (Integer serverId : new ArrayList<>(currentState.keySet())) {
+            if (!snapshot.containsKey(serverId))
+                serverRemoved(serverId);
+        }
+
+        for (Map.Entry<Integer, List<HashRingAngle>> entry : snapshot.entrySet()) {
+            int serverId = entry.getKey();
+            Map<Long, Integer> newAngles = new HashMap<>();
+
+            for (HashRingAngle angle : entry.getValue())
+                newAngles.merge(angle.getAngle(), 1, Integer::sum);
+
+            serverAdded(serverId);
+            Map<Long, Integer> oldAngles = new HashMap<>(currentState.get(serverId));
+
+            /* Record the difference in the number of HashRingAngle objects at each position */
+            for (Map.Entry<Long, Integer> oldEntry : oldAngles.entrySet()) {
+                int numRemoved = oldEntry.getValue() - newAngles.getOrDefault(oldEntry.getKey(), 0);
+
+                for (int i = 0; i < numRemoved; i++)
+                    angleRemoved(serverId, oldEntry.getKey());
+            }
+
+            for (Map.Entry<Long, Integer> newEntry : newAngles.entrySet()) {
+                int numAdded = newEntry.getValue() - oldAngles.getOrDefault(newEntry.getKey(), 0);
+
+                for (int i = 0; i < numAdded; i++)
+                    angleAdded(serverId, newEntry.getKey());
+            }
+        }
+
+        recordFrame(timestamp);
+    }
+
+    /**
+     * Ends a frame at 'timestamp'. The events recorded since the previous frame become part of this frame.
+     * Frames which have fallen out of the retention window are folded into the keyframe.
+     * @param timestamp     The timestamp of the frame, in seconds since 1-Jan-1970. Ignored if it is not later than
+     *                      the timestamp of the previous frame.
+     */
+    public synchronized void recordFrame( int timestamp ) {
+        if (!frames.isEmpty() && timestamp <= frames.peekLast().timestamp)
+            return;
+
+        frames.addLast(new Frame(timestamp,
+                                 Arrays.copyOf(pendingTypes, numPending),
+                                 Arrays.copyOf(pendingServerIds, numPending),
+                                 Arrays.copyOf(pendingAngles, numPending)));
+        numPending = 0;
+
+        if (retention > 0) {
+
+            /* Fold frames which are older than the retention window into the keyframe */
+            int cutoff = timestamp - retention;
+
+            while (frames.peekFirst().timestamp < cutoff) {
+                Frame oldest = frames.pollFirst();
+
+                for (int i = 0; i < oldest.types.length; i++)
+                    apply(keyframe, oldest.types[i], oldest.serverIds[i], oldest.angles[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a frame has been recorded for a timestamp.
+     * @param timestamp     A timestamp, in seconds since 1-Jan-1970.
+     * @return              True if a retained frame has that timestamp.
+     */
+    public synchronized boolean containsFrame( int timestamp ) {
+        for (Frame frame : frames) {
+            if (frame.timestamp == timestamp)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return      The number of retained frames.
+     */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * @return      The total number of events held in the retained frames.
+     */
+    public synchronized int numEvents() {
+        int numEvents = 0;
+
+        for (Frame frame : frames)
+            numEvents += frame.types.length;
+
+        return numEvents;
+    }
+
+    /**
+     * Delivers the history to a Listener in order. The keyframe is delivered first as CacheServers and HashRingAngle
+     * objects being added, followed by the events of every retained frame, each followed by a call to frameEnded().
+     * Events which have been recorded after the last frame are not delivered.
+     * @param listener      The Listener which receives the events.
+     */
+    public synchronized void replay( Listener listener ) {
+        for (Map.Entry<Integer, Map<Long, Integer>> entry : keyframe.entrySet()) {
+            listener.serverAdded(entry.getKey());
+
+            for (Map.Entry<Long, Integer> angleEntry : entry.getValue().entrySet()) {
+                for (int i = 0; i < angleEntry.getValue(); i++)
+                    listener.angleAdded(entry.getKey(), angleEntry.getKey());
+            }
+        }
+
+        for (Frame frame : frames) {
+            for (int i = 0; i < frame.types.length; i++) {
+                switch (frame.types[i]) {
+                    case SERVER_ADDED:
+                        listener.serverAdded(frame.serverIds[i]);
+                        break;
+                    case SERVER_REMOVED:
+                        listener.serverRemoved(frame.serverIds[i]);
+                        break;
+                    case ANGLE_ADDED:
+                        listener.angleAdded(frame.serverIds[i], frame.angles[i]);
+                        break;
+                    case ANGLE_REMOVED:
+                        listener.angleRemoved(frame.serverIds[i], frame.angles[i]);
+                        break;
+                }
+            }
+
+            listener.frameEnded(frame.timestamp);
+        }
+    }
+
+    /**
+     * Reconstructs a full snapshot for every retained frame. Takes memory proportional to the number of frames times
+     * the number of HashRingAngle objects, so should only be used for short histories.
+     * @return      A table mapping timestamps to snapshots of the HashRingAngle objects owned by each CacheServer at
+     *              those times.
+     */
+    public synchronized SortedMap<Integer, Map<Integer, List<HashRingAngle>>> toSnapshots() {
+        SortedMap<Integer, Map<Integer, List<HashRingAngle>>> snapshots = new TreeMap<>();
+        Map<Integer, Map<Long, Integer>> state = new HashMap<>();
+
+        replay(new Listener() {
+            @Override
+            public void serverAdded( int serverId ) { apply(state, SERVER_ADDED, serverId, 0); }
+
+            @Override
+            public void serverRemoved( int serverId ) { apply(state, SERVER_REMOVED, serverId, 0); }
+
+            @Override
+            public void angleAdded( int serverId, long angle ) { apply(state, ANGLE_ADDED, serverId, angle); }
+
+            @Override
+            public void angleRemoved( int serverId, long angle ) { apply(state, ANGLE_REMOVED, serverId, angle); }
+
+            @Override
+            public void frameEnded( int timestamp ) {
+                Map<Integer, List<HashRingAngle>> snapshot = new HashMap<>();
+
+                for (Map.Entry<Integer, Map<Long, Integer>> entry : state.entrySet()) {
+                    List<HashRingAngle> angleList = new ArrayList<>();
+
+                    for (Map.Entry<Long, Integer> angleEntry : entry.getValue().entrySet()) {
+                        for (int i = 0; i < angleEntry.getValue(); i++)
+                            angleList.add(new HashRingAngle(entry.getKey(), angleEntry.getKey()));
+                    }
+
+                    snapshot.put(entry.getKey(), angleList);
+                }
+
+                snapshots.put(timestamp, snapshot);
+            }
+        });
+
+        return snapshots;
+    }
+
+    /**
+     * Helper method which appends an event to the pending events.
+     * @param type          The type of the event.
+     * @param serverId      The id of the CacheServer.
+     * @param angle         The position of the HashRingAngle, or 0 for CacheServer events.
+     */
+    private void append( byte type, int serverId, long angle ) {
+        if (numPending == pendingTypes.length) {
+            int newLength = pendingTypes.length * 2;
+            pendingTypes = Arrays.copyOf(pendingTypes, newLength);
+            pendingServerIds = Arrays.copyOf(pendingServerIds, newLength);
+            pendingAngles = Arrays.copyOf(pendingAngles, newLength);
+        }
+
+        pendingTypes[numPending] = type;
+        pendingServerIds[numPending] = serverId;
+        pendingAngles[numPending] = angle;
+        numPending++;
+    }
+
+    /**
+     * Helper method which applies an event to a state.
+     * @param state         A table mapping CacheServer ids to tables which map the positions of their HashRingAngle
+     *                      objects to the number of HashRingAngle objects at that position.
+     * @param type          The type of the event.
+     * @param serverId      The id of the CacheServer.
+     * @param angle         The position of the HashRingAngle, or 0 for CacheServer events.
+     */
+    private static void apply( Map<Integer, Map<Long, Integer>> state, byte type, int serverId, long angle ) {
+        switch (type) {
+            case SERVER_ADDED:
+                state.putIfAbsent(serverId, new HashMap<>());
+                break;
+            case SERVER_REMOVED:
+                state.remove(serverId);
+                break;
+            case ANGLE_ADDED:
+                state.computeIfAbsent(serverId, k -> new HashMap<>()).merge(angle, 1, Integer::sum);
+                break;
+            case ANGLE_REMOVED:
+
+                /* Drop the position when its count reaches 0 */
+                state.get(serverId).computeIfPresent(angle, (k, count) -> count > 1 ? count - 1 : null);
+                break;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.shared.Logger;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.BasicAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * HttpAsyncRequestHandler implementation for handling HTTP requests from Client without blocking a thread.
+ *
+ * The request from the client is suspended while it is forwarded to a CacheServer with a CloseableHttpAsyncClient, and
+ * its response is submitted from the callback of the forwarded request. Selection of the CacheServer is delegated to
+ * a LoadBalancerClientRequestHandler object, so both handlers route and record requests in the same way.
+ */
+public class AsyncLoadBalancerClientRequestHandler implements HttpAsyncRequestHandler<HttpRequest> {
+
+    /**
+     * LoadBalancerClientRequestHandler object which selects CacheServer objects and records incoming requests.
+     */
+    private LoadBalancerClientRequestHandler reqHandler;
+
+    /**
+     * Factory which provides the shared CloseableHttpAsyncClient used to forward requests.
+     */
+    private HttpClientFactory clientFactory;
+
+    /**
+     * Logger object used for logging.
+     */
+    private Logger logger;
+
+    /**
+     * Constructor
+     * @param reqHandler        LoadBalancerClientRequestHandler object used to select CacheServer objects.
+     * @param clientFactory     Factory which provides the shared CloseableHttpAsyncClient.
+     */
+    public AsyncLoadBalancerClientRequestHandler( LoadBalancerClientRequestHandler reqHandler, HttpClientFactory clientFactory ) {
+        this.reqHandler = reqHandler;
+        this.clientFactory = clientFactory;
+        logger = new Logger("AsyncLoadBalancerClientRequestHandler");
+    }
+
+    /**
+     * Method from HttpAsyncRequestHandler interface. Requests from clients have no body, so they are buffered in full.
+     * @param httpRequest       HttpRequest object which represents Http request from client.
+     * @param httpContext       HttpContext object which represents execution state of an Http process.
+     * @return                  A consumer which buffers the request.
+     */
+    @Override
+    public HttpAsyncRequestConsumer<HttpRequest> processRequest( HttpRequest httpRequest, HttpContext httpContext ) {
+        return new BasicAsyncRequestConsumer();
+    }
+
+    /**
+     * Method from HttpAsyncRequestHandler interface. Forwards the request to a CacheServer and returns without waiting
+     * for its response. The response to the client is submitted once the CacheServer responds or fails. The request to
+     * the CacheServer fails if it has not completed within the failover deadline of LoadBalancerClientRequestHandler.
+     * @param httpRequest       HttpRequest object which represents Http request from client.
+     * @param httpExchange      HttpAsyncExchange object which is used to submit the response to the client.
+     * @param httpContext       HttpContext object which represents execution state of an Http process.
+     */
+    @Override
+    public void handle( HttpRequest httpRequest, HttpAsyncExchange httpExchange, HttpContext httpContext ) {
+        /* Shared client with pooled keep-alive connections. It is never closed here */
+        CloseableHttpAsyncClient httpClient = clientFactory.getPooledAsyncClient();
+        String resourceName = LoadBalancerClientRequestHandler.extractResourceName(httpRequest.getRequestLine().getUri());
+        reqHandler.recordIncomingRequest();
+        int cacheServerPort = reqHandler.selectCacheServerPort(resourceName);
+        HttpGet getReq = new HttpGet("http://127.0.0.1:" + cacheServerPort + "/" + resourceName);
+        getReq.setConfig(LoadBalancerClientRequestHandler.buildDeadlineConfig(LoadBalancerClientRequestHandler.computeDeadline()));
+        long startTime = System.currentTimeMillis();
+
+        httpClient.execute(getReq, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed( HttpResponse res ) {
+                reqHandler.releasePort(cacheServerPort);
+                reqHandler.recordResult(cacheServerPort, true, System.currentTimeMillis() - startTime);
+
+                /* Send back response received from from CacheServer. Its entity has already been buffered */
+                HttpResponse httpResponse = httpExchange.getResponse();
+                httpResponse.setStatusCode(200);
+                httpResponse.setEntity(res.getEntity());
+                httpExchange.submitResponse();
+            }
+
+            @Override
+            public void failed( Exception e ) {
+                reqHandler.releasePort(cacheServerPort);
+                reqHandler.recordResult(cacheServerPort, false, System.currentTimeMillis() - startTime);
+                logger.log(String.format("cache server at port %d failed to respond: %s", cacheServerPort, e), Logger.LogType.REQUEST_PASSING);
+                submitError(httpExchange);
+            }
+
+            @Override
+            public void cancelled() {
+                reqHandler.releasePort(cacheServerPort);
+                submitError(httpExchange);
+            }
+        });
+    }
+
+    /**
+     * Helper method which responds to the client with an error.
+     * @param httpExchange      HttpAsyncExchange object which is used to submit the response to the client.
+     */
+    private void submitError( HttpAsyncExchange httpExchange ) {
+        HttpResponse httpResponse = httpExchange.getResponse();
+        httpResponse.setStatusCode(500);
+        httpResponse.setEntity(LoadBalancerClientRequestHandler.buildErrorEntity());
+        httpExchange.submitResponse();
+    }
+}
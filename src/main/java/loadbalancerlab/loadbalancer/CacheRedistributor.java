@@ -4,34 +4,155 @@ import loadbalancerlab.factory.HttpClientFactory;
 import loadbalancerlab.shared.Config;
 import loadbalancerlab.shared.Logger;
 import loadbalancerlab.shared.RequestDecoder;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Class which acts as a middleman between the LoadBalancerRunnable class above it and the HashRing class below it.
- * Asks associated HashRing for the port to delegate client requests to based on a consistent caching scheme which is
- * managed by the HashRing.
- * Manages an associated HashRing instance to handle this logic.
- * Prompts associated HashRing instance to record snapshots of its angles.
- * Prompts associated HashRing instance to update its delegation logic to balance out loading of CacheServer instances.
+ * Class which acts as a middleman between the LoadBalancerRunnable class above it and the RoutingStrategy class below
+ * it (a HashRing by default).
+ * Asks associated RoutingStrategy for the port to delegate client requests to based on a consistent caching scheme
+ * which is managed by the RoutingStrategy.
+ * Manages an associated RoutingStrategy instance to handle this logic.
+ * Prompts associated RoutingStrategy instance to record snapshots of its angles.
+ * Prompts associated RoutingStrategy instance to update its delegation logic to balance out loading of CacheServer
+ * instances.
  */
 public class CacheRedistributor {
 
+    /**
+     * Modes for adjusting the number of HashRingAngle objects of each CacheServer in remapCacheKeys().
+     */
+    public enum RemapMode {
+        LOAD_CUTOFFS,       /* Fixed steps chosen by comparing the capacity factor with 'serverLoadCutoffs' */
+        PI_CONTROLLER,      /* Steps computed by an AngleController from the error versus the mean capacity factor */
+        HOT_ARC_SPLITTING,  /* The hottest arc of each overloaded CacheServer is split or shrunk (HashRing class only) */
+    }
+
+    /**
+     * Modes for picking one of the replicas of a hot key in selectPort().
+     */
+    public enum ReplicaSelection {
+        ROUND_ROBIN,        /* Each request goes to the next replica in turn */
+        LEAST_LOADED,       /* Each request goes to the replica with the fewest in-flight requests */
+    }
+
+    /**
+     * Modes for selecting the CacheServer which handles a request in selectPort().
+     */
+    public enum RoutingMode {
+        CONSISTENT_HASHING,     /* The CacheServer which the resource name maps to */
+        TWO_RANDOM_CHOICES,     /* The less loaded of two random CacheServers, for requests which need no key affinity */
+        TWO_RING_CHOICES,       /* The less loaded of the first two distinct CacheServers clockwise of the resource name */
+    }
+
+    /**
+     * Measures of load used to compare the two candidates of the two choices routing modes.
+     */
+    public enum LoadMetric {
+        IN_FLIGHT,          /* The number of in-flight requests */
+        EWMA_LATENCY,       /* The moving average latency, scaled by the number of in-flight requests plus one */
+    }
+
     /**
      * A table which holds information about server instances.
      * Keys are server ids. Values are ServerInfo objects.
+     * Read by request handling threads through selectPort() while it is updated by requestServerInfo().
      */
     Map<Integer, ServerInfo> serverInfoTable;
 
     /**
-     * Associated HashRing which is used in consistent hashing mechanism for routing requests to CacheServer instances.
+     * A table which maps the ports of CacheServer instances to their ServerInfo objects.
+     * Used to find the ServerInfo object of a request when it completes.
+     */
+    Map<Integer, ServerInfo> serverInfoByPort;
+
+    /**
+     * The total number of requests which have been forwarded to CacheServer instances and have not completed.
+     */
+    private AtomicInteger totalInFlightRequests;
+
+    /**
+     * The number of requests which were routed to a CacheServer other than the one the resource name maps to, because
+     * that CacheServer was above the load bound.
+     */
+    private LongAdder spilloverCount;
+
+    /**
+     * The number of requests which have been routed by selectPort().
+     */
+    private LongAdder selectionCount;
+
+    /**
+     * The number of requests for hot keys which were spread over the replicas of the resource.
+     */
+    private LongAdder replicaSelectionCount;
+
+    /**
+     * The number of requests which were routed away from the CacheServer the resource name maps to because that
+     * CacheServer is suspect, or which failed over to another CacheServer.
+     */
+    private LongAdder failoverCount;
+
+    /**
+     * The number of requests which were routed away from the CacheServer they were selected for because its circuit
+     * breaker was not closed.
+     */
+    private LongAdder breakerRerouteCount;
+
+    /**
+     * The number of requests which were sent to a CacheServer whose circuit breaker did not let them through, because
+     * no other CacheServer could take them.
+     */
+    private LongAdder breakerFailOpenCount;
+
+    /**
+     * The number of requests which were routed by picking the less loaded of two CacheServers.
+     */
+    private LongAdder twoChoiceSelectionCount;
+
+    /**
+     * Counter used to pick replicas of hot keys in turn when 'hotKeyReplicaSelection' is ROUND_ROBIN.
+     */
+    private AtomicInteger nextReplica;
+
+    /**
+     * Associated RoutingStrategy which is used in consistent hashing mechanism for routing requests to CacheServer
+     * instances.
+     */
+    RoutingStrategy routingStrategy;
+
+    /**
+     * Cache which maps resource names to the ids of the CacheServers that 'routingStrategy' routes them to.
+     * Null if the route cache is disabled. Always disabled when 'remapMode' is HOT_ARC_SPLITTING, because lookups
+     * served by the cache would not be counted on the arcs of the RoutingStrategy.
+     */
+    RouteCache routeCache;
+
+    /**
+     * Cache of CacheServer responses which are served without forwarding requests. Null if the near cache is disabled.
+     */
+    NearCache nearCache;
+
+    /**
+     * The version of the RoutingStrategy mapping which the entries of 'nearCache' field were last checked against.
+     */
+    private long nearCacheVersion;
+
+    /**
+     * Controller which computes the changes in the number of HashRingAngle objects when 'remapMode' is PI_CONTROLLER.
      */
-    HashRing hashRing;
+    AngleController angleController;
 
     /**
      * RequestDecoder object used to extract JSON object from a CloseableHttpResponse object.
@@ -67,6 +188,70 @@ public class CacheRedistributor {
      */
     private static double[] serverLoadCutoffs;
 
+    /**
+     * When set to true, selectPort() routes requests with consistent hashing with bounded loads.
+     */
+    private static boolean boundedLoadEnabled;
+
+    /**
+     * The fraction by which the number of in-flight requests of a CacheServer may exceed the average before requests
+     * spill over to the next CacheServer when bounded loads are enabled.
+     */
+    private static double boundedLoadEpsilon;
+
+    /**
+     * The maximum number of resource names held in 'routeCache' field. The route cache is disabled when set to 0.
+     */
+    private static int routeCacheSize;
+
+    /**
+     * The maximum total size of the responses held in 'nearCache' field, in bytes. The near cache is disabled when set
+     * to 0.
+     */
+    private static long nearCacheMaxBytes;
+
+    /**
+     * The number of milliseconds after which a response held in 'nearCache' field expires.
+     */
+    private static long nearCacheTtl;
+
+    /**
+     * When set to true, CacheServers whose circuit breakers are open are masked in the RoutingStrategy, and requests
+     * are routed around CacheServers whose circuit breakers are not closed.
+     */
+    private static boolean circuitBreakersEnabled;
+
+    /**
+     * Controls how the number of HashRingAngle objects of each CacheServer is adjusted in remapCacheKeys().
+     */
+    private static RemapMode remapMode;
+
+    /**
+     * Controls the number of CacheServers which requests for a hot key are spread over.
+     */
+    private static int hotKeyReplicas;
+
+    /**
+     * Controls how one of the replicas of a hot key is picked.
+     */
+    private static ReplicaSelection hotKeyReplicaSelection;
+
+    /**
+     * Controls the connect and socket timeouts, in milliseconds, of requests to the CacheServerManager for information
+     * on CacheServers.
+     */
+    static final int serverInfoTimeout = 2_000;
+
+    /**
+     * Controls how the CacheServer which handles a request is selected.
+     */
+    private static RoutingMode routingMode = RoutingMode.CONSISTENT_HASHING;
+
+    /**
+     * Controls how the load of the two candidates is compared when 'routingMode' is one of the two choices modes.
+     */
+    private static LoadMetric loadMetric = LoadMetric.IN_FLIGHT;
+
     /**
      * Object used for logging.
      */
@@ -80,26 +265,68 @@ public class CacheRedistributor {
         reqDecoder = config.getRequestDecoder();
         httpClientFactory = config.getHttpClientFactory();
         serverLoadCutoffs = config.getServerLoadCutoffs();
+        boundedLoadEnabled = config.getBoundedLoadEnabled();
+        boundedLoadEpsilon = config.getBoundedLoadEpsilon();
+        routeCacheSize = config.getRouteCacheSize();
+        nearCacheMaxBytes = config.getNearCacheMaxBytes();
+        nearCacheTtl = config.getNearCacheTtl();
+        circuitBreakersEnabled = config.getCircuitBreakersEnabled();
+        remapMode = config.getRemapMode();
+        hotKeyReplicas = config.getHotKeyReplicas();
+        hotKeyReplicaSelection = config.getHotKeyReplicaSelection();
+        routingMode = config.getRoutingMode();
+        loadMetric = config.getLoadMetric();
     }
 
     /**
      * @param cacheServerManagerPort    The port that the CacheServerManager instance is running on
-     * @param hashRing                  A HashRing instance for selecting the server to handle a request based on
-     *                                  consistent hashing
+     * @param routingStrategy           A RoutingStrategy instance for selecting the server to handle a request based
+     *                                  on consistent hashing
      */
-    public CacheRedistributor( int cacheServerManagerPort, HashRing hashRing ) {
-        serverInfoTable = new HashMap<>();
+    public CacheRedistributor( int cacheServerManagerPort, RoutingStrategy routingStrategy ) {
+        serverInfoTable = new ConcurrentHashMap<>();
+        serverInfoByPort = new ConcurrentHashMap<>();
+        totalInFlightRequests = new AtomicInteger();
+        spilloverCount = new LongAdder();
+        selectionCount = new LongAdder();
+        replicaSelectionCount = new LongAdder();
+        failoverCount = new LongAdder();
+        breakerRerouteCount = new LongAdder();
+        breakerFailOpenCount = new LongAdder();
+        twoChoiceSelectionCount = new LongAdder();
+        nextReplica = new AtomicInteger();
         this.cacheServerManagerPort = cacheServerManagerPort;
-        this.hashRing = hashRing;
+        this.routingStrategy = routingStrategy;
+        routeCache = routeCacheSize > 0 && remapMode != RemapMode.HOT_ARC_SPLITTING ? new RouteCache(routeCacheSize) : null;
+        nearCache = nearCacheMaxBytes > 0 ? new NearCache(nearCacheMaxBytes, nearCacheTtl) : null;
+        angleController = new AngleController();
         logger = new Logger("CacheRedistributor");
     }
 
     /**
-     * Getter method for associated HashRing instance's 'angleHistory' field.
-     * @return      Returns a reference to the HashRing's 'angleHistory' field.
+     * Getter method for associated RoutingStrategy instance's 'angleHistory' field.
+     * @return      Returns a reference to the RoutingStrategy's 'angleHistory' field.
      */
     public SortedMap<Integer, Map<Integer, List<HashRingAngle>>> getHashRingAngleHistory() {
-        return hashRing.getHashRingAngleHistory();
+        return routingStrategy.getHashRingAngleHistory();
+    }
+
+    /**
+     * Getter method for associated RoutingStrategy instance's AngleHistory object.
+     * @return      Returns a reference to the RoutingStrategy's AngleHistory object.
+     */
+    public AngleHistory getAngleHistory() {
+        return routingStrategy.getAngleHistory();
+    }
+
+    /**
+     * Getter method for the version of the associated RoutingStrategy instance's current snapshot.
+     * The version changes every time the mapping of resource names to CacheServer instances changes, so it can be used
+     * to invalidate data which was derived from an earlier mapping.
+     * @return      The version of the associated RoutingStrategy instance's current snapshot.
+     */
+    public long getRingVersion() {
+        return routingStrategy.getVersion();
     }
 
     /**
@@ -108,12 +335,28 @@ public class CacheRedistributor {
      * Updates the serverInfoTable field with the results.
      */
     public void requestServerInfo() {
-        CloseableHttpClient client = httpClientFactory.buildApacheClient();
         HttpGet getReq = new HttpGet("http://127.0.0.1:" + cacheServerManagerPort + "/cache-servers");
+        getReq.setConfig(RequestConfig.custom()
+                                 .setConnectTimeout(serverInfoTimeout)
+                                 .setSocketTimeout(serverInfoTimeout)
+                                 .build());
+        JSONObject resJson;
+
+        /* The response is read before the RoutingStrategy's lock is taken, so that a slow CacheServerManager does not
+           block request threads which mask or unmask servers */
+        try (CloseableHttpClient client = httpClientFactory.buildApacheClient();
+             CloseableHttpResponse res = client.execute(getReq)) {
+            resJson = reqDecoder.extractJsonApacheResponse(res);
+        } catch (IOException e) {
+            e.printStackTrace();
+            logger.log("Failed to send request to cache info server", Logger.LogType.REQUEST_PASSING);
+            return;
+        }
+
+        /* Publish all servers which are added to the RoutingStrategy in a single snapshot */
+        routingStrategy.beginBatch();
 
         try {
-            CloseableHttpResponse res = client.execute(getReq);
-            JSONObject resJson = reqDecoder.extractJsonApacheResponse(res);
             for (String serverId : resJson.keySet()) {
                 int serverIdInt = Integer.valueOf(serverId);
                 JSONObject entry = resJson.getJSONObject(serverId);
@@ -123,7 +366,14 @@ public class CacheRedistributor {
 
                     /* If serverInfoTable contains entry for this server */
                     /* Update Cf */
-                    serverInfoTable.get(serverIdInt).setCapacityFactor(cf);
+                    ServerInfo info = serverInfoTable.get(serverIdInt);
+                    info.setCapacityFactor(cf);
+
+                    /* The CacheServerManager still reports the server, so requests are routed to it again */
+                    if (info.isSuspect()) {
+                        info.setSuspect(false);
+                        logger.log(String.format("cache server %d is no longer suspect", serverIdInt), Logger.LogType.REQUEST_PASSING);
+                    }
                 } else {
 
                     /* Otherwise, create new entry */
@@ -131,19 +381,34 @@ public class CacheRedistributor {
                     ServerInfo newInfo = new ServerInfo(serverIdInt, port, cf);
                     serverInfoTable.put(serverIdInt, newInfo);
 
-                    /* Add server to HashRing */
-                    hashRing.addServer(serverIdInt);
+                    /* Add server to RoutingStrategy */
+                    routingStrategy.addServer(serverIdInt);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            logger.log("Failed to send request to cache info server", Logger.LogType.REQUEST_PASSING);
+        } finally {
+            routingStrategy.commitBatch();
         }
+
+        /* Added servers take over some resource names */
+        dropMovedNearCacheEntries();
     }
 
     /**
      * Finds the port of the CacheServer which is responsible for handling a resource using a consistent hashing
-     * mechanism.
+     * mechanism, and records the request as in-flight on that CacheServer. releasePort() must be called with the
+     * returned port once the request has completed.
+     *
+     * When bounded loads are enabled and the CacheServer has reached (1 + epsilon) times the average number of
+     * in-flight requests, the request spills over to the next CacheServer clockwise which is under the bound.
+     *
+     * CacheServers which are suspect are skipped in favour of the next CacheServer clockwise which is not suspect.
+     * When circuit breakers are enabled, a CacheServer whose breaker does not let the request through is skipped in
+     * the same way. If every other CacheServer is suspect or has a breaker which is not closed, the breaker fails open:
+     * the request is still sent to the selected CacheServer, since failing it would not spare any CacheServer, and it
+     * is counted by getBreakerFailOpenCount().
+     *
+     * When 'routingMode' is one of the two choices modes, the request goes to the less loaded of two candidate
+     * CacheServers instead, and consistent hashing is only used if there is no candidate.
      *
      * @param resourceName      The name of the resource specified in the URI of the request from the client
      * @return                  The port that the CacheServer instance which is responsible for the resource is
@@ -151,31 +416,658 @@ public class CacheRedistributor {
      * @throws IllegalStateException    Thrown if there is no corresponding server for this resource name.
      */
     public int selectPort( String resourceName ) throws IllegalStateException {
-        int serverId = hashRing.findServerId(resourceName);
+        return selectPort(resourceName, false);
+    }
+
+    /**
+     * Finds the port of the CacheServer which should handle a resource, as selectPort(String) does. Requests for hot
+     * keys are spread over the first 'hotKeyReplicas' distinct CacheServers clockwise of the resource instead.
+     * releasePort() must be called with the returned port once the request has completed.
+     * @param resourceName      The name of the resource specified in the URI of the request from the client
+     * @param hotKey            True if the resource has been detected as a hot key.
+     * @return                  The port that the selected CacheServer instance is running on
+     * @throws IllegalStateException    Thrown if there is no corresponding server for this resource name.
+     */
+    public int selectPort( String resourceName, boolean hotKey ) throws IllegalStateException {
+        ServerInfo selectedInfo = null;
+
+        if (routingMode != RoutingMode.CONSISTENT_HASHING)
+            selectedInfo = selectTwoChoices(resourceName);
+
+        if (selectedInfo != null) {
+            twoChoiceSelectionCount.increment();
+        } else {
+            selectedInfo = selectByHashing(resourceName, hotKey);
+        }
+
+        if (circuitBreakersEnabled && !selectedInfo.getCircuitBreaker().tryAcquire(System.currentTimeMillis())) {
+            ServerInfo closedInfo = findHealthyServer(resourceName, Collections.emptySet());
+
+            if (closedInfo != null) {
+                selectedInfo = closedInfo;
+                breakerRerouteCount.increment();
+            } else {
+                breakerFailOpenCount.increment();
+                logger.log(String.format("no healthy cache server for %s, sending it to cache server %d although its circuit breaker is not closed", resourceName, selectedInfo.getServerId()), Logger.LogType.REQUEST_PASSING);
+            }
+        }
+
+        selectionCount.increment();
+        recordInFlight(selectedInfo);
+
+        return selectedInfo.getPort();
+    }
+
+    /**
+     * Helper method which selects the CacheServer which handles a resource by consistent hashing, routing around the
+     * CacheServer the resource name maps to if it is suspect, and applying hot key replicas and bounded loads.
+     * @param resourceName      The name of the resource.
+     * @param hotKey            True if the resource has been detected as a hot key.
+     * @return                  The ServerInfo object of the selected CacheServer.
+     * @throws IllegalStateException    Thrown if there is no corresponding server for this resource name.
+     */
+    private ServerInfo selectByHashing( String resourceName, boolean hotKey ) throws IllegalStateException {
+        int serverId = findServerId(resourceName);
 
         if (!serverInfoTable.containsKey(serverId))
             throw new IllegalStateException("There is no corresponding server for this resource name");
 
-        return serverInfoTable.get(serverId).getPort();
+        ServerInfo selectedInfo = serverInfoTable.get(serverId);
+
+        if (selectedInfo.isSuspect()) {
+            ServerInfo healthyInfo = findHealthyServer(resourceName, Collections.emptySet());
+
+            if (healthyInfo != null) {
+                selectedInfo = healthyInfo;
+                failoverCount.increment();
+            }
+        }
+
+        if (hotKey && hotKeyReplicas > 1) {
+            ServerInfo replicaInfo = selectReplica(resourceName);
+
+            if (replicaInfo != null) {
+                selectedInfo = replicaInfo;
+                replicaSelectionCount.increment();
+            }
+        } else if (boundedLoadEnabled && !isUnderLoadBound(selectedInfo)) {
+            ServerInfo spilloverInfo = findServerUnderLoadBound(resourceName);
+
+            if (spilloverInfo != null) {
+                selectedInfo = spilloverInfo;
+                spilloverCount.increment();
+            }
+        }
+
+        return selectedInfo;
     }
 
     /**
-     * Makes the associated HashRing instance record a snapshot of its 'angleHistory' field for the current time.
-     * This builds a record of the positions of the angles on the HashRing for analysis.
+     * Helper method which picks two candidate CacheServers according to 'routingMode' and selects the less loaded one
+     * according to 'loadMetric'. Candidates are drawn from the CacheServers which are not suspect and whose circuit
+     * breakers, when enabled, are not open.
+     * @param resourceName      The name of the resource.
+     * @return                  The ServerInfo object of the selected CacheServer, or null if there is no candidate.
+     */
+    private ServerInfo selectTwoChoices( String resourceName ) {
+        ServerInfo first = null;
+        ServerInfo second = null;
+
+        if (routingMode == RoutingMode.TWO_RANDOM_CHOICES) {
+            List<ServerInfo> candidates = new ArrayList<>(serverInfoTable.size());
+
+            for (ServerInfo info : serverInfoTable.values()) {
+                if (isChoosable(info))
+                    candidates.add(info);
+            }
+
+            if (candidates.isEmpty())
+                return null;
+
+            /* Draw two distinct indices: the second is drawn from the remaining candidates and shifted past the first */
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int firstIdx = random.nextInt(candidates.size());
+            first = candidates.get(firstIdx);
+
+            if (candidates.size() > 1) {
+                int secondIdx = random.nextInt(candidates.size() - 1);
+                second = candidates.get(secondIdx >= firstIdx ? secondIdx + 1 : secondIdx);
+            }
+        } else {
+            int[] candidates = new int[serverInfoTable.size()];
+            int numCandidates = routingStrategy.findServerIds(resourceName, candidates);
+
+            for (int i = 0; i < numCandidates && second == null; i++) {
+                ServerInfo info = serverInfoTable.get(candidates[i]);
+
+                if (info == null || !isChoosable(info))
+                    continue;
+
+                if (first == null) {
+                    first = info;
+                } else {
+                    second = info;
+                }
+            }
+        }
+
+        if (second == null || first == null)
+            return first;
+
+        return getLoad(second) < getLoad(first) ? second : first;
+    }
+
+    /**
+     * Helper method which checks whether a CacheServer can be a candidate of the two choices routing modes. Unlike
+     * isRoutable(), CacheServers whose circuit breakers are half-open are candidates, so that they receive their probe
+     * requests.
+     * @param info      The ServerInfo object of the CacheServer.
+     * @return          True if the CacheServer is not suspect and, when circuit breakers are enabled, its circuit
+     *                  breaker is not open.
+     */
+    private boolean isChoosable( ServerInfo info ) {
+        if (info.isSuspect())
+            return false;
+
+        return !circuitBreakersEnabled || info.getCircuitBreaker().getState() != CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Helper method which measures the load of a CacheServer according to 'loadMetric'.
+     * @param info      The ServerInfo object of the CacheServer.
+     * @return          The load of the CacheServer. Lower is less loaded.
+     */
+    private static double getLoad( ServerInfo info ) {
+        if (loadMetric == LoadMetric.IN_FLIGHT)
+            return info.getInFlightRequests();
+
+        /* Scaling by the in-flight requests stops a fast CacheServer from receiving every request until its latency
+           catches up, and lets CacheServers with no recorded latency be tried without all being tied at 0 */
+        return Math.max(info.getLatencyEwma(), 1) * (info.getInFlightRequests() + 1);
+    }
+
+    /**
+     * Finds the port of the CacheServer which a hedged request for a resource is sent to, which is the first distinct
+     * CacheServer clockwise of the resource that is not already handling the request. The request is recorded as
+     * in-flight on that CacheServer, and releasePort() must be called with the returned port once it has completed.
+     * @param resourceName      The name of the resource.
+     * @param excludedPort      The port of the CacheServer which the request has already been sent to.
+     * @return                  The port of the selected CacheServer, or -1 if there is no other CacheServer.
+     */
+    public int selectHedgePort( String resourceName, int excludedPort ) {
+
+        /* The request may have been sent to a replica or a spillover CacheServer rather than the owner, so the owner
+           and its successor are both candidates */
+        int[] candidates = new int[2];
+        int numCandidates = routingStrategy.findServerIds(resourceName, candidates);
+
+        for (int i = 0; i < numCandidates; i++) {
+            ServerInfo info = serverInfoTable.get(candidates[i]);
+
+            if (info != null && info.getPort() != excludedPort && isRoutable(info)) {
+                recordInFlight(info);
+                return info.getPort();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the port of the CacheServer which a request for a resource fails over to after the request failed on
+     * every port in 'triedPorts', which is the first distinct CacheServer clockwise of the resource that has not been
+     * tried and is not suspect. The request is recorded as in-flight on that CacheServer, and releasePort() must be
+     * called with the returned port once it has completed.
+     * @param resourceName      The name of the resource.
+     * @param triedPorts        The ports of the CacheServers which the request has already failed on.
+     * @return                  The port of the selected CacheServer, or -1 if there is none.
+     */
+    public int selectFailoverPort( String resourceName, Set<Integer> triedPorts ) {
+        ServerInfo info = findHealthyServer(resourceName, triedPorts);
+
+        if (info == null)
+            return -1;
+
+        failoverCount.increment();
+        recordInFlight(info);
+        return info.getPort();
+    }
+
+    /**
+     * Marks the CacheServer running on a port as suspect after a request to it failed. Requests are routed around it
+     * until requestServerInfo() receives information on it again.
+     * @param port      The port of the CacheServer.
+     */
+    public void markSuspect( int port ) {
+        ServerInfo info = serverInfoByPort.get(port);
+
+        /* Ports which have never been selected are not in 'serverInfoByPort' yet */
+        if (info == null) {
+            for (ServerInfo candidate : serverInfoTable.values()) {
+                if (candidate.getPort() == port)
+                    info = candidate;
+            }
+        }
+
+        if (info != null && !info.isSuspect()) {
+            info.setSuspect(true);
+            logger.log(String.format("cache server %d at port %d is suspect", info.getServerId(), port), Logger.LogType.REQUEST_PASSING);
+        }
+    }
+
+    /**
+     * Helper method which walks clockwise from the position of a resource name and finds the first CacheServer which
+     * is not suspect and is not running on one of the excluded ports.
+     * @param resourceName      The name of the resource.
+     * @param excludedPorts     Ports of CacheServers which must not be selected.
+     * @return                  The ServerInfo object of the selected CacheServer, or null if there is none.
+     */
+    private ServerInfo findHealthyServer( String resourceName, Set<Integer> excludedPorts ) {
+        int[] candidates = new int[serverInfoTable.size()];
+        int numCandidates = routingStrategy.findServerIds(resourceName, candidates);
+
+        for (int i = 0; i < numCandidates; i++) {
+            ServerInfo info = serverInfoTable.get(candidates[i]);
+
+            if (info != null && isRoutable(info) && !excludedPorts.contains(info.getPort()))
+                return info;
+        }
+
+        return null;
+    }
+
+    /**
+     * Helper method which checks whether requests can be routed to a CacheServer without claiming anything from it.
+     * @param info      The ServerInfo object of the CacheServer.
+     * @return          True if the CacheServer is not suspect and, when circuit breakers are enabled, its circuit
+     *                  breaker is closed.
+     */
+    private boolean isRoutable( ServerInfo info ) {
+        if (info.isSuspect())
+            return false;
+
+        return !circuitBreakersEnabled || info.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Records the outcome of a request to the CacheServer running on a port. The latencies of successful requests are
+     * added to the moving average latency of the CacheServer. When circuit breakers are enabled, the outcome is also
+     * recorded in its circuit breaker. The RoutingStrategy is not changed here, since masking a CacheServer waits for
+     * its lock: updateEjectedServers() ejects the CacheServer once its breaker has opened, and requests are routed
+     * around the open breaker until then.
+     * @param port              The port of the CacheServer.
+     * @param succeeded         True if the CacheServer responded.
+     * @param latencyMillis     The number of milliseconds the request took.
+     */
+    public void recordResult( int port, boolean succeeded, long latencyMillis ) {
+        ServerInfo info = serverInfoByPort.get(port);
+
+        if (info == null)
+            return;
+
+        if (succeeded)
+            info.recordLatency(latencyMillis);
+
+        if (!circuitBreakersEnabled)
+            return;
+
+        CircuitBreaker.State transition = info.getCircuitBreaker().record(succeeded, latencyMillis, System.currentTimeMillis());
+
+        if (transition == CircuitBreaker.State.OPEN) {
+            logger.log(String.format("circuit breaker of cache server %d opened", info.getServerId()), Logger.LogType.REQUEST_PASSING);
+        } else if (transition == CircuitBreaker.State.CLOSED) {
+            logger.log(String.format("circuit breaker of cache server %d closed", info.getServerId()), Logger.LogType.REQUEST_PASSING);
+        }
+    }
+
+    /**
+     * Brings the RoutingStrategy in line with the circuit breakers of the CacheServers. A CacheServer whose breaker has
+     * opened is ejected by masking it. Breakers which have been open for long enough are then moved to HALF_OPEN, and
+     * every CacheServer whose breaker is no longer open is restored, so that the next request routed to a HALF_OPEN
+     * CacheServer is let through as a probe. A CacheServer whose probe fails is ejected again by the next call.
+     *
+     * Called periodically by CacheRedistributorRunnable, so that threads which handle requests never wait for the lock
+     * of the RoutingStrategy.
+     */
+    public void updateEjectedServers() {
+        if (!circuitBreakersEnabled)
+            return;
+
+        long now = System.currentTimeMillis();
+
+        for (ServerInfo info : serverInfoTable.values()) {
+            CircuitBreaker breaker = info.getCircuitBreaker();
+
+            if (breaker.getState() == CircuitBreaker.State.OPEN)
+                setEjected(info, true);
+
+            if (breaker.tryHalfOpen(now))
+                logger.log(String.format("circuit breaker of cache server %d half-open, probing it", info.getServerId()), Logger.LogType.REQUEST_PASSING);
+
+            if (breaker.getState() != CircuitBreaker.State.OPEN)
+                setEjected(info, false);
+        }
+    }
+
+    /**
+     * Helper method which masks or unmasks a CacheServer in the RoutingStrategy, unless it already is.
+     * @param info          The ServerInfo object of the CacheServer.
+     * @param ejected       True if the CacheServer should be masked.
+     */
+    private void setEjected( ServerInfo info, boolean ejected ) {
+        if (info.isEjected() == ejected)
+            return;
+
+        try {
+            if (ejected) {
+                routingStrategy.maskServer(info.getServerId());
+                logger.log(String.format("ejecting cache server %d", info.getServerId()), Logger.LogType.REQUEST_PASSING);
+            } else {
+                routingStrategy.unmaskServer(info.getServerId());
+            }
+        } catch (IllegalArgumentException e) {
+
+            /* The CacheServer has been removed from the RoutingStrategy, so there is nothing to mask */
+        }
+
+        info.setEjected(ejected);
+    }
+
+    /**
+     * Helper method which records a request as in-flight on a CacheServer.
+     * @param info      The ServerInfo object of the CacheServer.
+     */
+    private void recordInFlight( ServerInfo info ) {
+        info.incrementInFlightRequests();
+        totalInFlightRequests.incrementAndGet();
+        serverInfoByPort.putIfAbsent(info.getPort(), info);
+    }
+
+    /**
+     * Helper method which finds the id of the CacheServer that a resource name maps to, using the route cache if it is
+     * enabled.
+     * @param resourceName      The name of the resource.
+     * @return                  The id of the CacheServer, or -1 if no CacheServer has been added.
+     */
+    private int findServerId( String resourceName ) {
+        if (routeCache == null)
+            return routingStrategy.findServerId(resourceName);
+
+        /* Read the version before the lookup, so that an entry is never tagged with a newer version than the mapping
+           it was computed from */
+        long version = routingStrategy.getVersion();
+        int serverId = routeCache.get(resourceName, version);
+
+        if (serverId == -1) {
+            serverId = routingStrategy.findServerId(resourceName);
+
+            if (serverId != -1)
+                routeCache.put(resourceName, serverId, version);
+        }
+
+        return serverId;
+    }
+
+    /**
+     * Records that a request which was routed by selectPort() has completed.
+     * @param port      The port which was returned by selectPort() for the request.
+     */
+    public void releasePort( int port ) {
+        ServerInfo info = serverInfoByPort.get(port);
+
+        if (info != null) {
+            info.decrementInFlightRequests();
+            totalInFlightRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Helper method which checks whether a CacheServer can accept another request without exceeding the load bound of
+     * (1 + epsilon) times the average number of in-flight requests, including the new request.
+     * @param info      The ServerInfo object of the CacheServer.
+     * @return          True if the CacheServer is under the load bound.
+     */
+    private boolean isUnderLoadBound( ServerInfo info ) {
+        double averageLoad = (totalInFlightRequests.get() + 1) / (double) serverInfoTable.size();
+        double loadBound = Math.ceil((1 + boundedLoadEpsilon) * averageLoad);
+
+        return info.getInFlightRequests() + 1 <= loadBound;
+    }
+
+    /**
+     * Helper method which walks clockwise from the position of a resource name and finds the first CacheServer which
+     * is under the load bound.
+     * @param resourceName      The name of the resource.
+     * @return                  The ServerInfo object of the first CacheServer under the load bound, or null if there is
+     *                          none.
+     */
+    private ServerInfo findServerUnderLoadBound( String resourceName ) {
+        int[] candidates = new int[serverInfoTable.size()];
+        int numCandidates = routingStrategy.findServerIds(resourceName, candidates);
+
+        for (int i = 0; i < numCandidates; i++) {
+            ServerInfo info = serverInfoTable.get(candidates[i]);
+
+            if (info != null && isRoutable(info) && isUnderLoadBound(info))
+                return info;
+        }
+
+        return null;
+    }
+
+    /**
+     * Helper method which picks one of the first 'hotKeyReplicas' distinct CacheServers clockwise of a resource.
+     * @param resourceName      The name of the resource.
+     * @return                  The ServerInfo object of the selected replica, or null if no replica is known.
+     */
+    private ServerInfo selectReplica( String resourceName ) {
+        int[] replicas = new int[hotKeyReplicas];
+        int numReplicas = routingStrategy.findServerIds(resourceName, replicas);
+        ServerInfo selectedInfo = null;
+
+        if (numReplicas == 0)
+            return null;
+
+        if (hotKeyReplicaSelection == ReplicaSelection.ROUND_ROBIN) {
+            int idx = Math.floorMod(nextReplica.getAndIncrement(), numReplicas);
+            ServerInfo info = serverInfoTable.get(replicas[idx]);
+
+            /* Replicas which are suspect or ejected are left out of this turn, so the request goes to the CacheServer selected without them */
+            return info != null && isRoutable(info) ? info : null;
+        }
+
+        for (int i = 0; i < numReplicas; i++) {
+            ServerInfo info = serverInfoTable.get(replicas[i]);
+
+            if (info != null && isRoutable(info)
+                    && (selectedInfo == null || info.getInFlightRequests() < selectedInfo.getInFlightRequests()))
+                selectedInfo = info;
+        }
+
+        return selectedInfo;
+    }
+
+    /**
+     * @return      The number of requests which spilled over to another CacheServer because the CacheServer which the
+     *              resource name maps to was above the load bound.
+     */
+    public long getSpilloverCount() {
+        return spilloverCount.sum();
+    }
+
+    /**
+     * @return      The number of requests which were routed away from a suspect CacheServer or failed over to another
+     *              CacheServer.
+     */
+    public long getFailoverCount() {
+        return failoverCount.sum();
+    }
+
+    /**
+     * @return      The number of requests which were routed away from the CacheServer they were selected for because its
+     *              circuit breaker was not closed.
+     */
+    public long getBreakerRerouteCount() {
+        return breakerRerouteCount.sum();
+    }
+
+    /**
+     * @return      The number of requests which were sent to a CacheServer whose circuit breaker did not let them
+     *              through, because no other CacheServer could take them.
+     */
+    public long getBreakerFailOpenCount() {
+        return breakerFailOpenCount.sum();
+    }
+
+    /**
+     * @return      The number of requests which were routed by picking the less loaded of two CacheServers.
+     */
+    public long getTwoChoiceSelectionCount() {
+        return twoChoiceSelectionCount.sum();
+    }
+
+    /**
+     * @return      The number of requests which have been routed by selectPort().
+     */
+    public long getSelectionCount() {
+        return selectionCount.sum();
+    }
+
+    /**
+     * @return      The number of requests for hot keys which were spread over the replicas of the resource.
+     */
+    public long getReplicaSelectionCount() {
+        return replicaSelectionCount.sum();
+    }
+
+    /**
+     * @return      The number of lookups which were served by the route cache, or 0 if the route cache is disabled.
+     */
+    public long getRouteCacheHits() {
+        return routeCache == null ? 0 : routeCache.getHitCount();
+    }
+
+    /**
+     * @return      The number of lookups which missed the route cache, or 0 if the route cache is disabled.
+     */
+    public long getRouteCacheMisses() {
+        return routeCache == null ? 0 : routeCache.getMissCount();
+    }
+
+    /**
+     * Makes the associated RoutingStrategy instance record a snapshot of its 'angleHistory' field for the current
+     * time. This builds a record of the positions of the angles on the HashRing for analysis.
      * @param currentTime   Timestamp for the current time (seconds since 1-Jan-1970).
      */
     public void recordServerAngles( int currentTime ) {
-        hashRing.recordServerAngles(currentTime);
+        routingStrategy.recordServerAngles(currentTime);
     }
 
     /**
-     * Adds or removes HashRingAngle instances from the associated HashRing for each CacheServer based on its capacity
-     * factor.
+     * Adds or removes HashRingAngle instances from the associated RoutingStrategy for each CacheServer based on its
+     * capacity factor.
      *
      * If the server is underloaded, additional HashRingAngle instances are added for it.
-     * If the server is overloaded, some of its HashRingAngle instances are removed from the HashRing.
+     * If the server is overloaded, some of its HashRingAngle instances are removed from the RoutingStrategy.
+     * RoutingStrategy implementations which are weighted directly by capacity factors are given the capacity factors
+     * instead.
+     * All changes are published to request handling threads together once the remap is complete.
      */
     public void remapCacheKeys() {
+        routingStrategy.beginBatch();
+
+        try {
+            Map<Integer, Double> capacityFactors = new HashMap<>();
+
+            for (ServerInfo info : serverInfoTable.values())
+                capacityFactors.put(info.getServerId(), info.getCapacityFactor());
+
+            if (!routingStrategy.applyCapacityFactors(capacityFactors))
+                remapAllServers(capacityFactors);
+        } finally {
+            routingStrategy.commitBatch();
+        }
+
+        dropMovedNearCacheEntries();
+    }
+
+    /**
+     * Helper method which drops the entries of the near cache whose resource names are no longer mapped to the
+     * CacheServer recorded in them. Does nothing if the mapping has not changed since the last check.
+     */
+    private void dropMovedNearCacheEntries() {
+        if (nearCache == null)
+            return;
+
+        long version = routingStrategy.getVersion();
+
+        if (version == nearCacheVersion)
+            return;
+
+        int numDropped = nearCache.removeMoved((resourceName, ownerId) -> routingStrategy.peekServerId(resourceName) != ownerId);
+        nearCacheVersion = version;
+
+        if (numDropped > 0)
+            logger.log(String.format("dropped %d near cache entries of moved resource names", numDropped), Logger.LogType.REMAPPING);
+    }
+
+    /**
+     * Looks up the response for a resource in the near cache.
+     * @param resourceName      The name of the resource.
+     * @return                  The cached response, or null if the near cache is disabled or has no live entry for the
+     *                          resource.
+     */
+    public NearCache.Entry getNearCached( String resourceName ) {
+        return nearCache == null ? null : nearCache.get(resourceName);
+    }
+
+    /**
+     * Adds the response for a resource to the near cache, recording the CacheServer which the resource name is mapped
+     * to. Does nothing if the near cache is disabled.
+     * @param resourceName      The name of the resource.
+     * @param body              The body of the response. Must not be modified afterwards.
+     * @param contentType       The content type of the body. May be null.
+     */
+    public void putNearCached( String resourceName, byte[] body, ContentType contentType ) {
+        if (nearCache == null)
+            return;
+
+        /* The request was already counted by the RoutingStrategy when it was routed */
+        int ownerId = routingStrategy.peekServerId(resourceName);
+
+        if (ownerId != -1)
+            nearCache.put(resourceName, ownerId, body, contentType);
+    }
+
+    /**
+     * @return      True if responses are held in the near cache.
+     */
+    public boolean isNearCacheEnabled() {
+        return nearCache != null;
+    }
+
+    /**
+     * Getter method for the near cache, which counts its hits, misses, evictions and invalidations.
+     * @return      The NearCache object, or null if the near cache is disabled.
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Helper method for remapCacheKeys() which adds or removes HashRingAngle instances for each CacheServer.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     */
+    private void remapAllServers( Map<Integer, Double> capacityFactors ) {
+        if (remapMode == RemapMode.PI_CONTROLLER) {
+            remapWithController(capacityFactors);
+            return;
+        }
+
+        /* Fall back to the load cutoffs if the RoutingStrategy does not count lookups per arc */
+        if (remapMode == RemapMode.HOT_ARC_SPLITTING && routingStrategy.rebalanceHotArcs(capacityFactors))
+            return;
+
         for (Map.Entry<Integer, ServerInfo> entry : serverInfoTable.entrySet()) {
             int serverId = entry.getKey();
             ServerInfo info = entry.getValue();
@@ -184,19 +1076,42 @@ public class CacheRedistributor {
 
                 /* Capacity factor is lower than target range */
                 if (info.getCapacityFactor() < serverLoadCutoffs[0]) {
-                    hashRing.addAngle(serverId, 3);
+                    routingStrategy.addAngle(serverId, 3);
                 } else {
-                    hashRing.addAngle(serverId, 1);
+                    routingStrategy.addAngle(serverId, 1);
                 }
             } else if (info.getCapacityFactor() > serverLoadCutoffs[2]) {
 
                 /* Capacity factor is higher than target range */
                 if (info.getCapacityFactor() > serverLoadCutoffs[3]) {
-                    hashRing.removeAngle(serverId, 3);
+                    routingStrategy.removeAngle(serverId, 3);
                 } else {
-                    hashRing.removeAngle(serverId, 1);
+                    routingStrategy.removeAngle(serverId, 1);
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Helper method for remapAllServers() which applies the changes computed by 'angleController' field and logs each
+     * change so that the controller gains can be tuned.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     */
+    private void remapWithController( Map<Integer, Double> capacityFactors ) {
+        Map<Integer, Integer> changes = angleController.computeAngleChanges(capacityFactors);
+
+        for (Map.Entry<Integer, Integer> entry : changes.entrySet()) {
+            int serverId = entry.getKey();
+            int change = entry.getValue();
+
+            if (change > 0) {
+                routingStrategy.addAngle(serverId, change);
+            } else {
+                routingStrategy.removeAngle(serverId, -change);
+            }
+
+            logger.log("server " + serverId + " cf = " + capacityFactors.get(serverId) + " angle change = " + change,
+                       Logger.LogType.REMAPPING);
+        }
+    }
+}
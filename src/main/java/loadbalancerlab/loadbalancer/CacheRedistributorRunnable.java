@@ -69,6 +69,10 @@ public class CacheRedistributorRunnable implements Runnable {
                 lastRequestServerTime = currentTime;
             }
 
+            /* Eject CacheServers whose circuit breakers have opened, and let a probe request through to CacheServers
+               which have been ejected for long enough */
+            cacheRedis.updateEjectedServers();
+
             currentTime = (int)(System.currentTimeMillis() / 1_000);
 
             /* Remap HashRingAngle objects to even out capacity factors of CacheServer objects. */
@@ -0,0 +1,224 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+/**
+ * A circuit breaker for a single CacheServer, which trips when too many recent requests to the CacheServer have failed
+ * or been slow.
+ *
+ * While CLOSED, the outcomes of the last 'windowSize' requests are recorded, and the breaker opens once the fraction of
+ * them which failed or took at least 'slowCallThreshold' milliseconds reaches 'failureRateThreshold'. While OPEN, no
+ * requests should be sent to the CacheServer. After 'openDuration' milliseconds, tryHalfOpen() moves the breaker to
+ * HALF_OPEN, in which a single probe request is let through. The breaker closes if the probe succeeds and opens again
+ * if it fails.
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of a circuit breaker.
+     */
+    public enum State {
+        CLOSED,         /* Requests are sent to the CacheServer and their outcomes are recorded */
+        OPEN,           /* Requests are not sent to the CacheServer */
+        HALF_OPEN,      /* A single probe request is sent to the CacheServer to test whether it has recovered */
+    }
+
+    /**
+     * Controls the number of recent requests whose outcomes are considered.
+     */
+    static int windowSize = 20;
+
+    /**
+     * Controls the fraction of the recent requests which must have failed or been slow for the breaker to open.
+     */
+    static double failureRateThreshold = 0.5;
+
+    /**
+     * Controls the number of milliseconds after which a successful request is counted as slow.
+     */
+    static long slowCallThreshold = 1_000;
+
+    /**
+     * Controls the number of milliseconds for which the breaker stays open before a probe request is let through.
+     */
+    static long openDuration = 5_000;
+
+    /**
+     * The current state of the breaker.
+     */
+    private State state;
+
+    /**
+     * Circular buffer which records whether each of the recent requests failed or was slow.
+     */
+    private boolean[] outcomes;
+
+    /**
+     * The number of outcomes which have been recorded since the breaker last closed, up to 'windowSize'.
+     */
+    private int numOutcomes;
+
+    /**
+     * The index in 'outcomes' field which the next outcome is written to.
+     */
+    private int nextOutcome;
+
+    /**
+     * The number of entries in 'outcomes' field which are failures.
+     */
+    private int numFailures;
+
+    /**
+     * The time at which the breaker last opened, in milliseconds since 1-Jan-1970.
+     */
+    private long openedAt;
+
+    /**
+     * Set to true while the probe request of the HALF_OPEN state is in progress.
+     */
+    private boolean probeInFlight;
+
+    /**
+     * The time at which the probe request was claimed, in milliseconds since 1-Jan-1970.
+     */
+    private long probeStartedAt;
+
+    /**
+     * The number of times the breaker has opened.
+     */
+    private long numTrips;
+
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        windowSize = config.getBreakerWindowSize();
+        failureRateThreshold = config.getBreakerFailureRateThreshold();
+        slowCallThreshold = config.getBreakerSlowCallThreshold();
+        openDuration = config.getBreakerOpenDuration();
+    }
+
+    /**
+     * Constructor
+     */
+    public CircuitBreaker() {
+        state = State.CLOSED;
+        outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Checks whether a request can be sent to the CacheServer, and claims the probe if the breaker is HALF_OPEN.
+     * @param nowMillis     The current time, in milliseconds since 1-Jan-1970.
+     * @return              True if the breaker is CLOSED, or if it is HALF_OPEN and the probe has not been claimed.
+     */
+    public synchronized boolean tryAcquire( long nowMillis ) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight)
+                    return false;
+
+                probeInFlight = true;
+                probeStartedAt = nowMillis;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records the outcome of a request to the CacheServer.
+     * @param succeeded         True if the CacheServer responded.
+     * @param latencyMillis     The number of milliseconds the request took.
+     * @param nowMillis         The current time, in milliseconds since 1-Jan-1970.
+     * @return                  The state which the breaker moved to because of this outcome, or null if its state did
+     *                          not change. Since the outcome is recorded under the lock of the breaker, each change of
+     *                          state is returned to exactly one caller.
+     */
+    public synchronized State record( boolean succeeded, long latencyMillis, long nowMillis ) {
+        State previousState = state;
+        boolean failed = !succeeded || latencyMillis >= slowCallThreshold;
+
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                open(nowMillis);
+            } else {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            if (numOutcomes == outcomes.length) {
+                if (outcomes[nextOutcome])
+                    numFailures--;
+            } else {
+                numOutcomes++;
+            }
+
+            outcomes[nextOutcome] = failed;
+            nextOutcome = (nextOutcome + 1) % outcomes.length;
+
+            if (failed)
+                numFailures++;
+
+            if (numOutcomes == outcomes.length && numFailures >= failureRateThreshold * numOutcomes)
+                open(nowMillis);
+        }
+
+        /* Outcomes of requests which were sent before the breaker opened are ignored while it is OPEN */
+        return state == previousState ? null : state;
+    }
+
+    /**
+     * Moves the breaker from OPEN to HALF_OPEN once it has been open for 'openDuration' milliseconds. Also lets another
+     * probe through if the outcome of the previous probe has not been recorded within 'openDuration' milliseconds,
+     * which happens if the probe request was cancelled.
+     * @param nowMillis     The current time, in milliseconds since 1-Jan-1970.
+     * @return              True if the breaker has moved to HALF_OPEN.
+     */
+    public synchronized boolean tryHalfOpen( long nowMillis ) {
+        if (state == State.HALF_OPEN && probeInFlight && nowMillis - probeStartedAt >= openDuration)
+            probeInFlight = false;
+
+        if (state != State.OPEN || nowMillis - openedAt < openDuration)
+            return false;
+
+        state = State.HALF_OPEN;
+        probeInFlight = false;
+        return true;
+    }
+
+    /**
+     * Helper method which opens the breaker.
+     * @param nowMillis     The current time, in milliseconds since 1-Jan-1970.
+     */
+    private void open( long nowMillis ) {
+        state = State.OPEN;
+        openedAt = nowMillis;
+        numTrips++;
+    }
+
+    /**
+     * Helper method which closes the breaker and forgets the outcomes recorded before it opened.
+     */
+    private void close() {
+        state = State.CLOSED;
+        numOutcomes = 0;
+        nextOutcome = 0;
+        numFailures = 0;
+    }
+
+    /**
+     * @return      The current state of the breaker.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return      The number of times the breaker has opened.
+     */
+    public synchronized long getNumTrips() {
+        return numTrips;
+    }
+}
@@ -1,20 +1,31 @@
 package loadbalancerlab.loadbalancer;
 
+import loadbalancerlab.factory.WorkerThreadFactory;
 import loadbalancerlab.shared.Config;
 import loadbalancerlab.shared.Logger;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
-import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpProcessorBuilder;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.UriHttpRequestHandlerMapper;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A Server which handles Http requests from the Client class.
+ *
+ * By default the server is blocking, and each request holds a worker thread until the CacheServer responds. When async
+ * proxy mode is enabled, the server is non-blocking: requests are suspended while they are forwarded, so a few I/O
+ * threads can keep many requests outstanding. When virtual threads are in use, the blocking server serves each
+ * connection with a virtual thread instead.
  */
 public class ClientRequestHandlerServer implements Runnable {
 
@@ -28,6 +39,16 @@ public class ClientRequestHandlerServer implements Runnable {
      */
     volatile private int port = -1;
 
+    /**
+     * Controls whether the non-blocking server and AsyncLoadBalancerClientRequestHandler are used.
+     */
+    private static boolean asyncProxyEnabled;
+
+    /**
+     * Controls the number of I/O threads of the non-blocking server.
+     */
+    private static int asyncIoThreads = 1;
+
     /**
      * Logger object used for logging.
      */
@@ -38,12 +59,33 @@ public class ClientRequestHandlerServer implements Runnable {
      */
     LoadBalancerClientRequestHandler loadBalancerClientRequestHandler;
 
+    /**
+     * MetricsRequestHandler object used for reporting the rate of requests from clients.
+     */
+    MetricsRequestHandler metricsRequestHandler;
+
     /**
      * Method to configure static fields.
      * @param config    Config object used to configure various classes.
+     * @throws IllegalArgumentException     Thrown if async proxy mode is combined with failover, hedging, request
+     *                                      coalescing or the near cache, which AsyncLoadBalancerClientRequestHandler
+     *                                      does not support.
      */
-    public static void configure( Config config ) {
+    public static void configure( Config config ) throws IllegalArgumentException {
+        if (config.getAsyncProxyEnabled()) {
+            if (config.getFailoverEnabled())
+                throw new IllegalArgumentException("asyncProxyEnabled cannot be combined with failoverEnabled");
+            if (config.getHedgingEnabled())
+                throw new IllegalArgumentException("asyncProxyEnabled cannot be combined with hedgingEnabled");
+            if (config.getCoalescingEnabled())
+                throw new IllegalArgumentException("asyncProxyEnabled cannot be combined with coalescingEnabled");
+            if (config.getNearCacheMaxBytes() > 0)
+                throw new IllegalArgumentException("asyncProxyEnabled cannot be combined with nearCacheMaxBytes, received " + config.getNearCacheMaxBytes());
+        }
+
         defaultPort = config.getClientHandlerServerDefaultPort();
+        asyncProxyEnabled = config.getAsyncProxyEnabled();
+        asyncIoThreads = config.getAsyncIoThreads();
     }
 
     /**
@@ -53,6 +95,7 @@ public class ClientRequestHandlerServer implements Runnable {
      */
     public ClientRequestHandlerServer( LoadBalancerClientRequestHandler loadBalancerClientRequestHandler ) {
         this.loadBalancerClientRequestHandler = loadBalancerClientRequestHandler;
+        metricsRequestHandler = new MetricsRequestHandler(loadBalancerClientRequestHandler.getRequestRateCounter());
         logger = new Logger("ClientRequestHandlerServer");
     }
 
@@ -72,11 +115,21 @@ public class ClientRequestHandlerServer implements Runnable {
             e.printStackTrace();
         }
 
+        if (asyncProxyEnabled) {
+            runAsyncServer(hostAddress);
+            return;
+        }
+
         SocketConfig config = SocketConfig.custom()
                 .setSoTimeout(15000)
                 .setTcpNoDelay(true)
                 .build();
 
+        if (WorkerThreadFactory.usesVirtualThreads()) {
+            runThreadPerConnectionServer(hostAddress, config);
+            return;
+        }
+
         HttpServer server;
         int temporaryPort = defaultPort;
 
@@ -84,9 +137,11 @@ public class ClientRequestHandlerServer implements Runnable {
             server = ServerBootstrap.bootstrap()
                     .setLocalAddress(hostAddress)
                     .setListenerPort(temporaryPort)
-                    .setHttpProcessor(new ImmutableHttpProcessor(new ArrayList<>(), new ArrayList<>()))
+                    .setHttpProcessor(buildHttpProcessor())
                     .setSocketConfig(config)
+                    .setConnectionFactory(RelayServerConnection::create)
                     .registerHandler("/api/*", loadBalancerClientRequestHandler)
+                    .registerHandler("/metrics", metricsRequestHandler)
                     .create();
 
             try {
@@ -125,6 +180,151 @@ public class ClientRequestHandlerServer implements Runnable {
         }
     }
 
+    /**
+     * Helper method which builds the HttpProcessor of the blocking servers. It only sets the Content-Length or
+     * Transfer-Encoding header of responses from their entities, so that responses which are relayed from CacheServer
+     * objects keep their framing and connections from clients can be kept alive.
+     * @return      The HttpProcessor.
+     */
+    private static HttpProcessor buildHttpProcessor() {
+        return HttpProcessorBuilder.create()
+                .add(new ResponseContent(true))
+                .build();
+    }
+
+    /**
+     * Helper method which starts a ThreadPerConnectionHttpServer instance, which serves each connection with a thread
+     * from WorkerThreadFactory, and waits until this thread is interrupted.
+     * @param hostAddress   The address which the server listens on.
+     * @param config        Socket options which are applied to accepted connections.
+     */
+    private void runThreadPerConnectionServer( InetAddress hostAddress, SocketConfig config ) {
+        ThreadPerConnectionHttpServer server;
+        int temporaryPort = defaultPort;
+        UriHttpRequestHandlerMapper handlerMapper = new UriHttpRequestHandlerMapper();
+        handlerMapper.register("/api/*", loadBalancerClientRequestHandler);
+        handlerMapper.register("/metrics", metricsRequestHandler);
+
+        while (true) {
+            server = new ThreadPerConnectionHttpServer(hostAddress, temporaryPort, config,
+                                                       buildHttpProcessor(),
+                                                       handlerMapper,
+                                                       WorkerThreadFactory.newRequestExecutor(1));
+
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.out.println("ClientRequestHandler | Failed to start server on port " + temporaryPort);
+                server.shutdown();
+                temporaryPort++;
+                continue;
+            }
+
+            /* If server successfully started, exit the loop */
+            this.port = temporaryPort;
+            break;
+        }
+
+        ThreadPerConnectionHttpServer finalServer = server;
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                finalServer.shutdown();
+            }
+        });
+
+        while (true) {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                logger.log("Thread interrupted", Logger.LogType.THREAD_MANAGEMENT);
+                Thread.currentThread().interrupt();
+                server.shutdown();
+                break;
+            }
+        }
+
+        logger.log("Thread shutdown", Logger.LogType.THREAD_MANAGEMENT);
+    }
+
+    /**
+     * Helper method which starts an apache.http.impl.nio.bootstrap.HttpServer instance, which forwards requests with an
+     * AsyncLoadBalancerClientRequestHandler object, and awaits termination.
+     * @param hostAddress   The address which the server listens on.
+     */
+    private void runAsyncServer( InetAddress hostAddress ) {
+        IOReactorConfig config = IOReactorConfig.custom()
+                .setIoThreadCount(asyncIoThreads)
+                .setSoTimeout(15000)
+                .setTcpNoDelay(true)
+                .build();
+        AsyncLoadBalancerClientRequestHandler asyncHandler =
+                new AsyncLoadBalancerClientRequestHandler(loadBalancerClientRequestHandler, LoadBalancerClientRequestHandler.clientFactory);
+
+        org.apache.http.impl.nio.bootstrap.HttpServer server;
+        int temporaryPort = defaultPort;
+
+        try {
+            while (true) {
+
+                /* The default HttpProcessor is kept so that responses are framed with Content-Length or chunked
+                   encoding, which lets the connection be kept alive */
+                server = org.apache.http.impl.nio.bootstrap.ServerBootstrap.bootstrap()
+                        .setLocalAddress(hostAddress)
+                        .setListenerPort(temporaryPort)
+                        .setIOReactorConfig(config)
+                        .registerHandler("/api/*", asyncHandler)
+                        .registerHandler("/metrics", new BasicAsyncRequestHandler(metricsRequestHandler))
+                        .create();
+
+                /* Binding happens on the I/O reactor thread, so a failure is reported through the listener endpoint */
+                Exception bindException;
+
+                try {
+                    server.start();
+                    ListenerEndpoint endpoint = server.getEndpoint();
+                    endpoint.waitFor();
+                    bindException = endpoint.getException();
+                } catch (IOException e) {
+                    bindException = e;
+                }
+
+                if (bindException != null) {
+                    System.out.println("ClientRequestHandler | Failed to start async server on port " + temporaryPort);
+                    server.shutdown(0, TimeUnit.SECONDS);
+                    temporaryPort++;
+                    continue;
+                }
+
+                /* If server successfully started, exit the loop */
+                this.port = temporaryPort;
+                break;
+            }
+        } catch (InterruptedException e) {
+            logger.log("Thread interrupted", Logger.LogType.THREAD_MANAGEMENT);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        org.apache.http.impl.nio.bootstrap.HttpServer finalServer = server;
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                finalServer.shutdown(5, TimeUnit.SECONDS);
+            }
+        });
+
+        try {
+            server.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.log("Thread interrupted", Logger.LogType.THREAD_MANAGEMENT);
+        } finally {
+            Thread.currentThread().interrupt();
+            server.shutdown(5, TimeUnit.SECONDS);
+            logger.log("Thread shutdown", Logger.LogType.THREAD_MANAGEMENT);
+        }
+    }
+
     /**
      * @return: the port an instance of this class is running a server on
      */
@@ -0,0 +1,133 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.Random;
+
+/**
+ * Index of the unoccupied positions of a HashRing, which supports selecting a uniformly random unoccupied position and
+ * releasing a position in constant time regardless of how many positions are occupied.
+ *
+ * Positions are held in a dense array in which the first 'numFree' slots hold the unoccupied positions and the
+ * remaining slots hold the occupied positions. A second array maps each position back to its slot, so a position can
+ * be moved between the two regions by swapping it with the slot at the boundary.
+ *
+ * The index takes two ints per position, so it is only suitable for HashRing objects with a small number of positions.
+ */
+public class FreePositionIndex {
+
+    /**
+     * Maps slots to positions. Slots [0, numFree) hold unoccupied positions.
+     */
+    private int[] positions;
+
+    /**
+     * Maps positions to the slots which hold them in 'positions' field.
+     */
+    private int[] slots;
+
+    /**
+     * The number of unoccupied positions.
+     */
+    private int numFree;
+
+    /**
+     * Constructor
+     * @param size      The number of positions. Every position is initially unoccupied.
+     * @throws IllegalArgumentException     Thrown if 'size' is negative.
+     */
+    public FreePositionIndex( int size ) throws IllegalArgumentException {
+        if (size < 0)
+            throw new IllegalArgumentException("size must not be negative, received " + size);
+
+        positions = new int[size];
+        slots = new int[size];
+        numFree = size;
+
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+            slots[i] = i;
+        }
+    }
+
+    /**
+     * Selects a uniformly random unoccupied position and marks it as occupied.
+     * @param rand      The source of randomness.
+     * @return          The selected position, or -1 if every position is occupied.
+     */
+    public long acquire( Random rand ) {
+        if (numFree == 0)
+            return -1;
+
+        int slot = rand.nextInt(numFree);
+        int position = positions[slot];
+
+        /* Move the position to the start of the occupied region */
+        swap(slot, --numFree);
+        return position;
+    }
+
+    /**
+     * Marks a particular position as occupied.
+     * @param position      The position being occupied.
+     * @return              True if the position was unoccupied, false if it was already occupied.
+     * @throws IllegalArgumentException     Thrown if 'position' is out of range.
+     */
+    public boolean acquire( long position ) throws IllegalArgumentException {
+        if (position < 0 || position >= slots.length)
+            throw new IllegalArgumentException("position " + position + " is out of range");
+
+        int slot = slots[(int) position];
+
+        if (slot >= numFree)
+            return false;
+
+        swap(slot, --numFree);
+        return true;
+    }
+
+    /**
+     * Marks an occupied position as unoccupied.
+     * @param position      The position being released.
+     * @throws IllegalArgumentException     Thrown if 'position' is out of range or is not occupied.
+     */
+    public void release( long position ) throws IllegalArgumentException {
+        if (position < 0 || position >= slots.length)
+            throw new IllegalArgumentException("position " + position + " is out of range");
+
+        int slot = slots[(int) position];
+
+        if (slot < numFree)
+            throw new IllegalArgumentException("position " + position + " is not occupied");
+
+        /* Move the position to the end of the unoccupied region */
+        swap(slot, numFree++);
+    }
+
+    /**
+     * @param position      A position.
+     * @return              True if the position is unoccupied.
+     */
+    public boolean isFree( long position ) {
+        return slots[(int) position] < numFree;
+    }
+
+    /**
+     * @return      The number of unoccupied positions.
+     */
+    public int numFree() {
+        return numFree;
+    }
+
+    /**
+     * Helper method which swaps the positions held in two slots.
+     * @param slotA     The first slot.
+     * @param slotB     The second slot.
+     */
+    private void swap( int slotA, int slotB ) {
+        int positionA = positions[slotA];
+        int positionB = positions[slotB];
+        positions[slotA] = positionB;
+        positions[slotB] = positionA;
+        slots[positionB] = slotA;
+        slots[positionA] = slotB;
+    }
+}
@@ -1,5 +1,7 @@
 package loadbalancerlab.loadbalancer;
 
+import java.nio.ByteBuffer;
+
 /**
  * Interface for classes which are used to hash a resource name into an integer for use by the HashRing class's
  * consistent hashing mechanism.
@@ -12,4 +14,49 @@ public interface HashFunction {
      * @return          An integer which the resource name is hashed to.
      */
     int hash(String input);
+
+    /**
+     * 64 bit hashing method. Receives a string name and returns a long which uses the full 64 bit range, so that
+     * resource names can be mapped onto rings with more positions than an int can address.
+     * @param input     A resource name.
+     * @return          A long which the resource name is hashed to.
+     */
+    long hash64(String input);
+
+    /**
+     * 64 bit hashing method for a range of characters, such as the resource name within a request URI. Returns the
+     * same value as hash64(String) does for the equivalent String, without creating it.
+     * @param input     Text containing a resource name.
+     * @param start     The index of the first character of the resource name.
+     * @param end       The index after the last character of the resource name.
+     * @return          A long which the resource name is hashed to.
+     */
+    long hash64(CharSequence input, int start, int end);
+
+    /**
+     * 64 bit hashing method for a range of bytes, such as the UTF-8 encoded resource name within a request buffer.
+     * @param input     An array containing a resource name.
+     * @param offset    The index of the first byte of the resource name.
+     * @param length    The number of bytes in the resource name.
+     * @return          A long which the resource name is hashed to.
+     */
+    long hash64(byte[] input, int offset, int length);
+
+    /**
+     * 64 bit hashing method for the remaining bytes of a buffer. The position of the buffer is not changed.
+     * @param input     A buffer whose remaining bytes are a resource name.
+     * @return          A long which the resource name is hashed to.
+     */
+    long hash64(ByteBuffer input);
+
+    /**
+     * Hashes a batch of resource names into an array supplied by the caller.
+     * @param inputs    The resource names.
+     * @param count     The number of resource names to hash, starting from the first.
+     * @param output    Array which receives the hash of inputs[i] at index i.
+     */
+    default void hash64(CharSequence[] inputs, int count, long[] output) {
+        for (int i = 0; i < count; i++)
+            output[i] = hash64(inputs[i], 0, inputs[i].length());
+    }
 }
@@ -5,11 +5,19 @@ import loadbalancerlab.shared.Config;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A class which implements a consistent hashing mechanism to map resource names to CacheServer objects.
+ *
+ * Lookups are served from an immutable, versioned HashRingLookupTable snapshot which is published through an atomic
+ * reference, so threads calling findServerId() never block and never see a partially applied update.
+ * Methods which add or remove HashRingAngle objects are serialized by a write lock. A batch of such calls can be
+ * wrapped in beginBatch() and commitBatch() so that the resulting snapshot is published once.
  */
-public class HashRing {
+public class HashRing implements RoutingStrategy {
 
     /**
      * Controls the maximum number of HashRingAngle objects per CacheServer object.
@@ -27,9 +35,26 @@ public class HashRing {
     static int defaultAnglesPerServer;
 
     /**
-     * Controls the number of positions on HashRing objects.
+     * Controls the number of positions on HashRing objects. Positions are longs in the range [0, ringSize).
      */
-    static int ringSize;
+    static long ringSize;
+
+    /**
+     * Controls the largest 'ringSize' for which HashRing objects keep a FreePositionIndex.
+     */
+    static long freePositionIndexMaxRingSize;
+
+    /**
+     * When set to true, published snapshots count the lookups which land on each arc so that rebalanceHotArcs() can
+     * find the hottest arcs.
+     */
+    static boolean arcHitCountingEnabled;
+
+    /**
+     * Controls how far above the mean capacity factor a CacheServer must be before rebalanceHotArcs() splits its
+     * hottest arc.
+     */
+    static double hotArcLoadThreshold;
 
     /**
      * The HashFunction object which is used to hash resource names into positions.
@@ -37,9 +62,15 @@ public class HashRing {
     static HashFunction hashFunction;
 
     /**
-     * A hash table which maps integer position values the HashRingAngle objects that the positions contain.
+     * A hash table which maps position values to the HashRingAngle objects that the positions contain.
+     */
+    ConcurrentMap<Long, HashRingAngle> angles;
+
+    /**
+     * Index of the positions which do not contain a HashRingAngle, used to place new HashRingAngle objects without
+     * retrying occupied positions. Null if 'ringSize' is larger than 'freePositionIndexMaxRingSize'.
      */
-    ConcurrentMap<Integer, HashRingAngle> angles;
+    FreePositionIndex freePositions;
 
     /**
      * A hash table which maps CacheServer ids to a list of HashRingAngle instances that belong to that server.
@@ -47,10 +78,33 @@ public class HashRing {
     ConcurrentMap<Integer, List<HashRingAngle>> anglesByServerId;
 
     /**
-     * Contains snapshots of anglesByServerId at specific timestamps.
-     * Maps the timestamps to the snapshots.
+     * Log of the HashRingAngle objects which are added and removed, with a frame for every timestamp at which
+     * recordServerAngles() was called.
+     */
+    AngleHistory angleHistory;
+
+    /**
+     * The most recently published snapshot of the HashRing, which is used to find the HashRingAngle immediately
+     * clockwise of a position.
+     * Rebuilt from 'angles' field whenever HashRingAngle objects are added or removed.
      */
-    SortedMap<Integer, Map<Integer, List<HashRingAngle>>> angleHistory;
+    AtomicReference<HashRingLookupTable> lookupTable;
+
+    /**
+     * The ids of the CacheServers whose HashRingAngle objects are left out of published snapshots.
+     */
+    Set<Integer> maskedServerIds;
+
+    /**
+     * Lock which is held by threads which are modifying 'angles' and 'anglesByServerId' fields.
+     * Held for the duration of a batch between beginBatch() and commitBatch().
+     */
+    private ReentrantLock writeLock;
+
+    /**
+     * Set to true when 'angles' field has been modified since the last snapshot was published.
+     */
+    private boolean modified;
 
     /**
      * Method used to configure static variables.
@@ -61,6 +115,9 @@ public class HashRing {
         minAnglesPerServer = config.getMinAnglesPerServer();
         defaultAnglesPerServer = config.getDefaultAnglesPerServer();
         ringSize = config.getRingSize();
+        freePositionIndexMaxRingSize = config.getFreePositionIndexMaxRingSize();
+        arcHitCountingEnabled = config.getRemapMode() == CacheRedistributor.RemapMode.HOT_ARC_SPLITTING;
+        hotArcLoadThreshold = config.getHotArcLoadThreshold();
         hashFunction = config.getHashFunction();
     }
 
@@ -69,67 +126,122 @@ public class HashRing {
      */
     public HashRing() {
         angles = new ConcurrentHashMap<>();
+
+        /* Positions of large HashRing objects are so sparsely occupied that random positions rarely collide */
+        if (ringSize <= Math.min(freePositionIndexMaxRingSize, Integer.MAX_VALUE))
+            freePositions = new FreePositionIndex((int) ringSize);
+
         anglesByServerId = new ConcurrentHashMap<>();
-        angleHistory = new TreeMap<>();
+        angleHistory = new AngleHistory();
+        lookupTable = new AtomicReference<>(new HashRingLookupTable(angles.values(), 0));
+        maskedServerIds = ConcurrentHashMap.newKeySet();
+        writeLock = new ReentrantLock();
     }
 
     /**
      * Getter method for angleHistory field
-     * @return      Returns angleHistory field which maps timestamps to snapshots of the 'anglesByServerId' field at
-     *              those times.
+     * @return      Returns angleHistory field which holds the changes to the 'anglesByServerId' field over time.
      */
-    public SortedMap<Integer, Map<Integer, List<HashRingAngle>>> getHashRingAngleHistory() {
+    @Override
+    public AngleHistory getAngleHistory() {
         return angleHistory;
     }
 
+    /**
+     * Getter method for the version of the most recently published snapshot.
+     * The version is incremented every time a change to the HashRingAngle objects is published, so it can be used to
+     * invalidate data which was derived from an earlier snapshot.
+     * @return      The version of the current snapshot.
+     */
+    @Override
+    public long getVersion() {
+        return lookupTable.get().getVersion();
+    }
+
+    /**
+     * Getter method for the most recently published snapshot.
+     * @return      The current HashRingLookupTable snapshot.
+     */
+    public HashRingLookupTable getSnapshot() {
+        return lookupTable.get();
+    }
+
+    /**
+     * Starts a batch of modifications. Acquires the write lock and defers publishing of a new snapshot until the
+     * matching call to commitBatch(). Batches may be nested, in which case the snapshot is published when the outermost
+     * batch is committed.
+     */
+    @Override
+    public void beginBatch() {
+        writeLock.lock();
+    }
+
+    /**
+     * Ends a batch of modifications started by beginBatch(). Publishes a new snapshot if this is the outermost batch
+     * and the HashRingAngle objects have been modified, and releases the write lock.
+     */
+    @Override
+    public void commitBatch() {
+        try {
+            if (writeLock.getHoldCount() == 1 && modified)
+                publishLookupTable();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     /**
      * Finds the id of the cache server which is responsible for the resource with name resourceName. It does this by
      * finding the angle that is immediately clockwise of the angle that the hash function maps the resource name to.
      * @param resourceName      The name of the resource being accessed.
      * @return                  The id of the CacheServer which is responsible for that resource.
      */
+    @Override
     public int findServerId( String resourceName ) {
 
         /* Finds the position that the resourceName maps to by using a hash function */
-        int resourcePosition = hashFunction.hash(resourceName) % ringSize;
-
-        int lowestAngle = Integer.MAX_VALUE;
-        int idLowestAngle = -1;
+        long resourcePosition = toPosition(hashFunction.hash64(resourceName));
 
-        int lowestAngleHigherThanPos = Integer.MAX_VALUE;
-        int idLowestAngleHigherThanPos = -1;
-
-        /* Finds the angle which is directly clockwise of 'resourcePosition' */
-        for (Map.Entry<Integer, HashRingAngle> entry : angles.entrySet()) {
-
-            int angle = entry.getKey();
-            int serverId = entry.getValue().getServerId();
-
-            /* Find the lowest position which is holding an angle and record the angle and which cache server that angle
-               belongs to. */
-            if (angle < lowestAngle) {
-                lowestAngle = angle;
-                idLowestAngle = serverId;
-            }
+        /* Finds the angle which is directly clockwise of 'resourcePosition' with a binary search */
+        return lookupTable.get().findServerId(resourcePosition);
+    }
 
-            /* Find the angle in the lowest position which is higher than 'resourcePosition'. This is the angle that is
-               immediately clockwise of resourcePosition. */
-            if (angle > resourcePosition && angle < lowestAngleHigherThanPos) {
-                lowestAngleHigherThanPos = angle;
-                idLowestAngleHigherThanPos = serverId;
-            }
-        }
+    /**
+     * Finds the id of the cache server which is responsible for the resource with name resourceName without counting
+     * the lookup on its arc.
+     * @param resourceName      The name of the resource.
+     * @return                  The id of the CacheServer which is responsible for that resource.
+     */
+    @Override
+    public int peekServerId( String resourceName ) {
+        long resourcePosition = toPosition(hashFunction.hash64(resourceName));
+        return lookupTable.get().peekServerId(resourcePosition);
+    }
 
-        if (idLowestAngleHigherThanPos == -1) {
+    /**
+     * Finds the ids of distinct CacheServers in clockwise order, starting from the angle that is immediately clockwise
+     * of the angle that the hash function maps the resource name to.
+     * @param resourceName      The name of the resource being accessed.
+     * @param output            Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return                  The number of CacheServer ids which were written into 'output'.
+     */
+    @Override
+    public int findServerIds( String resourceName, int[] output ) {
+        long resourcePosition = toPosition(hashFunction.hash64(resourceName));
+        return lookupTable.get().findServerIds(resourcePosition, output);
+    }
 
-            /* If an angle with a position higher than resourcePosition has not been found, return the id of the cache
-               server of the angle with the lowest position. */
-            return idLowestAngle;
-        } else {
+    /**
+     * Maps a 64 bit hash onto a position in the range [0, ringSize).
+     * The hash is treated as an unsigned fraction of the full 64 bit range and scaled by 'ringSize', which spreads
+     * positions evenly without the bias that taking the remainder of a division would introduce.
+     * @param hash      A 64 bit hash value.
+     * @return          The position on the HashRing that the hash value maps to.
+     */
+    static long toPosition( long hash ) {
 
-            /* Return the id of the cache server of angle with the lowest angle higher than 'resourcePosition' */
-            return idLowestAngleHigherThanPos;
-        }
+        /* Upper 64 bits of the unsigned 128 bit product of 'hash' and 'ringSize' */
+        return Math.multiplyHigh(hash, ringSize) + ((hash >> 63) & ringSize);
     }
 
     /**
@@ -138,34 +250,63 @@ public class HashRing {
      * @param numAngles     The number of HashRingAngle objects which are being added.
      * @throws IllegalArgumentException     Thrown if there is no entry in 'anglesByServerId' field for the serverId.
      */
+    @Override
     public void addAngle( int serverId, int numAngles ) throws IllegalArgumentException {
-        Random rand = new Random();
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
 
-        if (!anglesByServerId.containsKey(serverId))
-            throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+        beginBatch();
 
-        for (int i = 0; i < numAngles; i++) {
-            if (anglesByServerId.get(serverId).size() >= maxAnglesPerServer)
-                break;
+        try {
+            if (!anglesByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
 
-            int angle;
+            for (int i = 0; i < numAngles; i++) {
+                if (anglesByServerId.get(serverId).size() >= maxAnglesPerServer)
+                    break;
 
-            while (true) {
-                angle = rand.nextInt(ringSize);
+                long angle;
 
-                if (!angles.containsKey(angle)) {
-                    break;
+                if (freePositions != null) {
+                    angle = freePositions.acquire(rand);
+
+                    /* Every position is occupied */
+                    if (angle == -1)
+                        break;
+                } else {
+
+                    /* Collisions only occur when 'ringSize' is small, since positions span the full range of a long */
+                    while (true) {
+                        angle = rand.nextLong(ringSize);
+
+                        if (!angles.containsKey(angle)) {
+                            break;
+                        }
+                    }
                 }
+
+                placeAngle(serverId, angle);
             }
+        } finally {
+            commitBatch();
+        }
+    }
 
-            HashRingAngle newAngle = new HashRingAngle(serverId, angle);
+    /**
+     * Helper method which places a HashRingAngle for a CacheServer at a position which is known to be unoccupied and
+     * has already been taken out of 'freePositions' field. Must be called while the write lock is held.
+     * @param serverId      The id of the CacheServer.
+     * @param angle         The position of the new HashRingAngle.
+     */
+    private void placeAngle( int serverId, long angle ) {
+        HashRingAngle newAngle = new HashRingAngle(serverId, angle);
 
-            /*  Update anglesByServerId field with new HashRingAngle object */
-            anglesByServerId.get(serverId).add(newAngle);
+        /*  Update anglesByServerId field with new HashRingAngle object */
+        anglesByServerId.get(serverId).add(newAngle);
 
-            /*  Update angles field with new HashRingAngle object */
-            angles.put(angle, newAngle);
-        }
+        /*  Update angles field with new HashRingAngle object */
+        angles.put(angle, newAngle);
+        angleHistory.angleAdded(serverId, angle);
+        modified = true;
     }
 
     /**
@@ -175,23 +316,33 @@ public class HashRing {
      * @throws IllegalArgumentException         Thrown when there is no entry for CacheServer with id 'serverId' in
      *                                          'anglesByServerId' field.
      */
+    @Override
     public void removeAngle( int serverId, int numAngles ) throws IllegalArgumentException {
         Random rand = new Random();
 
-        if (!anglesByServerId.containsKey(serverId))
-            throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+        beginBatch();
 
-        for (int i = 0; i < numAngles; i++) {
-            if (anglesByServerId.get(serverId).size() <= minAnglesPerServer)
-                break;
+        try {
+            if (!anglesByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
 
-            List<HashRingAngle> angleList = anglesByServerId.get(serverId);
+            for (int i = 0; i < numAngles; i++) {
+                if (anglesByServerId.get(serverId).size() <= minAnglesPerServer)
+                    break;
+
+                List<HashRingAngle> angleList = anglesByServerId.get(serverId);
 
-            int randIdx = rand.nextInt(angleList.size());
-            int selectedAngle = angleList.get(randIdx).getAngle();
+                int randIdx = rand.nextInt(angleList.size());
+                long selectedAngle = angleList.get(randIdx).getAngle();
 
-            angleList.remove(randIdx);
-            angles.remove(selectedAngle);
+                angleList.remove(randIdx);
+                angles.remove(selectedAngle);
+                releasePosition(selectedAngle);
+                angleHistory.angleRemoved(serverId, selectedAngle);
+                modified = true;
+            }
+        } finally {
+            commitBatch();
         }
     }
 
@@ -199,47 +350,276 @@ public class HashRing {
      * Adds an entry for CacheServer with id 'serverId' in 'anglesByServerId' field.
      * @param serverId      The id of the CacheServer instance.
      */
+    @Override
     public void addServer( int serverId ) {
-        if (anglesByServerId.containsKey(serverId))
-            throw new IllegalArgumentException("Server with id = " + serverId + " is already recorded in HashRingImpl");
+        beginBatch();
+
+        try {
+            if (anglesByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is already recorded in HashRingImpl");
 
-        anglesByServerId.put(serverId, new ArrayList<>());
-        addAngle(serverId, defaultAnglesPerServer);
+            anglesByServerId.put(serverId, new ArrayList<>());
+            angleHistory.serverAdded(serverId);
+            addAngle(serverId, defaultAnglesPerServer);
+        } finally {
+            commitBatch();
+        }
     }
 
     /**
-     * Records a copy of anglesByServerId for a particular moment in time into 'anglesByServerId' field.
+     * Ends a frame of 'angleHistory' field for a particular moment in time. The HashRingAngle objects which have been
+     * added and removed since the previous frame are recorded as part of the frame.
      * @param currentTime   The current time, in seconds since 1-Jan-1970.
      */
+    @Override
     public void recordServerAngles(int currentTime) {
+        beginBatch();
 
-        /* Do not record if there is already an entry for the given timestamp */
-        if (angleHistory.containsKey(currentTime))
-            return;
-
-        Map<Integer, List<HashRingAngle>> copyTable = new HashMap<>();
-
-        anglesByServerId.forEach((k, v) -> {
-            List<HashRingAngle> newList = new ArrayList<>(v);
-            copyTable.put(k, newList);
-        });
-        
-        angleHistory.put(currentTime, copyTable);
+        try {
+            /* Frames which are not later than the previous frame are ignored */
+            angleHistory.recordFrame(currentTime);
+        } finally {
+            commitBatch();
+        }
     }
 
     /**
      * Removes entry of CacheServer object with id 'serverId' from 'anglesByServerId' field.
      * @param serverId      The id of the CacheServer object being removed.
      */
+    @Override
     public void removeServer( int serverId ) {
-        if (!anglesByServerId.containsKey(serverId))
-            throw new IllegalArgumentException("Server with id = " + serverId + " is not recorded in HashRingImpl");
+        beginBatch();
+
+        try {
+            if (!anglesByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is not recorded in HashRingImpl");
+
+            List<HashRingAngle> angleList = anglesByServerId.get(serverId);
+
+            for (HashRingAngle angle : angleList) {
+                angles.remove(angle.getAngle());
+                releasePosition(angle.getAngle());
+            }
+
+            anglesByServerId.remove(serverId);
+            maskedServerIds.remove(serverId);
+            angleHistory.serverRemoved(serverId);
+            modified = true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Leaves the HashRingAngle objects of a CacheServer out of published snapshots, so that the resource names on its
+     * arcs are mapped to the next CacheServer clockwise. The HashRingAngle objects are kept, and can still be added and
+     * removed while the CacheServer is masked.
+     * @param serverId      The id of the CacheServer object.
+     * @return              True, since HashRing objects support masking.
+     * @throws IllegalArgumentException     Thrown if the CacheServer has not been added.
+     */
+    @Override
+    public boolean maskServer( int serverId ) throws IllegalArgumentException {
+        beginBatch();
+
+        try {
+            if (!anglesByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is not recorded in HashRingImpl");
+
+            if (maskedServerIds.add(serverId))
+                modified = true;
+        } finally {
+            commitBatch();
+        }
+
+        return true;
+    }
 
-        List<HashRingAngle> angleList = anglesByServerId.get(serverId);
+    /**
+     * Puts the HashRingAngle objects of a CacheServer which was masked by maskServer() back into published snapshots.
+     * @param serverId      The id of the CacheServer object.
+     * @return              True, since HashRing objects support masking.
+     */
+    @Override
+    public boolean unmaskServer( int serverId ) {
+        beginBatch();
+
+        try {
+            if (maskedServerIds.remove(serverId))
+                modified = true;
+        } finally {
+            commitBatch();
+        }
+
+        return true;
+    }
+
+    /**
+     * Rebalances by moving the hottest arc of each overloaded CacheServer instead of removing a random HashRingAngle.
+     *
+     * The arc of a HashRingAngle is the range of positions between it and the preceding HashRingAngle, and its heat is
+     * the number of lookups which have landed on it since the current snapshot was published. For each CacheServer
+     * whose capacity factor is more than 'hotArcLoadThreshold' above the mean, in descending order of capacity factor,
+     * its hottest arc is split at its midpoint by a new HashRingAngle for an underloaded CacheServer, so that the
+     * counter-clockwise half of the arc moves to that CacheServer. If no underloaded CacheServer can take another
+     * HashRingAngle, the arc is shrunk instead by moving its HashRingAngle to the midpoint, which hands the clockwise
+     * half of the arc to the next HashRingAngle.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     * @return                  False if lookups are not being counted, in which case the caller should add and remove
+     *                          HashRingAngle objects instead.
+     */
+    @Override
+    public boolean rebalanceHotArcs( Map<Integer, Double> capacityFactors ) {
+        if (!arcHitCountingEnabled)
+            return false;
+
+        beginBatch();
+
+        try {
+            HashRingLookupTable table = lookupTable.get();
+            List<Integer> serverIds = new ArrayList<>();
+            double meanCf = 0;
+
+            for (Map.Entry<Integer, Double> entry : capacityFactors.entrySet()) {
+                if (anglesByServerId.containsKey(entry.getKey())) {
+                    serverIds.add(entry.getKey());
+                    meanCf += entry.getValue();
+                }
+            }
+
+            if (serverIds.isEmpty() || table.size() == 0)
+                return true;
+
+            meanCf /= serverIds.size();
+
+            /* Find the index of the hottest arc of each CacheServer */
+            Map<Integer, Integer> hottestArcs = new HashMap<>();
+
+            for (int i = 0; i < table.size(); i++) {
+                long hits = table.getHitCount(i);
+                Integer hottest = hottestArcs.get(table.getServerId(i));
+
+                if (hits > 0 && (hottest == null || hits > table.getHitCount(hottest)))
+                    hottestArcs.put(table.getServerId(i), i);
+            }
+
+            /* Overloaded CacheServers are handled from most to least loaded and underloaded CacheServers receive arcs
+               from least to most loaded */
+            serverIds.sort(Comparator.comparingDouble(capacityFactors::get));
+            List<Integer> receivers = new ArrayList<>();
+
+            for (int serverId : serverIds) {
+                if (capacityFactors.get(serverId) < meanCf)
+                    receivers.add(serverId);
+            }
 
-        for (HashRingAngle angle : angleList)
-            angles.remove(angle.getAngle());
+            int receiverIdx = 0;
 
-        anglesByServerId.remove(serverId);
+            for (int i = serverIds.size() - 1; i >= 0; i--) {
+                int serverId = serverIds.get(i);
+
+                if (capacityFactors.get(serverId) <= meanCf + hotArcLoadThreshold)
+                    break;
+
+                Integer arcIdx = hottestArcs.get(serverId);
+
+                if (arcIdx == null)
+                    continue;
+
+                long end = table.getPosition(arcIdx);
+                long start = table.getPosition(arcIdx == 0 ? table.size() - 1 : arcIdx - 1);
+                long midpoint = arcMidpoint(start, end);
+
+                if (midpoint == end || angles.containsKey(midpoint) || !reservePosition(midpoint))
+                    continue;
+
+                /* Skip receivers which already have the maximum number of HashRingAngle objects */
+                while (receiverIdx < receivers.size()
+                        && anglesByServerId.get(receivers.get(receiverIdx)).size() >= maxAnglesPerServer)
+                    receiverIdx++;
+
+                if (receiverIdx < receivers.size()) {
+                    placeAngle(receivers.get(receiverIdx), midpoint);
+                    receiverIdx = (receiverIdx + 1) % receivers.size();
+                } else {
+                    HashRingAngle hotAngle = angles.remove(end);
+                    anglesByServerId.get(serverId).remove(hotAngle);
+                    releasePosition(end);
+                    angleHistory.angleRemoved(serverId, end);
+                    placeAngle(serverId, midpoint);
+                }
+            }
+        } finally {
+            commitBatch();
+        }
+
+        return true;
+    }
+
+    /**
+     * Helper method which finds the position halfway along the arc between two HashRingAngle objects, going clockwise
+     * from 'start' and wrapping around the end of the ring.
+     * @param start     The position of the HashRingAngle at the counter-clockwise end of the arc.
+     * @param end       The position of the HashRingAngle at the clockwise end of the arc.
+     * @return          The position halfway along the arc, or 'end' if the arc is too short to be split.
+     */
+    static long arcMidpoint( long start, long end ) {
+
+        /* An arc which starts and ends at the same HashRingAngle covers the whole ring */
+        long length = end > start ? end - start : end - start + ringSize;
+        long offset = length / 2;
+
+        if (offset == 0)
+            return end;
+
+        /* Add 'offset' to 'start' modulo 'ringSize' without overflowing */
+        return start >= ringSize - offset ? start - (ringSize - offset) : start + offset;
+    }
+
+    /**
+     * Helper method which takes a position out of 'freePositions' field, if there is one.
+     * @param position      The position being occupied.
+     * @return              False if 'freePositions' field shows the position as already occupied.
+     */
+    private boolean reservePosition( long position ) {
+        return freePositions == null || freePositions.acquire(position);
+    }
+
+    /**
+     * Helper method which returns a position to 'freePositions' field once its HashRingAngle has been removed.
+     * @param position      The position of the removed HashRingAngle.
+     */
+    private void releasePosition( long position ) {
+        if (freePositions != null)
+            freePositions.release(position);
+    }
+
+    /**
+     * Builds a new snapshot from the HashRingAngle objects in 'angles' field and publishes it to 'lookupTable' field
+     * with an incremented version. HashRingAngle objects of masked CacheServers are left out, unless every CacheServer
+     * is masked, in which case none are left out so that resource names can still be mapped.
+     */
+    void publishLookupTable() {
+        writeLock.lock();
+
+        try {
+            long nextVersion = lookupTable.get().getVersion() + 1;
+            Collection<HashRingAngle> publishedAngles = angles.values();
+
+            if (!maskedServerIds.isEmpty() && !maskedServerIds.containsAll(anglesByServerId.keySet())) {
+                publishedAngles = new ArrayList<>(angles.size());
+
+                for (HashRingAngle angle : angles.values()) {
+                    if (!maskedServerIds.contains(angle.getServerId()))
+                        publishedAngles.add(angle);
+                }
+            }
+
+            lookupTable.set(new HashRingLookupTable(publishedAngles, nextVersion, arcHitCountingEnabled));
+            modified = false;
+        } finally {
+            writeLock.unlock();
+        }
     }
 }
\ No newline at end of file
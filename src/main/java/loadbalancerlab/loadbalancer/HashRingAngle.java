@@ -14,14 +14,14 @@ public class HashRingAngle {
     /**
      * The position that the HashRingAngle object is located on on the HashRing.
      */
-    private int angle;
+    private long angle;
 
     /**
      * Constructor
      * @param serverId      The id of the CacheServer object that the HashRingAngle object belongs to.
      * @param angle         The angle position that the HashRingAngle object is placed on the HashRing.
      */
-    public HashRingAngle( int serverId, int angle ) {
+    public HashRingAngle( int serverId, long angle ) {
         this.angle = angle;
         this.serverId = serverId;
     }
@@ -38,7 +38,7 @@ public class HashRingAngle {
      * Getter method for angle field.
      * @return      Returns the angle that the HashRingAngle object is placed in on the HashRing.
      */
-    public int getAngle() {
+    public long getAngle() {
         return angle;
     }
 
@@ -47,4 +47,27 @@ public class HashRingAngle {
      * @param serverId      The id of the CacheServer object this HashRingAngle object belongs to.
      */
     public void setServerId(int serverId) { this.serverId = serverId; }
+
+    /**
+     * HashRingAngle objects are equal if they belong to the same CacheServer and are placed at the same position, so
+     * that snapshots which are reconstructed from an AngleHistory compare equal to the original HashRingAngle objects.
+     * @param o     The object being compared.
+     * @return      True if 'o' is an equal HashRingAngle object.
+     */
+    @Override
+    public boolean equals( Object o ) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof HashRingAngle))
+            return false;
+
+        HashRingAngle other = (HashRingAngle) o;
+        return serverId == other.serverId && angle == other.angle;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * serverId + Long.hashCode(angle);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An immutable, versioned snapshot of a HashRing which is used to find the HashRingAngle that is immediately clockwise
+ * of a position on the ring.
+ * Holds the positions of all HashRingAngle objects in ascending order along with a parallel array of the ids of the
+ * CacheServer objects which own them, so that a lookup is a binary search which does not allocate.
+ * HashRing objects publish a new instance with a higher version every time their HashRingAngle objects change.
+ *
+ * A table can optionally count the lookups which land on each arc, where the arc of a HashRingAngle is the range of
+ * positions between it and the preceding HashRingAngle. The counters are striped by thread, with each stripe in its own
+ * region of the counter array, so that request handling threads do not contend on the same cache lines.
+ */
+public class HashRingLookupTable {
+
+    /**
+     * The positions of all HashRingAngle objects on the HashRing, in ascending order.
+     */
+    private final long[] positions;
+
+    /**
+     * The ids of the CacheServer objects which own the HashRingAngle objects.
+     * serverIds[i] is the owner of the HashRingAngle at positions[i].
+     */
+    private final int[] serverIds;
+
+    /**
+     * The version of the HashRing that this snapshot was built from.
+     */
+    private final long version;
+
+    /**
+     * The number of stripes of 'hitCounts' field. The smallest power of two which is at least the number of
+     * processors, up to 16.
+     */
+    static final int NUM_STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    /**
+     * Lookup counters for each arc. The counter of arc i in stripe s is at index s * stripeLength + i.
+     * Null if the table does not count lookups.
+     */
+    private final AtomicLongArray hitCounts;
+
+    /**
+     * The distance between the stripes of 'hitCounts' field, padded so that stripes do not share cache lines.
+     */
+    private final int stripeLength;
+
+    /**
+     * Constructor for a table which does not count lookups.
+     * @param angles    The HashRingAngle objects which are placed on the HashRing.
+     * @param version   The version of the HashRing that this snapshot is built from.
+     */
+    public HashRingLookupTable( Collection<HashRingAngle> angles, long version ) {
+        this(angles, version, false);
+    }
+
+    /**
+     * Constructor
+     * @param angles        The HashRingAngle objects which are placed on the HashRing.
+     * @param version       The version of the HashRing that this snapshot is built from.
+     * @param countHits     When set to true, findServerId() counts the lookups which land on each arc.
+     */
+    public HashRingLookupTable( Collection<HashRingAngle> angles, long version, boolean countHits ) {
+        this.version = version;
+
+        /* Sort the angles by position so that both arrays are filled in ascending order of position */
+        HashRingAngle[] sortedAngles = angles.toArray(new HashRingAngle[0]);
+        Arrays.sort(sortedAngles, Comparator.comparingLong(HashRingAngle::getAngle));
+        positions = new long[sortedAngles.length];
+        serverIds = new int[sortedAngles.length];
+
+        for (int i = 0; i < sortedAngles.length; i++) {
+            positions[i] = sortedAngles[i].getAngle();
+            serverIds[i] = sortedAngles[i].getServerId();
+        }
+
+        /* Pad each stripe by a cache line of longs */
+        stripeLength = sortedAngles.length + 8;
+        hitCounts = countHits ? new AtomicLongArray(stripeLength * NUM_STRIPES) : null;
+    }
+
+    /**
+     * Finds the id of the CacheServer which owns the HashRingAngle immediately clockwise of 'position'.
+     * Wraps around to the HashRingAngle with the lowest position if there is no HashRingAngle higher than 'position'.
+     * @param position      A position on the HashRing.
+     * @return              The id of the CacheServer which owns the HashRingAngle immediately clockwise of 'position',
+     *                      or -1 if the table is empty.
+     */
+    public int findServerId( long position ) {
+        if (positions.length == 0)
+            return -1;
+
+        /* Binary search for the first position which is strictly higher than 'position' */
+        int idx = firstIndexAfter(position);
+
+        if (hitCounts != null) {
+            int stripe = (int) Thread.currentThread().getId() & (NUM_STRIPES - 1);
+            hitCounts.getAndIncrement(stripe * stripeLength + idx);
+        }
+
+        return serverIds[idx];
+    }
+
+    /**
+     * Finds the id of the CacheServer which owns the HashRingAngle immediately clockwise of 'position', as
+     * findServerId() does, without counting the lookup on the arc.
+     * @param position      A position on the HashRing.
+     * @return              The id of the CacheServer which owns the HashRingAngle immediately clockwise of 'position',
+     *                      or -1 if the table is empty.
+     */
+    public int peekServerId( long position ) {
+        if (positions.length == 0)
+            return -1;
+
+        return serverIds[firstIndexAfter(position)];
+    }
+
+    /**
+     * Finds the ids of distinct CacheServers in clockwise order starting from the HashRingAngle immediately clockwise
+     * of 'position'.
+     * @param position      A position on the HashRing.
+     * @param output        Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return              The number of CacheServer ids which were written into 'output'.
+     */
+    public int findServerIds( long position, int[] output ) {
+        if (positions.length == 0 || output.length == 0)
+            return 0;
+
+        int idx = firstIndexAfter(position);
+        int numFound = 0;
+
+        /* Walk clockwise around the ring once, skipping CacheServers which have already been found */
+        for (int step = 0; step < positions.length && numFound < output.length; step++) {
+            int serverId = serverIds[idx];
+
+            if (!contains(output, numFound, serverId))
+                output[numFound++] = serverId;
+
+            if (++idx == positions.length)
+                idx = 0;
+        }
+
+        return numFound;
+    }
+
+    /**
+     * Helper method which finds the index of the first position which is strictly higher than 'position', wrapping
+     * around to 0 if there is none. Must not be called on an empty table.
+     * @param position      A position on the HashRing.
+     * @return              The index of the HashRingAngle immediately clockwise of 'position'.
+     */
+    private int firstIndexAfter( long position ) {
+        int low = 0;
+        int high = positions.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (positions[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        /* If no position is higher than 'position', wrap around to the lowest position */
+        return low == positions.length ? 0 : low;
+    }
+
+    /**
+     * Checks whether the first 'length' elements of an array contain a value.
+     * @param values        The array being searched.
+     * @param length        The number of elements of the array which are searched.
+     * @param value         The value being searched for.
+     * @return              True if the value was found.
+     */
+    static boolean contains( int[] values, int length, int value ) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Getter method for the number of lookups which have landed on an arc since this table was built.
+     * @param idx       The index of the HashRingAngle at the clockwise end of the arc, in ascending order of position.
+     * @return          The number of lookups, or 0 if the table does not count lookups.
+     */
+    public long getHitCount( int idx ) {
+        if (hitCounts == null)
+            return 0;
+
+        long total = 0;
+
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+            total += hitCounts.get(stripe * stripeLength + idx);
+
+        return total;
+    }
+
+    /**
+     * @param idx       An index between 0 and size() - 1.
+     * @return          The position of the HashRingAngle at that index, in ascending order of position.
+     */
+    public long getPosition( int idx ) {
+        return positions[idx];
+    }
+
+    /**
+     * @param idx       An index between 0 and size() - 1.
+     * @return          The id of the CacheServer which owns the HashRingAngle at that index.
+     */
+    public int getServerId( int idx ) {
+        return serverIds[idx];
+    }
+
+    /**
+     * @return      The number of HashRingAngle objects held in the table.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * @return      The version of the HashRing that this snapshot was built from.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
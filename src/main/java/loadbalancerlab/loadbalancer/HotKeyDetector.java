@@ -0,0 +1,275 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Detects resource names which are requested much more often than others (hot keys) over a sliding window.
+ *
+ * Request counts are estimated with a count-min sketch: 'depth' rows of 'width' counters, where each resource name
+ * increments one counter per row and its estimated count is the smallest of those counters. The sliding window is
+ * made of two sketches which each cover half of the window. When the current half ends, the older sketch is cleared
+ * and reused for the next half, and estimates are the sum of both sketches. Memory is fixed at 2 * depth * width
+ * counters and an update costs 'depth' counter increments regardless of the number of distinct resource names.
+ *
+ * Resource names whose estimate reaches the threshold are held in a table of at most 'topK' hot keys. When the table
+ * is full, a new hot key replaces the hot key with the lowest estimate if its own estimate is higher.
+ */
+public class HotKeyDetector {
+
+    /**
+     * Controls the number of rows of the count-min sketch.
+     */
+    static int depth;
+
+    /**
+     * Controls the number of counters per row of the count-min sketch. Rounded up to a power of two.
+     */
+    static int width;
+
+    /**
+     * Controls the length of the sliding window, in milliseconds.
+     */
+    static long windowMillis;
+
+    /**
+     * Controls the estimated number of requests within the window at which a resource name is considered hot.
+     */
+    static int threshold;
+
+    /**
+     * Controls the maximum number of hot keys which are tracked.
+     */
+    static int topK;
+
+    /**
+     * The HashFunction object which is used to hash resource names into counters.
+     */
+    static HashFunction hashFunction;
+
+    /**
+     * The two halves of the sliding window. Each holds depth * width counters, row by row.
+     */
+    private AtomicIntegerArray[] sketches;
+
+    /**
+     * The index in 'sketches' field of the sketch for the current half of the window.
+     */
+    private volatile int current;
+
+    /**
+     * The time at which the current half of the window ends, in milliseconds since 1-Jan-1970.
+     */
+    private volatile long halfEndMillis;
+
+    /**
+     * Mask which is applied to hashes to select a counter within a row.
+     */
+    private int mask;
+
+    /**
+     * A table which maps hot keys to their most recent estimates.
+     */
+    Map<String, Integer> hotKeys;
+
+    /**
+     * The lowest estimate in 'hotKeys' field when it was last scanned. Estimates of hot keys only grow between scans,
+     * so this is a lower bound, and resource names whose estimates do not exceed it cannot be admitted into a full
+     * table. Checking it lets record() skip the lock for resource names which are warm but not hot enough.
+     */
+    private volatile int coldestHotEstimate;
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        depth = config.getHotKeySketchDepth();
+        width = config.getHotKeySketchWidth();
+        windowMillis = config.getHotKeyWindow() * 1_000L;
+        threshold = config.getHotKeyThreshold();
+        topK = config.getHotKeyTopK();
+        hashFunction = config.getHashFunction();
+    }
+
+    /**
+     * Constructor
+     */
+    public HotKeyDetector() {
+        int numCounters = Integer.highestOneBit(Math.max(1, width - 1) << 1);
+        mask = numCounters - 1;
+        sketches = new AtomicIntegerArray[] {
+            new AtomicIntegerArray(depth * numCounters),
+            new AtomicIntegerArray(depth * numCounters)
+        };
+        halfEndMillis = System.currentTimeMillis() + windowMillis / 2;
+        hotKeys = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records a request for a resource and checks whether the resource is hot.
+     * @param resourceName      The name of the requested resource.
+     * @return                  True if the resource is one of the tracked hot keys.
+     */
+    public boolean record( String resourceName ) {
+        return record(resourceName, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a request for a resource at a particular time and checks whether the resource is hot.
+     * @param resourceName      The name of the requested resource.
+     * @param nowMillis         The current time, in milliseconds since 1-Jan-1970.
+     * @return                  True if the resource is one of the tracked hot keys.
+     */
+    boolean record( String resourceName, long nowMillis ) {
+        if (nowMillis >= halfEndMillis)
+            advanceWindow(nowMillis);
+
+        long hash = hashFunction.hash64(resourceName);
+        AtomicIntegerArray sketch = sketches[current];
+        AtomicIntegerArray previous = sketches[current ^ 1];
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            int idx = row * (mask + 1) + counterIndex(hash, row);
+            estimate = Math.min(estimate, sketch.incrementAndGet(idx) + previous.get(idx));
+        }
+
+        if (estimate < threshold)
+            return false;
+
+        /* Only updates the estimate if the resource name is already a hot key */
+        if (hotKeys.replace(resourceName, estimate) != null)
+            return true;
+
+        if (estimate <= coldestHotEstimate && hotKeys.size() >= topK)
+            return false;
+
+        return admit(resourceName, estimate);
+    }
+
+    /**
+     * Helper method which selects the counter of a resource name within a row, using double hashing so that a single
+     * 64 bit hash yields an independent counter per row.
+     * @param hash      The 64 bit hash of the resource name.
+     * @param row       The row of the sketch.
+     * @return          The index of the counter within the row.
+     */
+    private int counterIndex( long hash, int row ) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return (h1 + row * (h2 | 1)) & mask;
+    }
+
+    /**
+     * Helper method which adds a resource name to 'hotKeys' field, replacing the hot key with the lowest estimate if
+     * the table is full.
+     * @param resourceName      The name of the resource.
+     * @param estimate          The estimated number of requests for the resource within the window.
+     * @return                  True if the resource name was added.
+     */
+    private synchronized boolean admit( String resourceName, int estimate ) {
+        if (hotKeys.size() >= topK) {
+            String coldest = null;
+            int coldestEstimate = Integer.MAX_VALUE;
+
+            for (Map.Entry<String, Integer> entry : hotKeys.entrySet()) {
+                if (entry.getValue() < coldestEstimate) {
+                    coldest = entry.getKey();
+                    coldestEstimate = entry.getValue();
+                }
+            }
+
+            if (coldest == null || coldestEstimate >= estimate) {
+                coldestHotEstimate = coldestEstimate;
+                return false;
+            }
+
+            hotKeys.remove(coldest);
+        }
+
+        hotKeys.put(resourceName, estimate);
+        updateColdestHotEstimate();
+        return true;
+    }
+
+    /**
+     * Helper method which sets 'coldestHotEstimate' field to the lowest estimate in 'hotKeys' field, or 0 if it is
+     * empty. Must be called while holding the lock of this object.
+     */
+    private void updateColdestHotEstimate() {
+        int coldestEstimate = Integer.MAX_VALUE;
+
+        for (int estimate : hotKeys.values())
+            coldestEstimate = Math.min(coldestEstimate, estimate);
+
+        coldestHotEstimate = hotKeys.isEmpty() ? 0 : coldestEstimate;
+    }
+
+    /**
+     * Helper method which starts a new half of the window by clearing the older sketch and making it current. Hot keys
+     * whose estimates have fallen below the threshold are dropped.
+     * @param nowMillis     The current time, in milliseconds since 1-Jan-1970.
+     */
+    private synchronized void advanceWindow( long nowMillis ) {
+        if (nowMillis < halfEndMillis)
+            return;
+
+        AtomicIntegerArray older = sketches[current ^ 1];
+
+        for (int i = 0; i < older.length(); i++)
+            older.set(i, 0);
+
+        /* If more than a whole window has passed, both halves are stale */
+        if (nowMillis >= halfEndMillis + windowMillis / 2) {
+            AtomicIntegerArray sketch = sketches[current];
+
+            for (int i = 0; i < sketch.length(); i++)
+                sketch.set(i, 0);
+        }
+
+        current ^= 1;
+        halfEndMillis = nowMillis + windowMillis / 2;
+
+        for (String hotKey : new ArrayList<>(hotKeys.keySet())) {
+            int estimate = estimate(hotKey);
+
+            if (estimate < threshold) {
+                hotKeys.remove(hotKey);
+            } else {
+                hotKeys.put(hotKey, estimate);
+            }
+        }
+
+        /* Estimates fall when a half of the window is cleared */
+        updateColdestHotEstimate();
+    }
+
+    /**
+     * Estimates the number of requests for a resource within the window without recording a request.
+     * @param resourceName      The name of the resource.
+     * @return                  The estimated number of requests. Never lower than the true number.
+     */
+    public int estimate( String resourceName ) {
+        long hash = hashFunction.hash64(resourceName);
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            int idx = row * (mask + 1) + counterIndex(hash, row);
+            estimate = Math.min(estimate, sketches[0].get(idx) + sketches[1].get(idx));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Getter method for the hot keys.
+     * @return      A copy of the table which maps hot keys to their estimated number of requests within the window.
+     */
+    public Map<String, Integer> getHotKeys() {
+        return new HashMap<>(hotKeys);
+    }
+}
@@ -0,0 +1,157 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * RoutingStrategy implementation which uses Jump consistent hashing.
+ *
+ * Each unit of weight of a CacheServer is a bucket, and resource names are mapped to buckets with the jump consistent
+ * hash function. Adding a unit of weight appends a bucket, which only moves the resource names that the new bucket
+ * takes over. Removing a unit of weight moves the last bucket into the place of the removed one, which moves the
+ * resource names of both buckets. Lookups take O(log n) time in the number of buckets and need no memory beyond an
+ * array of bucket owners.
+ */
+public class JumpHashRoutingStrategy extends WeightedRoutingStrategy {
+
+    /**
+     * The id of the CacheServer which owns each bucket. Only modified while the write lock is held.
+     */
+    List<Integer> bucketOwners;
+
+    /**
+     * The most recently published bucket table.
+     */
+    private AtomicReference<Buckets> buckets;
+
+    /**
+     * An immutable table which maps each bucket to the id of the CacheServer which owns it.
+     */
+    private static class Buckets {
+
+        /**
+         * The id of the CacheServer which owns each bucket.
+         */
+        final int[] owners;
+
+        /**
+         * The version of this table.
+         */
+        final long version;
+
+        Buckets( int[] owners, long version ) {
+            this.owners = owners;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public JumpHashRoutingStrategy() {
+        bucketOwners = new ArrayList<>();
+        buckets = new AtomicReference<>(new Buckets(new int[0], 0));
+    }
+
+    @Override
+    public int findServerId( String resourceName ) {
+        int[] owners = buckets.get().owners;
+
+        if (owners.length == 0)
+            return -1;
+
+        return owners[jumpHash(mix(hashFunction.hash64(resourceName)), owners.length)];
+    }
+
+    /**
+     * Finds the ids of distinct CacheServers in order of preference for a resource.
+     * The first CacheServer is the one returned by findServerId(). Further CacheServers are found by rehashing the key
+     * with an increasing salt, and any CacheServers which have not been found after a bounded number of attempts are
+     * taken in bucket order.
+     * @param resourceName      The name of the resource being accessed.
+     * @param output            Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return                  The number of CacheServer ids which were written into 'output'.
+     */
+    @Override
+    public int findServerIds( String resourceName, int[] output ) {
+        int[] owners = buckets.get().owners;
+
+        if (owners.length == 0)
+            return 0;
+
+        long key = mix(hashFunction.hash64(resourceName));
+        int numFound = 0;
+        int maxAttempts = owners.length * 4;
+
+        for (int attempt = 0; attempt < maxAttempts && numFound < output.length; attempt++) {
+            long saltedKey = attempt == 0 ? key : mix(key + attempt * 0x9e3779b97f4a7c15L);
+            int serverId = owners[jumpHash(saltedKey, owners.length)];
+
+            if (!HashRingLookupTable.contains(output, numFound, serverId))
+                output[numFound++] = serverId;
+        }
+
+        for (int i = 0; i < owners.length && numFound < output.length; i++) {
+            if (!HashRingLookupTable.contains(output, numFound, owners[i]))
+                output[numFound++] = owners[i];
+        }
+
+        return numFound;
+    }
+
+    /**
+     * Maps a key to one of 'numBuckets' buckets using the jump consistent hash function by Lamping and Veach.
+     * @param key           A 64 bit key.
+     * @param numBuckets    The number of buckets.
+     * @return              The index of the bucket that the key is mapped to.
+     */
+    static int jumpHash( long key, int numBuckets ) {
+        long bucket = -1;
+        long jump = 0;
+
+        while (jump < numBuckets) {
+            bucket = jump;
+            key = key * 2862933555777941757L + 1;
+            jump = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+
+        return (int) bucket;
+    }
+
+    @Override
+    protected void weightUnitAdded( int serverId ) {
+        bucketOwners.add(serverId);
+    }
+
+    @Override
+    protected void weightUnitRemoved( int serverId ) {
+
+        /* Move the last bucket into the place of the last bucket owned by the CacheServer and drop the last bucket */
+        int idx = bucketOwners.lastIndexOf(serverId);
+        int lastIdx = bucketOwners.size() - 1;
+        bucketOwners.set(idx, bucketOwners.get(lastIdx));
+        bucketOwners.remove(lastIdx);
+    }
+
+    @Override
+    protected long getPublishedVersion() {
+        return buckets.get().version;
+    }
+
+    /**
+     * Publishes a copy of 'bucketOwners' field.
+     * @param weights       An immutable copy of the weight of each CacheServer.
+     * @param version       The version of the bucket table being published.
+     */
+    @Override
+    protected void publish( SortedMap<Integer, Integer> weights, long version ) {
+        int[] owners = new int[bucketOwners.size()];
+
+        for (int i = 0; i < owners.length; i++)
+            owners[i] = bucketOwners.get(i);
+
+        buckets.set(new Buckets(owners, version));
+    }
+}
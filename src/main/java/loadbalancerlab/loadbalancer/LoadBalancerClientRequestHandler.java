@@ -7,20 +7,24 @@ import org.apache.commons.text.StringEscapeUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONObject;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HttpRequestHandler implementation for handling HTTP requests from Client received by the LoadBalancerRunnable class
@@ -28,9 +32,14 @@ import java.util.List;
 public class LoadBalancerClientRequestHandler implements HttpRequestHandler {
 
     /**
-     * A synchronized list which records the timestamps of all incoming requests (seconds since 1-Jan-1970).
+     * Controls the number of seconds of history kept by 'requestRateCounter' field.
      */
-    private List<Integer> incomingRequestTimestamps;
+    private static int requestRateHistory = 300;
+
+    /**
+     * Counter which records the number of incoming requests per second over a bounded recent history.
+     */
+    private RequestRateCounter requestRateCounter;
 
     /**
      * CacheRedistributor object which is used to handle logic for assigning requests to a particular CacheServer object.
@@ -43,17 +52,155 @@ public class LoadBalancerClientRequestHandler implements HttpRequestHandler {
      */
     public static HttpClientFactory clientFactory;
 
+    /**
+     * When set to true, requests for hot keys are spread over several CacheServer objects.
+     */
+    private static boolean hotKeyDetectionEnabled;
+
+    /**
+     * Detector which counts requests by resource name to find hot keys. Null if hot key detection is disabled.
+     */
+    HotKeyDetector hotKeyDetector;
+
+    /**
+     * When set to true, concurrent requests for the same resource share a single request to a CacheServer.
+     */
+    private static boolean coalescingEnabled;
+
+    /**
+     * Coalescer which shares requests to CacheServers between concurrent requests for the same resource. Null if
+     * request coalescing is disabled.
+     */
+    RequestCoalescer requestCoalescer;
+
+    /**
+     * When set to true, slow requests to a CacheServer are duplicated to the next distinct CacheServer clockwise.
+     */
+    private static boolean hedgingEnabled;
+
+    /**
+     * Hedger which duplicates slow requests to CacheServers. Null if request hedging is disabled.
+     */
+    RequestHedger requestHedger;
+
+    /**
+     * When set to true, requests which fail to reach a CacheServer are retried on the next distinct CacheServer
+     * clockwise, and the CacheServer which failed is marked as suspect.
+     */
+    private static boolean failoverEnabled;
+
+    /**
+     * Controls the maximum number of CacheServers which a request is sent to when failover is enabled.
+     */
+    private static int failoverMaxAttempts;
+
+    /**
+     * Controls the number of milliseconds after which a request stops failing over and fails, when failover is
+     * enabled. Each attempt times out when the deadline is reached. Hedged requests, which are not failed over, and
+     * requests forwarded by AsyncLoadBalancerClientRequestHandler also time out when it is reached.
+     */
+    private static long failoverDeadline;
+
     /**
      * Logger object used for logging.
      */
     private Logger logger;
 
+    /**
+     * The body of the response which is sent back to the client when the CacheServer fails to respond. It is escaped
+     * because clients unescape the bodies of responses before parsing them.
+     */
+    private static final byte[] errorBody;
+
+    static {
+        JSONObject outputJsonObj = new JSONObject();
+        outputJsonObj.put("error_message", "Cache server failed to respond");
+        errorBody = StringEscapeUtils.escapeJson(outputJsonObj.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Configuration method used for configuring static fields.
      * @param config    Config object used to configure various classes.
      */
     public static void configure( Config config ) {
         clientFactory = config.getHttpClientFactory();
+        hotKeyDetectionEnabled = config.getHotKeyDetectionEnabled();
+        coalescingEnabled = config.getCoalescingEnabled();
+        hedgingEnabled = config.getHedgingEnabled();
+        failoverEnabled = config.getFailoverEnabled();
+        failoverMaxAttempts = config.getFailoverMaxAttempts();
+        failoverDeadline = config.getFailoverDeadline();
+        requestRateHistory = config.getRequestRateHistory();
+    }
+
+    /**
+     * A single attempt at a request to a CacheServer.
+     * @param <T>   The type of the result of the attempt.
+     */
+    private interface Attempt<T> {
+
+        /**
+         * @param getReq            The request to the selected CacheServer.
+         * @param completion        The completion of the attempt. An attempt whose result is still receiving data from
+         *                          the CacheServer when it is returned must defer it and complete it later.
+         * @return                  The result of the request.
+         * @throws IOException      Thrown if the CacheServer fails to respond.
+         */
+        T send( HttpGet getReq, Completion completion ) throws IOException;
+    }
+
+    /**
+     * The completion of an attempt at a request to a CacheServer. Completing it releases the port of the CacheServer
+     * and records the outcome and latency of the attempt. Only the first completion has an effect.
+     */
+    private class Completion {
+
+        /**
+         * The port of the CacheServer.
+         */
+        private int cacheServerPort;
+
+        /**
+         * The time at which the attempt started, in milliseconds since 1-Jan-1970.
+         */
+        private long startTime = System.currentTimeMillis();
+
+        /**
+         * Whether the attempt completes after its result has been returned.
+         */
+        private boolean deferred;
+
+        /**
+         * Whether the attempt has completed.
+         */
+        private AtomicBoolean completed = new AtomicBoolean();
+
+        /**
+         * Constructor
+         * @param cacheServerPort   The port of the CacheServer.
+         */
+        Completion( int cacheServerPort ) {
+            this.cacheServerPort = cacheServerPort;
+        }
+
+        /**
+         * Records that the attempt completes after its result has been returned.
+         */
+        void defer() {
+            deferred = true;
+        }
+
+        /**
+         * Releases the port of the CacheServer and records the outcome of the attempt, unless it has already
+         * completed.
+         * @param succeeded     True if the CacheServer responded.
+         */
+        void complete( boolean succeeded ) {
+            if (completed.compareAndSet(false, true)) {
+                cacheRedis.releasePort(cacheServerPort);
+                cacheRedis.recordResult(cacheServerPort, succeeded, System.currentTimeMillis() - startTime);
+            }
+        }
     }
 
     /**
@@ -61,8 +208,11 @@ public class LoadBalancerClientRequestHandler implements HttpRequestHandler {
      *                      requests to CacheServer instances.
      */
     public LoadBalancerClientRequestHandler( CacheRedistributor cacheRedis ) {
-        incomingRequestTimestamps = Collections.synchronizedList(new LinkedList<>());
+        requestRateCounter = new RequestRateCounter(requestRateHistory);
         this.cacheRedis = cacheRedis;
+        hotKeyDetector = hotKeyDetectionEnabled ? new HotKeyDetector() : null;
+        requestCoalescer = coalescingEnabled ? new RequestCoalescer() : null;
+        requestHedger = hedgingEnabled ? new RequestHedger() : null;
         logger = new Logger("LoadBalancerClientRequestHandler");
     }
 
@@ -75,40 +225,367 @@ public class LoadBalancerClientRequestHandler implements HttpRequestHandler {
      */
     @Override
     public void handle( HttpRequest httpRequest, HttpResponse httpResponse, HttpContext httpContext ) {
-        CloseableHttpClient httpClient = clientFactory.buildApacheClient();
-        String uri = httpRequest.getRequestLine().getUri();
-        String[] uriArr = uri.split("/");
-        String resourceName = uriArr[uriArr.length - 1];
+        /* Shared client with pooled keep-alive connections. It is never closed here */
+        CloseableHttpClient httpClient = clientFactory.getPooledApacheClient();
+        String resourceName = extractResourceName(httpRequest.getRequestLine().getUri());
+        recordIncomingRequest();
 
-        /* Select port to forward request to using consistent hashing mechanism */
-        int cacheServerPort = cacheRedis.selectPort(resourceName);
-        logger.log(String.format("relaying message to cache server at port %d", cacheServerPort), Logger.LogType.REQUEST_PASSING);
+        /* Answer from the near cache without forwarding the request if possible */
+        NearCache.Entry cached = cacheRedis.getNearCached(resourceName);
 
-        /* Record request incoming timestamp */
-        incomingRequestTimestamps.add((int)(System.currentTimeMillis() / 1000));
-        HttpGet getReq = new HttpGet("http://127.0.0.1:" + cacheServerPort + "/" + resourceName);
+        if (cached != null) {
+            httpResponse.setEntity(new ByteArrayEntity(cached.body, cached.contentType));
+            httpResponse.setStatusCode(200);
+            return;
+        }
+
+        if (requestCoalescer != null || requestHedger != null || cacheRedis.isNearCacheEnabled()) {
+            handleBuffered(resourceName, httpResponse);
+            return;
+        }
+
+        int cacheServerPort = selectCacheServerPort(resourceName);
 
         try {
 
-            /* Forward request to selected CacheServer instance */
-            CloseableHttpResponse res = httpClient.execute(getReq);
+            /* Forward request to selected CacheServer instance. The body received from the CacheServer is streamed
+               back to the client, and the attempt completes once the body has been relayed, or once the server
+               connection knows that it never will be */
+            RelayEntity relay = sendWithFailover(resourceName, cacheServerPort, (getReq, completion) -> {
+                CloseableHttpResponse res = httpClient.execute(getReq);
+
+                if (res.getEntity() == null) {
+                    res.close();
+                    return null;
+                }
+
+                completion.defer();
+                return new RelayEntity(res, completion::complete);
+            });
+
+            if (relay != null) {
+                httpResponse.setEntity(relay);
+                RelayServerConnection.register(httpContext, relay);
+
+                /* The body of a response to a HEAD request is never sent, so only its headers are relayed */
+                if (httpRequest.getRequestLine().getMethod().equalsIgnoreCase("HEAD"))
+                    relay.close();
+            }
 
-            /* Send back response received from from CacheServer */
-            HttpEntity resBody = res.getEntity();
-            httpResponse.setEntity(resBody);
             httpResponse.setStatusCode(200);
         } catch (IOException e) {
 
             /* if cache server failed */
             e.printStackTrace();
-            JSONObject outputJsonObj = new JSONObject();
-            outputJsonObj.put("error_message", "Cache server failed to respond");
-            String htmlResponse = StringEscapeUtils.escapeJson(outputJsonObj.toString());
-            InputStream stream = new ByteArrayInputStream(htmlResponse.getBytes());
-            BasicHttpEntity responseBody = new BasicHttpEntity();
-            responseBody.setContent(stream);
             httpResponse.setStatusCode(500);
-            httpResponse.setEntity((HttpEntity)responseBody);
+            httpResponse.setEntity(buildErrorEntity());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Helper method which responds to a request with a response which is held in memory, so that it can be shared with
+     * concurrent requests for the same resource, raced against a hedged request or added to the near cache. It is not
+     * streamed like other responses.
+     * @param resourceName      The name of the requested resource.
+     * @param httpResponse      HttpResponse object which represents response which will be sent back to the client.
+     */
+    private void handleBuffered( String resourceName, HttpResponse httpResponse ) {
+        try {
+            RequestCoalescer.Response res = requestCoalescer != null
+                    ? requestCoalescer.fetch(resourceName, () -> fetchResource(resourceName))
+                    : fetchResource(resourceName);
+            httpResponse.setEntity(new ByteArrayEntity(res.body, res.contentType));
+            httpResponse.setStatusCode(200);
+        } catch (IOException e) {
+
+            /* if cache server failed, or waiting on another request for the resource timed out */
+            e.printStackTrace();
+            httpResponse.setStatusCode(500);
+            httpResponse.setEntity(buildErrorEntity());
+        }
+    }
+
+    /**
+     * Helper method which fetches a resource from a CacheServer, reads its body in full and adds successful responses
+     * to the near cache. If request hedging is enabled, a slow request is hedged to another CacheServer.
+     * @param resourceName      The name of the resource.
+     * @return                  The response of the CacheServer.
+     * @throws IOException      Thrown if the CacheServer fails to respond.
+     */
+    private RequestCoalescer.Response fetchResource( String resourceName ) throws IOException {
+        int cacheServerPort = selectCacheServerPort(resourceName);
+
+        if (requestHedger != null) {
+            long deadline = computeDeadline();
+            return requestHedger.fetch(cacheServerPort,
+                                       primaryPort -> cacheRedis.selectHedgePort(resourceName, primaryPort),
+                                       port -> sendAsync(resourceName, port, deadline));
+        }
+
+        return sendWithFailover(resourceName, cacheServerPort, (getReq, completion) -> {
+            try (CloseableHttpResponse res = clientFactory.getPooledApacheClient().execute(getReq)) {
+                return toResponse(resourceName, res);
+            }
+        });
+    }
+
+    /**
+     * Helper method which sends a request for a resource to a CacheServer. If failover is enabled and the request
+     * fails, the CacheServer is marked as suspect and the request is sent to the next distinct CacheServer clockwise,
+     * until an attempt succeeds, 'failoverMaxAttempts' CacheServers have been tried or 'failoverDeadline' has passed.
+     * The port of every attempt is released, and its outcome and latency are recorded, once the attempt has completed:
+     * when it fails, when it returns, or when an attempt which deferred its completion completes it.
+     * @param resourceName          The name of the resource.
+     * @param cacheServerPort       The port of the CacheServer selected by selectCacheServerPort().
+     * @param attempt               Sends the request to a CacheServer.
+     * @param <T>                   The type of the result of an attempt.
+     * @return                      The result of the first successful attempt.
+     * @throws IOException          Thrown if the last attempt failed.
+     */
+    private <T> T sendWithFailover( String resourceName, int cacheServerPort, Attempt<T> attempt ) throws IOException {
+        long deadline = computeDeadline();
+        Set<Integer> triedPorts = new HashSet<>();
+        int port = cacheServerPort;
+
+        while (true) {
+            int nextPort;
+            triedPorts.add(port);
+            Completion completion = new Completion(port);
+
+            try {
+                T result = attempt.send(buildRequest(resourceName, port, deadline), completion);
+
+                if (!completion.deferred)
+                    completion.complete(true);
+
+                return result;
+            } catch (IOException e) {
+                completion.complete(false);
+
+                if (!failoverEnabled)
+                    throw e;
+
+                cacheRedis.markSuspect(port);
+                boolean canRetry = triedPorts.size() < failoverMaxAttempts && System.currentTimeMillis() < deadline;
+                nextPort = canRetry ? cacheRedis.selectFailoverPort(resourceName, triedPorts) : -1;
+
+                if (nextPort == -1)
+                    throw e;
+
+                logger.log(String.format("cache server at port %d failed to respond, failing over to port %d", port, nextPort), Logger.LogType.REQUEST_PASSING);
+            } finally {
+
+                /* Covers unchecked exceptions. Has no effect if the attempt has already completed or deferred */
+                if (!completion.deferred)
+                    completion.complete(false);
+            }
+
+            port = nextPort;
+        }
+    }
+
+    /**
+     * Helper method which builds the request for a resource to a CacheServer. When failover is enabled, the request
+     * times out at the failover deadline, so that a CacheServer which does not respond can be failed over.
+     * @param resourceName          The name of the resource.
+     * @param cacheServerPort       The port of the CacheServer.
+     * @param deadline              The time at which the request must have completed, in milliseconds since
+     *                              1-Jan-1970. Only used when failover is enabled.
+     * @return                      The request.
+     */
+    private HttpGet buildRequest( String resourceName, int cacheServerPort, long deadline ) {
+        HttpGet getReq = new HttpGet("http://127.0.0.1:" + cacheServerPort + "/" + resourceName);
+
+        if (failoverEnabled)
+            getReq.setConfig(buildDeadlineConfig(deadline));
+
+        return getReq;
+    }
+
+    /**
+     * Helper method which computes the deadline of a request which starts now.
+     * @return                      The time at which the request times out, in milliseconds since 1-Jan-1970.
+     */
+    static long computeDeadline() {
+        return System.currentTimeMillis() + failoverDeadline;
+    }
+
+    /**
+     * Helper method which builds the RequestConfig of a request which must complete by a deadline. Waiting for a
+     * pooled connection, connecting and waiting for data each time out when the deadline is reached.
+     * @param deadline              The time at which the request must have completed, in milliseconds since
+     *                              1-Jan-1970.
+     * @return                      The RequestConfig.
+     */
+    static RequestConfig buildDeadlineConfig( long deadline ) {
+        int timeout = (int) Math.max(1, deadline - System.currentTimeMillis());
+        return RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Helper method which sends a request for a resource to a CacheServer with the pooled CloseableHttpAsyncClient, so
+     * that it can be cancelled if a hedged request responds first. The port is released once the request completes,
+     * fails or is cancelled, and a CacheServer which fails is marked as suspect.
+     * @param resourceName          The name of the resource.
+     * @param cacheServerPort       The port of the CacheServer, which has been recorded as in-flight.
+     * @param deadline              The time at which the request times out, in milliseconds since 1-Jan-1970.
+     * @return                      A future which is completed with the response of the CacheServer. Cancelling it
+     *                              cancels the request.
+     */
+    private CompletableFuture<RequestCoalescer.Response> sendAsync( String resourceName, int cacheServerPort, long deadline ) {
+        CompletableFuture<RequestCoalescer.Response> future = new CompletableFuture<>();
+        HttpGet getReq = new HttpGet("http://127.0.0.1:" + cacheServerPort + "/" + resourceName);
+        getReq.setConfig(buildDeadlineConfig(deadline));
+        long startTime = System.currentTimeMillis();
+
+        Future<HttpResponse> request = clientFactory.getPooledAsyncClient().execute(getReq, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed( HttpResponse res ) {
+                cacheRedis.releasePort(cacheServerPort);
+                cacheRedis.recordResult(cacheServerPort, true, System.currentTimeMillis() - startTime);
+
+                try {
+                    future.complete(toResponse(resourceName, res));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed( Exception e ) {
+                cacheRedis.releasePort(cacheServerPort);
+                cacheRedis.recordResult(cacheServerPort, false, System.currentTimeMillis() - startTime);
+                cacheRedis.markSuspect(cacheServerPort);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                cacheRedis.releasePort(cacheServerPort);
+                future.cancel(false);
+            }
+        });
+
+        future.whenComplete(( res, e ) -> {
+            if (future.isCancelled())
+                request.cancel(true);
+        });
+
+        return future;
+    }
+
+    /**
+     * Helper method which reads the body of a response from a CacheServer in full, and adds it to the near cache if
+     * the request succeeded.
+     * @param resourceName      The name of the resource.
+     * @param res               The response of the CacheServer.
+     * @return                  The response, with its body held in memory.
+     * @throws IOException      Thrown if the body cannot be read.
+     */
+    private RequestCoalescer.Response toResponse( String resourceName, HttpResponse res ) throws IOException {
+        HttpEntity entity = res.getEntity();
+
+        if (entity == null)
+            return new RequestCoalescer.Response(new byte[0], null);
+
+        RequestCoalescer.Response response = new RequestCoalescer.Response(EntityUtils.toByteArray(entity), ContentType.get(entity));
+
+        if (res.getStatusLine().getStatusCode() == 200)
+            cacheRedis.putNearCached(resourceName, response.body, response.contentType);
+
+        return response;
+    }
+
+    /**
+     * Records an incoming request from a client in the per second request counts.
+     */
+    void recordIncomingRequest() {
+        requestRateCounter.record();
+    }
+
+    /**
+     * Selects the CacheServer which a request for a resource is forwarded to.
+     * The caller must call releasePort() with the returned port once the request to the CacheServer has completed.
+     * @param resourceName      The name of the requested resource.
+     * @return                  The port of the selected CacheServer.
+     */
+    int selectCacheServerPort( String resourceName ) {
+
+        /* Select port to forward request to using consistent hashing mechanism, spreading hot keys over replicas */
+        boolean hotKey = hotKeyDetector != null && hotKeyDetector.record(resourceName);
+        int cacheServerPort = hotKey ? cacheRedis.selectPort(resourceName, true) : cacheRedis.selectPort(resourceName);
+        logger.log(String.format("relaying message to cache server at port %d", cacheServerPort), Logger.LogType.REQUEST_PASSING);
+        return cacheServerPort;
+    }
+
+    /**
+     * Records that a request to a CacheServer which was selected by selectCacheServerPort() has completed.
+     * @param cacheServerPort   The port of the CacheServer.
+     */
+    void releasePort( int cacheServerPort ) {
+        cacheRedis.releasePort(cacheServerPort);
+    }
+
+    /**
+     * Records the outcome of a request to a CacheServer in its circuit breaker.
+     * @param cacheServerPort   The port of the CacheServer.
+     * @param succeeded         True if the CacheServer responded.
+     * @param latencyMillis     The number of milliseconds the request took.
+     */
+    void recordResult( int cacheServerPort, boolean succeeded, long latencyMillis ) {
+        cacheRedis.recordResult(cacheServerPort, succeeded, latencyMillis);
+    }
+
+    /**
+     * @return      The entity of the response which is sent back to the client when the CacheServer fails to respond.
+     *              It wraps the shared 'errorBody' field without copying it.
+     */
+    static HttpEntity buildErrorEntity() {
+        return new ByteArrayEntity(errorBody, ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * Getter method for the RequestCoalescer object, which counts the requests to CacheServers saved by coalescing.
+     * @return      The RequestCoalescer object, or null if request coalescing is disabled.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Getter method for the counter of incoming requests.
+     * @return      The RequestRateCounter object which counts incoming requests per second.
+     */
+    public RequestRateCounter getRequestRateCounter() {
+        return requestRateCounter;
+    }
+
+    /**
+     * Getter method for the RequestHedger object, which counts hedged requests.
+     * @return      The RequestHedger object, or null if request hedging is disabled.
+     */
+    public RequestHedger getRequestHedger() {
+        return requestHedger;
+    }
+
+    /**
+     * Extracts the resource name, which is the last non-empty segment of the path, from a request URI.
+     * Scans the URI in place instead of splitting it, so that only the resource name itself is allocated.
+     * @param uri       The URI of the request from the client.
+     * @return          The resource name.
+     */
+    static String extractResourceName( String uri ) {
+        int end = uri.length();
+
+        /* Ignore trailing slashes */
+        while (end > 0 && uri.charAt(end - 1) == '/')
+            end--;
+
+        int start = uri.lastIndexOf('/', end - 1) + 1;
+        return uri.substring(start, end);
+    }
+}
@@ -1,5 +1,7 @@
 package loadbalancerlab.loadbalancer;
 
+import loadbalancerlab.shared.Config;
+
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -38,15 +40,28 @@ public class LoadBalancerRunnable implements Runnable {
     private CacheRedistributor cacheRedis;
 
     /**
-     * HashRing object which handles consistent hashing mechanism for mapping resource names to CacheServers.
+     * RoutingStrategy object which handles consistent hashing mechanism for mapping resource names to CacheServers.
+     */
+    private RoutingStrategy routingStrategy;
+
+    /**
+     * The type of RoutingStrategy which is used for mapping resource names to CacheServers.
      */
-    private HashRing hashRing;
+    private static RoutingStrategy.Type routingStrategyType = RoutingStrategy.Type.HASH_RING;
 
     /**
      * Thread instance which runs 'cacheRedis' object.
      */
     private Thread cacheRedisThread;
 
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        routingStrategyType = config.getRoutingStrategyType();
+    }
+
     /**
      * @param cacheServerManagerPort        Port which associated CacheServerManager object is running on.
      */
@@ -54,8 +69,8 @@ public class LoadBalancerRunnable implements Runnable {
         this.cacheServerManagerPort = cacheServerManagerPort;
 
         /* Setup CacheRedistributor */
-        hashRing = new HashRing();
-        cacheRedis = new CacheRedistributor(this.cacheServerManagerPort, hashRing);
+        routingStrategy = buildRoutingStrategy();
+        cacheRedis = new CacheRedistributor(this.cacheServerManagerPort, routingStrategy);
         CacheRedistributorRunnable cacheRedisRunnable = new CacheRedistributorRunnable(cacheRedis);
         cacheRedisThread = new Thread(cacheRedisRunnable);
 
@@ -65,6 +80,23 @@ public class LoadBalancerRunnable implements Runnable {
         clientReqHandlerThread = new Thread(clientReqHandlerRunnable);
     }
 
+    /**
+     * Helper method which instantiates the type of RoutingStrategy selected by 'routingStrategyType' field.
+     * @return      A new RoutingStrategy instance.
+     */
+    private static RoutingStrategy buildRoutingStrategy() {
+        switch (routingStrategyType) {
+            case MAGLEV:
+                return new MaglevRoutingStrategy();
+            case JUMP_HASH:
+                return new JumpHashRoutingStrategy();
+            case RENDEZVOUS:
+                return new RendezvousRoutingStrategy();
+            default:
+                return new HashRing();
+        }
+    }
+
     /**
      * Getter method for CacheRedistributor.angleHistory field, which stores snapshots of a table mapping CacheServer
      * ids to HashRingAngle instances that belong to them.
@@ -74,6 +106,15 @@ public class LoadBalancerRunnable implements Runnable {
         return cacheRedis.getHashRingAngleHistory();
     }
 
+    /**
+     * Getter method for the AngleHistory object of the associated RoutingStrategy, which records how the HashRingAngle
+     * instances belonging to each CacheServer change over time.
+     * @return      The AngleHistory object.
+     */
+    public AngleHistory getAngleHistory() {
+        return cacheRedis.getAngleHistory();
+    }
+
     /**
      * Method from Runnable interface.
      * Starts sub-threads for CacheRedistributor object and ClientRequestHandlerServer object and awaits termination.
@@ -98,6 +139,33 @@ public class LoadBalancerRunnable implements Runnable {
         /* Shutdown sub-threads */
         cacheRedisThread.interrupt();
         clientReqHandlerThread.interrupt();
+
+        /* Close the pooled connections to CacheServers */
+        LoadBalancerClientRequestHandler.clientFactory.closePooledClient();
+    }
+
+    /**
+     * Getter method for the RequestCoalescer object of the client request handler.
+     * @return      The RequestCoalescer object, or null if request coalescing is disabled.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return clientReqHandler.getRequestCoalescer();
+    }
+
+    /**
+     * Getter method for the RequestHedger object of the client request handler.
+     * @return      The RequestHedger object, or null if request hedging is disabled.
+     */
+    public RequestHedger getRequestHedger() {
+        return clientReqHandler.getRequestHedger();
+    }
+
+    /**
+     * Getter method for the near cache of the CacheRedistributor.
+     * @return      The NearCache object, or null if the near cache is disabled.
+     */
+    public NearCache getNearCache() {
+        return cacheRedis.getNearCache();
     }
 
     /**
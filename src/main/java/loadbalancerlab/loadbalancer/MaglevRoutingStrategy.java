@@ -0,0 +1,198 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * RoutingStrategy implementation which uses a Maglev lookup table.
+ *
+ * Each CacheServer has a pseudo-random permutation of the table slots which is derived from its id. The table is
+ * populated by letting CacheServers claim their next preferred empty slot in turns, with each CacheServer taking a
+ * number of turns per round equal to its weight. A lookup is a single array access.
+ * A larger table gives a more even distribution and less disruption on changes at the cost of memory and rebuild time.
+ */
+public class MaglevRoutingStrategy extends WeightedRoutingStrategy {
+
+    /**
+     * The number of slots in the lookup table. Must be a prime number, so that every skip is coprime with it and each
+     * CacheServer's permutation visits every slot. Should be much larger than the total weight of all CacheServers.
+     */
+    static int tableSize;
+
+    /**
+     * The most recently published lookup table.
+     */
+    private AtomicReference<Table> table;
+
+    /**
+     * An immutable lookup table which maps each slot to the id of the CacheServer which owns it.
+     */
+    private static class Table {
+
+        /**
+         * The id of the CacheServer which owns each slot. Empty if no CacheServer has been added.
+         */
+        final int[] slots;
+
+        /**
+         * The version of this table.
+         */
+        final long version;
+
+        Table( int[] slots, long version ) {
+            this.slots = slots;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) throws IllegalArgumentException {
+        int configuredSize = config.getMaglevTableSize();
+
+        if (!isPrime(configuredSize))
+            throw new IllegalArgumentException("maglevTableSize must be a prime number, received " + configuredSize);
+
+        tableSize = configuredSize;
+    }
+
+    /**
+     * Helper method which checks whether a number is prime.
+     * @param n     The number.
+     * @return      True if 'n' is a prime number.
+     */
+    static boolean isPrime( int n ) {
+        if (n < 2)
+            return false;
+
+        for (long divisor = 2; divisor * divisor <= n; divisor++) {
+            if (n % divisor == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Constructor
+     */
+    public MaglevRoutingStrategy() {
+        table = new AtomicReference<>(new Table(new int[0], 0));
+    }
+
+    @Override
+    public int findServerId( String resourceName ) {
+        int[] slots = table.get().slots;
+
+        if (slots.length == 0)
+            return -1;
+
+        return slots[Math.floorMod(hashFunction.hash64(resourceName), slots.length)];
+    }
+
+    /**
+     * Finds the ids of distinct CacheServers in the order that they appear in the lookup table, starting from the slot
+     * that the resource name is mapped to.
+     * @param resourceName      The name of the resource being accessed.
+     * @param output            Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return                  The number of CacheServer ids which were written into 'output'.
+     */
+    @Override
+    public int findServerIds( String resourceName, int[] output ) {
+        int[] slots = table.get().slots;
+
+        if (slots.length == 0)
+            return 0;
+
+        int slot = Math.floorMod(hashFunction.hash64(resourceName), slots.length);
+        int numFound = 0;
+
+        for (int step = 0; step < slots.length && numFound < output.length; step++) {
+            if (!HashRingLookupTable.contains(output, numFound, slots[slot]))
+                output[numFound++] = slots[slot];
+
+            if (++slot == slots.length)
+                slot = 0;
+        }
+
+        return numFound;
+    }
+
+    @Override
+    protected long getPublishedVersion() {
+        return table.get().version;
+    }
+
+    /**
+     * Populates a new lookup table from the weights of the CacheServers and publishes it.
+     * @param weights       An immutable copy of the weight of each CacheServer.
+     * @param version       The version of the lookup table being published.
+     */
+    @Override
+    protected void publish( SortedMap<Integer, Integer> weights, long version ) {
+        int numServers = weights.size();
+        int[] serverIds = new int[numServers];
+        int[] serverWeights = new int[numServers];
+        long totalWeight = 0;
+        int idx = 0;
+
+        for (Map.Entry<Integer, Integer> entry : weights.entrySet()) {
+            serverIds[idx] = entry.getKey();
+            serverWeights[idx] = entry.getValue();
+            totalWeight += entry.getValue();
+            idx++;
+        }
+
+        if (totalWeight == 0) {
+            table.set(new Table(new int[0], version));
+            return;
+        }
+
+        /* Compute the offset and skip which define the slot permutation of each CacheServer */
+        long[] offsets = new long[numServers];
+        long[] skips = new long[numServers];
+        long[] next = new long[numServers];
+
+        for (int i = 0; i < numServers; i++) {
+            long hash = mix(serverIds[i]);
+            offsets[i] = Math.floorMod(hash, (long) tableSize);
+            skips[i] = Math.floorMod(mix(hash), (long) (tableSize - 1)) + 1;
+        }
+
+        int[] slots = new int[tableSize];
+        boolean[] filled = new boolean[tableSize];
+        int numFilled = 0;
+
+        /* Let each CacheServer claim its next preferred empty slot, taking one turn per unit of weight in each round */
+        while (numFilled < tableSize) {
+            for (int i = 0; i < numServers && numFilled < tableSize; i++) {
+                for (int turn = 0; turn < serverWeights[i] && numFilled < tableSize; turn++) {
+                    int slot = (int) ((offsets[i] + next[i] * skips[i]) % tableSize);
+                    int numProbes = 0;
+
+                    while (filled[slot]) {
+
+                        /* A permutation which does not visit every slot would cycle forever while the lock is held */
+                        if (++numProbes >= tableSize)
+                            throw new IllegalStateException("Permutation of cache server " + serverIds[i] + " does not reach an empty slot, tableSize " + tableSize + " must be prime");
+
+                        next[i]++;
+                        slot = (int) ((offsets[i] + next[i] * skips[i]) % tableSize);
+                    }
+
+                    slots[slot] = serverIds[i];
+                    filled[slot] = true;
+                    next[i]++;
+                    numFilled++;
+                }
+            }
+        }
+
+        table.set(new Table(slots, version));
+    }
+}
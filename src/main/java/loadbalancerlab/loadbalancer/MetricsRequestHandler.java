@@ -0,0 +1,95 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A HttpRequestHandler implementation which reports the rate of incoming requests to the load balancer.
+ *
+ * Responds with a JSON object which maps window lengths in seconds to the average number of requests per second over
+ * the most recent completed seconds. Rates over 1, 10 and 60 seconds are always reported, and other windows can be
+ * requested with 'window' query parameters, such as /metrics?window=5&amp;window=120.
+ */
+public class MetricsRequestHandler implements HttpRequestHandler {
+
+    /**
+     * The windows, in seconds, which are always reported if the history of 'requestRateCounter' field is long enough.
+     */
+    static final int[] defaultWindows = { 1, 10, 60 };
+
+    /**
+     * Counter of incoming requests.
+     */
+    private RequestRateCounter requestRateCounter;
+
+    /**
+     * Constructor
+     * @param requestRateCounter    Counter of incoming requests.
+     */
+    public MetricsRequestHandler( RequestRateCounter requestRateCounter ) {
+        this.requestRateCounter = requestRateCounter;
+    }
+
+    /**
+     * Method from HttpRequestHandler interface. Responds with the request rates over the default windows and the
+     * windows in the query string, or with status 400 if a window is invalid.
+     * @param httpRequest       HttpRequest object which represents Http request from client.
+     * @param httpResponse      HttpResponse object which represents response which will be sent back to the client.
+     * @param httpContext       HttpContext object which represents execution state of an Http process.
+     */
+    @Override
+    public void handle( HttpRequest httpRequest, HttpResponse httpResponse, HttpContext httpContext ) {
+        JSONObject outputJson = new JSONObject();
+        JSONObject rates = new JSONObject();
+
+        for (int window : defaultWindows) {
+            if (window <= requestRateCounter.getMaxWindowSeconds())
+                rates.put(String.valueOf(window), requestRateCounter.getRate(window));
+        }
+
+        try {
+            URI uri = new URI(httpRequest.getRequestLine().getUri());
+
+            for (NameValuePair param : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+                if (param.getName().equals("window")) {
+                    int window = Integer.parseInt(param.getValue());
+                    rates.put(String.valueOf(window), requestRateCounter.getRate(window));
+                }
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+
+            /* Also covers NumberFormatException, which is thrown for windows which are not integers */
+            outputJson.put("error_message", "Invalid window: " + e.getMessage());
+            httpResponse.setStatusCode(400);
+            httpResponse.setEntity(buildEntity(outputJson));
+            return;
+        }
+
+        outputJson.put("requestsPerSecond", rates);
+        outputJson.put("maxWindowSeconds", requestRateCounter.getMaxWindowSeconds());
+        httpResponse.setStatusCode(200);
+        httpResponse.setEntity(buildEntity(outputJson));
+    }
+
+    /**
+     * Helper method which builds the entity of a response. The JSON is escaped because clients unescape the bodies of
+     * responses before parsing them.
+     * @param json      The body of the response.
+     * @return          The entity of the response.
+     */
+    private static StringEntity buildEntity( JSONObject json ) {
+        return new StringEntity(StringEscapeUtils.escapeJson(json.toString()), ContentType.APPLICATION_JSON);
+    }
+}
@@ -2,11 +2,28 @@ package loadbalancerlab.loadbalancer;
 
 import org.apache.commons.codec.digest.MurmurHash3;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Implementation of HashFunction interface which using the MurmurHash3 hash function implemented by Apache.
+ *
+ * The 64 bit methods compute the first half of the x64 128 bit variant of MurmurHash3 directly from their input, so
+ * they do not allocate. Text is hashed as its UTF-8 encoding; a CharSequence which contains non-ASCII characters is
+ * encoded into a temporary array first.
  */
 public class MurmurHashFunctionImpl implements HashFunction {
 
+    /**
+     * First multiplication constant of the x64 128 bit variant of MurmurHash3.
+     */
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    /**
+     * Second multiplication constant of the x64 128 bit variant of MurmurHash3.
+     */
+    private static final long C2 = 0x4cf5ad432745937fL;
+
     /**
      * @param input     A resource name.
      * @return          The integer that the resource name was hashed to.
@@ -15,4 +32,245 @@ public class MurmurHashFunctionImpl implements HashFunction {
     public int hash( String input ) {
         return Math.abs(MurmurHash3.hash32x86(input.getBytes()));
     }
-}
\ No newline at end of file
+
+    /**
+     * @param input     A resource name.
+     * @return          The first 64 bits of the 128 bit MurmurHash3 of the UTF-8 encoding of the resource name.
+     */
+    @Override
+    public long hash64( String input ) {
+        return hash64(input, 0, input.length());
+    }
+
+    /**
+     * @param input     Text containing a resource name.
+     * @param start     The index of the first character of the resource name.
+     * @param end       The index after the last character of the resource name.
+     * @return          The first 64 bits of the 128 bit MurmurHash3 of the UTF-8 encoding of the resource name.
+     */
+    @Override
+    public long hash64( CharSequence input, int start, int end ) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) >= 0x80) {
+
+                /* Characters outside of ASCII take more than one byte in UTF-8, so encode them first */
+                byte[] bytes = input.subSequence(start, end).toString().getBytes(StandardCharsets.UTF_8);
+                return hash64(bytes, 0, bytes.length);
+            }
+        }
+
+        int length = end - start;
+        long h1 = 0;
+        long h2 = 0;
+        int i = start;
+
+        for (; i + 16 <= end; i += 16) {
+            h1 = mixBlockH1(h1, h2, littleEndianLong(input, i));
+            h2 = mixBlockH2(h2, h1, littleEndianLong(input, i + 8));
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+
+        for (int j = 0; i + j < end; j++) {
+            if (j < 8) {
+                k1 ^= (long) (input.charAt(i + j) & 0xff) << (8 * j);
+            } else {
+                k2 ^= (long) (input.charAt(i + j) & 0xff) << (8 * (j - 8));
+            }
+        }
+
+        return finish(h1, h2, k1, k2, end - i, length);
+    }
+
+    /**
+     * @param input     An array containing a resource name.
+     * @param offset    The index of the first byte of the resource name.
+     * @param length    The number of bytes in the resource name.
+     * @return          The first 64 bits of the 128 bit MurmurHash3 of the bytes.
+     */
+    @Override
+    public long hash64( byte[] input, int offset, int length ) {
+        int end = offset + length;
+        long h1 = 0;
+        long h2 = 0;
+        int i = offset;
+
+        for (; i + 16 <= end; i += 16) {
+            h1 = mixBlockH1(h1, h2, littleEndianLong(input, i));
+            h2 = mixBlockH2(h2, h1, littleEndianLong(input, i + 8));
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+
+        for (int j = 0; i + j < end; j++) {
+            if (j < 8) {
+                k1 ^= (long) (input[i + j] & 0xff) << (8 * j);
+            } else {
+                k2 ^= (long) (input[i + j] & 0xff) << (8 * (j - 8));
+            }
+        }
+
+        return finish(h1, h2, k1, k2, end - i, length);
+    }
+
+    /**
+     * @param input     A buffer whose remaining bytes are a resource name. Its position is not changed.
+     * @return          The first 64 bits of the 128 bit MurmurHash3 of the remaining bytes.
+     */
+    @Override
+    public long hash64( ByteBuffer input ) {
+        int end = input.limit();
+        int length = input.remaining();
+        long h1 = 0;
+        long h2 = 0;
+        int i = input.position();
+
+        for (; i + 16 <= end; i += 16) {
+            h1 = mixBlockH1(h1, h2, littleEndianLong(input, i));
+            h2 = mixBlockH2(h2, h1, littleEndianLong(input, i + 8));
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+
+        for (int j = 0; i + j < end; j++) {
+            if (j < 8) {
+                k1 ^= (long) (input.get(i + j) & 0xff) << (8 * j);
+            } else {
+                k2 ^= (long) (input.get(i + j) & 0xff) << (8 * (j - 8));
+            }
+        }
+
+        return finish(h1, h2, k1, k2, end - i, length);
+    }
+
+    /**
+     * Mixes the first 8 bytes of a 16 byte block into the first half of the hash state.
+     * @param h1        The first half of the hash state.
+     * @param h2        The second half of the hash state.
+     * @param k1        The first 8 bytes of the block.
+     * @return          The new first half of the hash state.
+     */
+    private static long mixBlockH1( long h1, long h2, long k1 ) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        return h1 * 5 + 0x52dce729;
+    }
+
+    /**
+     * Mixes the last 8 bytes of a 16 byte block into the second half of the hash state.
+     * @param h2        The second half of the hash state.
+     * @param h1        The first half of the hash state, after the first 8 bytes of the block have been mixed in.
+     * @param k2        The last 8 bytes of the block.
+     * @return          The new second half of the hash state.
+     */
+    private static long mixBlockH2( long h2, long h1, long k2 ) {
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        return h2 * 5 + 0x38495ab5;
+    }
+
+    /**
+     * Scrambles 8 bytes of input before they are mixed into the first half of the hash state.
+     * @param k1        8 bytes of input.
+     * @return          The scrambled bytes.
+     */
+    private static long mixK1( long k1 ) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    /**
+     * Scrambles 8 bytes of input before they are mixed into the second half of the hash state.
+     * @param k2        8 bytes of input.
+     * @return          The scrambled bytes.
+     */
+    private static long mixK2( long k2 ) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    /**
+     * Mixes the trailing bytes and the length into the hash state and finalizes it.
+     * @param h1            The first half of the hash state.
+     * @param h2            The second half of the hash state.
+     * @param k1            The first 8 trailing bytes.
+     * @param k2            The trailing bytes after the first 8.
+     * @param tailLength    The number of trailing bytes, between 0 and 15.
+     * @param length        The total number of bytes hashed.
+     * @return              The first 64 bits of the 128 bit hash.
+     */
+    private static long finish( long h1, long h2, long k1, long k2, int tailLength, int length ) {
+        if (tailLength > 8)
+            h2 ^= mixK2(k2);
+
+        if (tailLength > 0)
+            h1 ^= mixK1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        return h1 + h2;
+    }
+
+    /**
+     * The finalization mix of MurmurHash3, which forces all bits of the hash to avalanche.
+     * @param k     The value being mixed.
+     * @return      The mixed value.
+     */
+    private static long fmix64( long k ) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+
+    /**
+     * Reads 8 bytes as a little-endian long.
+     * @param input     The array being read.
+     * @param idx       The index of the first byte.
+     * @return          The long value of the bytes.
+     */
+    private static long littleEndianLong( byte[] input, int idx ) {
+        long value = 0;
+
+        for (int j = 7; j >= 0; j--)
+            value = (value << 8) | (input[idx + j] & 0xff);
+
+        return value;
+    }
+
+    /**
+     * Reads 8 bytes as a little-endian long, regardless of the byte order of the buffer.
+     * @param input     The buffer being read.
+     * @param idx       The absolute index of the first byte.
+     * @return          The long value of the bytes.
+     */
+    private static long littleEndianLong( ByteBuffer input, int idx ) {
+        long value = 0;
+
+        for (int j = 7; j >= 0; j--)
+            value = (value << 8) | (input.get(idx + j) & 0xff);
+
+        return value;
+    }
+
+    /**
+     * Reads 8 ASCII characters as the bytes of a little-endian long.
+     * @param input     The text being read.
+     * @param idx       The index of the first character.
+     * @return          The long value of the characters.
+     */
+    private static long littleEndianLong( CharSequence input, int idx ) {
+        long value = 0;
+
+        for (int j = 7; j >= 0; j--)
+            value = (value << 8) | (input.charAt(idx + j) & 0xff);
+
+        return value;
+    }
+}
@@ -0,0 +1,383 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.entity.ContentType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * An in-process cache of CacheServer responses, keyed by resource name, which lets the load balancer answer repeated
+ * requests without forwarding them.
+ *
+ * Eviction is a segmented LRU bounded by the total size of the cached bodies. New entries enter the probation segment
+ * and are promoted to the protected segment when they are hit again. The protected segment holds at most
+ * 'protectedFraction' of the bytes, and its least recently used entries are demoted back to probation when it is over
+ * its share. When the cache is over its size, the least recently used entries of probation are evicted first, so a
+ * burst of resources which are requested once cannot flush out resources which are requested repeatedly.
+ *
+ * Every entry expires 'ttl' milliseconds after it was added, and records the id of the CacheServer which its resource
+ * name was mapped to, so that entries can be dropped when their resource names move to another CacheServer.
+ */
+public class NearCache {
+
+    /**
+     * Controls the fraction of 'maxBytes' which can be held by the protected segment.
+     */
+    static final double protectedFraction = 0.8;
+
+    /**
+     * The maximum total size of the cached entries, in bytes.
+     */
+    private long maxBytes;
+
+    /**
+     * The number of milliseconds after which an entry expires.
+     */
+    private long ttl;
+
+    /**
+     * Entries which have been hit at most once since they were added, from least to most recently used.
+     */
+    private LinkedHashMap<String, Entry> probation;
+
+    /**
+     * Entries which have been hit more than once since they were added, from least to most recently used.
+     */
+    private LinkedHashMap<String, Entry> protectedSegment;
+
+    /**
+     * The total size of the entries in 'probation' field, in bytes.
+     */
+    private long probationBytes;
+
+    /**
+     * The total size of the entries in 'protectedSegment' field, in bytes.
+     */
+    private long protectedBytes;
+
+    /**
+     * The number of lookups which found a live entry.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups which did not find a live entry.
+     */
+    private long misses;
+
+    /**
+     * The number of entries which were evicted to stay within 'maxBytes'.
+     */
+    private long evictions;
+
+    /**
+     * The number of entries which were dropped because their resource names moved to another CacheServer.
+     */
+    private long invalidations;
+
+    /**
+     * An immutable entry of the cache.
+     */
+    public static class Entry {
+
+        /**
+         * The name of the resource.
+         */
+        final String resourceName;
+
+        /**
+         * The body of the response. Must not be modified.
+         */
+        final byte[] body;
+
+        /**
+         * The content type of the body. May be null.
+         */
+        final ContentType contentType;
+
+        /**
+         * The id of the CacheServer which the resource name was mapped to when the entry was added.
+         */
+        final int ownerServerId;
+
+        /**
+         * The time at which the entry expires, in milliseconds since 1-Jan-1970.
+         */
+        final long expiresAt;
+
+        Entry( String resourceName, byte[] body, ContentType contentType, int ownerServerId, long expiresAt ) {
+            this.resourceName = resourceName;
+            this.body = body;
+            this.contentType = contentType;
+            this.ownerServerId = ownerServerId;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return      The number of bytes which the entry counts against the size of the cache.
+         */
+        long size() {
+            return body.length + 2L * resourceName.length();
+        }
+    }
+
+    /**
+     * Constructor
+     * @param maxBytes      The maximum total size of the cached entries, in bytes.
+     * @param ttl           The number of milliseconds after which an entry expires.
+     * @throws IllegalArgumentException     Thrown if 'maxBytes' or 'ttl' is not positive.
+     */
+    public NearCache( long maxBytes, long ttl ) throws IllegalArgumentException {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive, received " + maxBytes);
+
+        if (ttl <= 0)
+            throw new IllegalArgumentException("ttl must be positive, received " + ttl);
+
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        probation = new LinkedHashMap<>();
+        protectedSegment = new LinkedHashMap<>();
+    }
+
+    /**
+     * Looks up the cached response for a resource.
+     * @param resourceName      The name of the resource.
+     * @return                  The entry for the resource, or null if there is no live entry.
+     */
+    public Entry get( String resourceName ) {
+        return get(resourceName, System.currentTimeMillis());
+    }
+
+    /**
+     * Looks up the cached response for a resource at a particular time.
+     * @param resourceName      The name of the resource.
+     * @param nowMillis         The current time, in milliseconds since 1-Jan-1970.
+     * @return                  The entry for the resource, or null if there is no live entry.
+     */
+    synchronized Entry get( String resourceName, long nowMillis ) {
+        Entry entry = protectedSegment.remove(resourceName);
+        boolean wasProtected = entry != null;
+
+        if (!wasProtected)
+            entry = probation.remove(resourceName);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (nowMillis >= entry.expiresAt) {
+            if (wasProtected) {
+                protectedBytes -= entry.size();
+            } else {
+                probationBytes -= entry.size();
+            }
+
+            misses++;
+            return null;
+        }
+
+        /* Re-insert as the most recently used entry of the protected segment, which promotes probation entries */
+        if (!wasProtected) {
+            probationBytes -= entry.size();
+            protectedBytes += entry.size();
+        }
+
+        protectedSegment.put(resourceName, entry);
+        demoteProtectedOverflow();
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Adds or replaces the cached response for a resource.
+     * @param resourceName      The name of the resource.
+     * @param ownerServerId     The id of the CacheServer which the resource name is mapped to.
+     * @param body              The body of the response. Must not be modified afterwards.
+     * @param contentType       The content type of the body. May be null.
+     */
+    public void put( String resourceName, int ownerServerId, byte[] body, ContentType contentType ) {
+        put(resourceName, ownerServerId, body, contentType, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds or replaces the cached response for a resource at a particular time.
+     * Responses which are larger than the whole cache are not added.
+     * @param resourceName      The name of the resource.
+     * @param ownerServerId     The id of the CacheServer which the resource name is mapped to.
+     * @param body              The body of the response. Must not be modified afterwards.
+     * @param contentType       The content type of the body. May be null.
+     * @param nowMillis         The current time, in milliseconds since 1-Jan-1970.
+     */
+    synchronized void put( String resourceName, int ownerServerId, byte[] body, ContentType contentType, long nowMillis ) {
+        remove(resourceName);
+        Entry entry = new Entry(resourceName, body, contentType, ownerServerId, nowMillis + ttl);
+
+        if (entry.size() > maxBytes)
+            return;
+
+        probation.put(resourceName, entry);
+        probationBytes += entry.size();
+
+        /* Evict least recently used entries, starting with probation */
+        while (probationBytes + protectedBytes > maxBytes) {
+            LinkedHashMap<String, Entry> segment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Entry> iterator = segment.values().iterator();
+            Entry eldest = iterator.next();
+            iterator.remove();
+
+            if (segment == probation) {
+                probationBytes -= eldest.size();
+            } else {
+                protectedBytes -= eldest.size();
+            }
+
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the cached response for a resource.
+     * @param resourceName      The name of the resource.
+     * @return                  True if an entry was removed.
+     */
+    public synchronized boolean remove( String resourceName ) {
+        Entry entry = probation.remove(resourceName);
+
+        if (entry != null) {
+            probationBytes -= entry.size();
+            return true;
+        }
+
+        entry = protectedSegment.remove(resourceName);
+
+        if (entry != null) {
+            protectedBytes -= entry.size();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes every entry whose resource name is no longer mapped to the CacheServer recorded in the entry.
+     *
+     * The entries are copied under the lock and 'moved' is evaluated without it, so that get() and put() are only
+     * blocked while the entries are copied and while the moved entries are removed. Entries which were replaced while
+     * 'moved' was evaluated are kept.
+     * @param moved     Predicate which takes a resource name and the id of the CacheServer recorded in its entry, and
+     *                  returns true if the resource name has moved to another CacheServer.
+     * @return          The number of entries which were removed.
+     */
+    public int removeMoved( BiPredicate<String, Integer> moved ) {
+        List<Entry> entries;
+
+        synchronized (this) {
+            entries = new ArrayList<>(probation.size() + protectedSegment.size());
+            entries.addAll(probation.values());
+            entries.addAll(protectedSegment.values());
+        }
+
+        List<Entry> movedEntries = new ArrayList<>();
+
+        for (Entry entry : entries) {
+            if (moved.test(entry.resourceName, entry.ownerServerId))
+                movedEntries.add(entry);
+        }
+
+        if (movedEntries.isEmpty())
+            return 0;
+
+        int numRemoved = 0;
+
+        synchronized (this) {
+            for (Entry entry : movedEntries) {
+
+                /* Entries do not override equals(), so only the same entry is removed */
+                if (probation.remove(entry.resourceName, entry)) {
+                    probationBytes -= entry.size();
+                } else if (protectedSegment.remove(entry.resourceName, entry)) {
+                    protectedBytes -= entry.size();
+                } else {
+                    continue;
+                }
+
+                numRemoved++;
+                invalidations++;
+            }
+        }
+
+        return numRemoved;
+    }
+
+    /**
+     * Helper method which moves the least recently used entries of the protected segment back to probation while the
+     * protected segment holds more than its share of the bytes.
+     */
+    private void demoteProtectedOverflow() {
+        long maxProtectedBytes = (long) (maxBytes * protectedFraction);
+
+        while (protectedBytes > maxProtectedBytes && protectedSegment.size() > 1) {
+            Iterator<Entry> iterator = protectedSegment.values().iterator();
+            Entry eldest = iterator.next();
+            iterator.remove();
+            protectedBytes -= eldest.size();
+            probation.put(eldest.resourceName, eldest);
+            probationBytes += eldest.size();
+        }
+    }
+
+    /**
+     * @return      The number of entries in the cache, including expired entries which have not been removed yet.
+     */
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * @return      The total size of the entries in the cache, in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    /**
+     * @param resourceName      The name of a resource.
+     * @return                  True if the entry for the resource is in the protected segment.
+     */
+    synchronized boolean isProtected( String resourceName ) {
+        return protectedSegment.containsKey(resourceName);
+    }
+
+    /**
+     * @return      The number of lookups which found a live entry.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return      The number of lookups which did not find a live entry.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return      The number of entries which were evicted to stay within the size of the cache.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return      The number of entries which were dropped because their resource names moved to another CacheServer.
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+}
@@ -0,0 +1,163 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * HttpEntity which relays the body of a response from a CacheServer to the client while it is being received.
+ *
+ * The body is copied through a buffer borrowed from a small shared pool, so a relay never holds more than one buffer of
+ * the body in memory. The length, type and encoding of the body are taken from the response of the CacheServer, so the
+ * response to the client is sent with the same Content-Length, or chunked if the length is unknown.
+ *
+ * Once the body has been written, or writing it has failed, the response of the CacheServer is closed. If the body was
+ * read to the end its connection has already been returned to the pool; otherwise the connection is discarded instead
+ * of reading the rest of the body. A relay whose body is never written, such as the response to a HEAD request or to
+ * a client which disconnected before the headers were sent, must be closed by its owner instead. Closing the relay
+ * reports whether the CacheServer delivered the body, so that the request to it is only recorded as complete once the
+ * body has been relayed.
+ */
+class RelayEntity extends AbstractHttpEntity implements Closeable {
+
+    /**
+     * Controls the size of the buffers which body bytes are copied through.
+     */
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Buffers which are not in use. Buffers beyond the capacity of the pool are left to the garbage collector.
+     */
+    private static final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(64);
+
+    /**
+     * The response from the CacheServer.
+     */
+    private CloseableHttpResponse upstreamResponse;
+
+    /**
+     * The entity of 'upstreamResponse' field.
+     */
+    private HttpEntity upstreamEntity;
+
+    /**
+     * Whether the response from the CacheServer has been closed.
+     */
+    private AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Called once the response from the CacheServer has been closed, with false if reading its body failed.
+     */
+    private Consumer<Boolean> onClose;
+
+    /**
+     * Constructor
+     * @param upstreamResponse      The response from the CacheServer. Must have an entity.
+     */
+    RelayEntity( CloseableHttpResponse upstreamResponse ) {
+        this(upstreamResponse, succeeded -> {});
+    }
+
+    /**
+     * Constructor
+     * @param upstreamResponse      The response from the CacheServer. Must have an entity.
+     * @param onClose               Called once the response from the CacheServer has been closed, with false if
+     *                              reading its body failed.
+     */
+    RelayEntity( CloseableHttpResponse upstreamResponse, Consumer<Boolean> onClose ) {
+        this.upstreamResponse = upstreamResponse;
+        this.onClose = onClose;
+        upstreamEntity = upstreamResponse.getEntity();
+        setContentType(upstreamEntity.getContentType());
+        setContentEncoding(upstreamEntity.getContentEncoding());
+        setChunked(upstreamEntity.isChunked());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return upstreamEntity.getContentLength();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return upstreamEntity.getContent();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * Copies the body from the CacheServer to 'outStream' and closes the response of the CacheServer.
+     * @param outStream         The stream of the response to the client.
+     * @throws IOException      Thrown if the body cannot be read from the CacheServer or written to the client.
+     */
+    @Override
+    public void writeTo( OutputStream outStream ) throws IOException {
+        byte[] buffer = freeBuffers.poll();
+
+        if (buffer == null)
+            buffer = new byte[BUFFER_SIZE];
+
+        /* Failing to write to the client is not a failure of the CacheServer */
+        boolean writing = false;
+        boolean finished = false;
+
+        try {
+            InputStream inStream = upstreamEntity.getContent();
+            int numBytes;
+
+            /* Reaching the end of the body releases the connection to the CacheServer back to the pool */
+            while ((numBytes = inStream.read(buffer)) != -1) {
+                writing = true;
+                outStream.write(buffer, 0, numBytes);
+                writing = false;
+            }
+
+            finished = true;
+        } finally {
+            freeBuffers.offer(buffer);
+            close(finished || writing);
+        }
+    }
+
+    /**
+     * Closes the response from the CacheServer, which releases its connection. Only the first call has an effect.
+     * @throws IOException      Thrown if the response cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        close(true);
+    }
+
+    /**
+     * Helper method which closes the response from the CacheServer and reports it to 'onClose' field, unless it has
+     * already been closed.
+     * @param succeeded         False if reading the body from the CacheServer failed.
+     * @throws IOException      Thrown if the response cannot be closed.
+     */
+    private void close( boolean succeeded ) throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                upstreamResponse.close();
+            } finally {
+                onClose.accept(succeeded);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpServerConnection;
+import org.apache.http.impl.DefaultBHttpServerConnection;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A blocking server connection which closes the RelayEntity of its latest response if the body was never written.
+ *
+ * httpcore's HttpService does not write the entity of a response to a HEAD request, and does not close an entity
+ * which could not be sent because the client disconnected, so the connection to the CacheServer behind a RelayEntity
+ * would never be returned to the pool. The relay is closed when the next request arrives on the connection or when
+ * the connection is closed, whichever happens first. Closing a relay whose body has been written has no effect.
+ */
+class RelayServerConnection extends DefaultBHttpServerConnection {
+
+    /**
+     * Controls the size of the buffers of a connection, which is the default of DefaultBHttpServerConnectionFactory.
+     */
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The relay of the latest response which may not have been written, or null if there is none.
+     */
+    private AtomicReference<RelayEntity> pendingRelay = new AtomicReference<>();
+
+    /**
+     * Constructor
+     * @param bufferSize        The size of the buffers of the connection.
+     */
+    RelayServerConnection( int bufferSize ) {
+        super(bufferSize);
+    }
+
+    /**
+     * Builds a connection which is bound to a socket.
+     * @param socket            The socket of an accepted connection.
+     * @return                  The connection.
+     * @throws IOException      Thrown if the connection cannot be bound to the socket.
+     */
+    static RelayServerConnection create( Socket socket ) throws IOException {
+        RelayServerConnection conn = new RelayServerConnection(BUFFER_SIZE);
+        conn.bind(socket);
+        return conn;
+    }
+
+    /**
+     * Hands the relay of a response to the connection which the request of 'context' argument was received on, if it
+     * is a RelayServerConnection.
+     * @param context       The HttpContext of the request.
+     * @param relay         The relay which is set as the entity of the response.
+     * @throws IOException  Thrown if the relay of an earlier response cannot be closed.
+     */
+    static void register( HttpContext context, RelayEntity relay ) throws IOException {
+        HttpServerConnection conn = context == null
+                ? null
+                : (HttpServerConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+
+        if (conn instanceof RelayServerConnection)
+            ((RelayServerConnection) conn).setPendingRelay(relay);
+    }
+
+    /**
+     * Setter method for the relay of the latest response. The relay of an earlier response is closed.
+     * @param relay             The relay.
+     * @throws IOException      Thrown if the relay of an earlier response cannot be closed.
+     */
+    void setPendingRelay( RelayEntity relay ) throws IOException {
+        RelayEntity previous = pendingRelay.getAndSet(relay);
+
+        if (previous != null)
+            previous.close();
+    }
+
+    /**
+     * Helper method which closes the relay of the latest response, if there is one.
+     * @throws IOException      Thrown if the relay cannot be closed.
+     */
+    private void closePendingRelay() throws IOException {
+        RelayEntity relay = pendingRelay.getAndSet(null);
+
+        if (relay != null)
+            relay.close();
+    }
+
+    @Override
+    public HttpRequest receiveRequestHeader() throws HttpException, IOException {
+        closePendingRelay();
+        return super.receiveRequestHeader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closePendingRelay();
+        } finally {
+            super.close();
+        }
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        try {
+            closePendingRelay();
+        } finally {
+            super.shutdown();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RoutingStrategy implementation which uses weighted rendezvous hashing (highest random weight hashing).
+ *
+ * Every CacheServer has a seed which is derived from its id and a real-valued weight. A resource name is scored
+ * against every CacheServer with score = weight / -ln(u), where u is a uniform value in (0, 1) derived from the hash of
+ * the resource name and the seed of the CacheServer, and the CacheServer with the highest score is selected.
+ * Changing the weight of a CacheServer only moves resource names to or from that CacheServer, which is the minimal
+ * movement for the change in share. Lookups take O(n) time in the number of CacheServers and do not allocate.
+ *
+ * Weights are driven directly by capacity factors through applyCapacityFactors(), so no HashRingAngle objects need to
+ * be placed. addAngle() and removeAngle() change the weight by one unit per HashRingAngle.
+ */
+public class RendezvousRoutingStrategy implements RoutingStrategy {
+
+    /**
+     * Controls the maximum weight of a CacheServer object.
+     */
+    static double maxWeight;
+
+    /**
+     * Controls the minimum weight of a CacheServer object.
+     */
+    static double minWeight;
+
+    /**
+     * Controls the weight that CacheServer objects are given when they are added.
+     */
+    static double defaultWeight;
+
+    /**
+     * The number of positions on the virtual ring which is used to express the share of each CacheServer as
+     * HashRingAngle objects in 'angleHistory'.
+     */
+    static long ringSize;
+
+    /**
+     * Controls the largest factor by which the weight of a CacheServer can be multiplied or divided by a single call
+     * of applyCapacityFactors().
+     */
+    static double maxWeightStep;
+
+    /**
+     * The HashFunction object which is used to hash resource names.
+     */
+    static HashFunction hashFunction;
+
+    /**
+     * Added to capacity factors before they are compared so that idle CacheServers do not cause a division by zero.
+     */
+    static final double CF_SMOOTHING = 0.05;
+
+    /**
+     * A table which maps CacheServer ids to their weights. Only modified while the write lock is held.
+     */
+    SortedMap<Integer, Double> weightsByServerId;
+
+    /**
+     * History of the share of each CacheServer, expressed as HashRingAngle objects.
+     */
+    AngleHistory angleHistory;
+
+    /**
+     * The most recently published table of seeds and weights.
+     */
+    private AtomicReference<Table> table;
+
+    /**
+     * Lock which is held by threads which are modifying 'weightsByServerId' field.
+     */
+    private ReentrantLock writeLock;
+
+    /**
+     * Set to true when 'weightsByServerId' has been modified since the last table was published.
+     */
+    private boolean modified;
+
+    /**
+     * An immutable table of the CacheServers with their precomputed seeds and weights.
+     */
+    private static class Table {
+
+        /**
+         * The ids of the CacheServers.
+         */
+        final int[] serverIds;
+
+        /**
+         * The seed of each CacheServer, derived from its id.
+         */
+        final long[] seeds;
+
+        /**
+         * The weight of each CacheServer.
+         */
+        final double[] weights;
+
+        /**
+         * The version of this table.
+         */
+        final long version;
+
+        Table( int[] serverIds, long[] seeds, double[] weights, long version ) {
+            this.serverIds = serverIds;
+            this.seeds = seeds;
+            this.weights = weights;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        maxWeight = config.getMaxAnglesPerServer();
+        minWeight = config.getMinAnglesPerServer();
+        defaultWeight = config.getDefaultAnglesPerServer();
+        ringSize = config.getRingSize();
+        maxWeightStep = config.getRendezvousMaxWeightStep();
+        hashFunction = config.getHashFunction();
+    }
+
+    /**
+     * Constructor
+     */
+    public RendezvousRoutingStrategy() {
+        weightsByServerId = new TreeMap<>();
+        angleHistory = new AngleHistory();
+        table = new AtomicReference<>(new Table(new int[0], new long[0], new double[0], 0));
+        writeLock = new ReentrantLock();
+    }
+
+    @Override
+    public int findServerId( String resourceName ) {
+        Table current = table.get();
+        long keyHash = WeightedRoutingStrategy.mix(hashFunction.hash64(resourceName));
+        double highestScore = Double.NEGATIVE_INFINITY;
+        int selectedServerId = -1;
+
+        for (int i = 0; i < current.serverIds.length; i++) {
+            double score = score(keyHash, current.seeds[i], current.weights[i]);
+
+            if (score > highestScore) {
+                highestScore = score;
+                selectedServerId = current.serverIds[i];
+            }
+        }
+
+        return selectedServerId;
+    }
+
+    /**
+     * Finds the ids of distinct CacheServers in descending order of their scores for a resource.
+     * @param resourceName      The name of the resource being accessed.
+     * @param output            Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return                  The number of CacheServer ids which were written into 'output'.
+     */
+    @Override
+    public int findServerIds( String resourceName, int[] output ) {
+        Table current = table.get();
+        long keyHash = WeightedRoutingStrategy.mix(hashFunction.hash64(resourceName));
+        int numFound = 0;
+        double scoreCeiling = Double.POSITIVE_INFINITY;
+
+        /* Repeatedly select the highest score which is lower than the previously selected score */
+        while (numFound < output.length && numFound < current.serverIds.length) {
+            double highestScore = Double.NEGATIVE_INFINITY;
+            int selectedServerId = -1;
+
+            for (int i = 0; i < current.serverIds.length; i++) {
+                double score = score(keyHash, current.seeds[i], current.weights[i]);
+
+                if (score > highestScore && score < scoreCeiling) {
+                    highestScore = score;
+                    selectedServerId = current.serverIds[i];
+                }
+            }
+
+            if (selectedServerId == -1)
+                break;
+
+            output[numFound++] = selectedServerId;
+            scoreCeiling = highestScore;
+        }
+
+        return numFound;
+    }
+
+    /**
+     * Computes the score of a CacheServer for a resource.
+     * @param keyHash       The mixed hash of the resource name.
+     * @param seed          The seed of the CacheServer.
+     * @param weight        The weight of the CacheServer.
+     * @return              The score of the CacheServer for the resource.
+     */
+    private static double score( long keyHash, long seed, double weight ) {
+
+        /* Derive a uniform value in (0, 1) from the top 53 bits of the combined hash */
+        long combinedHash = WeightedRoutingStrategy.mix(keyHash ^ seed);
+        double uniform = ((combinedHash >>> 11) + 0.5) * 0x1.0p-53;
+        return weight / -Math.log(uniform);
+    }
+
+    /**
+     * Sets the weight of each CacheServer from its capacity factor.
+     *
+     * The weight of each CacheServer is multiplied by the ratio of the mean capacity factor to its own capacity
+     * factor, so overloaded CacheServers lose share and underloaded CacheServers gain share. The ratio is limited to
+     * 'maxWeightStep' and the weight is kept within the same bounds as the number of HashRingAngle objects on a
+     * HashRing.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     * @return                  Always returns true.
+     */
+    @Override
+    public boolean applyCapacityFactors( Map<Integer, Double> capacityFactors ) {
+        beginBatch();
+
+        try {
+            double totalCf = 0;
+            int numServers = 0;
+
+            for (Map.Entry<Integer, Double> entry : capacityFactors.entrySet()) {
+                if (weightsByServerId.containsKey(entry.getKey())) {
+                    totalCf += entry.getValue();
+                    numServers++;
+                }
+            }
+
+            if (numServers == 0)
+                return true;
+
+            double meanCf = totalCf / numServers;
+
+            for (Map.Entry<Integer, Double> entry : capacityFactors.entrySet()) {
+                Double weight = weightsByServerId.get(entry.getKey());
+
+                if (weight == null)
+                    continue;
+
+                double ratio = (meanCf + CF_SMOOTHING) / (entry.getValue() + CF_SMOOTHING);
+                ratio = Math.max(1 / maxWeightStep, Math.min(maxWeightStep, ratio));
+                setWeight(entry.getKey(), weight * ratio);
+            }
+        } finally {
+            commitBatch();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void addServer( int serverId ) {
+        beginBatch();
+
+        try {
+            if (weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is already recorded in RendezvousRoutingStrategy");
+
+            weightsByServerId.put(serverId, defaultWeight);
+            modified = true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void removeServer( int serverId ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is not recorded in RendezvousRoutingStrategy");
+
+            weightsByServerId.remove(serverId);
+            modified = true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void addAngle( int serverId, int numAngles ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+
+            setWeight(serverId, weightsByServerId.get(serverId) + numAngles);
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void removeAngle( int serverId, int numAngles ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+
+            setWeight(serverId, weightsByServerId.get(serverId) - numAngles);
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Helper method which sets the weight of a CacheServer within the weight bounds. Must be called while the write
+     * lock is held.
+     * @param serverId      The id of the CacheServer.
+     * @param weight        The new weight of the CacheServer.
+     */
+    private void setWeight( int serverId, double weight ) {
+        weight = Math.max(minWeight, Math.min(maxWeight, weight));
+
+        if (weightsByServerId.put(serverId, weight) != weight)
+            modified = true;
+    }
+
+    @Override
+    public void beginBatch() {
+        writeLock.lock();
+    }
+
+    @Override
+    public void commitBatch() {
+        try {
+            if (writeLock.getHoldCount() == 1 && modified)
+                publishTable();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Builds a new table from 'weightsByServerId' field and publishes it with an incremented version.
+     */
+    private void publishTable() {
+        int numServers = weightsByServerId.size();
+        int[] serverIds = new int[numServers];
+        long[] seeds = new long[numServers];
+        double[] weights = new double[numServers];
+        int idx = 0;
+
+        for (Map.Entry<Integer, Double> entry : weightsByServerId.entrySet()) {
+            serverIds[idx] = entry.getKey();
+            seeds[idx] = WeightedRoutingStrategy.mix(entry.getKey());
+            weights[idx] = entry.getValue();
+            idx++;
+        }
+
+        table.set(new Table(serverIds, seeds, weights, table.get().version + 1));
+        modified = false;
+    }
+
+    @Override
+    public long getVersion() {
+        return table.get().version;
+    }
+
+    /**
+     * Records the share of each CacheServer for a particular moment in time into 'angleHistory' field.
+     * The share of each CacheServer is expressed as HashRingAngle objects as described in
+     * WeightedRoutingStrategy.layOutArcs().
+     * @param currentTime   The current time, in seconds since 1-Jan-1970.
+     */
+    @Override
+    public void recordServerAngles( int currentTime ) {
+        beginBatch();
+
+        try {
+            /* Snapshots which are not later than the previous frame are ignored */
+            angleHistory.recordSnapshot(currentTime, WeightedRoutingStrategy.layOutArcs(weightsByServerId, ringSize));
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public AngleHistory getAngleHistory() {
+        return angleHistory;
+    }
+}
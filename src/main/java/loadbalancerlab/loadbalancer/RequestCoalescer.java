@@ -0,0 +1,232 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent requests for the same resource name into a single request to a CacheServer (single-flight).
+ *
+ * The first request for a resource name becomes the leader of a flight and fetches the resource. Requests for the same
+ * resource name which arrive while the flight is in progress wait for the leader and share the bytes of its response,
+ * or its failure. At most 'maxWaiters' requests wait on one flight; further requests fetch the resource themselves.
+ * A waiting request gives up with an IOException after 'timeout' milliseconds.
+ */
+public class RequestCoalescer {
+
+    /**
+     * Controls the maximum number of requests which wait on a single flight.
+     */
+    static int maxWaiters = 100;
+
+    /**
+     * Controls the number of milliseconds for which a request waits on a flight before giving up.
+     */
+    static long timeout = 5_000;
+
+    /**
+     * A table which maps resource names to their flights which are in progress.
+     */
+    private Map<String, Flight> flights;
+
+    /**
+     * The number of requests which were sent to a CacheServer.
+     */
+    private AtomicLong upstreamCalls;
+
+    /**
+     * The number of requests which were served with the response of another request.
+     */
+    private AtomicLong upstreamCallsSaved;
+
+    /**
+     * The number of requests which found a flight with 'maxWaiters' waiters and fetched the resource themselves.
+     */
+    private AtomicLong overflowedWaiters;
+
+    /**
+     * The number of requests which gave up waiting on a flight.
+     */
+    private AtomicLong timedOutWaiters;
+
+    /**
+     * Fetches a resource from a CacheServer.
+     */
+    public interface Fetcher {
+
+        /**
+         * @return                  The response of the CacheServer, with its body read in full.
+         * @throws IOException      Thrown if the CacheServer fails to respond.
+         */
+        Response fetch() throws IOException;
+    }
+
+    /**
+     * A response from a CacheServer which can be shared by several requests. Its body must not be modified.
+     */
+    public static class Response {
+
+        /**
+         * The body of the response.
+         */
+        final byte[] body;
+
+        /**
+         * The content type of the body. May be null.
+         */
+        final ContentType contentType;
+
+        /**
+         * Constructor
+         * @param body              The body of the response.
+         * @param contentType       The content type of the body. May be null.
+         */
+        public Response( byte[] body, ContentType contentType ) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    /**
+     * A request to a CacheServer which is in progress, and the requests which are waiting on it.
+     */
+    private static class Flight {
+
+        /**
+         * Completed with the response of the leader, or with its failure.
+         */
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        /**
+         * The number of requests which are waiting on this flight.
+         */
+        final AtomicInteger numWaiters = new AtomicInteger();
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        maxWaiters = config.getCoalescingMaxWaiters();
+        timeout = config.getCoalescingTimeout();
+    }
+
+    /**
+     * Constructor
+     */
+    public RequestCoalescer() {
+        flights = new ConcurrentHashMap<>();
+        upstreamCalls = new AtomicLong();
+        upstreamCallsSaved = new AtomicLong();
+        overflowedWaiters = new AtomicLong();
+        timedOutWaiters = new AtomicLong();
+    }
+
+    /**
+     * Fetches a resource, sharing the request to the CacheServer with concurrent requests for the same resource.
+     * @param resourceName      The name of the resource.
+     * @param fetcher           Fetcher which is used if this request has to fetch the resource itself.
+     * @return                  The response to the request.
+     * @throws IOException      Thrown if the request to the CacheServer fails, or if waiting on it times out.
+     */
+    public Response fetch( String resourceName, Fetcher fetcher ) throws IOException {
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(resourceName, flight);
+
+        if (existing == null)
+            return lead(resourceName, flight, fetcher);
+
+        if (existing.numWaiters.incrementAndGet() > maxWaiters) {
+            existing.numWaiters.decrementAndGet();
+            overflowedWaiters.incrementAndGet();
+            upstreamCalls.incrementAndGet();
+            return fetcher.fetch();
+        }
+
+        try {
+            Response response = existing.result.get(timeout, TimeUnit.MILLISECONDS);
+            upstreamCallsSaved.incrementAndGet();
+            return response;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            timedOutWaiters.incrementAndGet();
+            throw new IOException("Timed out waiting for coalesced request for " + resourceName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for coalesced request for " + resourceName, e);
+        } finally {
+            existing.numWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Helper method which fetches a resource as the leader of a flight and shares the outcome with its waiters.
+     * @param resourceName      The name of the resource.
+     * @param flight            The flight which this request leads.
+     * @param fetcher           Fetcher which is used to fetch the resource.
+     * @return                  The response of the CacheServer.
+     * @throws IOException      Thrown if the request to the CacheServer fails.
+     */
+    private Response lead( String resourceName, Flight flight, Fetcher fetcher ) throws IOException {
+        upstreamCalls.incrementAndGet();
+
+        try {
+            Response response = fetcher.fetch();
+            flight.result.complete(response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+
+            /* Requests which arrive from now on start a new flight */
+            flights.remove(resourceName, flight);
+        }
+    }
+
+    /**
+     * @param resourceName      The name of a resource.
+     * @return                  The number of requests waiting on the flight for the resource, or -1 if there is no
+     *                          flight for the resource.
+     */
+    int getNumWaiters( String resourceName ) {
+        Flight flight = flights.get(resourceName);
+        return flight == null ? -1 : flight.numWaiters.get();
+    }
+
+    /**
+     * @return      The number of requests which were sent to a CacheServer.
+     */
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    /**
+     * @return      The number of requests which were served with the response of another request instead of being
+     *              sent to a CacheServer.
+     */
+    public long getUpstreamCallsSaved() {
+        return upstreamCallsSaved.get();
+    }
+
+    /**
+     * @return      The number of requests which fetched the resource themselves because a flight had too many waiters.
+     */
+    public long getOverflowedWaiters() {
+        return overflowedWaiters.get();
+    }
+
+    /**
+     * @return      The number of requests which gave up waiting on a flight.
+     */
+    public long getTimedOutWaiters() {
+        return timedOutWaiters.get();
+    }
+}
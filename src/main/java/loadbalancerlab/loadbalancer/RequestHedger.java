@@ -0,0 +1,355 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sends a duplicate (hedged) request to a second CacheServer when the first CacheServer is slow to respond, and uses
+ * whichever response arrives first.
+ *
+ * A request is hedged once it has been outstanding for the hedge delay. The delay is either fixed, or adaptive, in
+ * which case it is the 95th percentile latency recently observed from the CacheServer the request was sent to. Once
+ * one of the two requests succeeds, the other one is cancelled.
+ *
+ * Hedges are limited by a budget: every request earns 'budget' tokens, up to 'maxBudgetTokens', and every hedge spends
+ * one token. So at most a 'budget' fraction of requests cause an extra request to a CacheServer, even if every
+ * CacheServer slows down at once.
+ *
+ * A request which fails before the hedge delay, such as one whose connection is refused, is hedged right away without
+ * spending a token, since the hedge is then the only request which can still succeed.
+ */
+public class RequestHedger {
+
+    /**
+     * Controls the number of milliseconds a request is outstanding for before it is hedged. Used as the adaptive delay
+     * until enough latencies have been observed from a CacheServer.
+     */
+    static long delay = 50;
+
+    /**
+     * When set to true, the hedge delay is the 95th percentile latency recently observed from the CacheServer.
+     */
+    static boolean adaptiveDelay = false;
+
+    /**
+     * Controls the number of hedge tokens earned by every request, which is the largest fraction of requests that
+     * can be hedged.
+     */
+    static double budget = 0.05;
+
+    /**
+     * Controls the maximum number of unspent hedge tokens, which bounds the size of a burst of hedges.
+     */
+    static final double maxBudgetTokens = 10;
+
+    /**
+     * Controls the percentile of the recent latencies of a CacheServer which is used as the adaptive hedge delay.
+     */
+    static final double delayPercentile = 0.95;
+
+    /**
+     * Controls the number of recent latencies which are kept for each CacheServer.
+     */
+    static final int latencyWindowSize = 128;
+
+    /**
+     * Controls the number of latencies which must be observed from a CacheServer before its adaptive delay is used.
+     */
+    static final int minLatencySamples = 20;
+
+    /**
+     * A table which maps the ports of CacheServers to their recent latencies.
+     */
+    private Map<Integer, LatencyWindow> latencyWindows;
+
+    /**
+     * The number of unspent hedge tokens.
+     */
+    private double budgetTokens;
+
+    /**
+     * The number of requests which were passed to fetch().
+     */
+    private LongAdder requests;
+
+    /**
+     * The number of hedged requests which were sent.
+     */
+    private LongAdder hedgesSent;
+
+    /**
+     * The number of hedged requests which responded before the request they duplicated.
+     */
+    private LongAdder hedgeWins;
+
+    /**
+     * The number of requests which would have been hedged if there had been a hedge token left.
+     */
+    private LongAdder hedgesDenied;
+
+    /**
+     * Sends a request for a resource to a CacheServer.
+     */
+    public interface Sender {
+
+        /**
+         * Sends the request without waiting for its response. Cancelling the returned future must cancel the request
+         * and release its connection.
+         * @param port      The port of the CacheServer.
+         * @return          A future which is completed with the response of the CacheServer, or with its failure.
+         */
+        CompletableFuture<RequestCoalescer.Response> send( int port );
+    }
+
+    /**
+     * The most recent latencies observed from a CacheServer, and the percentile of them used as the hedge delay.
+     */
+    private static class LatencyWindow {
+
+        /**
+         * Circular buffer of latencies, in nanoseconds.
+         */
+        final long[] samples = new long[latencyWindowSize];
+
+        /**
+         * The total number of latencies which have been recorded.
+         */
+        long numRecorded;
+
+        /**
+         * The 'delayPercentile' percentile of 'samples' field, in nanoseconds. Recomputed every 16 latencies so that
+         * requests do not sort the window.
+         */
+        volatile long percentileNanos = -1;
+
+        /**
+         * Records the latency of a successful request, or a lower bound of the latency of a cancelled request.
+         * @param latencyNanos      The latency, in nanoseconds.
+         */
+        synchronized void record( long latencyNanos ) {
+            samples[(int) (numRecorded % latencyWindowSize)] = latencyNanos;
+            numRecorded++;
+
+            if (numRecorded == minLatencySamples || (numRecorded > minLatencySamples && numRecorded % 16 == 0)) {
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(numRecorded, latencyWindowSize));
+                Arrays.sort(sorted);
+                percentileNanos = sorted[(int) Math.ceil(delayPercentile * sorted.length) - 1];
+            }
+        }
+    }
+
+    /**
+     * Method used to configure static variables.
+     * @param config    Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        delay = config.getHedgeDelay();
+        adaptiveDelay = config.getHedgeAdaptiveDelay();
+        budget = config.getHedgeBudget();
+    }
+
+    /**
+     * Constructor
+     */
+    public RequestHedger() {
+        latencyWindows = new ConcurrentHashMap<>();
+        requests = new LongAdder();
+        hedgesSent = new LongAdder();
+        hedgeWins = new LongAdder();
+        hedgesDenied = new LongAdder();
+    }
+
+    /**
+     * Fetches a resource from a CacheServer, hedging the request to a second CacheServer if the first one is slow.
+     * @param primaryPort       The port of the CacheServer the request is sent to first.
+     * @param hedgePortFinder   Function which takes 'primaryPort' and returns the port of the CacheServer to hedge the
+     *                          request to, or -1 if there is none. Only called when the request is hedged.
+     * @param sender            Sender which sends requests to CacheServers.
+     * @return                  The first successful response.
+     * @throws IOException      Thrown if every request which was sent failed, or if the thread was interrupted.
+     */
+    public RequestCoalescer.Response fetch( int primaryPort, IntUnaryOperator hedgePortFinder, Sender sender ) throws IOException {
+        requests.increment();
+        depositBudget();
+        CompletableFuture<RequestCoalescer.Response> primary = send(primaryPort, sender);
+        boolean primaryFailed = false;
+
+        try {
+            try {
+                return primary.get(getHedgeDelayNanos(primaryPort), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+
+                /* The primary request is slow, so it is hedged below */
+            } catch (ExecutionException e) {
+
+                /* The primary request has failed, so it is hedged below without spending a token */
+                primaryFailed = true;
+            }
+
+            if (!primaryFailed && !withdrawBudget()) {
+                hedgesDenied.increment();
+                return primary.get();
+            }
+
+            int hedgePort = hedgePortFinder.applyAsInt(primaryPort);
+
+            if (hedgePort == -1) {
+
+                /* There is no other CacheServer, so the token is not used. A failed primary request rethrows its
+                   failure */
+                if (!primaryFailed)
+                    refundBudget();
+
+                return primary.get();
+            }
+
+            hedgesSent.increment();
+            CompletableFuture<RequestCoalescer.Response> hedge = send(hedgePort, sender);
+
+            try {
+                return firstSuccessful(primary, hedge).get();
+            } finally {
+
+                /* Cancel the loser. Cancelling a completed future has no effect */
+                primary.cancel(true);
+                hedge.cancel(true);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for CacheServer at port " + primaryPort, e);
+        }
+    }
+
+    /**
+     * Helper method which sends a request and records its latency if it succeeds or is cancelled. A request which is
+     * cancelled, usually because the other request responded first, would have taken at least as long as it had been
+     * outstanding, so that time is recorded as a lower bound of its latency. Otherwise the slowest requests would be
+     * left out of the latency window, and the adaptive delay would drift down until hedging is limited by the budget.
+     * @param port          The port of the CacheServer.
+     * @param sender        Sender which sends the request.
+     * @return              A future which is completed with the response of the CacheServer, or with its failure.
+     */
+    private CompletableFuture<RequestCoalescer.Response> send( int port, Sender sender ) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<RequestCoalescer.Response> future = sender.send(port);
+
+        future.whenComplete(( response, e ) -> {
+            if (e == null || future.isCancelled())
+                latencyWindows.computeIfAbsent(port, p -> new LatencyWindow()).record(System.nanoTime() - startNanos);
+        });
+
+        return future;
+    }
+
+    /**
+     * Helper method which combines the primary request and its hedge.
+     * @param primary       The future of the primary request.
+     * @param hedge         The future of the hedged request.
+     * @return              A future which is completed with the first successful response, or with the failure of the
+     *                      request which failed last if both fail.
+     */
+    private CompletableFuture<RequestCoalescer.Response> firstSuccessful( CompletableFuture<RequestCoalescer.Response> primary,
+                                                                          CompletableFuture<RequestCoalescer.Response> hedge ) {
+        CompletableFuture<RequestCoalescer.Response> winner = new CompletableFuture<>();
+        AtomicInteger numFailed = new AtomicInteger();
+
+        primary.whenComplete(( response, e ) -> {
+            if (e == null) {
+                winner.complete(response);
+            } else if (numFailed.incrementAndGet() == 2) {
+                winner.completeExceptionally(e);
+            }
+        });
+
+        hedge.whenComplete(( response, e ) -> {
+            if (e == null) {
+                if (winner.complete(response))
+                    hedgeWins.increment();
+            } else if (numFailed.incrementAndGet() == 2) {
+                winner.completeExceptionally(e);
+            }
+        });
+
+        return winner;
+    }
+
+    /**
+     * @param port      The port of a CacheServer.
+     * @return          The number of nanoseconds a request to the CacheServer is outstanding for before it is hedged.
+     */
+    long getHedgeDelayNanos( int port ) {
+        if (adaptiveDelay) {
+            LatencyWindow window = latencyWindows.get(port);
+            long percentileNanos = window == null ? -1 : window.percentileNanos;
+
+            if (percentileNanos != -1)
+                return percentileNanos;
+        }
+
+        return TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * Helper method which adds the tokens earned by a request to the hedge budget.
+     */
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(maxBudgetTokens, budgetTokens + budget);
+    }
+
+    /**
+     * Helper method which spends a hedge token.
+     * @return      True if a token was available and has been spent.
+     */
+    private synchronized boolean withdrawBudget() {
+        if (budgetTokens < 1)
+            return false;
+
+        budgetTokens--;
+        return true;
+    }
+
+    /**
+     * Helper method which returns a hedge token which was withdrawn but not spent.
+     */
+    private synchronized void refundBudget() {
+        budgetTokens = Math.min(maxBudgetTokens, budgetTokens + 1);
+    }
+
+    /**
+     * @return      The number of requests which were passed to fetch().
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return      The number of hedged requests which were sent.
+     */
+    public long getHedgesSent() {
+        return hedgesSent.sum();
+    }
+
+    /**
+     * @return      The number of hedged requests which responded before the request they duplicated.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return      The number of requests which were not hedged because the hedge budget was spent.
+     */
+    public long getHedgesDenied() {
+        return hedgesDenied.sum();
+    }
+}
@@ -0,0 +1,144 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, such as incoming requests, per second over a bounded recent history.
+ *
+ * Counts are held in a fixed ring of one bucket per second, so memory does not grow with the number of events. Each
+ * bucket counts with a LongAdder, whose internal striping lets request handling threads record events without
+ * contending on a lock or a single counter. Once the ring has wrapped around, the bucket of an earlier second is
+ * replaced by a new bucket for the later second. A bucket never changes the second it counts, so an event is never
+ * counted towards the wrong second, and a replacement never discards events of the second it was made for.
+ */
+public class RequestRateCounter {
+
+    /**
+     * The count of events in a single second.
+     */
+    private static class Bucket {
+
+        /**
+         * The second, in seconds since 1-Jan-1970, which the bucket counts, or -1 for a bucket which has never been
+         * used.
+         */
+        final long second;
+
+        /**
+         * The number of events recorded in 'second' field.
+         */
+        final LongAdder count = new LongAdder();
+
+        /**
+         * Constructor
+         * @param second    The second which the bucket counts.
+         */
+        Bucket( long second ) {
+            this.second = second;
+        }
+    }
+
+    /**
+     * Ring of buckets. The bucket of a second is at index second % buckets.length().
+     */
+    private AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * Constructor
+     * @param historySeconds    The number of seconds of history which are kept, including the current second.
+     * @throws IllegalArgumentException     Thrown if 'historySeconds' is less than 2.
+     */
+    public RequestRateCounter( int historySeconds ) throws IllegalArgumentException {
+        if (historySeconds < 2)
+            throw new IllegalArgumentException("historySeconds must be at least 2, received " + historySeconds);
+
+        buckets = new AtomicReferenceArray<>(historySeconds);
+
+        for (int i = 0; i < historySeconds; i++)
+            buckets.set(i, new Bucket(-1));
+    }
+
+    /**
+     * Records an event at the current time.
+     */
+    public void record() {
+        record(System.currentTimeMillis() / 1_000);
+    }
+
+    /**
+     * Records an event at a particular second.
+     * @param nowSecond     The second at which the event happened, in seconds since 1-Jan-1970.
+     */
+    void record( long nowSecond ) {
+        int idx = (int) (nowSecond % buckets.length());
+
+        while (true) {
+            Bucket bucket = buckets.get(idx);
+
+            if (bucket.second == nowSecond) {
+                bucket.count.increment();
+                return;
+            }
+
+            /* Events which are older than the second the bucket has moved on to are dropped */
+            if (bucket.second > nowSecond)
+                return;
+
+            /* Whichever thread replaces the bucket, the event is recorded in the replacement on the next pass */
+            buckets.compareAndSet(idx, bucket, new Bucket(nowSecond));
+        }
+    }
+
+    /**
+     * Counts the events in the most recent completed seconds. The current second is excluded because it is not over.
+     * @param windowSeconds     The number of completed seconds which are counted.
+     * @return                  The number of events in the window.
+     * @throws IllegalArgumentException     Thrown if 'windowSeconds' is not between 1 and getMaxWindowSeconds().
+     */
+    public long getCount( int windowSeconds ) throws IllegalArgumentException {
+        return getCount(windowSeconds, System.currentTimeMillis() / 1_000);
+    }
+
+    /**
+     * Counts the events in the completed seconds before a particular second.
+     * @param windowSeconds     The number of completed seconds which are counted.
+     * @param nowSecond         The current second, in seconds since 1-Jan-1970. Events in this second are not counted.
+     * @return                  The number of events in the window.
+     * @throws IllegalArgumentException     Thrown if 'windowSeconds' is not between 1 and getMaxWindowSeconds().
+     */
+    long getCount( int windowSeconds, long nowSecond ) throws IllegalArgumentException {
+        if (windowSeconds < 1 || windowSeconds > getMaxWindowSeconds())
+            throw new IllegalArgumentException("windowSeconds must be between 1 and " + getMaxWindowSeconds() + ", received " + windowSeconds);
+
+        long total = 0;
+
+        for (long second = nowSecond - windowSeconds; second < nowSecond; second++) {
+            Bucket bucket = buckets.get((int) (second % buckets.length()));
+
+            /* Buckets which have not been used since 'second' hold no events for it */
+            if (bucket.second == second)
+                total += bucket.count.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     * Calculates the average number of events per second in the most recent completed seconds.
+     * @param windowSeconds     The number of completed seconds which are averaged over.
+     * @return                  The average number of events per second in the window.
+     * @throws IllegalArgumentException     Thrown if 'windowSeconds' is not between 1 and getMaxWindowSeconds().
+     */
+    public double getRate( int windowSeconds ) throws IllegalArgumentException {
+        return getCount(windowSeconds) / (double) windowSeconds;
+    }
+
+    /**
+     * @return      The largest window, in seconds, which can be queried. One less than the number of buckets, since the
+     *              bucket of the current second is not part of any window.
+     */
+    public int getMaxWindowSeconds() {
+        return buckets.length() - 1;
+    }
+}
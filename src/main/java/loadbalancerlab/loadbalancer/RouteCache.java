@@ -0,0 +1,142 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent cache which maps resource names to the ids of the CacheServers which they were routed to.
+ * Placed in front of RoutingStrategy.findServerId() so that frequently requested resource names skip the lookup.
+ *
+ * The cache is direct-mapped: each resource name can only be held in the slot selected by its hash code, and a new
+ * entry replaces whatever entry was held in that slot. Every entry is tagged with the version of the RoutingStrategy
+ * mapping that it was computed from, so that all entries are invalidated at once when the mapping changes.
+ */
+public class RouteCache {
+
+    /**
+     * The slots of the cache. The number of slots is a power of two.
+     */
+    private AtomicReferenceArray<Entry> slots;
+
+    /**
+     * Mask which is applied to the hash code of a resource name to find its slot.
+     */
+    private int mask;
+
+    /**
+     * The number of lookups which found a valid entry.
+     */
+    private LongAdder hits;
+
+    /**
+     * The number of lookups which did not find a valid entry.
+     */
+    private LongAdder misses;
+
+    /**
+     * An immutable entry of the cache.
+     */
+    private static class Entry {
+
+        /**
+         * The name of the resource.
+         */
+        final String resourceName;
+
+        /**
+         * The id of the CacheServer which the resource is routed to.
+         */
+        final int serverId;
+
+        /**
+         * The version of the RoutingStrategy mapping that the entry was computed from.
+         */
+        final long version;
+
+        Entry( String resourceName, int serverId, long version ) {
+            this.resourceName = resourceName;
+            this.serverId = serverId;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param capacity      The maximum number of entries held by the cache. Rounded up to a power of two.
+     * @throws IllegalArgumentException     Thrown if 'capacity' is not positive.
+     */
+    public RouteCache( int capacity ) throws IllegalArgumentException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive, received " + capacity);
+
+        int numSlots = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+
+        if (numSlots < capacity)
+            numSlots <<= 1;
+
+        slots = new AtomicReferenceArray<>(numSlots);
+        mask = numSlots - 1;
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * Looks up the id of the CacheServer which a resource was routed to.
+     * @param resourceName      The name of the resource.
+     * @param version           The version of the current RoutingStrategy mapping. Entries from any other version are
+     *                          ignored.
+     * @return                  The id of the CacheServer, or -1 if there is no valid entry for the resource.
+     */
+    public int get( String resourceName, long version ) {
+        Entry entry = slots.get(slotOf(resourceName));
+
+        if (entry != null && entry.version == version && entry.resourceName.equals(resourceName)) {
+            hits.increment();
+            return entry.serverId;
+        }
+
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Records the id of the CacheServer which a resource is routed to, replacing the entry in its slot.
+     * @param resourceName      The name of the resource.
+     * @param serverId          The id of the CacheServer.
+     * @param version           The version of the RoutingStrategy mapping that 'serverId' was found with.
+     */
+    public void put( String resourceName, int serverId, long version ) {
+        slots.set(slotOf(resourceName), new Entry(resourceName, serverId, version));
+    }
+
+    /**
+     * Helper method which finds the slot of a resource name.
+     * @param resourceName      The name of the resource.
+     * @return                  The index of the slot.
+     */
+    private int slotOf( String resourceName ) {
+        int hash = resourceName.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @return      The number of slots in the cache.
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return      The number of lookups which found a valid entry.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return      The number of lookups which did not find a valid entry.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,169 @@
+package loadbalancerlab.loadbalancer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Interface for classes which map resource names to CacheServer objects on behalf of the CacheRedistributor class.
+ *
+ * Each CacheServer object owns a number of HashRingAngle objects (or an equivalent unit of weight). Adding and removing
+ * them changes the share of resource names which the CacheServer is responsible for, which is how CacheRedistributor
+ * balances out the load on CacheServer objects.
+ *
+ * Implementations publish their mapping as immutable, versioned snapshots so that findServerId() can be called by
+ * request handling threads while the mapping is being modified.
+ */
+public interface RoutingStrategy {
+
+    /**
+     * Types of routing strategies.
+     * Used to select which RoutingStrategy implementation is used by the load balancer.
+     */
+    enum Type {
+        HASH_RING,      /* Consistent hashing on a ring of HashRingAngle objects (HashRing class) */
+        MAGLEV,         /* Maglev lookup table (MaglevRoutingStrategy class) */
+        JUMP_HASH,      /* Jump consistent hash over weighted buckets (JumpHashRoutingStrategy class) */
+        RENDEZVOUS,     /* Weighted rendezvous hashing driven by capacity factors (RendezvousRoutingStrategy class) */
+    }
+
+    /**
+     * Finds the id of the CacheServer which is responsible for a resource.
+     * @param resourceName      The name of the resource being accessed.
+     * @return                  The id of the CacheServer which is responsible for that resource, or -1 if no
+     *                          CacheServer has been added.
+     */
+    int findServerId( String resourceName );
+
+    /**
+     * Finds the id of the CacheServer which is responsible for a resource, as findServerId() does, without recording
+     * the lookup in any statistics the strategy keeps about requests. Used for bookkeeping lookups which are not
+     * requests.
+     * @param resourceName      The name of the resource.
+     * @return                  The id of the CacheServer which is responsible for that resource, or -1 if no
+     *                          CacheServer has been added.
+     */
+    default int peekServerId( String resourceName ) {
+        return findServerId(resourceName);
+    }
+
+    /**
+     * Finds the ids of distinct CacheServers in order of preference for a resource, starting with the CacheServer
+     * which is returned by findServerId(). For ring based strategies the order is clockwise from the position of the
+     * resource. Writes into a buffer supplied by the caller so that the lookup does not allocate.
+     * @param resourceName      The name of the resource being accessed.
+     * @param output            Array which is filled with CacheServer ids. At most output.length ids are written.
+     * @return                  The number of CacheServer ids which were written into 'output'.
+     */
+    int findServerIds( String resourceName, int[] output );
+
+    /**
+     * Adds a CacheServer with the default number of HashRingAngle objects.
+     * @param serverId      The id of the CacheServer object.
+     * @throws IllegalArgumentException     Thrown if the CacheServer has already been added.
+     */
+    void addServer( int serverId ) throws IllegalArgumentException;
+
+    /**
+     * Removes a CacheServer and all HashRingAngle objects which belong to it.
+     * @param serverId      The id of the CacheServer object.
+     * @throws IllegalArgumentException     Thrown if the CacheServer has not been added.
+     */
+    void removeServer( int serverId ) throws IllegalArgumentException;
+
+    /**
+     * Increases the share of resource names which a CacheServer is responsible for by adding 'numAngles'
+     * HashRingAngle objects to it.
+     * @param serverId      The id of the CacheServer object.
+     * @param numAngles     The number of HashRingAngle objects being added.
+     * @throws IllegalArgumentException     Thrown if the CacheServer has not been added.
+     */
+    void addAngle( int serverId, int numAngles ) throws IllegalArgumentException;
+
+    /**
+     * Decreases the share of resource names which a CacheServer is responsible for by removing 'numAngles'
+     * HashRingAngle objects from it.
+     * @param serverId      The id of the CacheServer object.
+     * @param numAngles     The number of HashRingAngle objects being removed.
+     * @throws IllegalArgumentException     Thrown if the CacheServer has not been added.
+     */
+    void removeAngle( int serverId, int numAngles ) throws IllegalArgumentException;
+
+    /**
+     * Updates the share of resource names of each CacheServer directly from the capacity factors of the CacheServers.
+     * Implementations which are only weighted through addAngle() and removeAngle() return false, in which case the
+     * caller should add and remove HashRingAngle objects instead.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     * @return                  True if the capacity factors have been applied.
+     */
+    default boolean applyCapacityFactors( Map<Integer, Double> capacityFactors ) {
+        return false;
+    }
+
+    /**
+     * Rebalances by moving the hottest parts of the share of overloaded CacheServers to underloaded CacheServers,
+     * based on the lookups which have been counted since the mapping was last changed. Implementations which do not
+     * count lookups return false, in which case the caller should add and remove HashRingAngle objects instead.
+     * @param capacityFactors   A table mapping CacheServer ids to their capacity factors.
+     * @return                  True if the CacheServers have been rebalanced.
+     */
+    default boolean rebalanceHotArcs( Map<Integer, Double> capacityFactors ) {
+        return false;
+    }
+
+    /**
+     * Temporarily takes a CacheServer out of the mapping without removing its HashRingAngle objects, so that its
+     * resource names are mapped to the following CacheServers until unmaskServer() is called. Implementations which
+     * cannot mask CacheServers return false, in which case the caller should route around the CacheServer itself.
+     * @param serverId      The id of the CacheServer object.
+     * @return              True if the CacheServer is masked.
+     */
+    default boolean maskServer( int serverId ) {
+        return false;
+    }
+
+    /**
+     * Restores a CacheServer which was masked by maskServer() to the mapping, with the HashRingAngle objects it owns.
+     * @param serverId      The id of the CacheServer object.
+     * @return              True if the CacheServer is no longer masked.
+     */
+    default boolean unmaskServer( int serverId ) {
+        return false;
+    }
+
+    /**
+     * Starts a batch of modifications. Changes made before the matching call to commitBatch() are published together.
+     */
+    void beginBatch();
+
+    /**
+     * Ends a batch of modifications started by beginBatch() and publishes the changes.
+     */
+    void commitBatch();
+
+    /**
+     * @return      The version of the most recently published mapping. Incremented every time a change is published.
+     */
+    long getVersion();
+
+    /**
+     * Records a snapshot of the HashRingAngle objects owned by each CacheServer for a particular moment in time.
+     * @param currentTime   The current time, in seconds since 1-Jan-1970.
+     */
+    void recordServerAngles( int currentTime );
+
+    /**
+     * @return      The history of the HashRingAngle objects owned by each CacheServer.
+     */
+    AngleHistory getAngleHistory();
+
+    /**
+     * Reconstructs a full snapshot for every recorded moment in time. Should only be used for short histories; use
+     * getAngleHistory() to process long histories incrementally.
+     * @return      A table which maps timestamps to snapshots of the HashRingAngle objects owned by each CacheServer at
+     *              those times.
+     */
+    default SortedMap<Integer, Map<Integer, List<HashRingAngle>>> getHashRingAngleHistory() {
+        return getAngleHistory().toSnapshots();
+    }
+}
@@ -1,10 +1,18 @@
 package loadbalancerlab.loadbalancer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A data class which is used to store information on CacheServer objects for the loadbalancerlab.loadbalancer package.
  */
 public class ServerInfo {
 
+    /**
+     * Controls the weight of the latest latency in 'latencyEwma' field. Higher weights track changes in the latency
+     * of the CacheServer faster but are noisier.
+     */
+    static final double latencyEwmaWeight = 0.2;
+
     /**
      * The id of the CacheServer that this object concerns.
      */
@@ -21,6 +29,34 @@ public class ServerInfo {
      */
     double cf;
 
+    /**
+     * The number of requests which have been forwarded to the CacheServer by the load balancer and have not completed.
+     */
+    final AtomicInteger inFlightRequests;
+
+    /**
+     * Set to true when a request to the CacheServer failed, so that requests are routed around it until the
+     * CacheServerManager reports the CacheServer again.
+     */
+    volatile boolean suspect;
+
+    /**
+     * Set to true while the CacheServer is masked in the RoutingStrategy because its circuit breaker is open. Only
+     * accessed by the thread which calls CacheRedistributor.updateEjectedServers().
+     */
+    boolean ejected;
+
+    /**
+     * Circuit breaker which tracks the failures and slow responses of the CacheServer.
+     */
+    CircuitBreaker circuitBreaker;
+
+    /**
+     * Exponentially weighted moving average of the latencies of successful requests to the CacheServer, in
+     * milliseconds. 0 until the first latency is recorded.
+     */
+    volatile double latencyEwma;
+
     /**
      * Constructor
      * @param serverId      The id of the CacheServer this object concerns.
@@ -31,6 +67,8 @@ public class ServerInfo {
         this.serverId = serverId;
         this.port = port;
         this.cf = cf;
+        inFlightRequests = new AtomicInteger();
+        circuitBreaker = new CircuitBreaker();
     }
 
     /**
@@ -64,4 +102,80 @@ public class ServerInfo {
     public void setCapacityFactor( double cf ) {
         this.cf = cf;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return      The number of requests which have been forwarded to the CacheServer and have not completed.
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * Records that a request has been forwarded to the CacheServer.
+     */
+    public void incrementInFlightRequests() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    /**
+     * Records that a request which was forwarded to the CacheServer has completed.
+     */
+    public void decrementInFlightRequests() {
+        inFlightRequests.decrementAndGet();
+    }
+
+    /**
+     * @return      True if a request to the CacheServer has failed since the CacheServerManager last reported it.
+     */
+    public boolean isSuspect() {
+        return suspect;
+    }
+
+    /**
+     * @return      True if the CacheServer is masked in the RoutingStrategy because its circuit breaker is open.
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * @return      The circuit breaker of the CacheServer.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @return      The exponentially weighted moving average of the latencies of successful requests to the
+     *              CacheServer, in milliseconds, or 0 if no latency has been recorded.
+     */
+    public double getLatencyEwma() {
+        return latencyEwma;
+    }
+
+    /**
+     * Adds the latency of a successful request to the moving average. The first latency becomes the average.
+     * @param latencyMillis     The number of milliseconds the request took.
+     */
+    public synchronized void recordLatency( long latencyMillis ) {
+        if (latencyEwma == 0) {
+            latencyEwma = latencyMillis;
+        } else {
+            latencyEwma += latencyEwmaWeight * (latencyMillis - latencyEwma);
+        }
+    }
+
+    /**
+     * @param suspect   True if requests should be routed around the CacheServer.
+     */
+    public void setSuspect( boolean suspect ) {
+        this.suspect = suspect;
+    }
+
+    /**
+     * @param ejected   True if the CacheServer has been masked in the RoutingStrategy.
+     */
+    public void setEjected( boolean ejected ) {
+        this.ejected = ejected;
+    }
+}
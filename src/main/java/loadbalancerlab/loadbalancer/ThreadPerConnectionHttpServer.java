@@ -0,0 +1,182 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.HttpException;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.DefaultBHttpServerConnection;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.protocol.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A blocking Http server which serves each connection with a task submitted to a given ExecutorService.
+ *
+ * apache.http.impl.bootstrap.HttpServer always serves connections with its own pool of platform threads. This class
+ * does the same work with httpcore's HttpService, but lets the caller decide which threads serve connections, so that
+ * connections can be served by virtual threads. Connections are RelayServerConnection objects, so that relayed
+ * responses whose bodies are never written still release their connections to CacheServer objects.
+ */
+class ThreadPerConnectionHttpServer {
+
+    /**
+     * The address which the server listens on.
+     */
+    private InetAddress localAddress;
+
+    /**
+     * The port which the server listens on.
+     */
+    private int port;
+
+    /**
+     * Socket options which are applied to accepted connections.
+     */
+    private SocketConfig socketConfig;
+
+    /**
+     * HttpService object which reads requests from connections and passes them to the registered handler.
+     */
+    private HttpService httpService;
+
+    /**
+     * ExecutorService which runs one task per connection.
+     */
+    private ExecutorService workerExecutor;
+
+    /**
+     * The server socket which accepts connections. Null until start() is called.
+     */
+    private ServerSocket serverSocket;
+
+    /**
+     * Platform thread which accepts connections.
+     */
+    private Thread listenerThread;
+
+    /**
+     * The connections which are currently open, so that they can be closed on shutdown.
+     */
+    private Set<DefaultBHttpServerConnection> connections;
+
+    /**
+     * Constructor
+     * @param localAddress      The address which the server listens on.
+     * @param port              The port which the server listens on.
+     * @param socketConfig      Socket options which are applied to accepted connections.
+     * @param httpProcessor     HttpProcessor which is applied to requests and responses.
+     * @param handlerMapper     HttpRequestHandlerMapper which selects the handler of each request.
+     * @param workerExecutor    ExecutorService which serves connections. Shut down by shutdown().
+     */
+    ThreadPerConnectionHttpServer( InetAddress localAddress, int port, SocketConfig socketConfig,
+                                   HttpProcessor httpProcessor, HttpRequestHandlerMapper handlerMapper,
+                                   ExecutorService workerExecutor ) {
+        this.localAddress = localAddress;
+        this.port = port;
+        this.socketConfig = socketConfig;
+        this.workerExecutor = workerExecutor;
+        connections = ConcurrentHashMap.newKeySet();
+        httpService = new HttpService(httpProcessor, DefaultConnectionReuseStrategy.INSTANCE,
+                                      DefaultHttpResponseFactory.INSTANCE, handlerMapper);
+    }
+
+    /**
+     * Binds the server socket and starts accepting connections.
+     * @throws IOException      Thrown if the server socket cannot be bound.
+     */
+    void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(socketConfig.isSoReuseAddress());
+        serverSocket.bind(new java.net.InetSocketAddress(localAddress, port), socketConfig.getBacklogSize());
+        listenerThread = new Thread(this::acceptConnections, "ThreadPerConnectionHttpServer-listener");
+        listenerThread.start();
+    }
+
+    /**
+     * @return      The port which the server is listening on, or -1 if it has not been started.
+     */
+    int getLocalPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    /**
+     * Helper method which accepts connections until the server socket is closed.
+     */
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setSoTimeout(socketConfig.getSoTimeout());
+                socket.setTcpNoDelay(socketConfig.isTcpNoDelay());
+                DefaultBHttpServerConnection conn = RelayServerConnection.create(socket);
+                connections.add(conn);
+                workerExecutor.execute(() -> serveConnection(conn));
+            } catch (RejectedExecutionException e) {
+
+                /* The server is shutting down */
+                break;
+            } catch (IOException e) {
+                if (!serverSocket.isClosed())
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method which handles requests on a connection until it is closed.
+     * @param conn      The connection.
+     */
+    private void serveConnection( DefaultBHttpServerConnection conn ) {
+        HttpContext context = new BasicHttpContext();
+
+        try {
+            while (!Thread.currentThread().isInterrupted() && conn.isOpen())
+                httpService.handleRequest(conn, context);
+        } catch (ConnectionClosedException | SocketTimeoutException e) {
+
+            /* The client closed the connection or left it idle */
+        } catch (IOException | HttpException e) {
+            if (conn.isOpen())
+                e.printStackTrace();
+        } finally {
+            connections.remove(conn);
+
+            try {
+                conn.shutdown();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes open connections and shuts down the ExecutorService.
+     */
+    void shutdown() {
+        try {
+            if (serverSocket != null)
+                serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        workerExecutor.shutdownNow();
+
+        for (DefaultBHttpServerConnection conn : connections) {
+            try {
+                conn.shutdown();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base class for RoutingStrategy implementations which do not place HashRingAngle objects on a ring, but instead
+ * give each CacheServer an integer weight and build a lookup structure from the weights.
+ *
+ * Each HashRingAngle which is added to or removed from a CacheServer through addAngle() and removeAngle() is one unit
+ * of weight, and the weights are bounded by the same limits as the number of HashRingAngle objects on a HashRing.
+ * Modifications are serialized by a write lock and the lookup structure is rebuilt once per batch.
+ */
+public abstract class WeightedRoutingStrategy implements RoutingStrategy {
+
+    /**
+     * Controls the maximum weight of a CacheServer object.
+     */
+    static int maxWeight;
+
+    /**
+     * Controls the minimum weight of a CacheServer object.
+     */
+    static int minWeight;
+
+    /**
+     * Controls the weight that CacheServer objects are given when they are added.
+     */
+    static int defaultWeight;
+
+    /**
+     * The number of positions on the virtual ring which is used to express the share of each CacheServer as
+     * HashRingAngle objects in 'angleHistory'.
+     */
+    static long ringSize;
+
+    /**
+     * The HashFunction object which is used to hash resource names.
+     */
+    static HashFunction hashFunction;
+
+    /**
+     * A table which maps CacheServer ids to their weights. Only modified while the write lock is held.
+     */
+    SortedMap<Integer, Integer> weightsByServerId;
+
+    /**
+     * History of the share of each CacheServer, expressed as HashRingAngle objects.
+     */
+    AngleHistory angleHistory;
+
+    /**
+     * Lock which is held by threads which are modifying 'weightsByServerId' field.
+     */
+    private ReentrantLock writeLock;
+
+    /**
+     * Set to true when 'weightsByServerId' has been modified since the last lookup structure was published.
+     */
+    private boolean modified;
+
+    /**
+     * The version of the most recently published lookup structure.
+     */
+    private long publishedVersion;
+
+    /**
+     * Method used to configure static variables.
+     * @param config    a Config object used to configure various classes.
+     */
+    public static void configure( Config config ) {
+        maxWeight = config.getMaxAnglesPerServer();
+        minWeight = config.getMinAnglesPerServer();
+        defaultWeight = config.getDefaultAnglesPerServer();
+        ringSize = config.getRingSize();
+        hashFunction = config.getHashFunction();
+    }
+
+    /**
+     * Constructor
+     */
+    public WeightedRoutingStrategy() {
+        weightsByServerId = new TreeMap<>();
+        angleHistory = new AngleHistory();
+        writeLock = new ReentrantLock();
+    }
+
+    @Override
+    public void beginBatch() {
+        writeLock.lock();
+    }
+
+    @Override
+    public void commitBatch() {
+        try {
+            if (writeLock.getHoldCount() == 1 && modified) {
+                publish(Collections.unmodifiableSortedMap(new TreeMap<>(weightsByServerId)), ++publishedVersion);
+                modified = false;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void addServer( int serverId ) {
+        beginBatch();
+
+        try {
+            if (weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is already recorded in " + getClass().getSimpleName());
+
+            weightsByServerId.put(serverId, 0);
+            addAngle(serverId, defaultWeight);
+            modified = true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void removeServer( int serverId ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("Server with id = " + serverId + " is not recorded in " + getClass().getSimpleName());
+
+            int weight = weightsByServerId.remove(serverId);
+
+            for (int i = 0; i < weight; i++)
+                weightUnitRemoved(serverId);
+
+            modified = true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void addAngle( int serverId, int numAngles ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+
+            for (int i = 0; i < numAngles; i++) {
+                int weight = weightsByServerId.get(serverId);
+
+                if (weight >= maxWeight)
+                    break;
+
+                weightsByServerId.put(serverId, weight + 1);
+                weightUnitAdded(serverId);
+                modified = true;
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void removeAngle( int serverId, int numAngles ) {
+        beginBatch();
+
+        try {
+            if (!weightsByServerId.containsKey(serverId))
+                throw new IllegalArgumentException("entry for server id " + serverId + " does not exist");
+
+            for (int i = 0; i < numAngles; i++) {
+                int weight = weightsByServerId.get(serverId);
+
+                if (weight <= minWeight)
+                    break;
+
+                weightsByServerId.put(serverId, weight - 1);
+                weightUnitRemoved(serverId);
+                modified = true;
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Records the share of each CacheServer for a particular moment in time into 'angleHistory' field.
+     * The share of each CacheServer is expressed as HashRingAngle objects as described in layOutArcs().
+     * @param currentTime   The current time, in seconds since 1-Jan-1970.
+     */
+    @Override
+    public void recordServerAngles( int currentTime ) {
+        beginBatch();
+
+        try {
+            /* Snapshots which are not later than the previous frame are ignored */
+            angleHistory.recordSnapshot(currentTime, layOutArcs(weightsByServerId, ringSize));
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Expresses the share of resource names of each CacheServer as HashRingAngle objects so that weighted strategies
+     * can be processed in the same way as snapshots of a HashRing.
+     *
+     * The weights are laid out as contiguous arcs of a virtual ring with 'numPositions' positions, in ascending order
+     * of server id. Each arc is proportional to the weight of its CacheServer and holds one HashRingAngle per unit of
+     * weight (rounded to the nearest unit).
+     * @param weights           A table mapping CacheServer ids to their weights.
+     * @param numPositions      The number of positions on the virtual ring.
+     * @return                  A table mapping CacheServer ids to the HashRingAngle objects which represent their
+     *                          share.
+     */
+    static Map<Integer, List<HashRingAngle>> layOutArcs( SortedMap<Integer, ? extends Number> weights, long numPositions ) {
+        double totalWeight = 0;
+
+        for (Number weight : weights.values())
+            totalWeight += weight.doubleValue();
+
+        Map<Integer, List<HashRingAngle>> copyTable = new HashMap<>();
+        double cumulativeWeight = 0;
+
+        for (Map.Entry<Integer, ? extends Number> entry : weights.entrySet()) {
+            int serverId = entry.getKey();
+            double weight = entry.getValue().doubleValue();
+            long numUnits = Math.round(weight);
+            List<HashRingAngle> angleList = new ArrayList<>();
+
+            if (totalWeight > 0) {
+                long arcStart = (long) (cumulativeWeight * numPositions / totalWeight);
+                cumulativeWeight += weight;
+                long arcEnd = (long) (cumulativeWeight * numPositions / totalWeight);
+
+                /* Computed in floating point so that large rings do not overflow */
+                for (long unit = 1; unit <= numUnits; unit++)
+                    angleList.add(new HashRingAngle(serverId, arcStart + (long) ((double) unit * (arcEnd - arcStart) / numUnits) - 1));
+            }
+
+            copyTable.put(serverId, angleList);
+        }
+
+        return copyTable;
+    }
+
+    @Override
+    public AngleHistory getAngleHistory() {
+        return angleHistory;
+    }
+
+    @Override
+    public long getVersion() {
+        return getPublishedVersion();
+    }
+
+    /**
+     * Called while the write lock is held when the weight of a CacheServer has been increased by one.
+     * @param serverId      The id of the CacheServer.
+     */
+    protected void weightUnitAdded( int serverId ) { }
+
+    /**
+     * Called while the write lock is held when the weight of a CacheServer has been decreased by one, including once
+     * per unit of weight when the CacheServer is removed.
+     * @param serverId      The id of the CacheServer.
+     */
+    protected void weightUnitRemoved( int serverId ) { }
+
+    /**
+     * Builds and publishes a new lookup structure. Called once per batch while the write lock is held.
+     * @param weights       An immutable copy of the weight of each CacheServer.
+     * @param version       The version of the lookup structure being published.
+     */
+    protected abstract void publish( SortedMap<Integer, Integer> weights, long version );
+
+    /**
+     * @return      The version of the lookup structure which is currently used by findServerId().
+     */
+    protected abstract long getPublishedVersion();
+
+    /**
+     * Mixes the bits of a value so that it is spread evenly over all 64 bits.
+     * Uses the finalizer of the SplitMix64 generator.
+     * @param value     The value being mixed.
+     * @return          The mixed value.
+     */
+    static long mix( long value ) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,29 +1,25 @@
 package loadbalancerlab.shared;
 
+import loadbalancerlab.loadbalancer.AngleHistory;
 import loadbalancerlab.loadbalancer.HashRingAngle;
 
 import java.util.*;
 
 /**
- * Data processing class for processing snapshots of HashRingAngle instances over time into csv-printable information.
+ * Data processing class for processing the history of HashRingAngle instances over time into csv-printable
+ * information.
+ *
+ * The history is replayed once, event by event. The number of HashRingAngle objects and the total sweep angle of each
+ * CacheServer are updated incrementally as HashRingAngle objects are added and removed, and are captured at the end of
+ * every frame, so the cost is proportional to the number of events rather than to the number of HashRingAngle objects
+ * times the number of timestamps.
  */
 public class AngleDataProcessor {
 
-    /**
-     * A table holding snapshots of the mapping of CacheServers to the HashRingAngles they own by time.
-     *
-     * The outer table's keys are timestamps (seconds since 1-Jan-1970).
-     * The outer table's values are a nested table.
-     *
-     * The nested table's keys are CacheServer ids.
-     * The nested table's values are a list of HashRingAngle objects which belong to the CacheServer with that id.
-     */
-    SortedMap<Integer, Map<Integer, List<HashRingAngle>>> angleHistory;
-
     /**
      * The number of positions on the associated HashRing object.
      */
-    int hashRingSize;
+    long hashRingSize;
 
     /**
      * An array of CacheServer ids.
@@ -35,187 +31,219 @@ public class AngleDataProcessor {
      */
     Integer[] timestamps;
 
+    /**
+     * The number of HashRingAngle objects owned by each CacheServer at each timestamp. The n-th table holds the values
+     * for the n-th element of 'timestamps'. CacheServers which did not exist at that time have no entry.
+     */
+    List<Map<Integer, Integer>> numAnglesHistory;
+
+    /**
+     * The total sweep angle of the HashRingAngle objects owned by each CacheServer at each timestamp. The n-th table
+     * holds the values for the n-th element of 'timestamps'. CacheServers which did not exist at that time have no
+     * entry.
+     */
+    List<Map<Integer, Long>> sweepAngleHistory;
+
     /**
      * Constructor
      * @param angleHistory  A table mapping time (seconds since 1-Jan-1970) to a map which holds a snapshot of
      *                      server ids mapping to the HashRingAngle instances belonging to that server at that moment
      *                      in time.
+     * @param hashRingSize  The number of positions on the associated HashRing object.
      */
-    public AngleDataProcessor( SortedMap<Integer, Map<Integer, List<HashRingAngle>>> angleHistory, int hashRingSize ) {
-        this.angleHistory = angleHistory;
-        this.hashRingSize = hashRingSize;
-
-        /* Traverse through angle history and compile the ids of every server that was active at one point */
-        Set<Integer> serverIdSet = new HashSet<>();
-
-        for (Map<Integer, List<HashRingAngle>> snapshot : angleHistory.values()) {
-            for (Integer serverId : snapshot.keySet()) {
-                serverIdSet.add(serverId);
-            }
-        }
-
-        /* Convert the set of server ids into an array and sort it in ascending order */
-        serverIds = serverIdSet.toArray(new Integer[serverIdSet.size()]);
-        Arrays.sort(serverIds);
-
-        /* Compile an array of timestamps for serverIds in ascending order */
-        timestamps = new Integer[angleHistory.size()];
-
-        int i = 0;
-        for (int timestamp : angleHistory.keySet()) {
-            timestamps[i++] = timestamp;
-        }
+    public AngleDataProcessor( SortedMap<Integer, Map<Integer, List<HashRingAngle>>> angleHistory, long hashRingSize ) {
+        this(AngleHistory.fromSnapshots(angleHistory), hashRingSize);
     }
 
     /**
-     * Processes angleHistory field into a 2d String array representing a csv printout which indicates the number of
-     * HashRingAngle objects belonging to each CacheServer by time.
-     * @return      Returns a 2d string array holding information about the number of HashRingAngle objects for each
-     *              CacheServer at each point in time.
-     *
-     *              The top row lists all CacheServer ids in ascending order from left to right.
-     *              The leftmost column lists all timestamps in ascending order from top to bottom.
+     * Constructor
+     * @param angleHistory  An AngleHistory object holding the changes to the HashRingAngle instances belonging to each
+     *                      server over time.
+     * @param hashRingSize  The number of positions on the associated HashRing object.
      */
-    public String[][] getNumAnglesByTime() {
+    public AngleDataProcessor( AngleHistory angleHistory, long hashRingSize ) {
+        this.hashRingSize = hashRingSize;
+        numAnglesHistory = new ArrayList<>();
+        sweepAngleHistory = new ArrayList<>();
 
-        /* Create a mapping of index values to server ids */
-        Map<Integer, Integer> serverIdTable = new HashMap<>();
+        List<Integer> timestampList = new ArrayList<>();
+        Set<Integer> serverIdSet = new HashSet<>();
 
-        for (int i = 0; i < serverIds.length; i++)
-            serverIdTable.put(i, serverIds[i]);
+        /* Tallies for the current moment in time which are updated as the history is replayed */
+        Map<Integer, Integer> numAngles = new HashMap<>();
+        Map<Integer, Long> sweepAngles = new HashMap<>();
 
-        /* Initialize output graph */
-        String[][] outputGraph = new String[angleHistory.size() + 1][serverIds.length + 1];
+        /* Maps the positions of HashRingAngle objects to the ids of the CacheServers which own them, in the order in
+           which they were added. The first CacheServer in each list is credited with the sweep angle of the position */
+        TreeMap<Long, List<Integer>> ring = new TreeMap<>();
 
-        /* Fill in header row */
-        outputGraph[0][0] = "";
+        angleHistory.replay(new AngleHistory.Listener() {
+            @Override
+            public void serverAdded( int serverId ) {
+                numAngles.putIfAbsent(serverId, 0);
+                sweepAngles.putIfAbsent(serverId, 0L);
+            }
 
-        for (int col = 0; col < serverIds.length; col++)
-            outputGraph[0][col + 1] = String.valueOf(serverIds[col]);
+            @Override
+            public void serverRemoved( int serverId ) {
+                numAngles.remove(serverId);
+                sweepAngles.remove(serverId);
+            }
 
-        Integer[] timestamps = angleHistory.keySet().toArray(new Integer[angleHistory.size()]);
+            @Override
+            public void angleAdded( int serverId, long angle ) {
+                serverAdded(serverId);
+                numAngles.merge(serverId, 1, Integer::sum);
 
-        /* Fill in rest of graph */
-        for (int row = 1; row < outputGraph.length; row++) {
+                List<Integer> owners = ring.get(angle);
 
-            /* Fill in timestamp in leftmost column */
-            int timestamp = timestamps[row - 1];
-            outputGraph[row][0] = String.valueOf(timestamp);
-            Map<Integer, List<HashRingAngle>> snapShot = angleHistory.get(timestamp);
+                /* A HashRingAngle at an occupied position does not change any sweep angle */
+                if (owners != null) {
+                    owners.add(serverId);
+                    return;
+                }
 
-            /* Fill in other columns */
-            for (int col = 1; col < outputGraph[0].length; col++) {
-                int serverId = serverIdTable.get(col - 1);
+                if (!ring.isEmpty()) {
 
-                if (snapShot.containsKey(serverId)) {
-                    outputGraph[row][col] = String.valueOf(snapShot.get(serverId).size());
+                    /* The new HashRingAngle takes over the part of the arc of its successor which precedes it */
+                    long sweep = Math.floorMod(angle - predecessorOf(angle), hashRingSize);
+                    sweepAngles.merge(serverId, sweep, Long::sum);
+                    sweepAngles.merge(ring.get(successorOf(angle)).get(0), -sweep, Long::sum);
                 } else {
-                    outputGraph[row][col] = "";
+                    sweepAngles.merge(serverId, hashRingSize, Long::sum);
                 }
+
+                owners = new ArrayList<>();
+                owners.add(serverId);
+                ring.put(angle, owners);
             }
-        }
 
-        return outputGraph;
-    }
+            @Override
+            public void angleRemoved( int serverId, long angle ) {
+                numAngles.merge(serverId, -1, Integer::sum);
 
-    /**
-     * Processes angleHistory field into a field counting the total sweep angle of the HashRingAngle instances
-     * associated with each server as a function of time.
-     * @return      Returns a 2d String array representation of a csv. Holds information about the total sweep
-     *              angle for each cache server as a function of time.
-     *
-     *              The topmost row lists all CacheServer ids in ascending order from left to right.
-     *              The leftmost column lists all timestamps in ascending order from top to bottom.
-     */
-    public String[][] getSweepAngleByTime() {
+                List<Integer> owners = ring.get(angle);
+                int idx = owners.indexOf(serverId);
+                owners.remove(idx);
 
-        /* For each snapshot in HashRingAngle.angleHistory */
-        SortedMap<Integer, Map<Integer, Integer>> sweepAngleHistory = new TreeMap<>();
+                if (!owners.isEmpty()) {
 
+                    /* If the credited CacheServer has changed, move the sweep angle of the position to the new one */
+                    if (idx == 0) {
+                        long sweep = ring.size() == 1 ? hashRingSize : Math.floorMod(angle - predecessorOf(angle), hashRingSize);
+                        sweepAngles.merge(serverId, -sweep, Long::sum);
+                        sweepAngles.merge(owners.get(0), sweep, Long::sum);
+                    }
 
-        for (Map.Entry<Integer, Map<Integer, List<HashRingAngle>>> entry : angleHistory.entrySet()) {
-            Integer timestamp = entry.getKey();
-            Map<Integer, List<HashRingAngle>> snapshot = entry.getValue();
+                    return;
+                }
 
-            /* Find lowest key value of snapshot */
-            Set<Integer> anglePositions = snapshot.keySet();
+                ring.remove(angle);
 
-            /* Convert snapshot into a sorted map 'hashRingAngleTable' which maps HashRingAngle position to the HashRingAngle
-               instance */
-            SortedMap<Integer, HashRingAngle> hashRingAngleTable = new TreeMap<>();
+                if (!ring.isEmpty()) {
 
-            for (List<HashRingAngle> angles : snapshot.values()) {
-                for (HashRingAngle angle : angles) {
-                    hashRingAngleTable.put(angle.getAngle(), angle);
+                    /* The successor of the removed HashRingAngle takes over its arc */
+                    long sweep = Math.floorMod(angle - predecessorOf(angle), hashRingSize);
+                    sweepAngles.merge(serverId, -sweep, Long::sum);
+                    sweepAngles.merge(ring.get(successorOf(angle)).get(0), sweep, Long::sum);
+                } else {
+                    sweepAngles.merge(serverId, -hashRingSize, Long::sum);
                 }
             }
 
-            /* Traverse through each entry in 'hashRingAngleTable' and record how much angle is allocated to each server */
-            int prevPos = 0;
-            int currentPos;
-            int firstPosition = hashRingAngleTable.firstKey();
-            int lastPosition = hashRingAngleTable.lastKey();
-
-            Map<Integer, Integer> totalSweepAngleTalliesForSnapshot = new HashMap<>();
+            @Override
+            public void frameEnded( int timestamp ) {
+                timestampList.add(timestamp);
+                numAnglesHistory.add(new HashMap<>(numAngles));
+                sweepAngleHistory.add(new HashMap<>(sweepAngles));
+                serverIdSet.addAll(numAngles.keySet());
+            }
 
-            /* Initialize entry for all CacheServer ids */
-            for (Integer serverId : snapshot.keySet()) {
-                totalSweepAngleTalliesForSnapshot.put(serverId, 0);
+            /**
+             * Finds the position of the HashRingAngle immediately counter-clockwise of a position, wrapping around to
+             * the highest position. The ring must not be empty.
+             * @param angle     A position on the ring.
+             * @return          The position of the preceding HashRingAngle.
+             */
+            private long predecessorOf( long angle ) {
+                Long predecessor = ring.lowerKey(angle);
+                return predecessor != null ? predecessor : ring.lastKey();
             }
 
-            for (Map.Entry<Integer, HashRingAngle> angleEntry : hashRingAngleTable.entrySet()) {
-                HashRingAngle angle = angleEntry.getValue();
-                int serverId = angle.getServerId();
-                int currentSweepAngleForServer = totalSweepAngleTalliesForSnapshot.get(serverId);
-                currentPos = angleEntry.getKey();
+            /**
+             * Finds the position of the HashRingAngle immediately clockwise of a position, wrapping around to the
+             * lowest position. The ring must not be empty.
+             * @param angle     A position on the ring.
+             * @return          The position of the following HashRingAngle.
+             */
+            private long successorOf( long angle ) {
+                Long successor = ring.higherKey(angle);
+                return successor != null ? successor : ring.firstKey();
+            }
+        });
 
-                if (angleEntry.getKey() == lastPosition) {
+        /* Convert the set of server ids into an array and sort it in ascending order */
+        serverIds = serverIdSet.toArray(new Integer[serverIdSet.size()]);
+        Arrays.sort(serverIds);
 
-                    /* If the angle is the last angle in the hash ring */
-                    totalSweepAngleTalliesForSnapshot.put(serverId, currentSweepAngleForServer + (currentPos - prevPos));
-                    HashRingAngle firstAngle = hashRingAngleTable.get(firstPosition);
-                    int firstAngleServerId = firstAngle.getServerId();
-                    int firstAngleServerCurrentSweepAngle = totalSweepAngleTalliesForSnapshot.get(firstAngleServerId);
-                    totalSweepAngleTalliesForSnapshot.put(firstAngleServerId, firstAngleServerCurrentSweepAngle + (hashRingSize - currentPos));
-                } else {
+        /* Compile an array of timestamps in ascending order */
+        timestamps = timestampList.toArray(new Integer[timestampList.size()]);
+    }
 
-                    /* Add the sweep angle from the previous position to the current position */
-                    totalSweepAngleTalliesForSnapshot.put(serverId, currentSweepAngleForServer + (currentPos - (prevPos + 1) + 1));
-                    int after = totalSweepAngleTalliesForSnapshot.get(serverId);
-                    prevPos = currentPos;
-                }
-            }
+    /**
+     * Processes the angle history into a 2d String array representing a csv printout which indicates the number of
+     * HashRingAngle objects belonging to each CacheServer by time.
+     * @return      Returns a 2d string array holding information about the number of HashRingAngle objects for each
+     *              CacheServer at each point in time.
+     *
+     *              The top row lists all CacheServer ids in ascending order from left to right.
+     *              The leftmost column lists all timestamps in ascending order from top to bottom.
+     */
+    public String[][] getNumAnglesByTime() {
+        return toCsvTable(numAnglesHistory);
+    }
 
-            sweepAngleHistory.put(timestamp, totalSweepAngleTalliesForSnapshot);
-        }
+    /**
+     * Processes the angle history into a field counting the total sweep angle of the HashRingAngle instances
+     * associated with each server as a function of time.
+     * @return      Returns a 2d String array representation of a csv. Holds information about the total sweep
+     *              angle for each cache server as a function of time.
+     *
+     *              The topmost row lists all CacheServer ids in ascending order from left to right.
+     *              The leftmost column lists all timestamps in ascending order from top to bottom.
+     */
+    public String[][] getSweepAngleByTime() {
+        return toCsvTable(sweepAngleHistory);
+    }
 
-        /* Convert 'sweepAngleHistory' data into a 2d String representation of a CSV file */
-        String[][] outputString = new String[sweepAngleHistory.size() + 1][serverIds.length + 1];
+    /**
+     * Helper method which converts a value for each CacheServer at each timestamp into a 2d String representation of a
+     * CSV file.
+     * @param history   A list holding a table for each timestamp which maps CacheServer ids to values.
+     * @return          The topmost row lists all CacheServer ids in ascending order from left to right.
+     *                  The leftmost column lists all timestamps in ascending order from top to bottom.
+     *                  Cells of CacheServers which did not exist at a timestamp are empty.
+     */
+    private String[][] toCsvTable( List<? extends Map<Integer, ? extends Number>> history ) {
+        String[][] outputString = new String[timestamps.length + 1][serverIds.length + 1];
 
         /* Fill out header row */
         outputString[0][0] = "";
+
         for (int col = 1; col < outputString[0].length; col++)
             outputString[0][col] = String.valueOf(serverIds[col - 1]);
 
         /* Fill out other rows */
         for (int row = 1; row < outputString.length; row++) {
-            int timestamp = timestamps[row - 1];
 
             /* Fill out timestamp column */
-            outputString[row][0] = String.valueOf(timestamp);
-
-            Map<Integer, Integer> snapshot = sweepAngleHistory.get(timestamp);
+            outputString[row][0] = String.valueOf(timestamps[row - 1]);
+            Map<Integer, ? extends Number> snapshot = history.get(row - 1);
 
             /* Fill out other columns */
             for (int col = 1; col < outputString[0].length; col++) {
-                int serverId = serverIds[col - 1];
-
-                if (snapshot.containsKey(serverId)) {
-                    int sweepAngle = snapshot.get(serverId);
-                    outputString[row][col] = String.valueOf(sweepAngle);
-                } else {
-                    outputString[row][col] = "";
-                }
+                Number value = snapshot.get(serverIds[col - 1]);
+                outputString[row][col] = value != null ? String.valueOf(value) : "";
             }
         }
 
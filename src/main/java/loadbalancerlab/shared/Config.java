@@ -1,8 +1,10 @@
 package loadbalancerlab.shared;
 
 import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.loadbalancer.CacheRedistributor;
 import loadbalancerlab.loadbalancer.HashFunction;
 import loadbalancerlab.loadbalancer.MurmurHashFunctionImpl;
+import loadbalancerlab.loadbalancer.RoutingStrategy;
 
 /**
  * Used to configure various classes throughout this project.
@@ -15,6 +17,30 @@ public class Config {
      */
     private HttpClientFactory httpClientFactory;
 
+    /**
+     * Configuration for HttpClientFactory class.
+     * The maximum number of pooled keep-alive connections from the load balancer to a single CacheServer object.
+     */
+    private int httpPoolMaxPerRoute;
+
+    /**
+     * Configuration for HttpClientFactory class.
+     * The maximum number of pooled keep-alive connections from the load balancer to all CacheServer objects.
+     */
+    private int httpPoolMaxTotal;
+
+    /**
+     * Configuration for HttpClientFactory class.
+     * The number of seconds after which an idle pooled connection is closed.
+     */
+    private int httpPoolIdleTimeout;
+
+    /**
+     * Configuration for HttpClientFactory class.
+     * The number of milliseconds a request waits for a pooled connection before it fails.
+     */
+    private int httpPoolLeaseTimeout;
+
     /* Start of HashRing class configurations */
     /**
      * Configuration for HashRing class.
@@ -38,7 +64,14 @@ public class Config {
      * Configuration for HashRing class.
      * The number of positions in a HashRing object.
      */
-    private int ringSize;
+    private long ringSize;
+
+    /**
+     * Configuration for HashRing class.
+     * The largest number of positions for which a HashRing keeps a FreePositionIndex of its unoccupied positions.
+     * Larger HashRing objects select positions by retrying random positions, which rarely collide.
+     */
+    private long freePositionIndexMaxRingSize;
 
     /**
      * Configuration for HashRing class.
@@ -47,8 +80,34 @@ public class Config {
      */
     private HashFunction hashFunction;
 
+    /**
+     * Configuration for AngleHistory class.
+     * The number of seconds of HashRingAngle history which is retained. The history is never trimmed if set to 0.
+     */
+    private int angleHistoryRetention;
+
     /* End of HashRing class configurations */
 
+    /**
+     * Configuration for LoadBalancerRunnable class.
+     * The type of RoutingStrategy which is used to map resource names to CacheServer objects.
+     */
+    private RoutingStrategy.Type routingStrategyType;
+
+    /**
+     * Configuration for MaglevRoutingStrategy class.
+     * The number of slots in the Maglev lookup table. Must be a prime number, and should be much larger than the total
+     * number of HashRingAngle objects across all CacheServer objects.
+     */
+    private int maglevTableSize;
+
+    /**
+     * Configuration for RendezvousRoutingStrategy class.
+     * The largest factor by which the weight of a CacheServer object can be multiplied or divided in a single remap
+     * of the cache keys.
+     */
+    private double rendezvousMaxWeightStep;
+
     /**
      * Configuration for CacheRedistributor class.
      * RequestDecoder object used to extract JSON parameters from a CloseableHttpResponse object/
@@ -70,6 +129,236 @@ public class Config {
      */
     private double[] serverLoadCutoffs;
 
+    /**
+     * Configuration for CacheRedistributor class.
+     * When set to true, requests are routed with consistent hashing with bounded loads. A CacheServer object which
+     * already has more than (1 + boundedLoadEpsilon) times the average number of in-flight requests is skipped in
+     * favour of the next CacheServer object clockwise.
+     */
+    private boolean boundedLoadEnabled;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * The fraction by which the number of in-flight requests of a CacheServer object may exceed the average before
+     * requests spill over to the next CacheServer object when bounded loads are enabled.
+     */
+    private double boundedLoadEpsilon;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * The maximum number of resource names held in the route cache in front of the RoutingStrategy. The route cache
+     * is disabled when set to 0, and when the remap mode is HOT_ARC_SPLITTING.
+     */
+    private int routeCacheSize;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * The maximum total size, in bytes, of the CacheServer responses held in the near cache of the load balancer. The
+     * near cache is disabled when set to 0.
+     */
+    private long nearCacheMaxBytes;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * The number of milliseconds after which a response held in the near cache expires.
+     */
+    private long nearCacheTtl;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * Selects how the number of HashRingAngle objects of each CacheServer object is adjusted on each remap.
+     */
+    private CacheRedistributor.RemapMode remapMode;
+
+    /**
+     * Configuration for AngleController class.
+     * The number of HashRingAngle objects which a CacheServer object's target is moved by per unit of capacity factor
+     * error.
+     */
+    private double piProportionalGain;
+
+    /**
+     * Configuration for AngleController class.
+     * The number of HashRingAngle objects which a CacheServer object's target is moved by per unit of capacity factor
+     * error accumulated over successive remaps.
+     */
+    private double piIntegralGain;
+
+    /**
+     * Configuration for AngleController class.
+     * The maximum number of HashRingAngle objects which are added to or removed from a CacheServer object per remap.
+     */
+    private int piMaxAngleStep;
+
+    /**
+     * Configuration for AngleController class.
+     * Capacity factor errors smaller than this value are treated as 0.
+     */
+    private double piDeadband;
+
+    /**
+     * Configuration for HashRing class.
+     * How far above the mean capacity factor a CacheServer object must be before its hottest arc is split when the
+     * HOT_ARC_SPLITTING remap mode is selected.
+     */
+    private double hotArcLoadThreshold;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * When set to true, requests for resource names which are detected as hot keys are spread over several
+     * CacheServer objects instead of only the CacheServer object which the resource name maps to.
+     */
+    private boolean hotKeyDetectionEnabled;
+
+    /**
+     * Configuration for HotKeyDetector class.
+     * The number of rows of the count-min sketch used to estimate request counts.
+     */
+    private int hotKeySketchDepth;
+
+    /**
+     * Configuration for HotKeyDetector class.
+     * The number of counters per row of the count-min sketch used to estimate request counts.
+     */
+    private int hotKeySketchWidth;
+
+    /**
+     * Configuration for HotKeyDetector class.
+     * The length (in seconds) of the sliding window over which requests are counted.
+     */
+    private int hotKeyWindow;
+
+    /**
+     * Configuration for HotKeyDetector class.
+     * The estimated number of requests within the window at which a resource name is considered a hot key.
+     */
+    private int hotKeyThreshold;
+
+    /**
+     * Configuration for HotKeyDetector class.
+     * The maximum number of hot keys which are tracked at once.
+     */
+    private int hotKeyTopK;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * The number of CacheServer objects, starting with the one which the resource name maps to, which requests for a
+     * hot key are spread over.
+     */
+    private int hotKeyReplicas;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * Selects how a CacheServer object is picked from the replicas of a hot key.
+     */
+    private CacheRedistributor.ReplicaSelection hotKeyReplicaSelection;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * Selects how the CacheServer object which handles a request is picked. The two choices modes do not keep requests
+     * for a resource on one CacheServer, so they are meant for resources which need no key affinity.
+     */
+    private CacheRedistributor.RoutingMode routingMode;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * Selects how the load of the two candidate CacheServer objects is compared in the two choices routing modes.
+     */
+    private CacheRedistributor.LoadMetric loadMetric;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * When set to true, concurrent requests for the same resource share a single request to a CacheServer.
+     */
+    private boolean coalescingEnabled;
+
+    /**
+     * Configuration for RequestCoalescer class.
+     * The maximum number of requests which wait on a single request to a CacheServer.
+     */
+    private int coalescingMaxWaiters;
+
+    /**
+     * Configuration for RequestCoalescer class.
+     * The number of milliseconds for which a request waits on another request for the same resource before giving up.
+     */
+    private long coalescingTimeout;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * When set to true, slow requests to a CacheServer are duplicated to the next distinct CacheServer clockwise.
+     */
+    private boolean hedgingEnabled;
+
+    /**
+     * Configuration for RequestHedger class.
+     * The number of milliseconds a request to a CacheServer is outstanding for before it is hedged.
+     */
+    private long hedgeDelay;
+
+    /**
+     * Configuration for RequestHedger class.
+     * When set to true, the hedge delay is the 95th percentile latency recently observed from each CacheServer.
+     */
+    private boolean hedgeAdaptiveDelay;
+
+    /**
+     * Configuration for RequestHedger class.
+     * The largest fraction of requests which can be hedged.
+     */
+    private double hedgeBudget;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * When set to true, requests which fail to reach a CacheServer are retried on the next distinct CacheServer
+     * clockwise, and the CacheServer which failed is marked as suspect.
+     */
+    private boolean failoverEnabled;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * The maximum number of CacheServers which a request is sent to when failover is enabled.
+     */
+    private int failoverMaxAttempts;
+
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * The number of milliseconds after which a request stops failing over and fails, when failover is enabled.
+     * Hedged requests and requests forwarded in async proxy mode also time out after it.
+     */
+    private long failoverDeadline;
+
+    /**
+     * Configuration for CacheRedistributor class.
+     * When set to true, CacheServers which fail or respond slowly are ejected from routing by their circuit breakers
+     * until a probe request succeeds.
+     */
+    private boolean circuitBreakersEnabled;
+
+    /**
+     * Configuration for CircuitBreaker class.
+     * The number of recent requests to a CacheServer whose outcomes are considered by its circuit breaker.
+     */
+    private int breakerWindowSize;
+
+    /**
+     * Configuration for CircuitBreaker class.
+     * The fraction of recent requests which must have failed or been slow for a circuit breaker to open.
+     */
+    private double breakerFailureRateThreshold;
+
+    /**
+     * Configuration for CircuitBreaker class.
+     * The number of milliseconds after which a successful request is counted as slow by a circuit breaker.
+     */
+    private long breakerSlowCallThreshold;
+
+    /**
+     * Configuration for CircuitBreaker class.
+     * The number of milliseconds for which a circuit breaker stays open before a probe request is let through.
+     */
+    private long breakerOpenDuration;
+
     /* Start of CacheRedistributorRunnable class configurations */
     /**
      * Configuration for CacheRedistributorRunnable class.
@@ -102,6 +391,33 @@ public class Config {
      */
     private int clientHandlerServerDefaultPort;
 
+    /**
+     * Configuration for LoadBalancerClientRequestHandler class.
+     * The number of seconds of history kept by the per second counts of incoming requests.
+     */
+    private int requestRateHistory;
+
+    /**
+     * Configuration for ClientRequestHandlerServer class.
+     * When set to true, client requests are served by a non-blocking server and forwarded with a non-blocking client,
+     * so that requests are suspended instead of holding a worker thread while the CacheServer responds. Cannot be
+     * combined with failover, hedging, request coalescing or the near cache.
+     */
+    private boolean asyncProxyEnabled;
+
+    /**
+     * Configuration for ClientRequestHandlerServer and HttpClientFactory classes.
+     * The number of I/O threads of the non-blocking server and of the non-blocking client.
+     */
+    private int asyncIoThreads;
+
+    /**
+     * Configuration for WorkerThreadFactory class.
+     * When set to true, CacheServer requests, ClientRequestHandlerServer connections and Client objects run on virtual
+     * threads. Requires Java 21 at runtime, otherwise platform threads are used.
+     */
+    private boolean virtualThreadsEnabled;
+
     /**
      * Configuration for CacheInfoServerRunnable class.
      * The default port that CacheInfoServerRunnable objects attempt to start on.
@@ -168,18 +484,67 @@ public class Config {
     public Config() {
 
         /* Set default values for configurations */
+        httpPoolMaxPerRoute = 20;
+        httpPoolMaxTotal = 200;
+        httpPoolIdleTimeout = 30;
+        httpPoolLeaseTimeout = 5_000;
         maxAnglesPerServer = 40;
         minAnglesPerServer = 10;
         defaultAnglesPerServer = 20;
-        ringSize = 10_000;
+        ringSize = Long.MAX_VALUE;
+        freePositionIndexMaxRingSize = 1 << 20;
+        angleHistoryRetention = 86_400;
         hashFunction = new MurmurHashFunctionImpl();
+        routingStrategyType = RoutingStrategy.Type.HASH_RING;
+        maglevTableSize = 65_537;
+        rendezvousMaxWeightStep = 1.5;
         targetCf = 0.5;
         reqDecoder = new RequestDecoder();
         httpClientFactory = new HttpClientFactory();
         serverLoadCutoffs = new double[] { 0.15, 0.35, 0.65, 0.85 };
+        boundedLoadEnabled = false;
+        boundedLoadEpsilon = 0.25;
+        routeCacheSize = 4_096;
+        nearCacheMaxBytes = 0;
+        nearCacheTtl = 10_000;
+        remapMode = CacheRedistributor.RemapMode.LOAD_CUTOFFS;
+        piProportionalGain = 10;
+        piIntegralGain = 4;
+        piMaxAngleStep = 5;
+        piDeadband = 0.05;
+        hotArcLoadThreshold = 0.1;
+        hotKeyDetectionEnabled = false;
+        hotKeySketchDepth = 4;
+        hotKeySketchWidth = 2_048;
+        hotKeyWindow = 10;
+        hotKeyThreshold = 200;
+        hotKeyTopK = 16;
+        hotKeyReplicas = 3;
+        hotKeyReplicaSelection = CacheRedistributor.ReplicaSelection.LEAST_LOADED;
+        routingMode = CacheRedistributor.RoutingMode.CONSISTENT_HASHING;
+        loadMetric = CacheRedistributor.LoadMetric.IN_FLIGHT;
+        coalescingEnabled = false;
+        coalescingMaxWaiters = 100;
+        coalescingTimeout = 5_000;
+        hedgingEnabled = false;
+        hedgeDelay = 50;
+        hedgeAdaptiveDelay = false;
+        hedgeBudget = 0.05;
+        failoverEnabled = false;
+        failoverMaxAttempts = 3;
+        failoverDeadline = 2_000;
+        circuitBreakersEnabled = false;
+        breakerWindowSize = 20;
+        breakerFailureRateThreshold = 0.5;
+        breakerSlowCallThreshold = 1_000;
+        breakerOpenDuration = 5_000;
         cacheRedisPingInterval = 1;
         cacheRedisRemapInterval = 3;
         clientHandlerServerDefaultPort = 3_000;
+        requestRateHistory = 300;
+        asyncProxyEnabled = false;
+        asyncIoThreads = Runtime.getRuntime().availableProcessors();
+        virtualThreadsEnabled = false;
         cacheInfoServerDefaultPort = 5_500;
         cacheServerGrowthRate = 50;
         capacityModulationInterval = 5;
@@ -211,7 +576,7 @@ public class Config {
         return defaultAnglesPerServer;
     }
 
-    public int getRingSize() {
+    public long getRingSize() {
         return ringSize;
     }
 
@@ -219,6 +584,16 @@ public class Config {
         return hashFunction;
     }
 
+    public int getAngleHistoryRetention() { return angleHistoryRetention; }
+
+    public long getFreePositionIndexMaxRingSize() { return freePositionIndexMaxRingSize; }
+
+    public RoutingStrategy.Type getRoutingStrategyType() { return routingStrategyType; }
+
+    public int getMaglevTableSize() { return maglevTableSize; }
+
+    public double getRendezvousMaxWeightStep() { return rendezvousMaxWeightStep; }
+
     public RequestDecoder getRequestDecoder() {
         return reqDecoder;
     }
@@ -227,10 +602,90 @@ public class Config {
         return httpClientFactory;
     }
 
+    public int getHttpPoolMaxPerRoute() { return httpPoolMaxPerRoute; }
+
+    public int getHttpPoolMaxTotal() { return httpPoolMaxTotal; }
+
+    public int getHttpPoolIdleTimeout() { return httpPoolIdleTimeout; }
+
+    public int getHttpPoolLeaseTimeout() { return httpPoolLeaseTimeout; }
+
     public double[] getServerLoadCutoffs() {
         return serverLoadCutoffs;
     }
 
+    public boolean getBoundedLoadEnabled() { return boundedLoadEnabled; }
+
+    public double getBoundedLoadEpsilon() { return boundedLoadEpsilon; }
+
+    public int getRouteCacheSize() { return routeCacheSize; }
+
+    public long getNearCacheMaxBytes() { return nearCacheMaxBytes; }
+
+    public long getNearCacheTtl() { return nearCacheTtl; }
+
+    public CacheRedistributor.RemapMode getRemapMode() { return remapMode; }
+
+    public double getPiProportionalGain() { return piProportionalGain; }
+
+    public double getPiIntegralGain() { return piIntegralGain; }
+
+    public int getPiMaxAngleStep() { return piMaxAngleStep; }
+
+    public double getPiDeadband() { return piDeadband; }
+
+    public double getHotArcLoadThreshold() { return hotArcLoadThreshold; }
+
+    public boolean getHotKeyDetectionEnabled() { return hotKeyDetectionEnabled; }
+
+    public int getHotKeySketchDepth() { return hotKeySketchDepth; }
+
+    public int getHotKeySketchWidth() { return hotKeySketchWidth; }
+
+    public int getHotKeyWindow() { return hotKeyWindow; }
+
+    public int getHotKeyThreshold() { return hotKeyThreshold; }
+
+    public int getHotKeyTopK() { return hotKeyTopK; }
+
+    public int getHotKeyReplicas() { return hotKeyReplicas; }
+
+    public CacheRedistributor.ReplicaSelection getHotKeyReplicaSelection() { return hotKeyReplicaSelection; }
+
+    public CacheRedistributor.RoutingMode getRoutingMode() { return routingMode; }
+
+    public CacheRedistributor.LoadMetric getLoadMetric() { return loadMetric; }
+
+    public boolean getCoalescingEnabled() { return coalescingEnabled; }
+
+    public int getCoalescingMaxWaiters() { return coalescingMaxWaiters; }
+
+    public long getCoalescingTimeout() { return coalescingTimeout; }
+
+    public boolean getHedgingEnabled() { return hedgingEnabled; }
+
+    public long getHedgeDelay() { return hedgeDelay; }
+
+    public boolean getHedgeAdaptiveDelay() { return hedgeAdaptiveDelay; }
+
+    public double getHedgeBudget() { return hedgeBudget; }
+
+    public boolean getFailoverEnabled() { return failoverEnabled; }
+
+    public int getFailoverMaxAttempts() { return failoverMaxAttempts; }
+
+    public long getFailoverDeadline() { return failoverDeadline; }
+
+    public boolean getCircuitBreakersEnabled() { return circuitBreakersEnabled; }
+
+    public int getBreakerWindowSize() { return breakerWindowSize; }
+
+    public double getBreakerFailureRateThreshold() { return breakerFailureRateThreshold; }
+
+    public long getBreakerSlowCallThreshold() { return breakerSlowCallThreshold; }
+
+    public long getBreakerOpenDuration() { return breakerOpenDuration; }
+
     public int getCacheRedisPingInterval() {
         return cacheRedisPingInterval;
     }
@@ -243,6 +698,14 @@ public class Config {
         return clientHandlerServerDefaultPort;
     }
 
+    public int getRequestRateHistory() { return requestRateHistory; }
+
+    public boolean getAsyncProxyEnabled() { return asyncProxyEnabled; }
+
+    public int getAsyncIoThreads() { return asyncIoThreads; }
+
+    public boolean getVirtualThreadsEnabled() { return virtualThreadsEnabled; }
+
     public int getCacheInfoServerDefaultPort() { return cacheInfoServerDefaultPort; }
 
     public int getCacheServerProcessingTime() { return cacheServerProcessingTime; }
@@ -280,7 +743,7 @@ public class Config {
         defaultAnglesPerServer = _defaultAnglesPerServer;
     }
 
-    public void setRingSize( int _ringSize ) {
+    public void setRingSize( long _ringSize ) {
         ringSize = _ringSize;
     }
 
@@ -288,6 +751,16 @@ public class Config {
         hashFunction = _hashFunction;
     }
 
+    public void setAngleHistoryRetention( int retention ) { angleHistoryRetention = retention; }
+
+    public void setFreePositionIndexMaxRingSize( long maxRingSize ) { freePositionIndexMaxRingSize = maxRingSize; }
+
+    public void setRoutingStrategyType( RoutingStrategy.Type type ) { routingStrategyType = type; }
+
+    public void setMaglevTableSize( int tableSize ) { maglevTableSize = tableSize; }
+
+    public void setRendezvousMaxWeightStep( double maxWeightStep ) { rendezvousMaxWeightStep = maxWeightStep; }
+
     public void setRequestDecoder( RequestDecoder _reqDecoder ) {
         reqDecoder = _reqDecoder;
     }
@@ -296,10 +769,90 @@ public class Config {
         httpClientFactory = _clientFactory;
     }
 
+    public void setHttpPoolMaxPerRoute( int maxPerRoute ) { httpPoolMaxPerRoute = maxPerRoute; }
+
+    public void setHttpPoolMaxTotal( int maxTotal ) { httpPoolMaxTotal = maxTotal; }
+
+    public void setHttpPoolIdleTimeout( int idleTimeout ) { httpPoolIdleTimeout = idleTimeout; }
+
+    public void setHttpPoolLeaseTimeout( int leaseTimeout ) { httpPoolLeaseTimeout = leaseTimeout; }
+
     public void setServerLoadCutoffs( double[] cutoffs ) {
         serverLoadCutoffs = cutoffs;
     }
 
+    public void setBoundedLoadEnabled( boolean enabled ) { boundedLoadEnabled = enabled; }
+
+    public void setBoundedLoadEpsilon( double epsilon ) { boundedLoadEpsilon = epsilon; }
+
+    public void setRouteCacheSize( int cacheSize ) { routeCacheSize = cacheSize; }
+
+    public void setNearCacheMaxBytes( long maxBytes ) { nearCacheMaxBytes = maxBytes; }
+
+    public void setNearCacheTtl( long ttl ) { nearCacheTtl = ttl; }
+
+    public void setRemapMode( CacheRedistributor.RemapMode mode ) { remapMode = mode; }
+
+    public void setPiProportionalGain( double gain ) { piProportionalGain = gain; }
+
+    public void setPiIntegralGain( double gain ) { piIntegralGain = gain; }
+
+    public void setPiMaxAngleStep( int maxStep ) { piMaxAngleStep = maxStep; }
+
+    public void setPiDeadband( double _deadband ) { piDeadband = _deadband; }
+
+    public void setHotArcLoadThreshold( double threshold ) { hotArcLoadThreshold = threshold; }
+
+    public void setHotKeyDetectionEnabled( boolean enabled ) { hotKeyDetectionEnabled = enabled; }
+
+    public void setHotKeySketchDepth( int sketchDepth ) { hotKeySketchDepth = sketchDepth; }
+
+    public void setHotKeySketchWidth( int sketchWidth ) { hotKeySketchWidth = sketchWidth; }
+
+    public void setHotKeyWindow( int window ) { hotKeyWindow = window; }
+
+    public void setHotKeyThreshold( int threshold ) { hotKeyThreshold = threshold; }
+
+    public void setHotKeyTopK( int topK ) { hotKeyTopK = topK; }
+
+    public void setHotKeyReplicas( int replicas ) { hotKeyReplicas = replicas; }
+
+    public void setHotKeyReplicaSelection( CacheRedistributor.ReplicaSelection selection ) { hotKeyReplicaSelection = selection; }
+
+    public void setRoutingMode( CacheRedistributor.RoutingMode mode ) { routingMode = mode; }
+
+    public void setLoadMetric( CacheRedistributor.LoadMetric metric ) { loadMetric = metric; }
+
+    public void setCoalescingEnabled( boolean enabled ) { coalescingEnabled = enabled; }
+
+    public void setCoalescingMaxWaiters( int maxWaiters ) { coalescingMaxWaiters = maxWaiters; }
+
+    public void setCoalescingTimeout( long timeout ) { coalescingTimeout = timeout; }
+
+    public void setHedgingEnabled( boolean enabled ) { hedgingEnabled = enabled; }
+
+    public void setHedgeDelay( long delay ) { hedgeDelay = delay; }
+
+    public void setHedgeAdaptiveDelay( boolean adaptive ) { hedgeAdaptiveDelay = adaptive; }
+
+    public void setHedgeBudget( double budget ) { hedgeBudget = budget; }
+
+    public void setFailoverEnabled( boolean enabled ) { failoverEnabled = enabled; }
+
+    public void setFailoverMaxAttempts( int maxAttempts ) { failoverMaxAttempts = maxAttempts; }
+
+    public void setFailoverDeadline( long deadline ) { failoverDeadline = deadline; }
+
+    public void setCircuitBreakersEnabled( boolean enabled ) { circuitBreakersEnabled = enabled; }
+
+    public void setBreakerWindowSize( int windowSize ) { breakerWindowSize = windowSize; }
+
+    public void setBreakerFailureRateThreshold( double threshold ) { breakerFailureRateThreshold = threshold; }
+
+    public void setBreakerSlowCallThreshold( long threshold ) { breakerSlowCallThreshold = threshold; }
+
+    public void setBreakerOpenDuration( long duration ) { breakerOpenDuration = duration; }
+
     public void setCacheRedisPingInterval( int pingInterval ) {
         cacheRedisPingInterval = pingInterval;
     }
@@ -312,6 +865,14 @@ public class Config {
         clientHandlerServerDefaultPort = defaultPort;
     }
 
+    public void setRequestRateHistory( int historySeconds ) { requestRateHistory = historySeconds; }
+
+    public void setAsyncProxyEnabled( boolean enabled ) { asyncProxyEnabled = enabled; }
+
+    public void setAsyncIoThreads( int numThreads ) { asyncIoThreads = numThreads; }
+
+    public void setVirtualThreadsEnabled( boolean enabled ) { virtualThreadsEnabled = enabled; }
+
     public void setCacheInfoServerDefaultPort( int defaultPort ) { cacheInfoServerDefaultPort = defaultPort; }
 
     public void setTargetCf( double cf ) {
@@ -44,6 +44,7 @@ public class Logger {
         RECORDING_DATA,         /* Recording and processing simulation data */
         REQUEST_PASSING,        /* Handling of HttpRequests */
         CAPACITY_MODULATION,    /* Recording load on each CacheServer object and modulating the number of CacheServers */
+        REMAPPING,              /* Adjusting the share of resource names which each CacheServer object is responsible for */
         PRINT_DATA_TO_CSV,      /* Printing data to csv files */
         ALWAYS_PRINT,           /* A type of log which is always printed */
     }
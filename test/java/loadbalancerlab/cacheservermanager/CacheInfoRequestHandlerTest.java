@@ -30,7 +30,7 @@ import static org.mockito.Mockito.when;
 public class CacheInfoRequestHandlerTest {
     HttpClientFactory clientFactory;
     static final int DEFAULT_SERVER_PORT = 8_080;
-    static int serverPort;
+    static volatile int serverPort;
     static Thread dummyServerThread;
     static RequestDecoder reqDecoder;
     static ServerMonitor mockServerMonitor;
@@ -43,7 +43,7 @@ public class CacheInfoRequestHandlerTest {
     static int serverId2 = 2;
 
     @BeforeAll
-    public static void beforeAll() {
+    public static void beforeAll() throws InterruptedException {
         mockServerMonitor = Mockito.mock(ServerMonitor.class);
         mockServerInfoTable = new HashMap<>();
         ServerInfo mockServerInfo1 = Mockito.mock(ServerInfo.class);
@@ -64,6 +64,10 @@ public class CacheInfoRequestHandlerTest {
         dummyServerThread = new Thread(new DummyServer(mockServerMonitor));
         dummyServerThread.start();
         reqDecoder = new RequestDecoder();
+
+        /* Wait for the dummy server to start */
+        while (serverPort == 0)
+            Thread.sleep(10);
     }
 
     @BeforeEach
@@ -86,7 +90,7 @@ public class CacheInfoRequestHandlerTest {
 
         @Override
         public void run() {
-            serverPort = DEFAULT_SERVER_PORT;
+            int port = DEFAULT_SERVER_PORT;
 
             InetAddress hostAddress;
 
@@ -107,7 +111,7 @@ public class CacheInfoRequestHandlerTest {
             while (true) {
                 server = ServerBootstrap.bootstrap()
                         .setLocalAddress(hostAddress)
-                        .setListenerPort(serverPort)
+                        .setListenerPort(port)
                         .setHttpProcessor(httpProcessor)
                         .setSocketConfig(config)
                         .registerHandler("/cache-servers", new CacheInfoRequestHandler(serverMonitor))
@@ -116,10 +120,11 @@ public class CacheInfoRequestHandlerTest {
                 try {
                     server.start();
                 } catch (IOException e) {
-                    serverPort++;
+                    port++;
                     continue;
                 }
 
+                serverPort = port;
                 break;
             }
 
@@ -0,0 +1,115 @@
+package loadbalancerlab.factory;
+
+import loadbalancerlab.shared.Config;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientFactoryTest {
+    static final int MAX_PER_ROUTE = 4;
+    static HttpServer server;
+    static int serverPort;
+    HttpClientFactory clientFactory;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName("127.0.0.1"))
+                .setListenerPort(0)
+                .registerHandler("*", (req, res, ctx) -> res.setEntity(new StringEntity("ok")))
+                .create();
+        server.start();
+        serverPort = server.getLocalPort();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @BeforeEach
+    public void setup() {
+        Config config = new Config();
+        config.setHttpPoolMaxPerRoute(MAX_PER_ROUTE);
+        HttpClientFactory.configure(config);
+        clientFactory = new HttpClientFactory();
+    }
+
+    @AfterEach
+    public void teardown() {
+        clientFactory.closePooledClient();
+    }
+
+    @Test
+    @DisplayName("getPooledApacheClient() should return the same client on every call")
+    public void shouldReturnSharedClient() {
+        assertSame(clientFactory.getPooledApacheClient(), clientFactory.getPooledApacheClient());
+    }
+
+    @Test
+    @DisplayName("getPooledAsyncClient() should build a single running client when first called from many threads")
+    public void shouldBuildSingleAsyncClientConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CloseableHttpAsyncClient>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return clientFactory.getPooledAsyncClient();
+                }));
+            }
+
+            start.countDown();
+            CloseableHttpAsyncClient client = futures.get(0).get();
+
+            for (Future<CloseableHttpAsyncClient> future : futures)
+                assertSame(client, future.get());
+
+            assertTrue(client.isRunning());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Pool statistics should be null before the pooled client is built")
+    public void shouldReturnNullStatsBeforeBuild() {
+        assertNull(clientFactory.getPoolStats(serverPort));
+        assertTrue(clientFactory.getPoolStatsByPort().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Connections should be returned to the pool and reused once the response has been consumed")
+    public void shouldReuseConnections() throws IOException {
+        CloseableHttpClient client = clientFactory.getPooledApacheClient();
+
+        for (int i = 0; i < 3; i++) {
+            CloseableHttpResponse res = client.execute(new HttpGet("http://127.0.0.1:" + serverPort + "/resource"));
+            assertEquals("ok", EntityUtils.toString(res.getEntity()));
+        }
+
+        PoolStats stats = clientFactory.getPoolStats(serverPort);
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getPending());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(MAX_PER_ROUTE, stats.getMax());
+        assertTrue(clientFactory.getPoolStatsByPort().containsKey(serverPort));
+    }
+}
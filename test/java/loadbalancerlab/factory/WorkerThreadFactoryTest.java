@@ -0,0 +1,90 @@
+package loadbalancerlab.factory;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class WorkerThreadFactoryTest {
+    Config config;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+    }
+
+    @AfterEach
+    public void teardown() {
+        WorkerThreadFactory.configure(new Config());
+    }
+
+    @Nested
+    @DisplayName("When virtual threads are disabled")
+    class WhenDisabled {
+
+        @BeforeEach
+        public void setup() {
+            config.setVirtualThreadsEnabled(false);
+            WorkerThreadFactory.configure(config);
+        }
+
+        @Test
+        @DisplayName("Should create unstarted platform threads")
+        public void shouldCreatePlatformThreads() {
+            assertFalse(WorkerThreadFactory.usesVirtualThreads());
+            Thread thread = WorkerThreadFactory.newThread(() -> {});
+            assertEquals(Thread.State.NEW, thread.getState());
+        }
+
+        @Test
+        @DisplayName("Request executor should run tasks")
+        public void requestExecutorShouldRunTasks() throws Exception {
+            ExecutorService executor = WorkerThreadFactory.newRequestExecutor(1);
+            Future<Integer> result = executor.submit(() -> 42);
+            assertEquals(42, result.get(1, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+
+    @Nested
+    @DisplayName("When virtual threads are enabled")
+    class WhenEnabled {
+
+        @BeforeEach
+        public void setup() {
+            config.setVirtualThreadsEnabled(true);
+            WorkerThreadFactory.configure(config);
+        }
+
+        @Test
+        @DisplayName("Should only use virtual threads if the runtime supports them")
+        public void shouldUseVirtualThreadsIfSupported() {
+            assertEquals(Runtime.version().feature() >= 21, WorkerThreadFactory.usesVirtualThreads());
+        }
+
+        @Test
+        @DisplayName("Request executor should run tasks on virtual threads if the runtime supports them")
+        public void requestExecutorShouldUseVirtualThreads() throws Exception {
+            assumeTrue(WorkerThreadFactory.usesVirtualThreads());
+            ExecutorService executor = WorkerThreadFactory.newRequestExecutor(1);
+            Future<Object> isVirtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            assertEquals(true, isVirtual.get(1, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+
+        @Test
+        @DisplayName("Should still create working threads if the runtime does not support virtual threads")
+        public void shouldFallBackToPlatformThreads() throws InterruptedException {
+            boolean[] ran = new boolean[1];
+            Thread thread = WorkerThreadFactory.newThread(() -> ran[0] = true);
+            thread.start();
+            thread.join(1_000);
+            assertTrue(ran[0]);
+        }
+    }
+}
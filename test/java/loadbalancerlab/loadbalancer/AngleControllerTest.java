@@ -0,0 +1,106 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AngleControllerTest {
+    AngleController controller;
+    Config config;
+    Map<Integer, Double> capacityFactors;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setPiProportionalGain(10);
+        config.setPiIntegralGain(4);
+        config.setPiMaxAngleStep(5);
+        config.setPiDeadband(0.05);
+        AngleController.configure(config);
+        controller = new AngleController();
+        capacityFactors = new HashMap<>();
+    }
+
+    @Nested
+    @DisplayName("Test computeAngleChanges()")
+    class TestComputeAngleChanges {
+
+        @Test
+        @DisplayName("Should return no changes when every server is within the deadband of the mean")
+        public void shouldIgnoreErrorsWithinDeadband() {
+            capacityFactors.put(1, 0.48);
+            capacityFactors.put(2, 0.52);
+
+            assertTrue(controller.computeAngleChanges(capacityFactors).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should add angles to underloaded servers and remove angles from overloaded servers")
+        public void shouldMoveAnglesTowardsMean() {
+            capacityFactors.put(1, 0.4);
+            capacityFactors.put(2, 0.6);
+            Map<Integer, Integer> changes = controller.computeAngleChanges(capacityFactors);
+
+            /* 10 * 0.1 + 4 * 0.1 = 1.4 */
+            assertEquals(1, changes.get(1));
+            assertEquals(-1, changes.get(2));
+        }
+
+        @Test
+        @DisplayName("Should keep moving angles while the error persists")
+        public void shouldIntegratePersistentError() {
+            capacityFactors.put(1, 0.4);
+            capacityFactors.put(2, 0.6);
+            controller.computeAngleChanges(capacityFactors);
+            Map<Integer, Integer> changes = controller.computeAngleChanges(capacityFactors);
+
+            /* 0.4 carried over from the previous remap plus 4 * 0.1 from the integral term */
+            assertEquals(1, changes.get(1));
+            assertEquals(-1, changes.get(2));
+        }
+
+        @Test
+        @DisplayName("Should stop moving angles once the error has been removed")
+        public void shouldStopWhenBalanced() {
+            capacityFactors.put(1, 0.4);
+            capacityFactors.put(2, 0.6);
+            controller.computeAngleChanges(capacityFactors);
+            capacityFactors.put(1, 0.5);
+            capacityFactors.put(2, 0.5);
+
+            /* The proportional term is withdrawn when the error returns to 0 */
+            controller.computeAngleChanges(capacityFactors);
+            assertTrue(controller.computeAngleChanges(capacityFactors).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should limit the change per remap to the maximum angle step")
+        public void shouldLimitChange() {
+            capacityFactors.put(1, 0.0);
+            capacityFactors.put(2, 1.0);
+            Map<Integer, Integer> changes = controller.computeAngleChanges(capacityFactors);
+
+            assertEquals(5, changes.get(1));
+            assertEquals(-5, changes.get(2));
+        }
+
+        @Test
+        @DisplayName("Should forget servers which are no longer present")
+        public void shouldForgetRemovedServers() {
+            capacityFactors.put(1, 0.4);
+            capacityFactors.put(2, 0.6);
+            controller.computeAngleChanges(capacityFactors);
+            capacityFactors.remove(2);
+            controller.computeAngleChanges(capacityFactors);
+
+            assertFalse(controller.states.containsKey(2));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package loadbalancerlab.loadbalancer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AngleHistoryTest {
+    AngleHistory angleHistory;
+
+    @BeforeEach
+    public void setup() {
+        angleHistory = new AngleHistory(0);
+    }
+
+    @Nested
+    @DisplayName("Test recordFrame()")
+    class TestRecordFrame {
+
+        @Test
+        @DisplayName("Should record a frame for each later timestamp")
+        public void shouldRecordFrames() {
+            angleHistory.angleAdded(1, 100);
+            angleHistory.recordFrame(10);
+            angleHistory.angleAdded(1, 200);
+            angleHistory.recordFrame(11);
+
+            assertEquals(2, angleHistory.size());
+            assertTrue(angleHistory.containsFrame(10));
+            assertTrue(angleHistory.containsFrame(11));
+        }
+
+        @Test
+        @DisplayName("Should ignore timestamps which are not later than the previous frame")
+        public void shouldIgnoreEarlierTimestamps() {
+            angleHistory.recordFrame(10);
+            angleHistory.recordFrame(10);
+            angleHistory.recordFrame(9);
+
+            assertEquals(1, angleHistory.size());
+        }
+
+        @Test
+        @DisplayName("Should only store the events which occurred since the previous frame")
+        public void shouldStoreOnlyDeltas() {
+            angleHistory.angleAdded(1, 100);
+            angleHistory.angleAdded(1, 200);
+            angleHistory.recordFrame(10);
+            angleHistory.recordFrame(11);
+            angleHistory.recordFrame(12);
+
+            /* One server added event and two angle added events */
+            assertEquals(3, angleHistory.numEvents());
+        }
+
+        @Test
+        @DisplayName("Should fold frames which are older than the retention window into the keyframe")
+        public void shouldFoldOldFrames() {
+            angleHistory = new AngleHistory(5);
+            angleHistory.angleAdded(1, 100);
+            angleHistory.recordFrame(10);
+            angleHistory.angleAdded(2, 200);
+            angleHistory.recordFrame(20);
+
+            assertFalse(angleHistory.containsFrame(10));
+            assertEquals(1, angleHistory.size());
+
+            SortedMap<Integer, Map<Integer, List<HashRingAngle>>> snapshots = angleHistory.toSnapshots();
+            assertEquals(Collections.singletonList(new HashRingAngle(1, 100)), snapshots.get(20).get(1));
+            assertEquals(Collections.singletonList(new HashRingAngle(2, 200)), snapshots.get(20).get(2));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test recordSnapshot()")
+    class TestRecordSnapshot {
+        Map<Integer, List<HashRingAngle>> snapshot;
+
+        @BeforeEach
+        public void setup() {
+            snapshot = new HashMap<>();
+            snapshot.put(1, new ArrayList<>(Arrays.asList(new HashRingAngle(1, 100), new HashRingAngle(1, 200))));
+            snapshot.put(2, new ArrayList<>(Collections.singletonList(new HashRingAngle(2, 300))));
+            angleHistory.recordSnapshot(10, snapshot);
+        }
+
+        @Test
+        @DisplayName("Should only record the difference from the previous snapshot")
+        public void shouldRecordDifference() {
+            int numEvents = angleHistory.numEvents();
+            snapshot.get(1).remove(1);
+            angleHistory.recordSnapshot(11, snapshot);
+
+            assertEquals(numEvents + 1, angleHistory.numEvents());
+        }
+
+        @Test
+        @DisplayName("Should record CacheServers which are missing from the snapshot as removed")
+        public void shouldRecordMissingServersAsRemoved() {
+            snapshot.remove(2);
+            angleHistory.recordSnapshot(11, snapshot);
+
+            SortedMap<Integer, Map<Integer, List<HashRingAngle>>> snapshots = angleHistory.toSnapshots();
+            assertTrue(snapshots.get(10).containsKey(2));
+            assertFalse(snapshots.get(11).containsKey(2));
+        }
+
+        @Test
+        @DisplayName("Should keep HashRingAngle objects which share a position")
+        public void shouldKeepDuplicateAngles() {
+            snapshot.get(2).add(new HashRingAngle(2, 300));
+            angleHistory.recordSnapshot(11, snapshot);
+
+            assertEquals(2, angleHistory.toSnapshots().get(11).get(2).size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Test replay()")
+    class TestReplay {
+
+        @Test
+        @DisplayName("Should deliver the keyframe before the events of the retained frames")
+        public void shouldDeliverKeyframeFirst() {
+            angleHistory = new AngleHistory(1);
+            angleHistory.angleAdded(1, 100);
+            angleHistory.recordFrame(10);
+            angleHistory.angleRemoved(1, 100);
+            angleHistory.recordFrame(20);
+
+            List<String> events = new ArrayList<>();
+            angleHistory.replay(new AngleHistory.Listener() {
+                @Override
+                public void serverAdded( int serverId ) { events.add("serverAdded " + serverId); }
+
+                @Override
+                public void serverRemoved( int serverId ) { events.add("serverRemoved " + serverId); }
+
+                @Override
+                public void angleAdded( int serverId, long angle ) { events.add("angleAdded " + serverId + " " + angle); }
+
+                @Override
+                public void angleRemoved( int serverId, long angle ) { events.add("angleRemoved " + serverId + " " + angle); }
+
+                @Override
+                public void frameEnded( int timestamp ) { events.add("frameEnded " + timestamp); }
+            });
+
+            assertEquals(Arrays.asList("serverAdded 1", "angleAdded 1 100", "angleRemoved 1 100", "frameEnded 20"), events);
+        }
+    }
+
+    @Test
+    @DisplayName("fromSnapshots() should reproduce the snapshots it was built from")
+    public void fromSnapshotsShouldRoundTrip() {
+        SortedMap<Integer, Map<Integer, List<HashRingAngle>>> snapshots = new TreeMap<>();
+        Map<Integer, List<HashRingAngle>> first = new HashMap<>();
+        first.put(1, Collections.singletonList(new HashRingAngle(1, 100)));
+        Map<Integer, List<HashRingAngle>> second = new HashMap<>();
+        second.put(1, Collections.singletonList(new HashRingAngle(1, 100)));
+        second.put(2, Collections.singletonList(new HashRingAngle(2, 500)));
+        snapshots.put(10, first);
+        snapshots.put(11, second);
+
+        assertEquals(snapshots, AngleHistory.fromSnapshots(snapshots).toSnapshots());
+    }
+}
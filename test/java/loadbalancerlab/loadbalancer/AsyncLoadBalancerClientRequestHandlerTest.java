@@ -0,0 +1,214 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.shared.Config;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// tests AsyncLoadBalancerClientRequestHandler through a ClientRequestHandlerServer running in async proxy mode
+public class AsyncLoadBalancerClientRequestHandlerTest {
+    static final int CACHE_SERVER_DELAY = 300;
+    static final int NUM_CONCURRENT_REQUESTS = 40;
+    static HttpServer cacheServer;
+    static int cacheServerPort;
+    static HttpClientFactory clientFactory;
+    static Thread serverThread;
+    static ClientRequestHandlerServer server;
+    static CloseableHttpClient httpClient;
+    CacheRedistributor mockCacheRedis;
+
+    @BeforeAll
+    public static void setup() throws IOException, InterruptedException {
+
+        /* A slow blocking CacheServer stand-in with enough worker threads to serve every request at once */
+        cacheServer = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName("127.0.0.1"))
+                .setListenerPort(0)
+                .registerHandler("*", (req, res, ctx) -> {
+                    try {
+                        Thread.sleep(CACHE_SERVER_DELAY);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    res.setEntity(new StringEntity("content of " + req.getRequestLine().getUri()));
+                })
+                .create();
+        cacheServer.start();
+        cacheServerPort = cacheServer.getLocalPort();
+
+        /* A single I/O thread, so that concurrent requests can only overlap if they are suspended */
+        Config config = new Config();
+        config.setAsyncProxyEnabled(true);
+        config.setAsyncIoThreads(1);
+        config.setHttpPoolMaxPerRoute(NUM_CONCURRENT_REQUESTS);
+        config.setClientHandlerServerDefaultPort(37_100);
+        clientFactory = new HttpClientFactory();
+        config.setHttpClientFactory(clientFactory);
+        HttpClientFactory.configure(config);
+        LoadBalancerClientRequestHandler.configure(config);
+        ClientRequestHandlerServer.configure(config);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(NUM_CONCURRENT_REQUESTS);
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(10_000).build())
+                .build();
+    }
+
+    @BeforeEach
+    public void startServer() throws InterruptedException {
+        mockCacheRedis = Mockito.mock(CacheRedistributor.class);
+        when(mockCacheRedis.selectPort(anyString())).thenReturn(cacheServerPort);
+        server = new ClientRequestHandlerServer(new LoadBalancerClientRequestHandler(mockCacheRedis));
+        serverThread = new Thread(server);
+        serverThread.start();
+
+        while (server.getPort() == -1)
+            Thread.sleep(10);
+    }
+
+    @AfterEach
+    public void stopServer() throws InterruptedException {
+        serverThread.interrupt();
+        serverThread.join(10_000);
+    }
+
+    @AfterAll
+    public static void teardown() throws IOException {
+        httpClient.close();
+        clientFactory.closePooledClient();
+        cacheServer.shutdown(1, TimeUnit.SECONDS);
+
+        /* Restore blocking mode for other tests */
+        Config config = new Config();
+        HttpClientFactory.configure(config);
+        ClientRequestHandlerServer.configure(config);
+    }
+
+    private String get( String resourceName ) throws IOException {
+        HttpGet req = new HttpGet("http://127.0.0.1:" + server.getPort() + "/api/" + resourceName);
+
+        try (CloseableHttpResponse res = httpClient.execute(req)) {
+            return res.getStatusLine().getStatusCode() + " " + EntityUtils.toString(res.getEntity());
+        }
+    }
+
+    @Test
+    @DisplayName("Should relay the response of the selected CacheServer")
+    public void shouldRelayResponse() throws IOException {
+        assertEquals("200 content of /resource.jpg", get("resource.jpg"));
+        verify(mockCacheRedis, times(1)).selectPort("resource.jpg");
+        verify(mockCacheRedis, timeout(1_000).times(1)).releasePort(cacheServerPort);
+    }
+
+    @Test
+    @DisplayName("Should keep requests outstanding concurrently with a single I/O thread")
+    public void shouldServeRequestsConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_CONCURRENT_REQUESTS);
+        List<Future<String>> responses = new ArrayList<>();
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < NUM_CONCURRENT_REQUESTS; i++) {
+            String resourceName = "resource_" + i;
+            responses.add(executor.submit(() -> get(resourceName)));
+        }
+
+        for (int i = 0; i < NUM_CONCURRENT_REQUESTS; i++)
+            assertEquals("200 content of /resource_" + i, responses.get(i).get(10, TimeUnit.SECONDS));
+
+        long elapsed = System.currentTimeMillis() - start;
+        executor.shutdown();
+
+        /* Serving the requests one at a time would take NUM_CONCURRENT_REQUESTS * CACHE_SERVER_DELAY milliseconds */
+        assertTrue(elapsed < NUM_CONCURRENT_REQUESTS * CACHE_SERVER_DELAY / 4, "took " + elapsed + " ms");
+        verify(mockCacheRedis, timeout(1_000).times(NUM_CONCURRENT_REQUESTS)).releasePort(cacheServerPort);
+    }
+
+    @Test
+    @DisplayName("Should respond with an error and release the port when the CacheServer cannot be reached")
+    public void shouldRespondWithErrorOnFailure() throws IOException {
+        int closedPort = 1;
+        when(mockCacheRedis.selectPort(anyString())).thenReturn(closedPort);
+
+        assertTrue(get("resource.jpg").startsWith("500 "));
+        verify(mockCacheRedis, timeout(1_000).times(1)).releasePort(closedPort);
+    }
+
+    @Test
+    @DisplayName("Should respond with an error once the failover deadline passes when the CacheServer never responds")
+    public void shouldTimeOutUnresponsiveCacheServer() throws IOException {
+
+        /* Connections are accepted by the backlog of the socket, but nothing is ever read or written */
+        try (ServerSocket unresponsiveServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            int unresponsivePort = unresponsiveServer.getLocalPort();
+            when(mockCacheRedis.selectPort(anyString())).thenReturn(unresponsivePort);
+            long start = System.currentTimeMillis();
+
+            assertTrue(get("resource.jpg").startsWith("500 "));
+            assertTrue(System.currentTimeMillis() - start < new Config().getFailoverDeadline() + 2_000);
+            verify(mockCacheRedis, timeout(1_000).times(1)).releasePort(unresponsivePort);
+        }
+    }
+
+    @Nested
+    @DisplayName("When async proxy mode is combined with features it does not support")
+    class WhenCombinedWithUnsupportedFeatures {
+        Config config;
+
+        @BeforeEach
+        public void setup() {
+            config = new Config();
+            config.setAsyncProxyEnabled(true);
+        }
+
+        @Test
+        @DisplayName("Should reject failover")
+        public void shouldRejectFailover() {
+            config.setFailoverEnabled(true);
+            assertThrows(IllegalArgumentException.class, () -> ClientRequestHandlerServer.configure(config));
+        }
+
+        @Test
+        @DisplayName("Should reject hedging")
+        public void shouldRejectHedging() {
+            config.setHedgingEnabled(true);
+            assertThrows(IllegalArgumentException.class, () -> ClientRequestHandlerServer.configure(config));
+        }
+
+        @Test
+        @DisplayName("Should reject request coalescing")
+        public void shouldRejectCoalescing() {
+            config.setCoalescingEnabled(true);
+            assertThrows(IllegalArgumentException.class, () -> ClientRequestHandlerServer.configure(config));
+        }
+
+        @Test
+        @DisplayName("Should reject the near cache")
+        public void shouldRejectNearCache() {
+            config.setNearCacheMaxBytes(1_024);
+            assertThrows(IllegalArgumentException.class, () -> ClientRequestHandlerServer.configure(config));
+        }
+    }
+}
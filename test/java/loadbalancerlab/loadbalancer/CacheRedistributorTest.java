@@ -7,6 +7,7 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -17,7 +18,7 @@ import org.mockito.Mockito;
 import java.io.IOException;
 import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -84,6 +85,40 @@ public class CacheRedistributorTest {
                 assertEquals(cf3, cacheRedis.serverInfoTable.get(3).getCapacityFactor());
                 assertEquals(cf4, cacheRedis.serverInfoTable.get(4).getCapacityFactor());
             }
+
+            @Test
+            @DisplayName("should close the client and the response")
+            public void shouldCloseClientAndResponse() throws IOException {
+                verify(mockResponse).close();
+                verify(mockClient).close();
+            }
+        }
+
+        @Nested
+        @DisplayName("When the cache info server cannot be reached")
+        class WhenRequestFails {
+            RoutingStrategy mockStrategy;
+
+            @BeforeEach
+            public void setup() throws IOException {
+                mockStrategy = Mockito.mock(RoutingStrategy.class);
+                when(mockClient.execute(any(HttpUriRequest.class))).thenThrow(new IOException("connection refused"));
+                cacheRedis = new CacheRedistributor(cacheInfoServerPort, mockStrategy);
+                cacheRedis.requestServerInfo();
+            }
+
+            @Test
+            @DisplayName("should not take the RoutingStrategy's lock")
+            public void shouldNotBeginBatch() {
+                verify(mockStrategy, never()).beginBatch();
+                verify(mockStrategy, never()).commitBatch();
+            }
+
+            @Test
+            @DisplayName("should close the client")
+            public void shouldCloseClient() throws IOException {
+                verify(mockClient).close();
+            }
         }
 
         @Nested
@@ -100,6 +135,7 @@ public class CacheRedistributorTest {
             public void setup() {
                 serverInfo3 = new ServerInfo(3, serverPort3, cf3Initial);
                 serverInfo4 = new ServerInfo(4, serverPort4, cf4Initial);
+                serverInfo3.setSuspect(true);
                 cacheRedis.serverInfoTable.put(3, serverInfo3);
                 cacheRedis.serverInfoTable.put(4, serverInfo4);
                 cacheRedis.requestServerInfo();
@@ -111,6 +147,22 @@ public class CacheRedistributorTest {
                 assertEquals(cf3, cacheRedis.serverInfoTable.get(3).getCapacityFactor());
                 assertEquals(cf4, cacheRedis.serverInfoTable.get(4).getCapacityFactor());
             }
+
+            @Test
+            @DisplayName("should preserve the in-flight requests of servers when their capacity factors are updated")
+            public void shouldPreserveInFlightRequests() {
+                serverInfo4.incrementInFlightRequests();
+                serverInfo4.incrementInFlightRequests();
+                cacheRedis.requestServerInfo();
+
+                assertEquals(2, cacheRedis.serverInfoTable.get(4).getInFlightRequests());
+            }
+
+            @Test
+            @DisplayName("should clear the suspect flag of servers which are reported again")
+            public void shouldClearSuspectFlag() {
+                assertFalse(serverInfo3.isSuspect());
+            }
         }
     }
 
@@ -151,6 +203,453 @@ public class CacheRedistributorTest {
             int expectedPort = cacheRedis.serverInfoTable.get(selectedServerId).getPort();
             assertEquals(expectedPort, selectedPort);
         }
+
+        @Test
+        @DisplayName("should record the request as in-flight until the port is released")
+        public void shouldRecordInFlightRequest() {
+            assertEquals(1, cacheRedis.serverInfoTable.get(selectedServerId).getInFlightRequests());
+            cacheRedis.releasePort(selectedPort);
+            assertEquals(0, cacheRedis.serverInfoTable.get(selectedServerId).getInFlightRequests());
+        }
+
+        @Nested
+        @DisplayName("When the route cache is enabled")
+        class WhenRouteCacheEnabled {
+
+            @Test
+            @DisplayName("should serve repeated lookups from the route cache")
+            public void shouldServeRepeatedLookupsFromCache() {
+                cacheRedis.selectPort(resourceName);
+
+                verify(mockHashRing, times(1)).findServerId(resourceName);
+                assertEquals(1, cacheRedis.getRouteCacheHits());
+                assertEquals(1, cacheRedis.getRouteCacheMisses());
+            }
+
+            @Test
+            @DisplayName("should look up the routing strategy again when its version changes")
+            public void shouldInvalidateOnVersionChange() {
+                when(mockHashRing.getVersion()).thenReturn(1L);
+                cacheRedis.selectPort(resourceName);
+
+                verify(mockHashRing, times(2)).findServerId(resourceName);
+                assertEquals(2, cacheRedis.getRouteCacheMisses());
+            }
+
+            @Test
+            @DisplayName("should count every request on the arcs of the hash ring when hot arc splitting is selected")
+            public void shouldCountArcHitsWithHotArcSplitting() {
+                config.setRemapMode(CacheRedistributor.RemapMode.HOT_ARC_SPLITTING);
+                config.setHashFunction(new MurmurHashFunctionImpl());
+                CacheRedistributor.configure(config);
+                HashRing.configure(config);
+                HashRing hashRing = new HashRing();
+                hashRing.addServer(1);
+                cacheRedis = new CacheRedistributor(cacheInfoServerPort, hashRing);
+                cacheRedis.serverInfoTable.put(1, new ServerInfo(1, port1, cf1));
+
+                for (int i = 0; i < 10; i++)
+                    cacheRedis.selectPort(resourceName);
+
+                HashRingLookupTable table = hashRing.getSnapshot();
+                long totalHits = 0;
+
+                for (int i = 0; i < table.size(); i++)
+                    totalHits += table.getHitCount(i);
+
+                assertEquals(10, totalHits);
+                assertEquals(0, cacheRedis.getRouteCacheHits());
+            }
+        }
+
+        @Nested
+        @DisplayName("When bounded loads are enabled")
+        class WhenBoundedLoadsEnabled {
+
+            @BeforeEach
+            public void setup() {
+                config.setBoundedLoadEnabled(true);
+                config.setBoundedLoadEpsilon(0.25);
+                CacheRedistributor.configure(config);
+
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+            }
+
+            @Test
+            @DisplayName("should spill over to the next server when the selected server is above the load bound")
+            public void shouldSpillOverWhenAboveBound() {
+                /* server 1 already holds 1 of 1 in-flight requests, so the bound of 2 is reached by the next request */
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+                assertEquals(port2, cacheRedis.selectPort(resourceName));
+                assertEquals(1, cacheRedis.getSpilloverCount());
+                assertEquals(3, cacheRedis.getSelectionCount());
+            }
+
+            @Test
+            @DisplayName("should not spill over when the selected server is under the load bound")
+            public void shouldNotSpillOverWhenUnderBound() {
+                cacheRedis.releasePort(selectedPort);
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+                assertEquals(0, cacheRedis.getSpilloverCount());
+            }
+        }
+
+        @Nested
+        @DisplayName("When the resource is a hot key")
+        class WhenHotKey {
+
+            @BeforeEach
+            public void setup() {
+                config.setHotKeyReplicas(2);
+
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+            }
+
+            @Test
+            @DisplayName("should send the request to the least loaded replica")
+            public void shouldSelectLeastLoadedReplica() {
+                config.setHotKeyReplicaSelection(CacheRedistributor.ReplicaSelection.LEAST_LOADED);
+                CacheRedistributor.configure(config);
+
+                /* server 1 already holds an in-flight request */
+                assertEquals(port2, cacheRedis.selectPort(resourceName, true));
+                assertEquals(1, cacheRedis.getReplicaSelectionCount());
+            }
+
+            @Test
+            @DisplayName("should send requests to each replica in turn")
+            public void shouldSelectReplicasInTurn() {
+                config.setHotKeyReplicaSelection(CacheRedistributor.ReplicaSelection.ROUND_ROBIN);
+                CacheRedistributor.configure(config);
+
+                assertEquals(port1, cacheRedis.selectPort(resourceName, true));
+                assertEquals(port2, cacheRedis.selectPort(resourceName, true));
+                assertEquals(port1, cacheRedis.selectPort(resourceName, true));
+            }
+
+            @Test
+            @DisplayName("should only send the request to the owner when the resource is not a hot key")
+            public void shouldUseOwnerWhenNotHot() {
+                CacheRedistributor.configure(config);
+
+                assertEquals(port1, cacheRedis.selectPort(resourceName, false));
+                assertEquals(0, cacheRedis.getReplicaSelectionCount());
+            }
+        }
+
+        @Nested
+        @DisplayName("When a server is suspect")
+        class WhenSuspect {
+
+            @BeforeEach
+            public void setup() {
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+                cacheRedis.markSuspect(port1);
+            }
+
+            @Test
+            @DisplayName("should mark the server running on the port as suspect")
+            public void shouldMarkSuspect() {
+                assertTrue(cacheRedis.serverInfoTable.get(1).isSuspect());
+                assertFalse(cacheRedis.serverInfoTable.get(2).isSuspect());
+            }
+
+            @Test
+            @DisplayName("should route requests to the next server clockwise which is not suspect")
+            public void shouldSkipSuspectServer() {
+                assertEquals(port2, cacheRedis.selectPort(resourceName));
+                assertEquals(1, cacheRedis.getFailoverCount());
+            }
+
+            @Test
+            @DisplayName("should route requests to the suspect server if every server is suspect")
+            public void shouldUseSuspectServerIfNoOtherServer() {
+                cacheRedis.markSuspect(port2);
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+            }
+        }
+
+        @Nested
+        @DisplayName("When circuit breakers are enabled")
+        class WhenCircuitBreakersEnabled {
+
+            @BeforeEach
+            public void setup() {
+                config.setCircuitBreakersEnabled(true);
+                config.setBreakerWindowSize(2);
+                config.setBreakerOpenDuration(0);
+                CacheRedistributor.configure(config);
+                CircuitBreaker.configure(config);
+                cacheRedis.serverInfoTable.put(1, new ServerInfo(1, port1, cf1));
+                cacheRedis.serverInfoTable.put(2, new ServerInfo(2, port2, cf2));
+                cacheRedis.serverInfoByPort.clear();
+                cacheRedis.selectPort(resourceName);
+
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+
+                cacheRedis.recordResult(port1, false, 0);
+                cacheRedis.recordResult(port1, false, 0);
+            }
+
+            @AfterEach
+            public void teardown() {
+                CircuitBreaker.configure(new Config());
+            }
+
+            @Test
+            @DisplayName("should mask a server in the ring on the next update once its circuit breaker opens")
+            public void shouldMaskServerWhenBreakerOpens() {
+                assertEquals(CircuitBreaker.State.OPEN, cacheRedis.serverInfoTable.get(1).getCircuitBreaker().getState());
+                verify(mockHashRing, never()).maskServer(1);
+
+                cacheRedis.updateEjectedServers();
+                verify(mockHashRing).maskServer(1);
+            }
+
+            @Test
+            @DisplayName("should not fail when a server whose circuit breaker opened has been removed from the ring")
+            public void shouldIgnoreRemovedServer() {
+                when(mockHashRing.maskServer(1)).thenThrow(new IllegalArgumentException("not recorded"));
+
+                assertDoesNotThrow(() -> cacheRedis.updateEjectedServers());
+            }
+
+            @Test
+            @DisplayName("should route requests around a server whose circuit breaker is open")
+            public void shouldRouteAroundOpenBreaker() {
+                assertEquals(port2, cacheRedis.selectPort(resourceName));
+                assertEquals(1, cacheRedis.getBreakerRerouteCount());
+                assertEquals(0, cacheRedis.getBreakerFailOpenCount());
+            }
+
+            @Test
+            @DisplayName("should fail open to the selected server and count it when every other server is unhealthy")
+            public void shouldFailOpenWithoutHealthyServer() {
+                cacheRedis.markSuspect(port2);
+
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+                assertEquals(0, cacheRedis.getBreakerRerouteCount());
+                assertEquals(1, cacheRedis.getBreakerFailOpenCount());
+            }
+
+            @Test
+            @DisplayName("should unmask the server and let a single probe through once the open duration has passed")
+            public void shouldProbeEjectedServer() {
+                cacheRedis.updateEjectedServers();
+
+                verify(mockHashRing).unmaskServer(1);
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+                assertEquals(port2, cacheRedis.selectPort(resourceName));
+            }
+
+            @Test
+            @DisplayName("should close the circuit breaker when the probe succeeds")
+            public void shouldCloseBreakerOnProbeSuccess() {
+                cacheRedis.updateEjectedServers();
+                cacheRedis.selectPort(resourceName);
+                cacheRedis.recordResult(port1, true, 0);
+
+                assertEquals(CircuitBreaker.State.CLOSED, cacheRedis.serverInfoTable.get(1).getCircuitBreaker().getState());
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+            }
+
+            @Test
+            @DisplayName("should mask the server again when the probe fails")
+            public void shouldMaskAgainOnProbeFailure() {
+                cacheRedis.updateEjectedServers();
+                cacheRedis.selectPort(resourceName);
+                cacheRedis.recordResult(port1, false, 0);
+                cacheRedis.updateEjectedServers();
+
+                verify(mockHashRing, times(2)).maskServer(1);
+            }
+        }
+
+        @Nested
+        @DisplayName("When a two choices routing mode is selected")
+        class WhenTwoChoicesRouting {
+            int port3 = 7_311;
+
+            @BeforeEach
+            public void setup() {
+                cacheRedis.serverInfoTable.put(3, new ServerInfo(3, port3, 0.5));
+
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    output[2] = 3;
+                    return 3;
+                });
+            }
+
+            @Test
+            @DisplayName("should send the request to the ring candidate with fewer in-flight requests")
+            public void shouldSelectLessLoadedRingCandidate() {
+                config.setRoutingMode(CacheRedistributor.RoutingMode.TWO_RING_CHOICES);
+                CacheRedistributor.configure(config);
+
+                /* server 1 already holds an in-flight request */
+                assertEquals(port2, cacheRedis.selectPort(resourceName));
+                assertEquals(1, cacheRedis.getTwoChoiceSelectionCount());
+            }
+
+            @Test
+            @DisplayName("should skip suspect servers when picking the ring candidates")
+            public void shouldSkipSuspectRingCandidates() {
+                config.setRoutingMode(CacheRedistributor.RoutingMode.TWO_RING_CHOICES);
+                CacheRedistributor.configure(config);
+                cacheRedis.markSuspect(port2);
+
+                assertEquals(port3, cacheRedis.selectPort(resourceName));
+            }
+
+            @Test
+            @DisplayName("should compare moving average latencies scaled by in-flight requests")
+            public void shouldSelectLowerLatencyCandidate() {
+                config.setRoutingMode(CacheRedistributor.RoutingMode.TWO_RING_CHOICES);
+                config.setLoadMetric(CacheRedistributor.LoadMetric.EWMA_LATENCY);
+                CacheRedistributor.configure(config);
+                cacheRedis.serverInfoTable.get(1).recordLatency(10);
+                cacheRedis.serverInfoTable.get(2).recordLatency(100);
+
+                /* server 1 scores 10 * 2 and server 2 scores 100 * 1 */
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+            }
+
+            @Test
+            @DisplayName("should record the latencies of successful requests in the moving average")
+            public void shouldRecordLatency() {
+                cacheRedis.recordResult(port1, true, 40);
+                cacheRedis.recordResult(port1, true, 90);
+                cacheRedis.recordResult(port1, false, 1_000);
+
+                assertEquals(40 + ServerInfo.latencyEwmaWeight * 50, cacheRedis.serverInfoTable.get(1).getLatencyEwma(), 1e-9);
+            }
+
+            @Test
+            @DisplayName("should keep the in-flight requests of random candidates balanced")
+            public void shouldBalanceRandomCandidates() {
+                config.setRoutingMode(CacheRedistributor.RoutingMode.TWO_RANDOM_CHOICES);
+                CacheRedistributor.configure(config);
+                cacheRedis.serverInfoTable.remove(3);
+
+                for (int i = 0; i < 99; i++)
+                    cacheRedis.selectPort("resource_" + i);
+
+                /* With two servers both are always candidates, so every request goes to the less loaded one */
+                assertEquals(50, cacheRedis.serverInfoTable.get(1).getInFlightRequests());
+                assertEquals(50, cacheRedis.serverInfoTable.get(2).getInFlightRequests());
+                assertEquals(99, cacheRedis.getTwoChoiceSelectionCount());
+            }
+
+            @Test
+            @DisplayName("should fall back to consistent hashing when every server is suspect")
+            public void shouldFallBackToHashing() {
+                config.setRoutingMode(CacheRedistributor.RoutingMode.TWO_RANDOM_CHOICES);
+                CacheRedistributor.configure(config);
+                cacheRedis.markSuspect(port1);
+                cacheRedis.markSuspect(port2);
+                cacheRedis.markSuspect(port3);
+
+                assertEquals(port1, cacheRedis.selectPort(resourceName));
+                assertEquals(0, cacheRedis.getTwoChoiceSelectionCount());
+            }
+        }
+
+        @Nested
+        @DisplayName("Test selectFailoverPort()")
+        class TestSelectFailoverPort {
+
+            @BeforeEach
+            public void setup() {
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+            }
+
+            @Test
+            @DisplayName("should select the next server clockwise which has not been tried and record the request as in-flight")
+            public void shouldSelectUntriedServer() {
+                assertEquals(port2, cacheRedis.selectFailoverPort(resourceName, Set.of(port1)));
+                assertEquals(1, cacheRedis.serverInfoTable.get(2).getInFlightRequests());
+                assertEquals(1, cacheRedis.getFailoverCount());
+            }
+
+            @Test
+            @DisplayName("should return -1 when every server has been tried or is suspect")
+            public void shouldReturnMinusOneWhenExhausted() {
+                assertEquals(-1, cacheRedis.selectFailoverPort(resourceName, Set.of(port1, port2)));
+
+                cacheRedis.markSuspect(port2);
+                assertEquals(-1, cacheRedis.selectFailoverPort(resourceName, Set.of(port1)));
+            }
+        }
+
+        @Nested
+        @DisplayName("Test selectHedgePort()")
+        class TestSelectHedgePort {
+
+            @BeforeEach
+            public void setup() {
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    output[1] = 2;
+                    return 2;
+                });
+            }
+
+            @Test
+            @DisplayName("should select the next distinct server clockwise and record the request as in-flight")
+            public void shouldSelectSuccessor() {
+                assertEquals(port2, cacheRedis.selectHedgePort(resourceName, port1));
+                assertEquals(1, cacheRedis.serverInfoTable.get(2).getInFlightRequests());
+                cacheRedis.releasePort(port2);
+                assertEquals(0, cacheRedis.serverInfoTable.get(2).getInFlightRequests());
+            }
+
+            @Test
+            @DisplayName("should select the owner when the request was sent to another server")
+            public void shouldSelectOwner() {
+                assertEquals(port1, cacheRedis.selectHedgePort(resourceName, port2));
+            }
+
+            @Test
+            @DisplayName("should return -1 when there is no other server")
+            public void shouldReturnMinusOneWithoutOtherServer() {
+                when(mockHashRing.findServerIds(anyString(), any(int[].class))).thenAnswer(invocation -> {
+                    int[] output = invocation.getArgument(1);
+                    output[0] = 1;
+                    return 1;
+                });
+
+                assertEquals(-1, cacheRedis.selectHedgePort(resourceName, port1));
+            }
+        }
     }
 
     @Nested
@@ -225,5 +724,150 @@ public class CacheRedistributorTest {
             assertEquals(argsHash.get(4), 1);
             assertEquals(argsHash.get(5), 3);
         }
+
+        @Nested
+        @DisplayName("When the PI controller remap mode is selected")
+        class WhenPiControllerSelected {
+
+            @BeforeEach
+            public void setup() {
+                config.setRemapMode(CacheRedistributor.RemapMode.PI_CONTROLLER);
+                CacheRedistributor.configure(config);
+                AngleController.configure(config);
+                Map<Integer, ServerInfo> serverInfoTable = cacheRedis.serverInfoTable;
+                cacheRedis = new CacheRedistributor(cacheInfoServerPort, mockHashRing);
+                cacheRedis.serverInfoTable = serverInfoTable;
+                cacheRedis.remapCacheKeys();
+            }
+
+            @Test
+            @DisplayName("Should add angles in proportion to how far below the mean capacity factor a server is")
+            public void shouldAddAnglesToUnderloadedServers() {
+                verify(mockHashRing, times(1)).addAngle(1, 5);
+                verify(mockHashRing, times(1)).addAngle(2, 4);
+                verify(mockHashRing, times(1)).addAngle(3, 1);
+            }
+
+            @Test
+            @DisplayName("Should remove angles in proportion to how far above the mean capacity factor a server is")
+            public void shouldRemoveAnglesFromOverloadedServers() {
+                verify(mockHashRing, times(1)).removeAngle(4, 4);
+                verify(mockHashRing, times(1)).removeAngle(5, 5);
+            }
+        }
+
+        @Nested
+        @DisplayName("When the near cache is enabled")
+        class WhenNearCacheEnabled {
+
+            @BeforeEach
+            public void setup() {
+                config.setNearCacheMaxBytes(1_024);
+                CacheRedistributor.configure(config);
+                Map<Integer, ServerInfo> serverInfoTable = cacheRedis.serverInfoTable;
+                cacheRedis = new CacheRedistributor(cacheInfoServerPort, mockHashRing);
+                cacheRedis.serverInfoTable = serverInfoTable;
+
+                when(mockHashRing.getVersion()).thenReturn(1L);
+                when(mockHashRing.peekServerId("moved.jpg")).thenReturn(1);
+                when(mockHashRing.peekServerId("stayed.jpg")).thenReturn(2);
+                cacheRedis.putNearCached("moved.jpg", new byte[] { 1 }, null);
+                cacheRedis.putNearCached("stayed.jpg", new byte[] { 2 }, null);
+            }
+
+            @Test
+            @DisplayName("Should record the CacheServer which a cached resource name is mapped to")
+            public void shouldRecordOwner() {
+                assertEquals(1, cacheRedis.getNearCached("moved.jpg").ownerServerId);
+                assertEquals(2, cacheRedis.getNearCached("stayed.jpg").ownerServerId);
+            }
+
+            @Test
+            @DisplayName("Should drop the entries of resource names which moved to another CacheServer")
+            public void shouldDropMovedEntries() {
+                when(mockHashRing.getVersion()).thenReturn(2L);
+                when(mockHashRing.peekServerId("moved.jpg")).thenReturn(3);
+                cacheRedis.remapCacheKeys();
+
+                assertNull(cacheRedis.getNearCached("moved.jpg"));
+                assertNotNull(cacheRedis.getNearCached("stayed.jpg"));
+                assertEquals(1, cacheRedis.getNearCache().getInvalidationCount());
+            }
+
+            @Test
+            @DisplayName("Should not check the entries if the mapping has not changed")
+            public void shouldSkipCheckIfMappingUnchanged() {
+                cacheRedis.remapCacheKeys();
+                when(mockHashRing.peekServerId("moved.jpg")).thenReturn(3);
+                cacheRedis.remapCacheKeys();
+
+                assertNotNull(cacheRedis.getNearCached("moved.jpg"));
+            }
+        }
+
+        @Nested
+        @DisplayName("When the hot arc splitting remap mode is selected")
+        class WhenHotArcSplittingSelected {
+
+            @BeforeEach
+            public void setup() {
+                config.setRemapMode(CacheRedistributor.RemapMode.HOT_ARC_SPLITTING);
+                CacheRedistributor.configure(config);
+            }
+
+            @Test
+            @DisplayName("Should not add or remove angles when the routing strategy rebalances its hot arcs")
+            public void shouldLeaveRebalancingToStrategy() {
+                when(mockHashRing.rebalanceHotArcs(any())).thenReturn(true);
+                cacheRedis.remapCacheKeys();
+
+                verify(mockHashRing, times(1)).rebalanceHotArcs(any());
+                verify(mockHashRing, never()).addAngle(anyInt(), anyInt());
+                verify(mockHashRing, never()).removeAngle(anyInt(), anyInt());
+            }
+
+            @Test
+            @DisplayName("Should fall back to the load cutoffs when the routing strategy does not count lookups")
+            public void shouldFallBackToLoadCutoffs() {
+                when(mockHashRing.rebalanceHotArcs(any())).thenReturn(false);
+                cacheRedis.remapCacheKeys();
+
+                verify(mockHashRing, times(1)).addAngle(1, 3);
+                verify(mockHashRing, times(1)).removeAngle(5, 3);
+            }
+        }
+
+        @Nested
+        @DisplayName("When the routing strategy is weighted directly by capacity factors")
+        class WhenStrategyUsesCapacityFactors {
+            RoutingStrategy mockStrategy;
+
+            @BeforeEach
+            public void setup() {
+                mockStrategy = Mockito.mock(RoutingStrategy.class);
+                when(mockStrategy.applyCapacityFactors(any())).thenReturn(true);
+                Map<Integer, ServerInfo> serverInfoTable = cacheRedis.serverInfoTable;
+                cacheRedis = new CacheRedistributor(cacheInfoServerPort, mockStrategy);
+                cacheRedis.serverInfoTable = serverInfoTable;
+                cacheRedis.remapCacheKeys();
+            }
+
+            @Test
+            @DisplayName("Should pass the capacity factor of every server to the routing strategy")
+            public void shouldPassCapacityFactors() {
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Map<Integer, Double>> cfArg = ArgumentCaptor.forClass((Class<Map<Integer, Double>>) (Class<?>) Map.class);
+                verify(mockStrategy, times(1)).applyCapacityFactors(cfArg.capture());
+                assertEquals(5, cfArg.getValue().size());
+                assertEquals(cf5, cfArg.getValue().get(5));
+            }
+
+            @Test
+            @DisplayName("Should not add or remove angles")
+            public void shouldNotAddOrRemoveAngles() {
+                verify(mockStrategy, never()).addAngle(anyInt(), anyInt());
+                verify(mockStrategy, never()).removeAngle(anyInt(), anyInt());
+            }
+        }
     }
 }
\ No newline at end of file
@@ -4,17 +4,23 @@ import loadbalancerlab.factory.HttpClientFactory;
 import loadbalancerlab.shared.Config;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.ImmutableHttpProcessor;
 import org.junit.jupiter.api.*;
 import org.mockito.ArgumentCaptor;
@@ -22,16 +28,22 @@ import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 // tests client request handler and client request handler server together
@@ -157,7 +169,8 @@ public class CacheServerLoadBalancerClientRequestHandlerTest {
         mockClient = Mockito.mock(CloseableHttpClient.class);
         HttpClientFactory mockClientFactory = Mockito.mock(HttpClientFactory.class);
         when(mockClientFactory.buildApacheClient()).thenReturn(mockClient);
-        reqHandler.clientFactory = mockClientFactory;
+        when(mockClientFactory.getPooledApacheClient()).thenReturn(mockClient);
+        LoadBalancerClientRequestHandler.clientFactory = mockClientFactory;
 
         // setting up mocks for mock response
         mockResponse = Mockito.mock(CloseableHttpResponse.class);
@@ -203,4 +216,132 @@ public class CacheServerLoadBalancerClientRequestHandlerTest {
         String stringFromMockServer = IOUtils.toString(contentFromMockServer, StandardCharsets.UTF_8.name());
         assertEquals(mockEntityContent, stringFromMockServer);
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("When failover is enabled")
+    class WhenFailoverEnabled {
+        int failoverPort = 5_847;
+
+        @BeforeEach
+        public void setup() throws IOException {
+            Config failoverConfig = new Config();
+            failoverConfig.setFailoverEnabled(true);
+            failoverConfig.setFailoverMaxAttempts(2);
+            LoadBalancerClientRequestHandler.configure(failoverConfig);
+            LoadBalancerClientRequestHandler.clientFactory = Mockito.mock(HttpClientFactory.class);
+            when(LoadBalancerClientRequestHandler.clientFactory.getPooledApacheClient()).thenReturn(mockClient);
+            clearInvocations(cacheRedis);
+
+            when(cacheRedis.selectFailoverPort(anyString(), anySet())).thenReturn(failoverPort);
+            when(mockClient.execute(any(HttpGet.class))).thenAnswer(invocation -> {
+                HttpGet getReq = invocation.getArgument(0);
+
+                if (getReq.getURI().getPort() == mockCacheServerPort)
+                    throw new ConnectException("Connection refused");
+
+                return mockResponse;
+            });
+        }
+
+        @AfterEach
+        public void teardown() {
+            LoadBalancerClientRequestHandler.configure(config);
+        }
+
+        @Test
+        @DisplayName("should retry the request on the next server and mark the failed server as suspect")
+        public void shouldFailOverToNextServer() throws IOException {
+            String resourceName = "Grumpy_Spooky.jpg";
+            HttpGet getReq = new HttpGet("http://127.0.0.1:" + mockServerPort + "/resource/" + resourceName);
+            CloseableHttpResponse res = clientFactory.buildApacheClient().execute(getReq);
+
+            assertEquals(200, res.getStatusLine().getStatusCode());
+            assertEquals(mockEntityContent, IOUtils.toString(res.getEntity().getContent(), StandardCharsets.UTF_8.name()));
+            verify(cacheRedis).markSuspect(mockCacheServerPort);
+            verify(cacheRedis).releasePort(mockCacheServerPort);
+            verify(cacheRedis).releasePort(failoverPort);
+        }
+
+        @Test
+        @DisplayName("should respond with an error when every attempt fails")
+        public void shouldFailWhenAttemptsExhausted() throws IOException {
+            when(cacheRedis.selectFailoverPort(anyString(), anySet())).thenReturn(-1);
+            String resourceName = "Grumpy_Spooky.jpg";
+            HttpGet getReq = new HttpGet("http://127.0.0.1:" + mockServerPort + "/resource/" + resourceName);
+            CloseableHttpResponse res = clientFactory.buildApacheClient().execute(getReq);
+
+            assertEquals(500, res.getStatusLine().getStatusCode());
+            verify(cacheRedis).releasePort(mockCacheServerPort);
+        }
+    }
+
+    @Nested
+    @DisplayName("When hedging is enabled")
+    class WhenHedgingEnabled {
+        int hedgePort = 5_848;
+        CloseableHttpAsyncClient mockAsyncClient;
+        List<HttpGet> sentRequests;
+        LoadBalancerClientRequestHandler hedgingHandler;
+
+        @BeforeEach
+        public void setup() {
+            Config hedgingConfig = new Config();
+            hedgingConfig.setHedgingEnabled(true);
+            LoadBalancerClientRequestHandler.configure(hedgingConfig);
+            LoadBalancerClientRequestHandler.clientFactory = Mockito.mock(HttpClientFactory.class);
+            mockAsyncClient = Mockito.mock(CloseableHttpAsyncClient.class);
+            when(LoadBalancerClientRequestHandler.clientFactory.getPooledAsyncClient()).thenReturn(mockAsyncClient);
+            clearInvocations(cacheRedis);
+            when(cacheRedis.selectHedgePort(anyString(), eq(mockCacheServerPort))).thenReturn(hedgePort);
+            sentRequests = new ArrayList<>();
+
+            /* The selected CacheServer refuses the connection and the hedge responds */
+            when(mockAsyncClient.execute(any(HttpGet.class), any())).thenAnswer(invocation -> {
+                HttpGet getReq = invocation.getArgument(0);
+                FutureCallback<HttpResponse> callback = invocation.getArgument(1);
+                sentRequests.add(getReq);
+
+                if (getReq.getURI().getPort() == mockCacheServerPort) {
+                    callback.failed(new ConnectException("Connection refused"));
+                } else {
+                    HttpResponse res = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+                    res.setEntity(new StringEntity(mockEntityContent));
+                    callback.completed(res);
+                }
+
+                return new CompletableFuture<HttpResponse>();
+            });
+
+            hedgingHandler = new LoadBalancerClientRequestHandler(cacheRedis);
+        }
+
+        @AfterEach
+        public void teardown() {
+            LoadBalancerClientRequestHandler.configure(config);
+        }
+
+        @Test
+        @DisplayName("should respond from the hedge, mark the failed server as suspect and give every request a deadline")
+        public void shouldHedgeFailedRequestWithDeadline() throws IOException {
+            HttpResponse res = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+            hedgingHandler.handle(new BasicHttpRequest("GET", "/resource/Grumpy_Spooky.jpg"), res, new BasicHttpContext());
+
+            assertEquals(200, res.getStatusLine().getStatusCode());
+            assertEquals(mockEntityContent, IOUtils.toString(res.getEntity().getContent(), StandardCharsets.UTF_8.name()));
+            verify(cacheRedis).markSuspect(mockCacheServerPort);
+            verify(cacheRedis, never()).markSuspect(hedgePort);
+            assertEquals(2, sentRequests.size());
+
+            for (HttpGet getReq : sentRequests)
+                assertTrue(getReq.getConfig().getSocketTimeout() > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("should extract the last non-empty path segment of the uri as the resource name")
+    public void shouldExtractResourceName() {
+        assertEquals("Chooder_Bunny.jpg", LoadBalancerClientRequestHandler.extractResourceName("/api/Chooder_Bunny.jpg"));
+        assertEquals("Chooder_Bunny.jpg", LoadBalancerClientRequestHandler.extractResourceName("/api/Chooder_Bunny.jpg/"));
+        assertEquals("Chooder_Bunny.jpg", LoadBalancerClientRequestHandler.extractResourceName("Chooder_Bunny.jpg"));
+    }
+}
@@ -0,0 +1,157 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+    static final int WINDOW_SIZE = 10;
+    static final long OPEN_DURATION = 1_000;
+    CircuitBreaker breaker;
+
+    @BeforeEach
+    public void setup() {
+        Config config = new Config();
+        config.setBreakerWindowSize(WINDOW_SIZE);
+        config.setBreakerFailureRateThreshold(0.5);
+        config.setBreakerSlowCallThreshold(100);
+        config.setBreakerOpenDuration(OPEN_DURATION);
+        CircuitBreaker.configure(config);
+        breaker = new CircuitBreaker();
+    }
+
+    @AfterEach
+    public void teardown() {
+        CircuitBreaker.configure(new Config());
+    }
+
+    /* Opens the breaker at time 0 with a full window of failures */
+    private void trip() {
+        for (int i = 0; i < WINDOW_SIZE; i++)
+            breaker.record(false, 0, 0);
+    }
+
+    @Test
+    @DisplayName("Should let requests through while closed")
+    public void shouldAllowRequestsWhileClosed() {
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(0));
+        assertTrue(breaker.tryAcquire(0));
+    }
+
+    @Test
+    @DisplayName("Should not open before the window is full")
+    public void shouldWaitForFullWindow() {
+        for (int i = 0; i < WINDOW_SIZE - 1; i++)
+            breaker.record(false, 0, 0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Should open when the fraction of failures in the window reaches the threshold")
+    public void shouldOpenOnFailureRate() {
+        for (int i = 0; i < WINDOW_SIZE / 2; i++)
+            breaker.record(true, 0, 0);
+
+        for (int i = 0; i < WINDOW_SIZE / 2; i++)
+            breaker.record(false, 0, 0);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(0));
+        assertEquals(1, breaker.getNumTrips());
+    }
+
+    @Test
+    @DisplayName("Should count slow responses as failures")
+    public void shouldCountSlowResponses() {
+        for (int i = 0; i < WINDOW_SIZE; i++)
+            breaker.record(true, 100, 0);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Should forget failures which have left the window")
+    public void shouldForgetOldFailures() {
+        for (int i = 0; i < WINDOW_SIZE / 2 - 1; i++)
+            breaker.record(false, 0, 0);
+
+        for (int i = 0; i < 2 * WINDOW_SIZE; i++)
+            breaker.record(true, 0, 0);
+
+        for (int i = 0; i < WINDOW_SIZE / 2 - 1; i++)
+            breaker.record(false, 0, 0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Nested
+    @DisplayName("When the breaker is open")
+    class WhenOpen {
+
+        @BeforeEach
+        public void setup() {
+            trip();
+        }
+
+        @Test
+        @DisplayName("Should only move to half-open once the open duration has passed")
+        public void shouldHalfOpenAfterDuration() {
+            assertFalse(breaker.tryHalfOpen(OPEN_DURATION - 1));
+            assertTrue(breaker.tryHalfOpen(OPEN_DURATION));
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        }
+
+        @Test
+        @DisplayName("Should let a single probe through while half-open")
+        public void shouldAllowSingleProbe() {
+            breaker.tryHalfOpen(OPEN_DURATION);
+
+            assertTrue(breaker.tryAcquire(OPEN_DURATION));
+            assertFalse(breaker.tryAcquire(OPEN_DURATION));
+        }
+
+        @Test
+        @DisplayName("Should close when the probe succeeds")
+        public void shouldCloseOnProbeSuccess() {
+            breaker.tryHalfOpen(OPEN_DURATION);
+            breaker.tryAcquire(OPEN_DURATION);
+
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.record(true, 0, OPEN_DURATION));
+
+            /* The failures recorded before the breaker opened are forgotten */
+            breaker.record(false, 0, OPEN_DURATION);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+
+        @Test
+        @DisplayName("Should open again when the probe fails")
+        public void shouldReopenOnProbeFailure() {
+            breaker.tryHalfOpen(OPEN_DURATION);
+            breaker.tryAcquire(OPEN_DURATION);
+
+            assertEquals(CircuitBreaker.State.OPEN, breaker.record(false, 0, OPEN_DURATION));
+            assertFalse(breaker.tryHalfOpen(2 * OPEN_DURATION - 1));
+            assertEquals(2, breaker.getNumTrips());
+        }
+
+        @Test
+        @DisplayName("Should let another probe through if the outcome of the probe is never recorded")
+        public void shouldReleaseLostProbe() {
+            breaker.tryHalfOpen(OPEN_DURATION);
+            breaker.tryAcquire(OPEN_DURATION);
+
+            breaker.tryHalfOpen(2 * OPEN_DURATION);
+            assertTrue(breaker.tryAcquire(2 * OPEN_DURATION));
+        }
+
+        @Test
+        @DisplayName("Should ignore outcomes of requests which were sent before it opened")
+        public void shouldIgnoreLateOutcomes() {
+            assertNull(breaker.record(true, 0, 1));
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        }
+    }
+}
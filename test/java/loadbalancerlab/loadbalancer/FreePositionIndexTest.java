@@ -0,0 +1,83 @@
+package loadbalancerlab.loadbalancer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreePositionIndexTest {
+    static final int SIZE = 50;
+    FreePositionIndex freePositions;
+    Random rand;
+
+    @BeforeEach
+    public void setup() {
+        freePositions = new FreePositionIndex(SIZE);
+        rand = new Random(7);
+    }
+
+    @Nested
+    @DisplayName("Test acquire()")
+    class TestAcquire {
+
+        @Test
+        @DisplayName("Should return every position exactly once before the index is exhausted")
+        public void shouldReturnDistinctPositions() {
+            Set<Long> acquired = new HashSet<>();
+
+            for (int i = 0; i < SIZE; i++) {
+                long position = freePositions.acquire(rand);
+                assertTrue(position >= 0 && position < SIZE);
+                assertTrue(acquired.add(position));
+                assertFalse(freePositions.isFree(position));
+            }
+
+            assertEquals(0, freePositions.numFree());
+        }
+
+        @Test
+        @DisplayName("Should return -1 when every position is occupied")
+        public void shouldReturnNegativeOneWhenFull() {
+            for (int i = 0; i < SIZE; i++)
+                freePositions.acquire(rand);
+
+            assertEquals(-1, freePositions.acquire(rand));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test release()")
+    class TestRelease {
+
+        @Test
+        @DisplayName("Should make a released position available to acquire() again")
+        public void shouldMakePositionAvailable() {
+            for (int i = 0; i < SIZE; i++)
+                freePositions.acquire(rand);
+
+            freePositions.release(17);
+
+            assertTrue(freePositions.isFree(17));
+            assertEquals(1, freePositions.numFree());
+            assertEquals(17, freePositions.acquire(rand));
+        }
+
+        @Test
+        @DisplayName("Should throw IllegalArgumentException when the position is not occupied")
+        public void shouldThrowWhenPositionNotOccupied() {
+            assertThrows(IllegalArgumentException.class, () -> freePositions.release(3));
+        }
+
+        @Test
+        @DisplayName("Should throw IllegalArgumentException when the position is out of range")
+        public void shouldThrowWhenPositionOutOfRange() {
+            assertThrows(IllegalArgumentException.class, () -> freePositions.release(SIZE));
+        }
+    }
+}
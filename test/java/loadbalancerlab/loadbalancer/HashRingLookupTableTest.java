@@ -0,0 +1,132 @@
+package loadbalancerlab.loadbalancer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HashRingLookupTableTest {
+    HashRingLookupTable lookupTable;
+    List<HashRingAngle> angles;
+
+    @BeforeEach
+    public void setup() {
+        angles = new ArrayList<>();
+        angles.add(new HashRingAngle(3, 500));
+        angles.add(new HashRingAngle(1, 100));
+        angles.add(new HashRingAngle(2, 300));
+        lookupTable = new HashRingLookupTable(angles, 1);
+    }
+
+    @Test
+    @DisplayName("Should hold an entry for every angle")
+    public void shouldHoldEntryForEveryAngle() {
+        assertEquals(3, lookupTable.size());
+    }
+
+    @Nested
+    @DisplayName("Test findServerId()")
+    class TestFindServerId {
+
+        @Test
+        @DisplayName("Should return the server id of the angle immediately clockwise of the position")
+        public void shouldReturnNextAngleClockwise() {
+            assertEquals(1, lookupTable.findServerId(50));
+            assertEquals(2, lookupTable.findServerId(150));
+            assertEquals(3, lookupTable.findServerId(450));
+        }
+
+        @Test
+        @DisplayName("Should skip an angle which is located exactly at the position")
+        public void shouldSkipAngleAtPosition() {
+            assertEquals(2, lookupTable.findServerId(100));
+            assertEquals(3, lookupTable.findServerId(300));
+        }
+
+        @Test
+        @DisplayName("Should wrap around to the lowest angle when the position is higher than any angle")
+        public void shouldWrapAroundToLowestAngle() {
+            assertEquals(1, lookupTable.findServerId(500));
+            assertEquals(1, lookupTable.findServerId(9_999));
+        }
+
+        @Test
+        @DisplayName("Should return -1 when the table is empty")
+        public void shouldReturnNegativeOneWhenEmpty() {
+            lookupTable = new HashRingLookupTable(new ArrayList<>(), 1);
+            assertEquals(-1, lookupTable.findServerId(50));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test getHitCount()")
+    class TestGetHitCount {
+
+        @Test
+        @DisplayName("Should count the lookups which land on each arc")
+        public void shouldCountLookupsPerArc() {
+            lookupTable = new HashRingLookupTable(angles, 1, true);
+            lookupTable.findServerId(50);
+            lookupTable.findServerId(600);
+            lookupTable.findServerId(250);
+
+            assertEquals(2, lookupTable.getHitCount(0));
+            assertEquals(1, lookupTable.getHitCount(1));
+            assertEquals(0, lookupTable.getHitCount(2));
+        }
+
+        @Test
+        @DisplayName("Should not count lookups made with peekServerId()")
+        public void shouldNotCountPeeks() {
+            lookupTable = new HashRingLookupTable(angles, 1, true);
+
+            assertEquals(lookupTable.findServerId(50), lookupTable.peekServerId(50));
+            assertEquals(1, lookupTable.getHitCount(0));
+        }
+
+        @Test
+        @DisplayName("Should return 0 when the table does not count lookups")
+        public void shouldReturnZeroWhenNotCounting() {
+            lookupTable.findServerId(50);
+            assertEquals(0, lookupTable.getHitCount(0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test findServerIds()")
+    class TestFindServerIds {
+
+        @Test
+        @DisplayName("Should return distinct server ids in clockwise order starting from the position")
+        public void shouldReturnServerIdsClockwise() {
+            angles.add(new HashRingAngle(1, 400));
+            lookupTable = new HashRingLookupTable(angles, 2);
+            int[] output = new int[3];
+
+            assertEquals(3, lookupTable.findServerIds(350, output));
+            assertArrayEquals(new int[] { 1, 3, 2 }, output);
+        }
+
+        @Test
+        @DisplayName("Should write at most output.length server ids")
+        public void shouldRespectOutputLength() {
+            int[] output = new int[2];
+
+            assertEquals(2, lookupTable.findServerIds(150, output));
+            assertArrayEquals(new int[] { 2, 3 }, output);
+        }
+
+        @Test
+        @DisplayName("Should return 0 when the table is empty")
+        public void shouldReturnZeroWhenEmpty() {
+            lookupTable = new HashRingLookupTable(new ArrayList<>(), 1);
+            assertEquals(0, lookupTable.findServerIds(50, new int[3]));
+        }
+    }
+}
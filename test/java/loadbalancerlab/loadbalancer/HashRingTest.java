@@ -127,6 +127,53 @@ public class HashRingTest {
         }
     }
 
+    @Nested
+    @DisplayName("Test maskServer()")
+    class TestMaskServer {
+        int otherServerId = 8;
+
+        @BeforeEach
+        public void setup() {
+            hashRing.addServer(serverId);
+            hashRing.addServer(otherServerId);
+            hashRing.maskServer(serverId);
+        }
+
+        @Test
+        @DisplayName("Should map every resource name to the other servers without removing the angles of the server")
+        public void shouldLeaveMaskedServerOutOfLookups() {
+            for (int i = 0; i < 100; i++)
+                assertEquals(otherServerId, hashRing.findServerId("resource_" + i));
+
+            assertEquals(DEFAULT_ANGLES_PER_SERVER, hashRing.anglesByServerId.get(serverId).size());
+            assertEquals(2 * DEFAULT_ANGLES_PER_SERVER, hashRing.angles.size());
+            assertEquals(DEFAULT_ANGLES_PER_SERVER, hashRing.getSnapshot().size());
+        }
+
+        @Test
+        @DisplayName("Should restore the angles of the server to lookups when it is unmasked")
+        public void shouldRestoreOnUnmask() {
+            long version = hashRing.getVersion();
+            hashRing.unmaskServer(serverId);
+
+            assertEquals(2 * DEFAULT_ANGLES_PER_SERVER, hashRing.getSnapshot().size());
+            assertTrue(hashRing.getVersion() > version);
+        }
+
+        @Test
+        @DisplayName("Should keep every angle in lookups when every server is masked")
+        public void shouldNotMaskEveryServer() {
+            hashRing.maskServer(otherServerId);
+            assertEquals(2 * DEFAULT_ANGLES_PER_SERVER, hashRing.getSnapshot().size());
+        }
+
+        @Test
+        @DisplayName("Should throw an IllegalArgumentException for a server which has not been added")
+        public void shouldRejectUnknownServer() {
+            assertThrows(IllegalArgumentException.class, () -> hashRing.maskServer(100));
+        }
+    }
+
     @Nested
     @DisplayName("Test addAngle()")
     class TestAddAngle {
@@ -193,6 +240,38 @@ public class HashRingTest {
             }
         }
 
+        @Nested
+        @DisplayName("When every position on the hash ring is occupied")
+        class WhenEveryPositionIsOccupied {
+
+            @BeforeEach
+            public void setup() {
+                config.setRingSize(DEFAULT_ANGLES_PER_SERVER + 2);
+                HashRing.configure(config);
+                hashRing = new HashRing();
+                hashRing.addServer(serverId);
+            }
+
+            @Test
+            @DisplayName("Should only add angles to the remaining positions")
+            public void shouldOnlyFillRemainingPositions() {
+                hashRing.addAngle(serverId, 5);
+                assertEquals(DEFAULT_ANGLES_PER_SERVER + 2, hashRing.angles.size());
+                assertEquals(0, hashRing.freePositions.numFree());
+            }
+
+            @Test
+            @DisplayName("Should reuse positions released by removeAngle()")
+            public void shouldReusePositionsReleasedByRemoveAngle() {
+                hashRing.addAngle(serverId, 5);
+                hashRing.removeAngle(serverId, 3);
+                assertEquals(3, hashRing.freePositions.numFree());
+
+                hashRing.addAngle(serverId, 3);
+                assertEquals(DEFAULT_ANGLES_PER_SERVER + 2, hashRing.angles.size());
+            }
+        }
+
         @Nested
         @DisplayName("When inputs are made for a server that doesn't exist in the hash ring")
         class WhenInputForServerWhichDoesNotExist {
@@ -320,11 +399,11 @@ public class HashRingTest {
         @Test
         @DisplayName("Should find server id with the next highest angle for the resource name")
         public void shouldFindServerWithNextHighestAngle() {
-            int position = hashFunction.hash(resourceName) % RING_SIZE;
+            long position = HashRing.toPosition(hashFunction.hash64(resourceName));
             System.out.println("position = " + position);
             List<HashRingAngle> angles = new ArrayList<>(hashRing.angles.values());
 
-            Collections.sort(angles, ( HashRingAngle a, HashRingAngle b) -> a.getAngle() - b.getAngle());
+            Collections.sort(angles, ( HashRingAngle a, HashRingAngle b) -> Long.compare(a.getAngle(), b.getAngle()));
 
             HashRingAngle expectedNextAngle = null;
 
@@ -351,7 +430,7 @@ public class HashRingTest {
             int serverId3 = 14;
             int serverId4 = 2;
             int serverId5 = 6;
-            int lowestAngle = Integer.MAX_VALUE;
+            long lowestAngle = Long.MAX_VALUE;
             int lowestAngleServerId = -1;
 
             @BeforeEach
@@ -367,7 +446,7 @@ public class HashRingTest {
 
                 boolean containsHighest = false;
                 int serverWithHighest = -1;
-                int highestAnglePos = 9_999;
+                long highestAnglePos = RING_SIZE - 1;
                 HashRingAngle highestAngle = null;
 
                 for (HashRingAngle angle : hashRing.angles.values()) {
@@ -387,18 +466,99 @@ public class HashRingTest {
                 if (containsHighest) {
                     hashRing.anglesByServerId.get(serverWithHighest).remove(highestAngle);
                     hashRing.angles.remove(highestAnglePos);
+                    hashRing.publishLookupTable();
                 }
             }
 
             @Test
             @DisplayName("It should return the lowest angle")
             public void shouldReturnLowestAngle() {
-                when(mockHashFunction.hash(anyString())).thenReturn(9_999);
+                /* A hash with every bit set maps to the highest position on the ring */
+                when(mockHashFunction.hash64(anyString())).thenReturn(-1L);
                 assertEquals(lowestAngleServerId, hashRing.findServerId(resourceName));
             }
         }
     }
 
+    @Nested
+    @DisplayName("Test toPosition()")
+    class TestToPosition {
+
+        @Test
+        @DisplayName("Should map the lowest and highest hash values to the ends of the ring")
+        public void shouldMapExtremesToEndsOfRing() {
+            assertEquals(0, HashRing.toPosition(0L));
+            assertEquals(RING_SIZE - 1, HashRing.toPosition(-1L));
+        }
+
+        @Test
+        @DisplayName("Should map every hash value into the range of the ring")
+        public void shouldMapHashesIntoRange() {
+            Random rand = new Random(42);
+
+            for (int i = 0; i < 10_000; i++) {
+                long position = HashRing.toPosition(rand.nextLong());
+                assertTrue(position >= 0 && position < RING_SIZE);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Test snapshot publishing")
+    class TestSnapshotPublishing {
+
+        @BeforeEach
+        public void setup() {
+            hashRing.addServer(serverId);
+        }
+
+        @Test
+        @DisplayName("Should increment the version when angles are added")
+        public void shouldIncrementVersionWhenAnglesAdded() {
+            long version = hashRing.getVersion();
+            hashRing.addAngle(serverId, 1);
+            assertEquals(version + 1, hashRing.getVersion());
+        }
+
+        @Test
+        @DisplayName("Should hold every angle in the published snapshot")
+        public void shouldHoldEveryAngleInSnapshot() {
+            assertEquals(hashRing.angles.size(), hashRing.getSnapshot().size());
+        }
+
+        @Nested
+        @DisplayName("When changes are made within a batch")
+        class WhenChangesMadeWithinBatch {
+            long initialVersion;
+            HashRingLookupTable initialSnapshot;
+
+            @BeforeEach
+            public void setup() {
+                initialVersion = hashRing.getVersion();
+                initialSnapshot = hashRing.getSnapshot();
+                hashRing.beginBatch();
+                hashRing.addAngle(serverId, 2);
+                hashRing.removeAngle(serverId, 1);
+                hashRing.addServer(serverId + 1);
+            }
+
+            @Test
+            @DisplayName("Should not publish a new snapshot before the batch is committed")
+            public void shouldNotPublishBeforeCommit() {
+                assertSame(initialSnapshot, hashRing.getSnapshot());
+                hashRing.commitBatch();
+            }
+
+            @Test
+            @DisplayName("Should publish a single new snapshot when the batch is committed")
+            public void shouldPublishOnceOnCommit() {
+                hashRing.commitBatch();
+                assertEquals(initialVersion + 1, hashRing.getVersion());
+                assertEquals(hashRing.angles.size(), hashRing.getSnapshot().size());
+            }
+        }
+    }
+
     @Nested
     @DisplayName("Test 'recordServerAngles()'")
     class TestRecordServerAngles {
@@ -422,7 +582,7 @@ public class HashRingTest {
             hashRing.recordServerAngles(indexTime - 5);
             hashRing.addServer(serverId4);
             hashRing.recordServerAngles(indexTime);
-            angleHistory = hashRing.angleHistory;
+            angleHistory = hashRing.getHashRingAngleHistory();
         }
 
         @Test
@@ -464,4 +624,116 @@ public class HashRingTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Test rebalanceHotArcs()")
+    class TestRebalanceHotArcs {
+        int hotServerId = 1;
+        int coldServerId = 2;
+        Map<Integer, Double> capacityFactors;
+        long hotArcStart;
+        long hotArcEnd;
+
+        @BeforeEach
+        public void setup() {
+            config.setRemapMode(CacheRedistributor.RemapMode.HOT_ARC_SPLITTING);
+            HashRing.configure(config);
+            hashRing = new HashRing();
+            hashRing.addServer(hotServerId);
+            hashRing.addServer(coldServerId);
+
+            /* Look up a resource until it lands on an arc of 'hotServerId' */
+            String resourceName = null;
+
+            for (int i = 0; resourceName == null; i++) {
+                if (hashRing.findServerId("resource-" + i) == hotServerId)
+                    resourceName = "resource-" + i;
+            }
+
+            for (int i = 0; i < 10; i++)
+                hashRing.findServerId(resourceName);
+
+            HashRingLookupTable table = hashRing.getSnapshot();
+            long hottestHits = -1;
+
+            for (int i = 0; i < table.size(); i++) {
+                if (table.getServerId(i) == hotServerId && table.getHitCount(i) > hottestHits) {
+                    hottestHits = table.getHitCount(i);
+                    hotArcEnd = table.getPosition(i);
+                    hotArcStart = table.getPosition(i == 0 ? table.size() - 1 : i - 1);
+                }
+            }
+
+            capacityFactors = new HashMap<>();
+            capacityFactors.put(hotServerId, 0.9);
+            capacityFactors.put(coldServerId, 0.1);
+        }
+
+        @Test
+        @DisplayName("Should split the hottest arc of the overloaded server with an angle for the underloaded server")
+        public void shouldSplitHottestArc() {
+            assertTrue(hashRing.rebalanceHotArcs(capacityFactors));
+
+            long midpoint = HashRing.arcMidpoint(hotArcStart, hotArcEnd);
+            assertEquals(coldServerId, hashRing.angles.get(midpoint).getServerId());
+            assertEquals(DEFAULT_ANGLES_PER_SERVER + 1, hashRing.anglesByServerId.get(coldServerId).size());
+            assertEquals(DEFAULT_ANGLES_PER_SERVER, hashRing.anglesByServerId.get(hotServerId).size());
+        }
+
+        @Test
+        @DisplayName("Should shrink the hottest arc when no underloaded server can take another angle")
+        public void shouldShrinkHottestArcWhenNoReceiver() {
+            config.setMaxAnglesPerServer(DEFAULT_ANGLES_PER_SERVER);
+            HashRing.configure(config);
+            assertTrue(hashRing.rebalanceHotArcs(capacityFactors));
+
+            long midpoint = HashRing.arcMidpoint(hotArcStart, hotArcEnd);
+            assertFalse(hashRing.angles.containsKey(hotArcEnd));
+            assertEquals(hotServerId, hashRing.angles.get(midpoint).getServerId());
+            assertEquals(DEFAULT_ANGLES_PER_SERVER, hashRing.anglesByServerId.get(hotServerId).size());
+        }
+
+        @Test
+        @DisplayName("Should not change the ring when no server is above the load threshold")
+        public void shouldNotChangeBalancedRing() {
+            capacityFactors.put(hotServerId, 0.5);
+            capacityFactors.put(coldServerId, 0.45);
+            long version = hashRing.getVersion();
+
+            assertTrue(hashRing.rebalanceHotArcs(capacityFactors));
+            assertEquals(version, hashRing.getVersion());
+        }
+
+        @Test
+        @DisplayName("Should return false when lookups are not being counted")
+        public void shouldReturnFalseWhenNotCounting() {
+            config.setRemapMode(CacheRedistributor.RemapMode.LOAD_CUTOFFS);
+            HashRing.configure(config);
+
+            assertFalse(hashRing.rebalanceHotArcs(capacityFactors));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test arcMidpoint()")
+    class TestArcMidpoint {
+
+        @Test
+        @DisplayName("Should return the position halfway between the ends of the arc")
+        public void shouldReturnHalfwayPosition() {
+            assertEquals(150, HashRing.arcMidpoint(100, 200));
+        }
+
+        @Test
+        @DisplayName("Should wrap around the end of the ring")
+        public void shouldWrapAroundRing() {
+            assertEquals(50, HashRing.arcMidpoint(RING_SIZE - 50, 150));
+        }
+
+        @Test
+        @DisplayName("Should return the end of the arc when the arc is too short to be split")
+        public void shouldReturnEndForShortArc() {
+            assertEquals(101, HashRing.arcMidpoint(100, 101));
+        }
+    }
+}
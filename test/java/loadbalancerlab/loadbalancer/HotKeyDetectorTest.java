@@ -0,0 +1,126 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotKeyDetectorTest {
+    static final int THRESHOLD = 10;
+    HotKeyDetector detector;
+    Config config;
+    long now;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setHotKeyThreshold(THRESHOLD);
+        config.setHotKeyTopK(2);
+        config.setHotKeyWindow(10);
+        HotKeyDetector.configure(config);
+        detector = new HotKeyDetector();
+        now = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a number of requests for a resource at the current test time.
+     */
+    private boolean recordTimes( String resourceName, int times ) {
+        boolean hot = false;
+
+        for (int i = 0; i < times; i++)
+            hot = detector.record(resourceName, now);
+
+        return hot;
+    }
+
+    @Nested
+    @DisplayName("Test record()")
+    class TestRecord {
+
+        @Test
+        @DisplayName("Should not report a resource as hot below the threshold")
+        public void shouldNotReportBelowThreshold() {
+            assertFalse(recordTimes("cold.jpg", THRESHOLD - 1));
+            assertTrue(detector.getHotKeys().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should report a resource as hot once it reaches the threshold")
+        public void shouldReportAtThreshold() {
+            assertTrue(recordTimes("hot.jpg", THRESHOLD));
+            assertTrue(detector.getHotKeys().containsKey("hot.jpg"));
+        }
+
+        @Test
+        @DisplayName("Should never underestimate the number of requests")
+        public void shouldNotUnderestimate() {
+            recordTimes("a.jpg", 7);
+            recordTimes("b.jpg", 3);
+
+            assertTrue(detector.estimate("a.jpg") >= 7);
+            assertTrue(detector.estimate("b.jpg") >= 3);
+        }
+
+        @Test
+        @DisplayName("Should replace the coldest hot key when more than topK resources are hot")
+        public void shouldReplaceColdestHotKey() {
+            recordTimes("first.jpg", THRESHOLD + 5);
+            recordTimes("second.jpg", THRESHOLD + 5);
+            recordTimes("third.jpg", THRESHOLD);
+
+            assertEquals(2, detector.getHotKeys().size());
+            assertFalse(detector.getHotKeys().containsKey("third.jpg"));
+
+            assertTrue(recordTimes("third.jpg", 10));
+            assertEquals(2, detector.getHotKeys().size());
+        }
+
+        @Test
+        @DisplayName("Should not take the lock for warm resources which are colder than every hot key")
+        public void shouldNotLockForWarmResources() {
+            recordTimes("first.jpg", THRESHOLD + 5);
+            recordTimes("second.jpg", THRESHOLD + 5);
+
+            /* Admission of 'warm.jpg' is attempted once, which finds the coldest hot key */
+            recordTimes("warm.jpg", THRESHOLD + 1);
+
+            synchronized (detector) {
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertFalse(recordTimes("warm.jpg", 4)));
+            }
+
+            assertFalse(detector.getHotKeys().containsKey("warm.jpg"));
+            assertTrue(recordTimes("warm.jpg", 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("When the window slides")
+    class WhenWindowSlides {
+
+        @BeforeEach
+        public void setup() {
+            recordTimes("hot.jpg", THRESHOLD);
+        }
+
+        @Test
+        @DisplayName("Should keep counting requests from the previous half of the window")
+        public void shouldKeepPreviousHalf() {
+            now += 5_000;
+            assertTrue(detector.record("hot.jpg", now));
+        }
+
+        @Test
+        @DisplayName("Should forget requests which are older than the window")
+        public void shouldForgetOldRequests() {
+            now += 10_000;
+            assertFalse(detector.record("hot.jpg", now));
+            assertFalse(detector.getHotKeys().containsKey("hot.jpg"));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JumpHashRoutingStrategyTest {
+    JumpHashRoutingStrategy strategy;
+    static final int DEFAULT_WEIGHT = 15;
+    static final int MAX_WEIGHT = 30;
+    static final int MIN_WEIGHT = 10;
+    static final int NUM_KEYS = 20_000;
+    Config config;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setMaxAnglesPerServer(MAX_WEIGHT);
+        config.setDefaultAnglesPerServer(DEFAULT_WEIGHT);
+        config.setMinAnglesPerServer(MIN_WEIGHT);
+        config.setHashFunction(new MurmurHashFunctionImpl());
+        WeightedRoutingStrategy.configure(config);
+        strategy = new JumpHashRoutingStrategy();
+    }
+
+    private Map<Integer, Integer> countKeysByServer() {
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < NUM_KEYS; i++)
+            counts.merge(strategy.findServerId("resource_" + i), 1, Integer::sum);
+
+        return counts;
+    }
+
+    @Test
+    @DisplayName("jumpHash() should always return a bucket within range")
+    public void jumpHashShouldReturnBucketWithinRange() {
+        for (long key = 0; key < 1_000; key++) {
+            int bucket = JumpHashRoutingStrategy.jumpHash(WeightedRoutingStrategy.mix(key), 7);
+            assertTrue(bucket >= 0 && bucket < 7);
+        }
+    }
+
+    @Nested
+    @DisplayName("When servers have been added")
+    class WhenServersAdded {
+
+        @BeforeEach
+        public void setup() {
+            strategy.addServer(1);
+            strategy.addServer(2);
+        }
+
+        @Test
+        @DisplayName("Should hold one bucket per unit of weight")
+        public void shouldHoldOneBucketPerUnitOfWeight() {
+            strategy.addAngle(1, 3);
+            assertEquals(DEFAULT_WEIGHT * 2 + 3, strategy.bucketOwners.size());
+        }
+
+        @Test
+        @DisplayName("Should not add more buckets than the maximum weight")
+        public void shouldNotExceedMaximumWeight() {
+            strategy.addAngle(1, MAX_WEIGHT * 2);
+            assertEquals(MAX_WEIGHT + DEFAULT_WEIGHT, strategy.bucketOwners.size());
+        }
+
+        @Test
+        @DisplayName("Should only move resource names to the server whose weight increased")
+        public void shouldOnlyMoveResourceNamesToServerWithIncreasedWeight() {
+            int[] before = new int[NUM_KEYS];
+
+            for (int i = 0; i < NUM_KEYS; i++)
+                before[i] = strategy.findServerId("resource_" + i);
+
+            strategy.addAngle(2, 5);
+
+            for (int i = 0; i < NUM_KEYS; i++) {
+                int after = strategy.findServerId("resource_" + i);
+
+                if (after != before[i])
+                    assertEquals(2, after);
+            }
+        }
+
+        @Test
+        @DisplayName("Should not map any resource names to a removed server")
+        public void shouldNotMapToRemovedServer() {
+            strategy.addServer(3);
+            strategy.removeServer(1);
+            Map<Integer, Integer> counts = countKeysByServer();
+            assertFalse(counts.containsKey(1));
+            assertEquals(2, counts.size());
+        }
+
+        @Test
+        @DisplayName("Should throw IllegalArgumentException when removing angles from a server which does not exist")
+        public void shouldThrowForUnknownServer() {
+            assertThrows(IllegalArgumentException.class, () -> strategy.removeAngle(5, 1));
+        }
+    }
+}
@@ -62,6 +62,7 @@ public class LoadBalancerClientRequestHandlerServerIntegrationTest {
         when(mockHttpClient.execute(any(HttpGet.class))).thenReturn(mockResponse);
         mockClientFactory = Mockito.mock(HttpClientFactory.class);
         when(mockClientFactory.buildApacheClient()).thenReturn(mockHttpClient);
+        when(mockClientFactory.getPooledApacheClient()).thenReturn(mockHttpClient);
 
         // passing configs to ClientRequestHandler
         config = new Config();
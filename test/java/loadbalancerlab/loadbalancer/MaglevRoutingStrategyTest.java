@@ -0,0 +1,142 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MaglevRoutingStrategyTest {
+    MaglevRoutingStrategy strategy;
+    static final int DEFAULT_WEIGHT = 15;
+    static final int MAX_WEIGHT = 30;
+    static final int MIN_WEIGHT = 10;
+    static final int TABLE_SIZE = 5_003;
+    static final int NUM_KEYS = 20_000;
+    Config config;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setMaxAnglesPerServer(MAX_WEIGHT);
+        config.setDefaultAnglesPerServer(DEFAULT_WEIGHT);
+        config.setMinAnglesPerServer(MIN_WEIGHT);
+        config.setMaglevTableSize(TABLE_SIZE);
+        config.setHashFunction(new MurmurHashFunctionImpl());
+        WeightedRoutingStrategy.configure(config);
+        MaglevRoutingStrategy.configure(config);
+        strategy = new MaglevRoutingStrategy();
+    }
+
+    private Map<Integer, Integer> countKeysByServer() {
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < NUM_KEYS; i++)
+            counts.merge(strategy.findServerId("resource_" + i), 1, Integer::sum);
+
+        return counts;
+    }
+
+    @Test
+    @DisplayName("Should throw an exception when the table size is not prime")
+    public void shouldRejectTableSizeWhichIsNotPrime() {
+        for (int tableSize : new int[] { -7, 0, 1, 4, 5_000, 65_535 }) {
+            config.setMaglevTableSize(tableSize);
+            assertThrows(IllegalArgumentException.class, () -> MaglevRoutingStrategy.configure(config));
+        }
+
+        /* The previous table size is kept */
+        assertEquals(TABLE_SIZE, MaglevRoutingStrategy.tableSize);
+    }
+
+    @Test
+    @DisplayName("Should return -1 when no servers have been added")
+    public void shouldReturnNegativeOneWhenEmpty() {
+        assertEquals(-1, strategy.findServerId("Chooder_Bunny.jpg"));
+    }
+
+    @Nested
+    @DisplayName("When servers have been added")
+    class WhenServersAdded {
+
+        @BeforeEach
+        public void setup() {
+            strategy.addServer(1);
+            strategy.addServer(2);
+            strategy.addServer(3);
+        }
+
+        @Test
+        @DisplayName("Should map resource names to every server")
+        public void shouldMapToEveryServer() {
+            Map<Integer, Integer> counts = countKeysByServer();
+            assertEquals(3, counts.size());
+        }
+
+        @Test
+        @DisplayName("Should throw IllegalArgumentException when a server is added twice")
+        public void shouldThrowWhenServerAddedTwice() {
+            assertThrows(IllegalArgumentException.class, () -> strategy.addServer(1));
+        }
+
+        @Test
+        @DisplayName("Should give a server with a higher weight a larger share of resource names")
+        public void shouldGiveHigherWeightLargerShare() {
+            strategy.addAngle(1, MAX_WEIGHT);
+            strategy.removeAngle(2, MAX_WEIGHT);
+            Map<Integer, Integer> counts = countKeysByServer();
+            assertTrue(counts.get(1) > 2 * counts.get(2));
+        }
+
+        @Test
+        @DisplayName("Should not map any resource names to a removed server")
+        public void shouldNotMapToRemovedServer() {
+            strategy.removeServer(2);
+            Map<Integer, Integer> counts = countKeysByServer();
+            assertFalse(counts.containsKey(2));
+        }
+
+        @Test
+        @DisplayName("Should only move resource names of a removed server")
+        public void shouldOnlyMoveResourceNamesOfRemovedServer() {
+            int[] before = new int[NUM_KEYS];
+
+            for (int i = 0; i < NUM_KEYS; i++)
+                before[i] = strategy.findServerId("resource_" + i);
+
+            strategy.removeServer(3);
+            int moved = 0;
+
+            for (int i = 0; i < NUM_KEYS; i++) {
+                if (before[i] != 3 && strategy.findServerId("resource_" + i) != before[i])
+                    moved++;
+            }
+
+            assertTrue(moved < NUM_KEYS / 10);
+        }
+
+        @Test
+        @DisplayName("Should increment the version when weights change")
+        public void shouldIncrementVersion() {
+            long version = strategy.getVersion();
+            strategy.addAngle(1, 1);
+            assertEquals(version + 1, strategy.getVersion());
+        }
+
+        @Test
+        @DisplayName("Should record one angle per unit of weight")
+        public void shouldRecordOneAnglePerUnitOfWeight() {
+            strategy.addAngle(1, 2);
+            strategy.recordServerAngles(100);
+            Map<Integer, List<HashRingAngle>> snapshot = strategy.getHashRingAngleHistory().get(100);
+            assertEquals(DEFAULT_WEIGHT + 2, snapshot.get(1).size());
+            assertEquals(DEFAULT_WEIGHT, snapshot.get(2).size());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONObject;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+public class MetricsRequestHandlerTest {
+    RequestRateCounter mockCounter;
+    MetricsRequestHandler handler;
+
+    @BeforeEach
+    public void setup() {
+        mockCounter = Mockito.mock(RequestRateCounter.class);
+        when(mockCounter.getMaxWindowSeconds()).thenReturn(299);
+        when(mockCounter.getRate(anyInt())).thenAnswer(invocation -> (double) (int) invocation.getArgument(0));
+        handler = new MetricsRequestHandler(mockCounter);
+    }
+
+    /* Sends a request for 'uri' to the handler */
+    private HttpResponse handle( String uri ) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, null);
+        handler.handle(new BasicHttpRequest("GET", uri), response, new BasicHttpContext());
+        return response;
+    }
+
+    /* Unescapes and parses the body of a response */
+    private JSONObject parse( HttpResponse response ) throws IOException {
+        return new JSONObject(StringEscapeUtils.unescapeJson(EntityUtils.toString(response.getEntity())));
+    }
+
+    @Test
+    @DisplayName("Should report the rates over the default windows")
+    public void shouldReportDefaultWindows() throws IOException {
+        HttpResponse response = handle("/metrics");
+        assertEquals(200, response.getStatusLine().getStatusCode());
+
+        JSONObject json = parse(response);
+        JSONObject rates = json.getJSONObject("requestsPerSecond");
+        assertEquals(3, rates.length());
+        assertEquals(1.0, rates.getDouble("1"));
+        assertEquals(10.0, rates.getDouble("10"));
+        assertEquals(60.0, rates.getDouble("60"));
+        assertEquals(299, json.getInt("maxWindowSeconds"));
+    }
+
+    @Test
+    @DisplayName("Should report the rates over windows in the query string")
+    public void shouldReportRequestedWindows() throws IOException {
+        JSONObject rates = parse(handle("/metrics?window=5&window=120")).getJSONObject("requestsPerSecond");
+
+        assertEquals(5, rates.length());
+        assertEquals(5.0, rates.getDouble("5"));
+        assertEquals(120.0, rates.getDouble("120"));
+    }
+
+    @Test
+    @DisplayName("Should skip default windows which are longer than the history")
+    public void shouldSkipLongDefaultWindows() throws IOException {
+        when(mockCounter.getMaxWindowSeconds()).thenReturn(30);
+        JSONObject rates = parse(handle("/metrics")).getJSONObject("requestsPerSecond");
+
+        assertEquals(2, rates.length());
+        assertFalse(rates.has("60"));
+    }
+
+    @Test
+    @DisplayName("Should respond with status 400 when a window is invalid")
+    public void shouldRejectInvalidWindows() throws IOException {
+        when(mockCounter.getRate(1_000)).thenThrow(new IllegalArgumentException("out of range"));
+
+        HttpResponse response = handle("/metrics?window=1000");
+        assertEquals(400, response.getStatusLine().getStatusCode());
+        assertTrue(parse(response).has("error_message"));
+
+        assertEquals(400, handle("/metrics?window=abc").getStatusLine().getStatusCode());
+    }
+}
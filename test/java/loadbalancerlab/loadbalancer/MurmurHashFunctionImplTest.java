@@ -0,0 +1,106 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MurmurHashFunctionImplTest {
+    MurmurHashFunctionImpl hashFunction;
+    Random rand;
+
+    @BeforeEach
+    public void setup() {
+        hashFunction = new MurmurHashFunctionImpl();
+        rand = new Random(42);
+    }
+
+    /**
+     * Generates a random ASCII string.
+     * @param length    The length of the string.
+     * @return          The random string.
+     */
+    private String randomAscii( int length ) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < length; i++)
+            sb.append((char) (' ' + rand.nextInt(95)));
+
+        return sb.toString();
+    }
+
+    @Nested
+    @DisplayName("Test hash64()")
+    class TestHash64 {
+
+        @Test
+        @DisplayName("Should match the first half of the MurmurHash3 x64 128 bit hash of the UTF-8 bytes")
+        public void shouldMatchMurmurHash3() {
+            for (int length = 0; length <= 40; length++) {
+                String input = randomAscii(length);
+                long expected = MurmurHash3.hash128x64(input.getBytes(StandardCharsets.UTF_8))[0];
+
+                assertEquals(expected, hashFunction.hash64(input));
+            }
+        }
+
+        @Test
+        @DisplayName("Should hash non-ASCII text as its UTF-8 encoding")
+        public void shouldHashNonAsciiAsUtf8() {
+            String input = "café-猫-😀.jpg";
+            long expected = MurmurHash3.hash128x64(input.getBytes(StandardCharsets.UTF_8))[0];
+
+            assertEquals(expected, hashFunction.hash64(input));
+        }
+
+        @Test
+        @DisplayName("Should hash a range of characters in the same way as the equivalent String")
+        public void shouldHashCharacterRange() {
+            String uri = "/api/Chooder_Bunny_With_A_Long_Name.jpg";
+            int start = uri.lastIndexOf('/') + 1;
+
+            assertEquals(hashFunction.hash64(uri.substring(start)), hashFunction.hash64(uri, start, uri.length()));
+        }
+
+        @Test
+        @DisplayName("Should hash a range of bytes in the same way as the equivalent String")
+        public void shouldHashByteRange() {
+            String name = randomAscii(37);
+            byte[] bytes = ("/api/" + name + "?q=1").getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(hashFunction.hash64(name), hashFunction.hash64(bytes, 5, name.length()));
+        }
+
+        @Test
+        @DisplayName("Should hash the remaining bytes of a buffer without moving its position")
+        public void shouldHashRemainingBytesOfBuffer() {
+            String name = randomAscii(23);
+            ByteBuffer buffer = ByteBuffer.wrap(("/api/" + name).getBytes(StandardCharsets.UTF_8));
+            buffer.position(5);
+
+            assertEquals(hashFunction.hash64(name), hashFunction.hash64(buffer));
+            assertEquals(5, buffer.position());
+        }
+
+        @Test
+        @DisplayName("Should hash a batch of resource names into the output array")
+        public void shouldHashBatch() {
+            CharSequence[] inputs = { randomAscii(3), randomAscii(17), randomAscii(32) };
+            long[] output = new long[4];
+
+            hashFunction.hash64(inputs, 3, output);
+
+            for (int i = 0; i < inputs.length; i++)
+                assertEquals(hashFunction.hash64(inputs[i].toString()), output[i]);
+
+            assertEquals(0, output[3]);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearCacheTest {
+    static final long TTL = 1_000;
+    NearCache nearCache;
+
+    /* Each entry of 'a' to 'z' counts 100 + 2 bytes against the size of the cache */
+    static byte[] body() {
+        return new byte[100];
+    }
+
+    @BeforeEach
+    public void setup() {
+        nearCache = new NearCache(1_020, TTL);
+    }
+
+    @Test
+    @DisplayName("Should reject sizes and ttls which are not positive")
+    public void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new NearCache(0, TTL));
+        assertThrows(IllegalArgumentException.class, () -> new NearCache(100, 0));
+    }
+
+    @Nested
+    @DisplayName("Test get()")
+    class TestGet {
+
+        @Test
+        @DisplayName("Should return the cached response and count hits and misses")
+        public void shouldReturnCachedResponse() {
+            byte[] body = body();
+            nearCache.put("a", 3, body, ContentType.IMAGE_JPEG, 0);
+            NearCache.Entry entry = nearCache.get("a", 10);
+
+            assertSame(body, entry.body);
+            assertEquals(ContentType.IMAGE_JPEG, entry.contentType);
+            assertEquals(3, entry.ownerServerId);
+            assertNull(nearCache.get("b", 10));
+            assertEquals(1, nearCache.getHitCount());
+            assertEquals(1, nearCache.getMissCount());
+        }
+
+        @Test
+        @DisplayName("Should not return entries after their ttl and should remove them")
+        public void shouldExpireEntries() {
+            nearCache.put("a", 1, body(), null, 0);
+
+            assertNotNull(nearCache.get("a", TTL - 1));
+            assertNull(nearCache.get("a", TTL));
+            assertEquals(0, nearCache.size());
+            assertEquals(0, nearCache.getSizeInBytes());
+        }
+
+        @Test
+        @DisplayName("Should promote entries which are hit to the protected segment")
+        public void shouldPromoteOnHit() {
+            nearCache.put("a", 1, body(), null, 0);
+            assertFalse(nearCache.isProtected("a"));
+
+            nearCache.get("a", 0);
+            assertTrue(nearCache.isProtected("a"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test put()")
+    class TestPut {
+
+        @Test
+        @DisplayName("Should evict the least recently used entries to stay within the size")
+        public void shouldEvictToStayWithinSize() {
+            for (char c = 'a'; c <= 'k'; c++)
+                nearCache.put(String.valueOf(c), 1, body(), null, 0);
+
+            assertEquals(10, nearCache.size());
+            assertEquals(1_020, nearCache.getSizeInBytes());
+            assertEquals(1, nearCache.getEvictionCount());
+            assertNull(nearCache.get("a", 0));
+            assertNotNull(nearCache.get("k", 0));
+        }
+
+        @Test
+        @DisplayName("Should evict entries which were never hit before entries which were hit")
+        public void shouldPreferEvictingProbation() {
+            nearCache.put("a", 1, body(), null, 0);
+            nearCache.get("a", 0);
+
+            /* A scan of resource names which are requested once */
+            for (char c = 'b'; c <= 'z'; c++)
+                nearCache.put(String.valueOf(c), 1, body(), null, 0);
+
+            assertNotNull(nearCache.get("a", 0));
+            assertNull(nearCache.get("b", 0));
+        }
+
+        @Test
+        @DisplayName("Should limit the protected segment to its share of the size")
+        public void shouldLimitProtectedSegment() {
+            for (char c = 'a'; c <= 'j'; c++) {
+                nearCache.put(String.valueOf(c), 1, body(), null, 0);
+                nearCache.get(String.valueOf(c), 0);
+            }
+
+            /* 8 entries of 102 bytes fit within 80% of 1_020 bytes */
+            assertFalse(nearCache.isProtected("a"));
+            assertFalse(nearCache.isProtected("b"));
+            assertTrue(nearCache.isProtected("c"));
+            assertEquals(10, nearCache.size());
+        }
+
+        @Test
+        @DisplayName("Should replace an existing entry without counting it twice")
+        public void shouldReplaceEntry() {
+            nearCache.put("a", 1, body(), null, 0);
+            nearCache.put("a", 2, body(), null, 0);
+
+            assertEquals(1, nearCache.size());
+            assertEquals(102, nearCache.getSizeInBytes());
+            assertEquals(2, nearCache.get("a", 0).ownerServerId);
+        }
+
+        @Test
+        @DisplayName("Should not add responses which are larger than the whole cache")
+        public void shouldRejectOversizedResponses() {
+            nearCache.put("a", 1, new byte[2_000], null, 0);
+            assertEquals(0, nearCache.size());
+        }
+    }
+
+    @Test
+    @DisplayName("removeMoved() should remove entries whose resource names moved from the recorded CacheServer")
+    public void removeMovedShouldRemoveMovedEntries() {
+        nearCache.put("a", 1, body(), null, 0);
+        nearCache.put("b", 2, body(), null, 0);
+        nearCache.get("b", 0);
+        nearCache.put("c", 3, body(), null, 0);
+
+        int numRemoved = nearCache.removeMoved((resourceName, ownerId) -> ownerId != 1);
+
+        assertEquals(2, numRemoved);
+        assertEquals(1, nearCache.size());
+        assertEquals(102, nearCache.getSizeInBytes());
+        assertEquals(2, nearCache.getInvalidationCount());
+        assertNotNull(nearCache.get("a", 0));
+    }
+
+    @Test
+    @DisplayName("removeMoved() should evaluate the predicate without holding the lock of the cache")
+    public void removeMovedShouldNotHoldLockDuringPredicate() {
+        nearCache.put("a", 1, body(), null, 0);
+        nearCache.put("b", 2, body(), null, 0);
+
+        nearCache.removeMoved((resourceName, ownerId) -> {
+            assertFalse(Thread.holdsLock(nearCache));
+            return true;
+        });
+
+        assertEquals(0, nearCache.size());
+    }
+
+    @Test
+    @DisplayName("removeMoved() should keep entries which were replaced while the predicate was evaluated")
+    public void removeMovedShouldKeepReplacedEntries() {
+        nearCache.put("a", 1, body(), null, 0);
+
+        int numRemoved = nearCache.removeMoved((resourceName, ownerId) -> {
+            nearCache.put("a", 2, body(), null, 0);
+            return true;
+        });
+
+        assertEquals(0, numRemoved);
+        assertNotNull(nearCache.get("a", 0));
+        assertEquals(102, nearCache.getSizeInBytes());
+    }
+}
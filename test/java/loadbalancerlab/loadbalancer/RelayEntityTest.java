@@ -0,0 +1,164 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.shared.Config;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RelayEntityTest {
+    static final byte[] body = new byte[5 * RelayEntity.BUFFER_SIZE + 123];
+    static HttpServer cacheServer;
+    static int cacheServerPort;
+    HttpClientFactory clientFactory;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        new Random(1).nextBytes(body);
+        cacheServer = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName("127.0.0.1"))
+                .setListenerPort(0)
+                .registerHandler("/sized", (req, res, ctx) -> res.setEntity(new ByteArrayEntity(body, ContentType.IMAGE_JPEG)))
+                .registerHandler("/chunked", (req, res, ctx) -> res.setEntity(new InputStreamEntity(new ByteArrayInputStream(body))))
+                .create();
+        cacheServer.start();
+        cacheServerPort = cacheServer.getLocalPort();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        cacheServer.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @BeforeEach
+    public void setup() {
+        HttpClientFactory.configure(new Config());
+        clientFactory = new HttpClientFactory();
+    }
+
+    @AfterEach
+    public void teardown() {
+        clientFactory.closePooledClient();
+    }
+
+    private RelayEntity relay( String path ) throws IOException {
+        return new RelayEntity(clientFactory.getPooledApacheClient().execute(new HttpGet("http://127.0.0.1:" + cacheServerPort + path)));
+    }
+
+    @Test
+    @DisplayName("Should relay the body and return the connection to the pool")
+    public void shouldRelayBodyAndReleaseConnection() throws IOException {
+        RelayEntity entity = relay("/sized");
+        assertEquals(1, clientFactory.getPoolStats(cacheServerPort).getLeased());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+
+        assertArrayEquals(body, out.toByteArray());
+        PoolStats stats = clientFactory.getPoolStats(cacheServerPort);
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    @Test
+    @DisplayName("Should take the length and type of the body from the CacheServer response")
+    public void shouldPropagateLengthAndType() throws IOException {
+        RelayEntity sized = relay("/sized");
+        assertEquals(body.length, sized.getContentLength());
+        assertFalse(sized.isChunked());
+        assertEquals(ContentType.IMAGE_JPEG.toString(), sized.getContentType().getValue());
+        sized.writeTo(new ByteArrayOutputStream());
+
+        RelayEntity chunked = relay("/chunked");
+        assertEquals(-1, chunked.getContentLength());
+        chunked.writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test
+    @DisplayName("Should discard the connection if the body cannot be written to the client")
+    public void shouldDiscardConnectionOnFailure() throws IOException {
+        RelayEntity entity = relay("/sized");
+        OutputStream failingStream = new OutputStream() {
+            @Override
+            public void write( int b ) throws IOException {
+                throw new IOException("client went away");
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) throws IOException {
+                throw new IOException("client went away");
+            }
+        };
+
+        assertThrows(IOException.class, () -> entity.writeTo(failingStream));
+        PoolStats stats = clientFactory.getPoolStats(cacheServerPort);
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getAvailable());
+    }
+
+    @Test
+    @DisplayName("Should close the CacheServer response after writing")
+    public void shouldCloseResponse() throws IOException {
+        CloseableHttpResponse mockResponse = Mockito.mock(CloseableHttpResponse.class);
+        when(mockResponse.getEntity()).thenReturn(new ByteArrayEntity(Arrays.copyOf(body, 10)));
+
+        new RelayEntity(mockResponse).writeTo(new ByteArrayOutputStream());
+        verify(mockResponse, times(1)).close();
+    }
+
+    @Test
+    @DisplayName("Should report completion once, after the body has been written")
+    public void shouldReportCompletionOnce() throws IOException {
+        CloseableHttpResponse mockResponse = Mockito.mock(CloseableHttpResponse.class);
+        when(mockResponse.getEntity()).thenReturn(new ByteArrayEntity(Arrays.copyOf(body, 10)));
+        List<Boolean> outcomes = new ArrayList<>();
+
+        RelayEntity entity = new RelayEntity(mockResponse, outcomes::add);
+        assertTrue(outcomes.isEmpty());
+        entity.writeTo(new ByteArrayOutputStream());
+        entity.close();
+
+        assertEquals(Collections.singletonList(true), outcomes);
+        verify(mockResponse, times(1)).close();
+    }
+
+    @Test
+    @DisplayName("Should report a failure if the body cannot be read from the CacheServer")
+    public void shouldReportReadFailure() throws IOException {
+        CloseableHttpResponse mockResponse = Mockito.mock(CloseableHttpResponse.class);
+        InputStream failingStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("cache server went away");
+            }
+        };
+        when(mockResponse.getEntity()).thenReturn(new InputStreamEntity(failingStream));
+        List<Boolean> outcomes = new ArrayList<>();
+
+        assertThrows(IOException.class, () -> new RelayEntity(mockResponse, outcomes::add).writeTo(new ByteArrayOutputStream()));
+        assertEquals(Collections.singletonList(false), outcomes);
+    }
+}
@@ -0,0 +1,132 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.factory.HttpClientFactory;
+import loadbalancerlab.shared.Config;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class RelayServerConnectionTest {
+    static final int MAX_PER_ROUTE = 2;
+    static HttpServer cacheServer;
+    static int cacheServerPort;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        cacheServer = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName("127.0.0.1"))
+                .setListenerPort(0)
+                .registerHandler("*", (req, res, ctx) -> res.setEntity(new StringEntity("resource content")))
+                .create();
+        cacheServer.start();
+        cacheServerPort = cacheServer.getLocalPort();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        cacheServer.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Setting a new pending relay should close the previous one")
+    public void shouldClosePreviousRelay() throws IOException {
+        RelayServerConnection conn = new RelayServerConnection(RelayServerConnection.BUFFER_SIZE);
+        RelayEntity first = Mockito.mock(RelayEntity.class);
+        RelayEntity second = Mockito.mock(RelayEntity.class);
+        conn.setPendingRelay(first);
+        conn.setPendingRelay(second);
+
+        verify(first, times(1)).close();
+        verify(second, never()).close();
+    }
+
+    @Test
+    @DisplayName("Shutting down the connection should close the pending relay")
+    public void shouldCloseRelayOnShutdown() throws IOException {
+        RelayServerConnection conn = new RelayServerConnection(RelayServerConnection.BUFFER_SIZE);
+        RelayEntity relay = Mockito.mock(RelayEntity.class);
+        conn.setPendingRelay(relay);
+        conn.shutdown();
+
+        verify(relay, times(1)).close();
+    }
+
+    @Nested
+    @DisplayName("When requests are relayed through ClientRequestHandlerServer")
+    class WhenRelayedThroughServer {
+        HttpClientFactory clientFactory;
+        Thread serverThread;
+        ClientRequestHandlerServer server;
+        CloseableHttpClient client;
+        CacheRedistributor cacheRedis;
+
+        @BeforeEach
+        public void setup() throws InterruptedException {
+            Config config = new Config();
+            config.setHttpPoolMaxPerRoute(MAX_PER_ROUTE);
+            config.setHttpPoolLeaseTimeout(2_000);
+            HttpClientFactory.configure(config);
+            clientFactory = new HttpClientFactory();
+            config.setHttpClientFactory(clientFactory);
+            LoadBalancerClientRequestHandler.configure(config);
+            ClientRequestHandlerServer.configure(config);
+
+            cacheRedis = Mockito.mock(CacheRedistributor.class);
+            when(cacheRedis.selectPort(anyString())).thenReturn(cacheServerPort);
+            server = new ClientRequestHandlerServer(new LoadBalancerClientRequestHandler(cacheRedis));
+            serverThread = new Thread(server);
+            serverThread.start();
+
+            while (server.getPort() == -1)
+                Thread.sleep(10);
+
+            client = HttpClients.custom()
+                    .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(5_000).build())
+                    .build();
+        }
+
+        @AfterEach
+        public void teardown() throws IOException {
+            client.close();
+            serverThread.interrupt();
+            clientFactory.closePooledClient();
+        }
+
+        @Test
+        @DisplayName("HEAD requests beyond the pool limit should not keep later requests from getting a connection")
+        public void shouldReleaseConnectionsOfHeadRequests() throws IOException {
+            String uri = "http://127.0.0.1:" + server.getPort() + "/api/resource.jpg";
+
+            for (int i = 0; i < MAX_PER_ROUTE + 3; i++) {
+                try (CloseableHttpResponse res = client.execute(new HttpHead(uri))) {
+                    assertEquals(200, res.getStatusLine().getStatusCode());
+                }
+            }
+
+            try (CloseableHttpResponse res = client.execute(new HttpGet(uri))) {
+                assertEquals(200, res.getStatusLine().getStatusCode());
+                assertEquals("resource content", EntityUtils.toString(res.getEntity()));
+            }
+
+            assertEquals(0, clientFactory.getPoolStats(cacheServerPort).getLeased());
+            verify(cacheRedis, times(MAX_PER_ROUTE + 4)).releasePort(cacheServerPort);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RendezvousRoutingStrategyTest {
+    RendezvousRoutingStrategy strategy;
+    static final int DEFAULT_WEIGHT = 20;
+    static final int MAX_WEIGHT = 40;
+    static final int MIN_WEIGHT = 10;
+    static final double MAX_WEIGHT_STEP = 1.5;
+    static final int NUM_KEYS = 20_000;
+    Config config;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setMaxAnglesPerServer(MAX_WEIGHT);
+        config.setDefaultAnglesPerServer(DEFAULT_WEIGHT);
+        config.setMinAnglesPerServer(MIN_WEIGHT);
+        config.setRendezvousMaxWeightStep(MAX_WEIGHT_STEP);
+        config.setHashFunction(new MurmurHashFunctionImpl());
+        RendezvousRoutingStrategy.configure(config);
+        strategy = new RendezvousRoutingStrategy();
+    }
+
+    private int[] findAllServerIds() {
+        int[] serverIds = new int[NUM_KEYS];
+
+        for (int i = 0; i < NUM_KEYS; i++)
+            serverIds[i] = strategy.findServerId("resource_" + i);
+
+        return serverIds;
+    }
+
+    @Test
+    @DisplayName("Should return -1 when no servers have been added")
+    public void shouldReturnNegativeOneWhenEmpty() {
+        assertEquals(-1, strategy.findServerId("Chooder_Bunny.jpg"));
+    }
+
+    @Nested
+    @DisplayName("When servers have been added")
+    class WhenServersAdded {
+
+        @BeforeEach
+        public void setup() {
+            strategy.addServer(1);
+            strategy.addServer(2);
+            strategy.addServer(3);
+        }
+
+        @Test
+        @DisplayName("Should split resource names evenly between servers of equal weight")
+        public void shouldSplitEvenly() {
+            Map<Integer, Integer> counts = new HashMap<>();
+
+            for (int serverId : findAllServerIds())
+                counts.merge(serverId, 1, Integer::sum);
+
+            for (int count : counts.values())
+                assertEquals(NUM_KEYS / 3.0, count, NUM_KEYS * 0.03);
+        }
+
+        @Test
+        @DisplayName("Should only move resource names away from a server whose weight decreased")
+        public void shouldOnlyMoveResourceNamesOfServerWithDecreasedWeight() {
+            int[] before = findAllServerIds();
+            strategy.removeAngle(1, 5);
+            int[] after = findAllServerIds();
+
+            for (int i = 0; i < NUM_KEYS; i++) {
+                if (after[i] != before[i])
+                    assertEquals(1, before[i]);
+            }
+        }
+
+        @Nested
+        @DisplayName("When capacity factors are applied")
+        class WhenCapacityFactorsApplied {
+            Map<Integer, Double> capacityFactors;
+
+            @BeforeEach
+            public void setup() {
+                capacityFactors = new HashMap<>();
+                capacityFactors.put(1, 0.9);
+                capacityFactors.put(2, 0.5);
+                capacityFactors.put(3, 0.1);
+            }
+
+            @Test
+            @DisplayName("Should report that the capacity factors were applied")
+            public void shouldReturnTrue() {
+                assertTrue(strategy.applyCapacityFactors(capacityFactors));
+            }
+
+            @Test
+            @DisplayName("Should lower the weight of an overloaded server by at most the maximum step")
+            public void shouldLowerWeightOfOverloadedServer() {
+                strategy.applyCapacityFactors(capacityFactors);
+                assertEquals(DEFAULT_WEIGHT / MAX_WEIGHT_STEP, strategy.weightsByServerId.get(1), 1e-9);
+            }
+
+            @Test
+            @DisplayName("Should raise the weight of an underloaded server by at most the maximum step")
+            public void shouldRaiseWeightOfUnderloadedServer() {
+                strategy.applyCapacityFactors(capacityFactors);
+                assertEquals(DEFAULT_WEIGHT * MAX_WEIGHT_STEP, strategy.weightsByServerId.get(3), 1e-9);
+            }
+
+            @Test
+            @DisplayName("Should keep weights within the configured bounds")
+            public void shouldKeepWeightsWithinBounds() {
+                for (int i = 0; i < 10; i++)
+                    strategy.applyCapacityFactors(capacityFactors);
+
+                assertEquals(MIN_WEIGHT, strategy.weightsByServerId.get(1), 1e-9);
+                assertEquals(MAX_WEIGHT, strategy.weightsByServerId.get(3), 1e-9);
+            }
+
+            @Test
+            @DisplayName("Should publish the new weights in a single version")
+            public void shouldPublishOnce() {
+                long version = strategy.getVersion();
+                strategy.applyCapacityFactors(capacityFactors);
+                assertEquals(version + 1, strategy.getVersion());
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+    RequestCoalescer coalescer;
+    ExecutorService executor;
+    AtomicInteger numFetches;
+    CountDownLatch releaseLeader;
+    RequestCoalescer.Response response;
+
+    @BeforeEach
+    public void setup() {
+        Config config = new Config();
+        config.setCoalescingMaxWaiters(10);
+        config.setCoalescingTimeout(5_000);
+        RequestCoalescer.configure(config);
+        coalescer = new RequestCoalescer();
+        executor = Executors.newCachedThreadPool();
+        numFetches = new AtomicInteger();
+        releaseLeader = new CountDownLatch(1);
+        response = new RequestCoalescer.Response(new byte[] { 1, 2, 3 }, null);
+    }
+
+    @AfterEach
+    public void teardown() {
+        releaseLeader.countDown();
+        executor.shutdownNow();
+        RequestCoalescer.configure(new Config());
+    }
+
+    /* Fetcher which blocks until 'releaseLeader' is counted down */
+    private RequestCoalescer.Response blockingFetch() throws IOException {
+        numFetches.incrementAndGet();
+
+        try {
+            releaseLeader.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+
+        return response;
+    }
+
+    private Future<RequestCoalescer.Response> fetchAsync( String resourceName, RequestCoalescer.Fetcher fetcher ) {
+        return executor.submit(() -> coalescer.fetch(resourceName, fetcher));
+    }
+
+    /* Waits until the flight for resource "a" has started and the given number of requests are waiting on it */
+    private void awaitWaiters( int numWaiters ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+
+        while (coalescer.getNumWaiters("a") != numWaiters) {
+            if (System.currentTimeMillis() > deadline)
+                fail("expected " + numWaiters + " waiters, found " + coalescer.getNumWaiters("a"));
+
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent requests for the same resource should share a single fetch")
+    public void shouldShareFetch() throws Exception {
+        List<Future<RequestCoalescer.Response>> results = new ArrayList<>();
+        results.add(fetchAsync("a", this::blockingFetch));
+        awaitWaiters(0);
+
+        for (int i = 0; i < 5; i++)
+            results.add(fetchAsync("a", this::blockingFetch));
+
+        awaitWaiters(5);
+        releaseLeader.countDown();
+
+        for (Future<RequestCoalescer.Response> result : results)
+            assertSame(response, result.get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, numFetches.get());
+        assertEquals(1, coalescer.getUpstreamCalls());
+        assertEquals(5, coalescer.getUpstreamCallsSaved());
+    }
+
+    @Test
+    @DisplayName("Requests for different resources should not be coalesced")
+    public void shouldNotCoalesceDifferentResources() throws Exception {
+        Future<RequestCoalescer.Response> first = fetchAsync("a", this::blockingFetch);
+        Future<RequestCoalescer.Response> second = fetchAsync("b", this::blockingFetch);
+
+        while (numFetches.get() < 2)
+            Thread.sleep(5);
+
+        releaseLeader.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(0, coalescer.getUpstreamCallsSaved());
+    }
+
+    @Test
+    @DisplayName("A request after a flight has completed should start a new flight")
+    public void shouldStartNewFlightAfterCompletion() throws IOException {
+        releaseLeader.countDown();
+        coalescer.fetch("a", this::blockingFetch);
+        coalescer.fetch("a", this::blockingFetch);
+
+        assertEquals(2, numFetches.get());
+        assertEquals(0, coalescer.getUpstreamCallsSaved());
+    }
+
+    @Test
+    @DisplayName("Waiters should receive the failure of the leader")
+    public void shouldPropagateFailure() throws Exception {
+        CountDownLatch failLeader = new CountDownLatch(1);
+        Future<RequestCoalescer.Response> leader = fetchAsync("a", () -> {
+            numFetches.incrementAndGet();
+
+            try {
+                failLeader.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            throw new IOException("cache server failed");
+        });
+        awaitWaiters(0);
+        Future<RequestCoalescer.Response> waiter = fetchAsync("a", this::blockingFetch);
+        awaitWaiters(1);
+        failLeader.countDown();
+
+        ExecutionException leaderException = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterException = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderException.getCause() instanceof IOException);
+        assertSame(leaderException.getCause(), waiterException.getCause());
+        assertEquals(1, numFetches.get());
+    }
+
+    @Test
+    @DisplayName("Requests beyond the maximum number of waiters should fetch the resource themselves")
+    public void shouldBoundWaiters() throws Exception {
+        Config config = new Config();
+        config.setCoalescingMaxWaiters(1);
+        RequestCoalescer.configure(config);
+
+        Future<RequestCoalescer.Response> leader = fetchAsync("a", this::blockingFetch);
+        awaitWaiters(0);
+        Future<RequestCoalescer.Response> waiter = fetchAsync("a", this::blockingFetch);
+        awaitWaiters(1);
+        RequestCoalescer.Response overflowResponse = coalescer.fetch("a", () -> response);
+
+        assertSame(response, overflowResponse);
+        assertEquals(1, coalescer.getOverflowedWaiters());
+        assertEquals(2, coalescer.getUpstreamCalls());
+
+        releaseLeader.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+        waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(1, coalescer.getUpstreamCallsSaved());
+    }
+
+    @Test
+    @DisplayName("A waiter should give up after the timeout")
+    public void shouldTimeOut() throws Exception {
+        Config config = new Config();
+        config.setCoalescingTimeout(50);
+        RequestCoalescer.configure(config);
+
+        fetchAsync("a", this::blockingFetch);
+        awaitWaiters(0);
+
+        assertThrows(IOException.class, () -> coalescer.fetch("a", this::blockingFetch));
+        assertEquals(1, coalescer.getTimedOutWaiters());
+        assertEquals(1, numFetches.get());
+    }
+}
@@ -0,0 +1,264 @@
+package loadbalancerlab.loadbalancer;
+
+import loadbalancerlab.shared.Config;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestHedgerTest {
+    static final int PRIMARY_PORT = 1;
+    static final int HEDGE_PORT = 2;
+    Config config;
+    RequestHedger hedger;
+    ExecutorService executor;
+    Map<Integer, CompletableFuture<RequestCoalescer.Response>> sent;
+    AtomicInteger numHedgePortLookups;
+    RequestCoalescer.Response primaryResponse;
+    RequestCoalescer.Response hedgeResponse;
+
+    @BeforeEach
+    public void setup() {
+        config = new Config();
+        config.setHedgeDelay(20);
+        config.setHedgeBudget(1.0);
+        RequestHedger.configure(config);
+        hedger = new RequestHedger();
+        executor = Executors.newCachedThreadPool();
+        sent = new ConcurrentHashMap<>();
+        numHedgePortLookups = new AtomicInteger();
+        primaryResponse = new RequestCoalescer.Response(new byte[] { 1 }, null);
+        hedgeResponse = new RequestCoalescer.Response(new byte[] { 2 }, null);
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+        RequestHedger.configure(new Config());
+    }
+
+    /* Sender which records the request and leaves it outstanding until the test completes it */
+    private CompletableFuture<RequestCoalescer.Response> send( int port ) {
+        CompletableFuture<RequestCoalescer.Response> future = new CompletableFuture<>();
+        sent.put(port, future);
+        return future;
+    }
+
+    private int findHedgePort( int primaryPort ) {
+        numHedgePortLookups.incrementAndGet();
+        return HEDGE_PORT;
+    }
+
+    private Future<RequestCoalescer.Response> fetchAsync() {
+        return executor.submit(() -> hedger.fetch(PRIMARY_PORT, this::findHedgePort, this::send));
+    }
+
+    /* Waits until a request has been sent to the given port */
+    private CompletableFuture<RequestCoalescer.Response> awaitSent( int port ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+
+        while (!sent.containsKey(port)) {
+            if (System.currentTimeMillis() > deadline)
+                fail("no request was sent to port " + port);
+
+            Thread.sleep(1);
+        }
+
+        return sent.get(port);
+    }
+
+    @Test
+    @DisplayName("Should not hedge requests which respond before the hedge delay")
+    public void shouldNotHedgeFastRequests() throws Exception {
+        RequestCoalescer.Response response = hedger.fetch(PRIMARY_PORT, this::findHedgePort, port -> {
+            send(port);
+            sent.get(port).complete(primaryResponse);
+            return sent.get(port);
+        });
+
+        assertSame(primaryResponse, response);
+        assertEquals(0, numHedgePortLookups.get());
+        assertEquals(0, hedger.getHedgesSent());
+    }
+
+    @Test
+    @DisplayName("Should use the hedged response and cancel the primary request when the hedge responds first")
+    public void shouldUseHedgeWhenItRespondsFirst() throws Exception {
+        Future<RequestCoalescer.Response> result = fetchAsync();
+        CompletableFuture<RequestCoalescer.Response> primary = awaitSent(PRIMARY_PORT);
+        awaitSent(HEDGE_PORT).complete(hedgeResponse);
+
+        assertSame(hedgeResponse, result.get(5, TimeUnit.SECONDS));
+        assertTrue(primary.isCancelled());
+        assertEquals(1, hedger.getHedgesSent());
+        assertEquals(1, hedger.getHedgeWins());
+    }
+
+    @Test
+    @DisplayName("Should use the primary response and cancel the hedge when the primary request responds first")
+    public void shouldUsePrimaryWhenItRespondsFirst() throws Exception {
+        Future<RequestCoalescer.Response> result = fetchAsync();
+        CompletableFuture<RequestCoalescer.Response> hedge = awaitSent(HEDGE_PORT);
+        sent.get(PRIMARY_PORT).complete(primaryResponse);
+
+        assertSame(primaryResponse, result.get(5, TimeUnit.SECONDS));
+        assertTrue(hedge.isCancelled());
+        assertEquals(0, hedger.getHedgeWins());
+    }
+
+    @Test
+    @DisplayName("Should use the response which succeeds if the other request fails")
+    public void shouldIgnoreSingleFailure() throws Exception {
+        Future<RequestCoalescer.Response> result = fetchAsync();
+        awaitSent(HEDGE_PORT).completeExceptionally(new IOException("hedge failed"));
+        sent.get(PRIMARY_PORT).complete(primaryResponse);
+
+        assertSame(primaryResponse, result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Should fail with an IOException if both requests fail")
+    public void shouldFailWhenBothFail() throws Exception {
+        Future<RequestCoalescer.Response> result = fetchAsync();
+        awaitSent(HEDGE_PORT).completeExceptionally(new IOException("hedge failed"));
+        sent.get(PRIMARY_PORT).completeExceptionally(new IOException("primary failed"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    @DisplayName("Should hedge right away without spending a token if the primary request fails before the hedge delay")
+    public void shouldHedgeFailedPrimaryImmediately() throws Exception {
+        config.setHedgeDelay(60_000);
+        config.setHedgeBudget(0.0);
+        RequestHedger.configure(config);
+        hedger = new RequestHedger();
+
+        Future<RequestCoalescer.Response> result = executor.submit(() -> hedger.fetch(PRIMARY_PORT, this::findHedgePort, port -> {
+            CompletableFuture<RequestCoalescer.Response> future = send(port);
+
+            if (port == PRIMARY_PORT)
+                future.completeExceptionally(new IOException("connection refused"));
+
+            return future;
+        }));
+        awaitSent(HEDGE_PORT).complete(hedgeResponse);
+
+        assertSame(hedgeResponse, result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, hedger.getHedgesSent());
+        assertEquals(0, hedger.getHedgesDenied());
+    }
+
+    @Test
+    @DisplayName("Should rethrow the failure of the primary request if there is no other CacheServer")
+    public void shouldFailWhenPrimaryFailsWithoutHedgePort() {
+        IOException e = assertThrows(IOException.class, () -> hedger.fetch(PRIMARY_PORT, port -> -1, port -> {
+            CompletableFuture<RequestCoalescer.Response> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("connection refused"));
+            return future;
+        }));
+
+        assertEquals("connection refused", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should wait for the primary request if there is no other CacheServer")
+    public void shouldWaitForPrimaryWithoutHedgePort() throws Exception {
+        Future<RequestCoalescer.Response> result = executor.submit(() -> hedger.fetch(PRIMARY_PORT, port -> -1, this::send));
+        CompletableFuture<RequestCoalescer.Response> primary = awaitSent(PRIMARY_PORT);
+        Thread.sleep(50);
+        primary.complete(primaryResponse);
+
+        assertSame(primaryResponse, result.get(5, TimeUnit.SECONDS));
+        assertEquals(0, hedger.getHedgesSent());
+    }
+
+    @Test
+    @DisplayName("Should not hedge more than the budget allows")
+    public void shouldLimitHedgesToBudget() throws Exception {
+        config.setHedgeBudget(0.5);
+        RequestHedger.configure(config);
+        hedger = new RequestHedger();
+
+        /* The first request earns half a token, which is not enough for a hedge */
+        Future<RequestCoalescer.Response> result = fetchAsync();
+        CompletableFuture<RequestCoalescer.Response> primary = awaitSent(PRIMARY_PORT);
+        Thread.sleep(50);
+        primary.complete(primaryResponse);
+        result.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, hedger.getHedgesSent());
+        assertEquals(1, hedger.getHedgesDenied());
+
+        /* The second request earns the rest of the token */
+        sent.clear();
+        result = fetchAsync();
+        awaitSent(HEDGE_PORT).complete(hedgeResponse);
+        result.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, hedger.getHedgesSent());
+    }
+
+    @Nested
+    @DisplayName("When the hedge delay is adaptive")
+    class WhenAdaptiveDelay {
+
+        @BeforeEach
+        public void setup() {
+            config.setHedgeAdaptiveDelay(true);
+            RequestHedger.configure(config);
+            hedger = new RequestHedger();
+        }
+
+        @Test
+        @DisplayName("Should use the fixed delay until enough latencies have been observed")
+        public void shouldUseFixedDelayInitially() {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(20), hedger.getHedgeDelayNanos(PRIMARY_PORT));
+        }
+
+        @Test
+        @DisplayName("Should use the 95th percentile of the latencies observed from the CacheServer")
+        public void shouldUsePercentileOfLatencies() throws IOException {
+            Map<Integer, Integer> numResponses = new HashMap<>();
+
+            for (int i = 0; i < RequestHedger.minLatencySamples; i++) {
+                hedger.fetch(PRIMARY_PORT, this::findHedgeFail, port -> {
+                    numResponses.merge(port, 1, Integer::sum);
+                    return CompletableFuture.completedFuture(primaryResponse);
+                });
+            }
+
+            /* Responses which are already complete have latencies far below the fixed delay */
+            assertTrue(hedger.getHedgeDelayNanos(PRIMARY_PORT) < TimeUnit.MILLISECONDS.toNanos(20));
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(20), hedger.getHedgeDelayNanos(HEDGE_PORT));
+            assertEquals(RequestHedger.minLatencySamples, numResponses.get(PRIMARY_PORT));
+        }
+
+        @Test
+        @DisplayName("Should record how long cancelled requests were outstanding for as their latencies")
+        public void shouldRecordLatencyOfCancelledRequests() throws IOException {
+            for (int i = 0; i < RequestHedger.minLatencySamples; i++)
+                hedger.fetch(PRIMARY_PORT, this::findHedgeFail, port -> CompletableFuture.completedFuture(primaryResponse));
+
+            /* The primary requests never respond, and lose to hedges which respond after 5 milliseconds */
+            for (int i = 0; i < 16; i++) {
+                hedger.fetch(PRIMARY_PORT, port -> HEDGE_PORT, port -> port == PRIMARY_PORT
+                        ? new CompletableFuture<>()
+                        : CompletableFuture.supplyAsync(() -> hedgeResponse, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS)));
+            }
+
+            assertTrue(hedger.getHedgeDelayNanos(PRIMARY_PORT) >= TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        private int findHedgeFail( int primaryPort ) {
+            fail("requests which respond immediately should not be hedged");
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package loadbalancerlab.loadbalancer;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestRateCounterTest {
+    static final int HISTORY_SECONDS = 10;
+    static final long START = 1_000;
+    RequestRateCounter counter;
+
+    @BeforeEach
+    public void setup() {
+        counter = new RequestRateCounter(HISTORY_SECONDS);
+    }
+
+    @Test
+    @DisplayName("Should throw an exception when the history is shorter than 2 seconds")
+    public void shouldRejectShortHistory() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestRateCounter(1));
+    }
+
+    @Test
+    @DisplayName("Should throw an exception for windows outside of the history")
+    public void shouldRejectInvalidWindows() {
+        assertEquals(HISTORY_SECONDS - 1, counter.getMaxWindowSeconds());
+        assertThrows(IllegalArgumentException.class, () -> counter.getCount(0, START));
+        assertThrows(IllegalArgumentException.class, () -> counter.getCount(HISTORY_SECONDS, START));
+    }
+
+    @Test
+    @DisplayName("Should count the events of the completed seconds in the window")
+    public void shouldCountCompletedSeconds() {
+        counter.record(START);
+        counter.record(START + 1);
+        counter.record(START + 1);
+        counter.record(START + 2);
+
+        assertEquals(3, counter.getCount(5, START + 2), "events in the current second should not be counted");
+        assertEquals(2, counter.getCount(1, START + 2));
+        assertEquals(1, counter.getCount(1, START + 3));
+        assertEquals(3, counter.getCount(2, START + 3));
+        assertEquals(4, counter.getCount(5, START + 3));
+        assertEquals(0, counter.getCount(1, START + 4));
+    }
+
+    @Test
+    @DisplayName("Should reset buckets which are reused after the ring wraps around")
+    public void shouldResetReusedBuckets() {
+        counter.record(START);
+        counter.record(START);
+        counter.record(START + HISTORY_SECONDS);
+
+        assertEquals(1, counter.getCount(1, START + HISTORY_SECONDS + 1));
+        assertEquals(1, counter.getCount(HISTORY_SECONDS - 1, START + HISTORY_SECONDS + 1));
+    }
+
+    @Test
+    @DisplayName("Should not count seconds whose buckets have been reused")
+    public void shouldIgnoreExpiredSeconds() {
+        counter.record(START);
+
+        assertEquals(1, counter.getCount(HISTORY_SECONDS - 1, START + HISTORY_SECONDS - 1));
+        assertEquals(0, counter.getCount(HISTORY_SECONDS - 1, START + HISTORY_SECONDS + 3));
+    }
+
+    @Test
+    @DisplayName("Should drop events which are older than the second their bucket has moved on to")
+    public void shouldDropStaleEvents() {
+        counter.record(START + HISTORY_SECONDS);
+        counter.record(START);
+
+        assertEquals(1, counter.getCount(1, START + HISTORY_SECONDS + 1));
+    }
+
+    @Test
+    @DisplayName("Should not lose events recorded concurrently within the same second")
+    public void shouldCountConcurrentEvents() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++)
+                    counter.record(START);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40_000, counter.getCount(1, START + 1));
+    }
+
+    @Test
+    @DisplayName("Should not lose events recorded concurrently while a bucket is reused")
+    public void shouldCountConcurrentEventsInReusedBucket() throws Exception {
+        for (int round = 1; round <= 50; round++) {
+            long second = START + round * HISTORY_SECONDS;
+            CyclicBarrier barrier = new CyclicBarrier(4);
+            List<Thread> threads = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        barrier.await();
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        return;
+                    }
+
+                    for (int j = 0; j < 1_000; j++)
+                        counter.record(second);
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : threads)
+                thread.join();
+
+            assertEquals(4_000, counter.getCount(1, second + 1), "events were lost in round " + round);
+        }
+    }
+
+    @Test
+    @DisplayName("Should average the count over the window")
+    public void shouldCalculateRate() {
+        RequestRateCounter realTimeCounter = new RequestRateCounter(HISTORY_SECONDS);
+        assertEquals(0.0, realTimeCounter.getRate(5));
+
+        realTimeCounter.record();
+        assertTrue(realTimeCounter.getRate(1) <= 1.0);
+    }
+}
@@ -0,0 +1,72 @@
+package loadbalancerlab.loadbalancer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RouteCacheTest {
+    RouteCache routeCache;
+    String resourceName = "Chooder_Bunny.jpg";
+
+    @BeforeEach
+    public void setup() {
+        routeCache = new RouteCache(100);
+    }
+
+    @Test
+    @DisplayName("Should round the capacity up to a power of two")
+    public void shouldRoundCapacityUp() {
+        assertEquals(128, routeCache.capacity());
+    }
+
+    @Test
+    @DisplayName("Should throw IllegalArgumentException when the capacity is not positive")
+    public void shouldThrowWhenCapacityNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(0));
+    }
+
+    @Nested
+    @DisplayName("Test get()")
+    class TestGet {
+
+        @Test
+        @DisplayName("Should return -1 and count a miss when there is no entry")
+        public void shouldMissWhenEmpty() {
+            assertEquals(-1, routeCache.get(resourceName, 1));
+            assertEquals(0, routeCache.getHitCount());
+            assertEquals(1, routeCache.getMissCount());
+        }
+
+        @Test
+        @DisplayName("Should return the recorded server id and count a hit for the same version")
+        public void shouldHitForSameVersion() {
+            routeCache.put(resourceName, 7, 1);
+
+            assertEquals(7, routeCache.get(resourceName, 1));
+            assertEquals(1, routeCache.getHitCount());
+            assertEquals(0, routeCache.getMissCount());
+        }
+
+        @Test
+        @DisplayName("Should ignore entries from another version")
+        public void shouldMissForOtherVersion() {
+            routeCache.put(resourceName, 7, 1);
+
+            assertEquals(-1, routeCache.get(resourceName, 2));
+            assertEquals(1, routeCache.getMissCount());
+        }
+
+        @Test
+        @DisplayName("Should ignore entries for other resource names in the same slot")
+        public void shouldMissForOtherResourceName() {
+            routeCache = new RouteCache(1);
+            routeCache.put(resourceName, 7, 1);
+
+            assertEquals(-1, routeCache.get("Cheshire_Cat.jpg", 1));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package loadbalancerlab.loadbalancer;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.HttpProcessorBuilder;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.UriHttpRequestHandlerMapper;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThreadPerConnectionHttpServerTest {
+    ThreadPerConnectionHttpServer server;
+    ExecutorService executor;
+    AtomicInteger tasksSubmitted;
+    CloseableHttpClient httpClient;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        tasksSubmitted = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            tasksSubmitted.incrementAndGet();
+            return new Thread(runnable);
+        });
+        UriHttpRequestHandlerMapper handlerMapper = new UriHttpRequestHandlerMapper();
+        handlerMapper.register("/api/*", (req, res, ctx) -> res.setEntity(new StringEntity(req.getRequestLine().getUri())));
+        server = new ThreadPerConnectionHttpServer(InetAddress.getByName("127.0.0.1"), 0,
+                                                   SocketConfig.custom().setSoTimeout(5_000).build(),
+                                                   HttpProcessorBuilder.create().add(new ResponseContent()).build(),
+                                                   handlerMapper, executor);
+        server.start();
+
+        /* A connection to the freed port of a shut down server can connect to itself, and would then wait forever
+           for a response */
+        httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(5_000).build())
+                .build();
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        httpClient.close();
+        server.shutdown();
+    }
+
+    private String get( String path ) throws IOException {
+        try (CloseableHttpResponse res = httpClient.execute(new HttpGet("http://127.0.0.1:" + server.getLocalPort() + path))) {
+            return res.getStatusLine().getStatusCode() + " " + EntityUtils.toString(res.getEntity());
+        }
+    }
+
+    @Test
+    @DisplayName("Should serve requests with the registered handler")
+    public void shouldServeRequests() throws IOException {
+        assertEquals("200 /api/resource.jpg", get("/api/resource.jpg"));
+        assertTrue(get("/other").startsWith("501"));
+    }
+
+    @Test
+    @DisplayName("Should serve connections on threads of the given ExecutorService")
+    public void shouldUseExecutor() throws IOException {
+        get("/api/a");
+        get("/api/b");
+
+        /* Both requests share a kept-alive connection */
+        assertEquals(1, tasksSubmitted.get());
+    }
+
+    @Test
+    @DisplayName("Should shut down the ExecutorService and stop accepting connections on shutdown")
+    public void shouldShutDown() {
+        int port = server.getLocalPort();
+        server.shutdown();
+
+        assertTrue(executor.isShutdown());
+        assertThrows(IOException.class, () -> httpClient.execute(new HttpGet("http://127.0.0.1:" + port + "/api/a")));
+    }
+}